@@ -1,6 +1,14 @@
 package com.dataart.advanced.task;
 
 import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.LongSupplier;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -26,6 +34,17 @@ public class AIServerListener implements ServerListener {
          * @return result of request processing on server side
          */
         T make(Server.Connection connection);
+
+        /**
+         * Client's request processing depending on whole request content
+         * @param connection - reference on connection associated with given
+         *                     client
+         * @param msg - received client message containing known token
+         * @return result of request processing on server side
+         */
+        default T make(Server.Connection connection, String msg) {
+            return make(connection);
+        }
     }
 
     /**
@@ -51,12 +70,26 @@ public class AIServerListener implements ServerListener {
         private final SimpleDateFormat time;  // instance for time/date format
         private final Lock readLock = new ReentrantReadWriteLock().readLock();
 
+        private final ChronoUnit precision;   // the smallest unit of time/date format
+
         /**
          * Constructor assigning specified time/date format pattern
          * @param pattern - time/date pattern for output
+         * @param precision - the smallest unit of pattern, response doesn't change within it
          */
-        TimeAction(String pattern) {
+        TimeAction(String pattern, ChronoUnit precision) {
             time = new SimpleDateFormat(pattern);
+            this.precision = precision;
+        }
+
+        /**
+         * Time to live of response is taken before response forming, so it expires not later than the unit of
+         * formed time/date
+         * @return time in ms till the end of the current unit of time/date precision
+         */
+        long getTtl() {
+            ZonedDateTime now = ZonedDateTime.now();
+            return Duration.between(now, now.truncatedTo(precision).plus(1, precision)).toMillis();
         }
 
         /**
@@ -127,6 +160,74 @@ public class AIServerListener implements ServerListener {
         }
     }
 
+    /**
+     * Request for getting the last exchanges of user. Optional number after
+     * command token limits exchanges number
+     */
+    class HistoryAction implements Action<String> {
+        // thread-safe format of exchanges moments
+        private final DateTimeFormatter time = DateTimeFormatter.ofPattern("kk:mm:ss")
+                                                                .withZone(ZoneId.systemDefault());
+
+        /**
+         * User's history request processing without exchanges number
+         * @param connection - reference on connection associated with given
+         *                     client
+         * @return all stored exchanges of user
+         */
+        @Override
+        public String make(Server.Connection connection) {
+            return make(connection, HISTORY_CMD);
+        }
+
+        /**
+         * User's history request processing
+         * @param connection - reference on connection associated with given
+         *                     client
+         * @param msg - received client message with optional exchanges number
+         *              after command token
+         * @return the last exchanges of user, one exchange per line
+         */
+        @Override
+        public String make(Server.Connection connection, String msg) {
+            ConversationHistory history = connection.getHistory();
+            int number = history.getSize();
+
+            connection.skipHistory();
+
+            String argument = msg.substring(msg.toLowerCase().indexOf(HISTORY_CMD) + HISTORY_CMD.length()).trim();
+
+            if (!argument.isEmpty()) {
+                try {
+                    number = Integer.parseInt(argument.split("\\s+")[0]);
+                } catch (NumberFormatException exc) {
+                    number = 0;
+                }
+
+                if (number <= 0) {
+                    return "History size should be a positive number, e.g. \"" + HISTORY_CMD + " 5\"";
+                }
+            }
+
+            List<ConversationHistory.Entry> entries = history.getLast(connection.getUsrName(), number);
+
+            if (entries.isEmpty()) {
+                return "Your history is empty";
+            }
+
+            StringBuilder response = new StringBuilder("Your last exchanges:");
+
+            // multiline messages are joined, so each exchange takes single line
+            for (ConversationHistory.Entry entry : entries) {
+                response.append(String.format("\n[%s] %s -> %s", time.format(Instant.ofEpochMilli(entry.getTime())),
+                                              entry.getRequest().replace('\n', ' '),
+                                              entry.getResponse().replace('\n', ' ')));
+            }
+
+            return response.toString();
+        }
+    }
+
     /**
      * Client's known command description
      */
@@ -136,6 +237,9 @@ public class AIServerListener implements ServerListener {
 
         private final Action action;    // request processing specified by token
 
+        // time to live of response cached by client in ms or null if response isn't cacheable
+        private final LongSupplier ttl;
+
         /**
          * Constructor creates known command description
          * @param token - command token
@@ -143,10 +247,22 @@ public class AIServerListener implements ServerListener {
          * @param action - request processing corresponding to token
          */
         UserCmd(String token, String response, Action action) {
+            this(token, response, action, null);
+        }
+
+        /**
+         * Constructor creates description of idempotent command, its response is cached by client
+         * @param token - command token
+         * @param response - response preamble
+         * @param action - request processing corresponding to token
+         * @param ttl - time to live of response in ms
+         */
+        UserCmd(String token, String response, Action<?> action, LongSupplier ttl) {
             this.token = token;
             this.response = response;
 
             this.action = action;
+            this.ttl = ttl;
         }
 
         /**
@@ -160,6 +276,19 @@ public class AIServerListener implements ServerListener {
             return action == null ? response : String.format(response, action.make(connection));
         }
 
+        /**
+         * Process request to server and forms response on appropriate token
+         * taking into account whole request content
+         * @param connection - reference on connection associated with given
+         *                     client
+         * @param msg - received client message
+         * @return complete response on received token including request
+         *         processing result
+         */
+        String getAnswer(Server.Connection connection, String msg) {
+            return action == null ? response : String.format(response, action.make(connection, msg));
+        }
+
         /**
          * @return command token
          */
@@ -167,6 +296,13 @@ public class AIServerListener implements ServerListener {
             return token;
         }
 
+        /**
+         * @return time to live of response in ms or 0 if response isn't cacheable
+         */
+        long getTtl() {
+            return ttl == null ? 0 : ttl.getAsLong();
+        }
+
         /**
          * @return command response
          */
@@ -201,6 +337,7 @@ public class AIServerListener implements ServerListener {
                 .orElse(connection.isUserNameReceived() ? DEFAULT_CMD :
                         new AIServerListener().new UserCmd(msg, String.format(CONNECTION_WELCOME_MSG, msg), null));
 
-        return opt.getAnswer(connection);
+        connection.setResponseTtl(opt.getTtl());
+        return opt.getAnswer(connection, msg);
     }
 }
@@ -0,0 +1,287 @@
+package com.dataart.advanced.task;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Runtime control plane of server. Listens to local admin port in its own thread, so operations don't compete
+ * with client connections threads. Admin connections are served one by one: each text line is a command and
+ * each reply is finished by empty line, so the port could be used by "telnet" or "nc" as well as by scripts.
+ * Known commands: stats, connections, kick, drain, limits, maxlinks, loglevel, stop and help
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class AdminServer implements Runnable, Closeable {
+    private final Server server;      // controlled server
+    private final int portNumber;     // admin port number
+
+    private volatile boolean isStop = false;  // flag notifying of admin stop
+
+    // listening socket and socket of currently served admin connection closed on admin stop
+    private volatile ServerSocket srvSocket;
+    private volatile Socket admSocket;
+
+    // loggers with levels changed by admin, kept for preventing their garbage collection with levels
+    private final Map<String, Logger> tunedLoggers = new HashMap<>();
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(AdminServer.class.getName());
+
+    /**
+     * Constructor binds admin port on loopback address only
+     * @param server - controlled server
+     * @param portNumber - admin port number (0 for any free port)
+     * @throws IOException - if admin port couldn't be bound
+     */
+    AdminServer(Server server, int portNumber) throws IOException {
+        this.server = server;
+
+        srvSocket = new ServerSocket(portNumber, 0, InetAddress.getLoopbackAddress());
+        this.portNumber = srvSocket.getLocalPort();
+    }
+
+    /**
+     * @return bound admin port number
+     */
+    final int getPortNumber() {
+        return portNumber;
+    }
+
+    /**
+     * Thread function accepting admin connections till admin stop
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        log.info(String.format("Admin port %d is listened", portNumber));
+
+        while (!isStop) {
+            try (Socket socket = srvSocket.accept()) {
+                admSocket = socket;
+                serve(socket);
+            } catch (IOException exc) {
+                if (!isStop) {
+                    log.log(Level.SEVERE, "AdminServer error: problems with I/O of admin connection", exc);
+                }
+            } finally {
+                admSocket = null;
+            }
+        }
+    }
+
+    /**
+     * Executes commands of single admin connection till its closing or "quit" command
+     * @param socket - accepted admin connection
+     * @throws IOException - if error occurs upon commands reading or replies writing
+     */
+    private void serve(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), MESSAGE_CHARSET));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+
+        String line;
+
+        while (!isStop && (line = in.readLine()) != null) {
+            String[] args = line.trim().split("\\s+");
+
+            if (args[0].isEmpty()) {
+                continue;
+            }
+
+            if (QUIT_CMD.equalsIgnoreCase(args[0])) {
+                break;
+            }
+
+            String reply;
+
+            try {
+                reply = execute(args);
+            } catch (IllegalArgumentException exc) {
+                reply = "Error: " + exc.getMessage();
+            }
+
+            log.info("Admin: " + line.trim());
+
+            out.print(reply);
+            out.print(reply.endsWith("\n") ? "\n" : "\n\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Executes single admin command
+     * @param args - command token and its arguments
+     * @return command reply
+     * @throws IllegalArgumentException - if command or its arguments are illegal
+     */
+    String execute(String[] args) {
+        switch (args[0].toLowerCase()) {
+            case ADMIN_STATS_CMD:
+                return String.join("\n", server.collectStats());
+
+            case ADMIN_CONNECTIONS_CMD:
+                return describeLinks();
+
+            case ADMIN_KICK_CMD:
+                requireArgs(args, 2);
+                return server.kick(parseInt(args[1])) ? "Connection #" + args[1] + " is kicked" :
+                                                        "Connection #" + args[1] + " isn't found";
+
+            case ADMIN_DRAIN_CMD:
+                return drain(args);
+
+            case ADMIN_LIMITS_CMD:
+                requireArgs(args, 6);
+                server.setRateLimits(parseInt(args[1]), parseInt(args[2]), parseInt(args[3]), parseInt(args[4]),
+                                     parseInt(args[5]));
+                return "Rate limits are changed, connections limits are applied to new connections";
+
+            case ADMIN_MAX_LINKS_CMD:
+                requireArgs(args, 2);
+                server.setMaxLinksNumber(parseInt(args[1]));
+                return "Maximal connections number is " + args[1];
+
+            case ADMIN_LOG_LEVEL_CMD:
+                return changeLogLevel(args);
+
+            case ADMIN_INVALIDATE_CMD:
+                String token = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+                return String.format("Cached responses are invalidated for %d sessions",
+                                     server.invalidateResponses(token));
+
+            case SERVER_STOP_CMD:
+                server.stop();
+                return "Server is stopping";
+
+            case ADMIN_HELP_CMD:
+                return ADMIN_HELP_MSG;
+
+            default:
+                throw new IllegalArgumentException("unknown command \"" + args[0] + "\". Type \"" +
+                                                   ADMIN_HELP_CMD + "\" for commands list");
+        }
+    }
+
+    /**
+     * @return description of server's connections, one line per connection
+     */
+    private String describeLinks() {
+        List<Server.Link> links = server.getLinks();
+
+        if (links.isEmpty()) {
+            return NO_CONNECTION_MSG;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Server.Link link : links) {
+            sb.append(link.describeSessions()).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Switches draining mode: new connections are rejected, while existing ones are served till their "quit"
+     * @param args - command token and optional "on" or "off" (default "on")
+     * @return draining state with the remaining connections number
+     */
+    private String drain(String[] args) {
+        if (args.length > 1 && !"on".equalsIgnoreCase(args[1]) && !"off".equalsIgnoreCase(args[1])) {
+            throw new IllegalArgumentException("\"on\" or \"off\" is expected instead of \"" + args[1] + "\"");
+        }
+
+        server.setDraining(args.length == 1 || "on".equalsIgnoreCase(args[1]));
+
+        return String.format("Draining is %s, remaining connections number is %d",
+                             server.isDraining() ? "on" : "off", server.getLinks().size());
+    }
+
+    /**
+     * Changes level of specified logger or of root logger with its handlers
+     * @param args - command token, level name and optional logger name
+     * @return description of changed level
+     */
+    private String changeLogLevel(String[] args) {
+        requireArgs(args, 2);
+
+        Level level = Level.parse(args[1].toUpperCase());
+        String name = args.length > 2 ? args[2] : "";
+
+        Logger logger = tunedLoggers.computeIfAbsent(name, Logger::getLogger);
+        logger.setLevel(level);
+
+        // root handlers filter records of all loggers, so they follow root level
+        if (name.isEmpty()) {
+            for (Handler handler : logger.getHandlers()) {
+                handler.setLevel(level);
+            }
+        }
+
+        return String.format("Level of %s logger is %s", name.isEmpty() ? "root" : "\"" + name + "\"", level);
+    }
+
+    /**
+     * @param args - command token and its arguments
+     * @param number - minimal tokens number including command token
+     * @throws IllegalArgumentException - if arguments are missed
+     */
+    private static void requireArgs(String[] args, int number) {
+        if (args.length < number) {
+            throw new IllegalArgumentException("command \"" + args[0] + "\" expects " + (number - 1) +
+                                               " argument(s). Type \"" + ADMIN_HELP_CMD + "\" for usage");
+        }
+    }
+
+    /**
+     * @param value - non-negative integer argument
+     * @return parsed argument
+     * @throws IllegalArgumentException - if argument isn't non-negative integer
+     */
+    private static int parseInt(String value) {
+        int result = Integer.parseInt(value);
+
+        if (result < 0) {
+            throw new IllegalArgumentException("non-negative number is expected instead of " + value);
+        }
+
+        return result;
+    }
+
+    /**
+     * Stops admin thread closing listening socket and served admin connection
+     */
+    @Override
+    public void close() {
+        isStop = true;
+
+        try {
+            srvSocket.close();
+
+            Socket socket = admSocket;
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (SocketException exc) {
+            // socket is already closed by admin thread
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "AdminServer error: unable to close admin port " + portNumber, exc);
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package com.dataart.advanced.task;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Non-blocking client for programmatic communication with server.
+ * Each request returns future completed by server response so multiple
+ * requests could be outstanding simultaneously. Server answers requests of
+ * single connection in receiving order, so responses are matched to requests
+ * in FIFO order. All clients created with the same channel group share its
+ * I/O threads, so one JVM could drive thousands of sessions. If TLS is
+ * enabled frames are encrypted by SSLEngine between queues and channel,
+ * handshake messages are exchanged by the same reading and writing chains.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class AsyncClient implements Closeable {
+    private final int portNumber;        // server port number
+    private final String hostName;       // host name
+
+    private final AsynchronousChannelGroup group;   // shared I/O threads
+    private final AsyncClientListener listener;     // lifecycle notifications receiver
+
+    private AsynchronousSocketChannel channel;
+
+    // futures of unanswered requests in sending order, guarded by "this"
+    private final Queue<CompletableFuture<String>> pending = new ArrayDeque<>();
+    // encoded frames waiting for writing, guarded by "this"
+    private final Queue<ByteBuffer> outgoing = new ArrayDeque<>();
+    // flag notifying if channel writing is in progress, guarded by "this"
+    private boolean isWriting = true;
+    private volatile boolean isClosed = false;
+
+    private final MessageTraits sentMsg = new MessageTraits();  // guarded by "this"
+    private final MessageTraits recMsg = new MessageTraits();   // used by sequential reading chain only
+    private ByteBuffer readBuffer = ByteBuffer.allocate(ASYNC_READ_BUFFER_SZ);
+
+    private TlsContext tls;              // TLS parameters or null if connection isn't encrypted
+    private SSLEngine engine;            // TLS engine of connection or null if connection isn't encrypted
+    private ByteBuffer netIn;            // received records, used by sequential reading chain only
+    private boolean isHandshakeFinished = false;  // guarded by "this"
+
+    // encrypted records waiting for writing, guarded by "this"
+    private final Queue<ByteBuffer> records = new ArrayDeque<>();
+
+    private volatile int clientID = DEFAULT_ID;  // client's ID assigned by server
+    private volatile String resumeToken;         // token issued by server for session
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(AsyncClient.class.getName());
+
+    // completion handler of frames writing
+    private final CompletionHandler<Long, ByteBuffer[]> writeHandler = new CompletionHandler<Long, ByteBuffer[]>() {
+        @Override
+        public void completed(Long result, ByteBuffer[] batch) {
+            for (int i = 0; i < batch.length; ++i) {
+                if (batch[i].hasRemaining()) {
+                    channel.write(batch, i, batch.length - i, 0, TimeUnit.MILLISECONDS, batch, this);
+                    return;
+                }
+            }
+
+            synchronized (AsyncClient.this) {
+                writeNext();
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, ByteBuffer[] batch) {
+            close(exc);
+        }
+    };
+
+    // completion handler of frames reception
+    private final CompletionHandler<Integer, Void> readHandler = new CompletionHandler<Integer, Void>() {
+        @Override
+        public void completed(Integer result, Void attachment) {
+            if (result < 0) {
+                close(hasPending() ? new EOFException("AsyncClient: connection is closed by server") : null);
+                return;
+            }
+
+            // frames decrypted before close notification are processed anyway
+            boolean isInboundOpen = engine == null || unwrap();
+
+            if (isClosed) {
+                return;
+            }
+
+            readBuffer.flip();
+
+            try {
+                while (recMsg.decode(readBuffer) != DEFAULT_SZ) {
+                    if (recMsg.isComplete()) {
+                        onFrame(recMsg);
+                    }
+                }
+            } catch (IOException exc) {
+                close(exc);
+                return;
+            }
+
+            if (!isInboundOpen) {
+                close(hasPending() ? new EOFException("AsyncClient: connection is closed by server") : null);
+                return;
+            }
+
+            // growing buffer for frame exceeding its capacity
+            int frameSz = MessageTraits.getFrameSize(readBuffer);
+
+            if (frameSz > readBuffer.capacity()) {
+                readBuffer = ByteBuffer.allocate(frameSz).put(readBuffer);
+            } else {
+                readBuffer.compact();
+            }
+
+            read();
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            close(exc);
+        }
+    };
+
+    /**
+     * Creates channel group for sharing I/O threads between multiple clients
+     * @param threadsNumber - number of I/O threads
+     * @return channel group with daemon I/O threads
+     * @throws IOException - if channel group creation fails
+     */
+    public static AsynchronousChannelGroup createGroup(int threadsNumber) throws IOException {
+        AtomicInteger threadsCounter = new AtomicInteger();
+
+        return AsynchronousChannelGroup.withFixedThreadPool(threadsNumber, task -> {
+            Thread thread = new Thread(task, ASYNC_IO_THREAD_NAME + threadsCounter.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Constructor creates non-blocking client instance
+     *
+     * @param hostName - host name of server placement
+     * @param portNumber - port number on which server is available for connection
+     * @param group - channel group with I/O threads shared between clients
+     * @param listener - lifecycle notifications receiver
+     */
+    public AsyncClient(String hostName, int portNumber, AsynchronousChannelGroup group,
+                       AsyncClientListener listener) {
+        this.hostName = hostName;
+        this.portNumber = portNumber;
+        this.group = group;
+        this.listener = listener;
+    }
+
+    /**
+     * Assigns maximal size of server's message. Should be invoked before "connect" method
+     * @param maxMessageSize - maximal size of received message in bytes
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        recMsg.setMaxMessageSize(maxMessageSize);
+    }
+
+    /**
+     * Assigns TLS parameters, so connection with server is encrypted. Should be invoked before "connect" method
+     * @param tls - TLS context with trusted certificates
+     */
+    public void setTls(TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Connects to server and introduces client by specified user name
+     * @param userName - user name sent to server first
+     * @return future completed by server welcome message
+     */
+    public CompletableFuture<String> connect(String userName) {
+        // user name is queued before connection and sent right after it
+        CompletableFuture<String> welcome = send(userName);
+
+        try {
+            channel = AsynchronousSocketChannel.open(group);
+
+            if (tls != null) {
+                engine = tls.createEngine(true, hostName, portNumber);
+                engine.beginHandshake();
+
+                netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            }
+        } catch (IOException exc) {
+            close(exc);
+            return welcome;
+        }
+
+        channel.connect(new InetSocketAddress(hostName, portNumber), null, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                listener.onConnect(AsyncClient.this);
+
+                read();
+
+                synchronized (AsyncClient.this) {
+                    writeNext();
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, Void attachment) {
+                log.log(Level.SEVERE, "AsyncClient error: failed while connecting to host = \"" + hostName +
+                        "\" port = " + portNumber, exc);
+                close(exc);
+            }
+        });
+
+        return welcome;
+    }
+
+    /**
+     * Sends message to server without waiting for response
+     * @param msg - client's message
+     * @return future completed by server response or exceptionally if connection is closed
+     */
+    public CompletableFuture<String> send(String msg) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+
+        synchronized (this) {
+            if (isClosed) {
+                reply.completeExceptionally(new ClosedChannelException());
+                return reply;
+            }
+
+            sentMsg.setClientID(clientID);
+
+            outgoing.add(sentMsg.encode(FRAME_DATA, msg));
+            pending.add(reply);
+
+            if (!isWriting) {
+                writeNext();
+            }
+        }
+
+        return reply;
+    }
+
+    /**
+     * Finishes session by "quit" command. Connection is closed by server after response
+     * @return future completed by server farewell message
+     */
+    public CompletableFuture<String> quit() {
+        return send(QUIT_CMD);
+    }
+
+    /**
+     * Starts writing of all queued frames by single gathering operation, guarded by "this".
+     * Frames are encrypted before writing if TLS is enabled
+     */
+    private void writeNext() {
+        if (engine != null && !isClosed) {
+            wrapNext();
+        }
+
+        Queue<ByteBuffer> queue = engine != null ? records : outgoing;
+
+        if (queue.isEmpty() || isClosed) {
+            isWriting = false;
+            return;
+        }
+
+        isWriting = true;
+
+        ByteBuffer[] batch = queue.toArray(new ByteBuffer[queue.size()]);
+        queue.clear();
+
+        channel.write(batch, 0, batch.length, 0, TimeUnit.MILLISECONDS, batch, writeHandler);
+    }
+
+    /**
+     * Encrypts handshake messages and queued frames to records waiting for writing, guarded by "this".
+     * Frames are held in queue until handshake is finished
+     */
+    private void wrapNext() {
+        ByteBuffer netOut = null;      // allocated if there is something to encrypt
+
+        try {
+            while (true) {
+                SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+
+                if (status != SSLEngineResult.HandshakeStatus.NEED_WRAP &&
+                    (status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING || outgoing.isEmpty())) {
+                    break;
+                }
+
+                if (netOut == null) {
+                    netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+                }
+
+                SSLEngineResult result = engine.wrap(outgoing.toArray(new ByteBuffer[outgoing.size()]), netOut);
+
+                while (!outgoing.isEmpty() && !outgoing.peek().hasRemaining()) {
+                    outgoing.poll();
+                }
+
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    int packetSize = engine.getSession().getPacketBufferSize();
+
+                    // filled buffer is queued, empty one is grown for record exceeding its capacity
+                    if (netOut.position() > 0) {
+                        records.add(netOut.flip());
+                        netOut = ByteBuffer.allocate(packetSize);
+                    } else {
+                        netOut = ByteBuffer.allocate(netOut.capacity() + packetSize);
+                    }
+
+                    continue;
+                }
+
+                onHandshakeStatus(result);
+
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    break;
+                }
+            }
+        } catch (SSLException exc) {
+            close(exc);
+            return;
+        }
+
+        if (netOut != null && netOut.position() > 0) {
+            records.add(netOut.flip());
+        }
+    }
+
+    /**
+     * Decrypts received records to "readBuffer". Handshake messages requested by engine are encrypted
+     * immediately, so the rest of received records could be decrypted. Used by sequential reading chain only
+     * @return false if close notification is received from server
+     */
+    private boolean unwrap() {
+        boolean isInboundOpen = true;
+        netIn.flip();
+
+        try {
+            while (netIn.hasRemaining()) {
+                SSLEngineResult result = engine.unwrap(netIn, readBuffer);
+
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    readBuffer.flip();
+                    readBuffer = ByteBuffer.allocate(readBuffer.remaining() +
+                                                     engine.getSession().getApplicationBufferSize()).put(readBuffer);
+                    continue;
+                }
+
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                    isInboundOpen = false;
+                    break;
+                }
+
+                onHandshakeStatus(result);
+
+                boolean isWrapNeeded = engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP;
+
+                if (isWrapNeeded) {
+                    synchronized (this) {
+                        wrapNext();
+                    }
+                }
+
+                // incomplete record or engine stalled by neither data nor handshake
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW || isClosed ||
+                    result.bytesConsumed() == 0 && !isWrapNeeded) {
+                    break;
+                }
+            }
+        } catch (SSLException exc) {
+            close(exc);
+            return false;
+        }
+
+        netIn.compact();
+
+        // growing buffer for record exceeding its capacity
+        int packetSize = engine.getSession().getPacketBufferSize();
+
+        if (netIn.capacity() < packetSize) {
+            netIn.flip();
+            netIn = ByteBuffer.allocate(packetSize).put(netIn);
+        }
+
+        synchronized (this) {
+            if (isInboundOpen && !isWriting) {
+                writeNext();
+            }
+        }
+
+        return isInboundOpen;
+    }
+
+    /**
+     * Runs engine's delegated tasks and counts finished handshake
+     * @param result - result of the last engine's operation
+     */
+    private void onHandshakeStatus(SSLEngineResult result) {
+        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+            Runnable task;
+
+            while ((task = engine.getDelegatedTask()) != null) {
+                task.run();
+            }
+        } else if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+            synchronized (this) {
+                // session tickets received after handshake are reported as finishing too
+                if (!isHandshakeFinished) {
+                    isHandshakeFinished = true;
+                    tls.registerHandshake(engine);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts reading of the next frames portion
+     */
+    private void read() {
+        if (!isClosed) {
+            channel.read(engine != null ? netIn : readBuffer, null, readHandler);
+        }
+    }
+
+    /**
+     * Processes received frame completing the oldest unanswered request
+     * @param recMsg - contains received message from server side
+     */
+    private void onFrame(MessageTraits recMsg) {
+        if (recMsg.getType() == FRAME_PING) {
+            synchronized (this) {
+                if (!isClosed) {
+                    outgoing.add(sentMsg.encode(FRAME_PONG, recMsg.getMessage()));
+
+                    if (!isWriting) {
+                        writeNext();
+                    }
+                }
+            }
+
+            return;
+        } else if (recMsg.getType() == FRAME_PONG) {
+            return;
+        }
+
+        clientID = recMsg.getClientID();
+
+        if (recMsg.getType() == FRAME_SESSION) {
+            resumeToken = recMsg.getMessage();
+            return;
+        }
+
+        CompletableFuture<String> reply;
+
+        synchronized (this) {
+            reply = pending.poll();
+        }
+
+        if (reply == null) {
+            log.warning("AsyncClient: unexpected message from server is ignored: " + recMsg.getMessage());
+        } else {
+            reply.complete(recMsg.getMessage());
+        }
+    }
+
+    /**
+     * @return true if there are unanswered requests
+     */
+    private synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * @return number of unanswered requests
+     */
+    public synchronized int getPendingNumber() {
+        return pending.size();
+    }
+
+    /**
+     * @return client's ID assigned by server or DEFAULT_ID if client isn't introduced yet
+     */
+    public final int getClientID() {
+        return clientID;
+    }
+
+    /**
+     * @return resume token issued by server for session
+     */
+    final String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * @return true if connection with server is closed
+     */
+    public final boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Closes connection completing unanswered requests exceptionally
+     * @param cause - error caused closing or null if client is closed by user
+     */
+    private void close(Throwable cause) {
+        List<CompletableFuture<String>> unanswered;
+
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+
+            unanswered = new ArrayList<>(pending);
+            pending.clear();
+            outgoing.clear();
+            records.clear();
+        }
+
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "AsyncClient error: unable to close channel", exc);
+        }
+
+        Throwable reason = cause != null ? cause : new ClosedChannelException();
+        unanswered.forEach(reply -> reply.completeExceptionally(reason));
+
+        listener.onClose(this, cause);
+    }
+
+    /**
+     * Closes connection with server
+     */
+    @Override
+    public void close() {
+        close(null);
+    }
+}
@@ -0,0 +1,25 @@
+package com.dataart.advanced.task;
+
+/**
+ * Interface for lifecycle notifications of non-blocking client. Methods are
+ * invoked in I/O threads of channel group so they shouldn't block
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public interface AsyncClientListener {
+    /**
+     * Notifies that connection with server is established and user name is sent
+     * @param client - connected client
+     */
+    default void onConnect(AsyncClient client) {
+    }
+
+    /**
+     * Notifies that connection with server is closed
+     * @param client - closed client
+     * @param cause - error caused closing or null if client is closed by user
+     */
+    default void onClose(AsyncClient client, Throwable cause) {
+    }
+}
@@ -0,0 +1,274 @@
+package com.dataart.advanced.task;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Client for batch execution of commands file. The first line of file is
+ * user name, the other lines are commands. Commands are sent without
+ * waiting for responses (up to window size unanswered commands, window
+ * place is freed by response reception), responses are written to results
+ * file in commands order via buffered writer.
+ * Console echo of commands and responses is optional. Throughput and errors
+ * summary is formed at the end of execution.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class BatchClient {
+    /**
+     * Batch execution results
+     */
+    public static class Summary {
+        private int commandsNumber = 0;   // sent commands number including user name
+        private int responsesNumber = 0;  // received responses number
+        private int errorsNumber = 0;     // commands without response due to I/O errors
+        private int unknownNumber = 0;    // commands unknown for server
+
+        private long elapsedTime = 0;     // execution time in ns
+
+        /**
+         * @return sent commands number including user name
+         */
+        public final int getCommandsNumber() {
+            return commandsNumber;
+        }
+
+        /**
+         * @return received responses number
+         */
+        public final int getResponsesNumber() {
+            return responsesNumber;
+        }
+
+        /**
+         * @return number of commands without response due to I/O errors
+         */
+        public final int getErrorsNumber() {
+            return errorsNumber;
+        }
+
+        /**
+         * @return number of commands unknown for server
+         */
+        public final int getUnknownNumber() {
+            return unknownNumber;
+        }
+
+        /**
+         * @return responses number per second
+         */
+        public final double getThroughput() {
+            return elapsedTime == 0 ? 0.0 : responsesNumber * 1e9 / elapsedTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Batch summary:\n - commands: %d\n - responses: %d\n - errors: %d\n" +
+                                 " - unknown commands: %d\n - elapsed time: %.3f s\n - throughput: %.1f msg/s",
+                                 commandsNumber, responsesNumber, errorsNumber, unknownNumber, elapsedTime / 1e9,
+                                 getThroughput());
+        }
+    }
+
+    /**
+     * Command sent to server with future of its response
+     */
+    private static class Request {
+        private final String command;
+        private final CompletableFuture<String> reply;
+
+        Request(String command, CompletableFuture<String> reply) {
+            this.command = command;
+            this.reply = reply;
+        }
+    }
+
+    // marker of commands file end for responses collector
+    private static final Request END_OF_BATCH = new Request(null, null);
+
+    private final int portNumber;        // server port number
+    private final String hostName;       // host name
+
+    private int window = BATCH_WINDOW;   // maximal number of unanswered commands
+    private boolean isEcho = false;      // flag of commands and responses console echo
+    private TlsContext tls;              // TLS parameters or null if connection isn't encrypted
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(BatchClient.class.getName());
+
+    /**
+     * Constructor creates batch client instance
+     *
+     * @param hostName - host name of server placement
+     * @param portNumber - port number on which server is available for connection
+     */
+    public BatchClient(String hostName, int portNumber) {
+        this.hostName = hostName;
+        this.portNumber = portNumber;
+    }
+
+    /**
+     * Assigns maximal number of unanswered commands. Should be invoked before "run" method
+     * @param window - maximal number of unanswered commands
+     */
+    public void setWindow(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("BatchClient: window " + window + " isn't positive");
+        }
+
+        this.window = window;
+    }
+
+    /**
+     * Switches console echo of commands and responses. Should be invoked before "run" method
+     * @param isEcho - true for console echo
+     */
+    public void setEcho(boolean isEcho) {
+        this.isEcho = isEcho;
+    }
+
+    /**
+     * Assigns TLS parameters, so connection with server is encrypted. Should be invoked before "run" method
+     * @param tls - TLS context with trusted certificates
+     */
+    public void setTls(TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Executes commands file writing server responses to results file
+     * @param commandsFile - file with user name in the first line and commands in the others
+     * @param resultsFile - file for server responses
+     * @param listener - processes server messages before writing to results file
+     * @return execution summary
+     * @throws IOException - if commands or results file could not be opened or written
+     * @throws InterruptedException - if execution is interrupted
+     */
+    public Summary run(Path commandsFile, Path resultsFile, ClientListener listener)
+            throws IOException, InterruptedException {
+        Summary summary = new Summary();
+        BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+        // places of unanswered commands, taken before sending and released by response or its failure
+        Semaphore unanswered = new Semaphore(window);
+
+        AsynchronousChannelGroup group = AsyncClient.createGroup(1);
+
+        try (
+            BufferedReader reader = Files.newBufferedReader(commandsFile);
+            BufferedWriter writer = Files.newBufferedWriter(resultsFile);
+            AsyncClient client = new AsyncClient(hostName, portNumber, group, new AsyncClientListener() {})
+        ) {
+            client.setTls(tls);
+
+            String userName = reader.readLine();
+
+            if (userName == null) {
+                return summary;
+            }
+
+            long startTime = System.nanoTime();
+
+            // collecting responses in commands order in separate thread
+            Thread collector = new Thread(() -> collect(requests, writer, listener, summary),
+                                          BATCH_COLLECTOR_THREAD_NAME);
+            collector.start();
+
+            try {
+                unanswered.acquire();
+                requests.put(new Request(userName, client.connect(userName)
+                                                         .whenComplete((reply, exc) -> unanswered.release())));
+                ++summary.commandsNumber;
+
+                String command;
+                while ((command = reader.readLine()) != null && !client.isClosed()) {
+                    unanswered.acquire();
+                    requests.put(new Request(command, client.send(command)
+                                                            .whenComplete((reply, exc) -> unanswered.release())));
+                    ++summary.commandsNumber;
+
+                    if (QUIT_CMD.equals(command)) {
+                        break;
+                    }
+                }
+            } finally {
+                requests.put(END_OF_BATCH);
+                collector.join();
+            }
+
+            summary.elapsedTime = System.nanoTime() - startTime;
+        } finally {
+            group.shutdownNow();
+        }
+
+        log.info(summary.toString());
+
+        return summary;
+    }
+
+    /**
+     * Responses collector thread body. Waits for responses in commands order and writes them to results file
+     * @param requests - commands with futures of responses in sending order
+     * @param writer - buffered writer of results file
+     * @param listener - processes server messages before writing to results file
+     * @param summary - execution summary updated by collector
+     */
+    private void collect(BlockingQueue<Request> requests, BufferedWriter writer, ClientListener listener,
+                         Summary summary) {
+        boolean isWritable = true;   // flag notifying if results file is still written successfully
+
+        try {
+            Request request;
+
+            while ((request = requests.take()) != END_OF_BATCH) {
+                if (isEcho) {
+                    System.out.println("Client: " + request.command);
+                }
+
+                try {
+                    String response = request.reply.get();
+
+                    ++summary.responsesNumber;
+                    if (DEFAULT_CMD.getResponse().equals(response)) {
+                        ++summary.unknownNumber;
+                    }
+
+                    String processed = listener.onProcess(response);
+
+                    if (isWritable) {
+                        writer.write(processed);
+                        writer.newLine();
+                    }
+
+                    if (isEcho) {
+                        System.out.println(processed);
+                    }
+                } catch (ExecutionException exc) {
+                    ++summary.errorsNumber;
+                    log.log(Level.FINE, "BatchClient: no response on command \"" + request.command + "\"",
+                            exc.getCause());
+                } catch (IOException exc) {
+                    // responses are still collected for summary and console echo
+                    isWritable = false;
+                    log.log(Level.SEVERE, "BatchClient error: unable to write results file", exc);
+                }
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,10 +4,13 @@ import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static com.dataart.advanced.task.Info.DEFAULT_SZ;
+import static com.dataart.advanced.task.Info.*;
 
 /**
  * Client class for communication with server upon text commands
@@ -22,28 +25,298 @@ public class Client {
     private InputStream inStream;    // external stream for commands input
     private OutputStream outStream;  // external stream for server responses output
 
+    private int maxMessageSize = MAX_MESSAGE_SZ;  // maximal size of server's message in bytes
+
+    // TLS parameters of connection or null if connection isn't encrypted. Context is kept between
+    // reconnections, so its cached session allows abbreviated handshake
+    private TlsContext tls;
+
+    // in-JVM transport of server of the same process or null for TCP connection
+    private LoopbackTransport loopback;
+
+    // handshake port of server's shared memory transport or 0 for TCP connection
+    private int shmPortNumber = 0;
+    private SharedMemoryTransport.WaitStrategy shmWaitStrategy;
+
+    // socket file of server's Unix domain socket or null for TCP connection
+    private String unixSocketPath;
+
+    private String userName;         // user name entered first
+    private int clientID = DEFAULT_ID;   // client's ID assigned by server
+
+    private String resumeToken;      // token for session resumption issued by server
+    private long repliesNumber = 0;  // server replies received in session including introduction reply
+    private String pendingMsg;       // message sent to server but not answered yet
+    private long pendingTtl = 0;     // time to live of reply on pending message in ms or 0 if it isn't cacheable
+    private boolean isHandshakePending = false;  // flag notifying if server welcome isn't received yet
+    private boolean isMessageExchangeStarted = false;
+
+    // responses of idempotent commands kept by client or null if cache is disabled
+    private ResponseCache responseCache;
+
+    // reconnection statistics
+    private long reconnectStartTime = 0;   // moment of connection loss detection in ns
+    private int reconnectsNumber = 0;
+    private int resumedNumber = 0;
+    private long totalReconnectLatency = 0;  // in ns
+
     // logger for tracing error messages
     private static final Logger log = Logger.getLogger(Client.class.getName());
 
+    // frame notifying the end of frames reception
+    private static final MessageTraits END_OF_FRAMES = new MessageTraits();
+
     /**
      * Sends user name to server
      * @param userName - user name obtained from keyboard
      * @param out - output stream connected to client's socket
      * @throws IOException - if some problems occur while messages are written to output stream
      */
-    private void sendUserName(String userName, ObjectOutputStream out) throws IOException {
+    private void sendUserName(String userName, DataOutputStream out) throws IOException {
         MessageTraits sentMsg = new MessageTraits();
         sentMsg.sendMessage(userName, out);
     }
 
+    /**
+     * Restores session on server after reconnection. Performs full handshake if resume token isn't received yet.
+     * Otherwise sends resume request and repeats unanswered message without waiting for server reply. Resume
+     * request carries number of received replies, so server answers repeated message processed before
+     * connection loss by its kept reply instead of processing it twice
+     * @param out - output stream connected to client's socket
+     * @throws IOException - if some problems occur while messages are written to output stream
+     */
+    private void restoreSession(DataOutputStream out) throws IOException {
+        if (resumeToken == null) {
+            sendUserName(userName, out);
+            pendingMsg = userName;
+
+            return;
+        }
+
+        if (isHandshakePending) {
+            // introduction is confirmed by resumed session itself
+            pendingMsg = null;
+            isHandshakePending = false;
+            ++repliesNumber;
+        }
+
+        MessageTraits sentMsg = new MessageTraits();
+        sentMsg.setClientID(clientID);
+        sentMsg.sendMessage(FRAME_RESUME, resumeToken + RESUME_REPLIES_SEPARATOR + repliesNumber +
+                                          RESUME_SEPARATOR + userName, out);
+
+        if (pendingMsg != null) {
+            sentMsg.sendMessage(pendingMsg, out);
+        }
+    }
+
+    /**
+     * Reception of server's frames in separate thread during connection lifetime. Pings are answered at once, so
+     * connection isn't closed by server as dead peer while user enters command. Other frames are passed to
+     * exchange thread, so session state is changed by it only
+     */
+    private class FrameReader implements Runnable {
+        private final DataInputStream in;
+        private final DataOutputStream out;   // shared with exchange thread, guarded by itself
+
+        private final BlockingQueue<MessageTraits> frames = new LinkedBlockingQueue<>();
+
+        // reception failure or null if connection is closed by server
+        private volatile IOException error;
+
+        /**
+         * @param in - input stream connected to client's socket
+         * @param out - output stream connected to client's socket
+         */
+        FrameReader(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            MessageTraits pongMsg = new MessageTraits();
+
+            try {
+                while (true) {
+                    MessageTraits recMsg = new MessageTraits();
+                    recMsg.setMaxMessageSize(maxMessageSize);
+
+                    if (recMsg.receive(in) == DEFAULT_SZ) {
+                        break;
+                    }
+
+                    if (recMsg.getType() == FRAME_PING) {
+                        synchronized (out) {
+                            pongMsg.sendMessage(FRAME_PONG, recMsg.getMessage(), out);
+                        }
+                    } else {
+                        frames.add(recMsg);
+                    }
+                }
+            } catch (IOException exc) {
+                error = exc;
+            } finally {
+                frames.add(END_OF_FRAMES);
+            }
+        }
+
+        /**
+         * @param frame - frame taken from queue
+         * @return given frame or null if it notifies connection closing by server
+         * @throws IOException - if frames reception failed
+         */
+        private MessageTraits check(MessageTraits frame) throws IOException {
+            if (frame != END_OF_FRAMES) {
+                return frame;
+            }
+
+            // the end is kept for the next taking
+            frames.add(END_OF_FRAMES);
+
+            if (error != null) {
+                throw new IOException("unable to receive message from server", error);
+            }
+
+            return null;
+        }
+
+        /**
+         * Waits for the next received frame
+         * @return received frame or null if connection is closed by server
+         * @throws IOException - if frames reception failed or waiting is interrupted
+         */
+        MessageTraits take() throws IOException {
+            try {
+                return check(frames.take());
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("waiting for server reply is interrupted");
+            }
+        }
+
+        /**
+         * @return frame received already or null if there are no such frames
+         * @throws IOException - if frames reception failed
+         */
+        MessageTraits poll() throws IOException {
+            MessageTraits frame = frames.poll();
+
+            return frame == null ? null : check(frame);
+        }
+    }
+
+    /**
+     * Receives server reply processing session control frames before it
+     * @param reader - reception of server's frames
+     * @return server reply or null if connection is closed by server
+     * @throws IOException - if some problems occur while message is read from input stream
+     */
+    private MessageTraits receiveReply(FrameReader reader) throws IOException {
+        MessageTraits recMsg;
+        pendingTtl = 0;
+
+        while ((recMsg = reader.take()) != null && recMsg.getType() != FRAME_DATA) {
+            processControlFrame(recMsg);
+        }
+
+        return recMsg;
+    }
+
+    /**
+     * Processes control frames received while user enters command, so cached response isn't given after its
+     * invalidation by server
+     * @param reader - reception of server's frames
+     * @throws IOException - if frames reception failed
+     */
+    private void processReceivedFrames(FrameReader reader) throws IOException {
+        MessageTraits recMsg;
+
+        while ((recMsg = reader.poll()) != null) {
+            processControlFrame(recMsg);
+        }
+    }
+
+    /**
+     * Processes session control and responses cache frames
+     * @param recMsg - contains received frame from server side
+     */
+    private void processControlFrame(MessageTraits recMsg) {
+        if (recMsg.getType() == FRAME_SESSION) {
+            resumeToken = recMsg.getMessage();
+
+            if (reconnectStartTime != 0) {
+                registerReconnection(recMsg.getClientID());
+            }
+
+            clientID = recMsg.getClientID();
+        } else if (recMsg.getType() == FRAME_CACHE) {
+            pendingTtl = Long.parseLong(recMsg.getMessage());
+        } else if (recMsg.getType() == FRAME_INVALIDATE && responseCache != null) {
+            // reply could be formed before invalidation, so it isn't cached
+            pendingTtl = 0;
+            responseCache.invalidate(recMsg.getMessage());
+        }
+    }
+
+    /**
+     * Updates reconnection statistics after session restoration on server side
+     * @param restoredClientID - client's ID assigned by server to restored session
+     */
+    private void registerReconnection(int restoredClientID) {
+        long latency = System.nanoTime() - reconnectStartTime;
+        reconnectStartTime = 0;
+
+        ++reconnectsNumber;
+        totalReconnectLatency += latency;
+
+        boolean isResumed = restoredClientID == clientID;
+        if (isResumed) {
+            ++resumedNumber;
+        }
+
+        log.info(String.format("Client \"%s\": session is %s in %.3f ms after connection loss", userName,
+                 isResumed ? "resumed" : "restarted", latency / 1e6));
+    }
+
+    /**
+     * @param attempt - number of reconnection attempt starting from 0
+     * @return upper bound of delay before reconnection attempt in ms, it's doubled by each attempt till
+     *         RECONNECT_MAX_DELAY
+     */
+    static long getMaxReconnectDelay(int attempt) {
+        return Math.min(RECONNECT_MAX_DELAY, RECONNECT_BASE_DELAY << Math.min(attempt, 30));
+    }
+
+    /**
+     * Waits before next reconnection attempt according to exponential backoff with full jitter. It prevents
+     * simultaneous reconnection of all clients after network failure
+     * @param attempt - number of reconnection attempt starting from 0
+     * @return false if attempts number is exhausted or waiting is interrupted
+     */
+    private boolean waitBeforeReconnect(int attempt) {
+        if (attempt >= RECONNECT_MAX_ATTEMPTS) {
+            return false;
+        }
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(getMaxReconnectDelay(attempt) + 1));
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      *
      * @param listener - processes server messages according to predefined method
-     * @param receivedMsg - contains received message from server side
+     * @param receivedMsg - received message from server side or its cached copy
      * @throws IOException - throws if some problems occur on writing processed server message to output stream
      */
-    private void outputServerProcessedMessage(ClientListener listener, MessageTraits receivedMsg) throws IOException {
-        outStream.write(listener.onProcess(receivedMsg.getMessage()).getBytes());
+    private void outputServerProcessedMessage(ClientListener listener, String receivedMsg) throws IOException {
+        outStream.write(listener.onProcess(receivedMsg).getBytes());
         outStream.write('\n');
     }
 
@@ -51,37 +324,135 @@ public class Client {
      * Client's side business logic of messages exchange between client and server
      * @param listener - processes server messages according to predefined method
      * @param cmdIn - input stream for cl
-     * @param in - input stream connected to client's socket
+     * @param reader - reception of server's frames
      * @param out - output stream connected to client's socket
+     * @return true if exchange is finished by user, false if connection is lost
      * @throws IOException - if some problems occur in messages I/O operations with appropriate streams or while
      *                       commands are read from keyboard
      */
-    private void exchangeCore(ClientListener listener, BufferedReader cmdIn,
-                              ObjectInputStream in, ObjectOutputStream out,
-                              ConsoleIO consoleIO) throws IOException {
-        String usrMsg = "";  // command from client
-
+    private boolean exchangeCore(ClientListener listener, BufferedReader cmdIn,
+                                 FrameReader reader, DataOutputStream out,
+                                 ConsoleIO consoleIO) throws IOException {
         MessageTraits sentMsg = new MessageTraits();
-        MessageTraits recMsg = new MessageTraits();
 
-        while (recMsg.receive(in) != DEFAULT_SZ && !Info.QUIT_CMD.equals(usrMsg)) {
-            outputServerProcessedMessage(listener, recMsg);
+        while (true) {
+            // waiting for reply on unanswered message
+            if (pendingMsg != null) {
+                MessageTraits recMsg = receiveReply(reader);
+
+                if (recMsg == null) {
+                    return Info.QUIT_CMD.equals(pendingMsg);
+                }
+
+                ++repliesNumber;
+
+                outputServerProcessedMessage(listener, recMsg.getMessage());
+
+                if (Info.QUIT_CMD.equals(pendingMsg)) {
+                    return true;
+                }
+
+                // server's introduction reply isn't cacheable
+                if (responseCache != null && !isHandshakePending) {
+                    responseCache.put(pendingMsg, recMsg.getMessage(), pendingTtl);
+                }
+
+                pendingMsg = null;
+                isHandshakePending = false;
+            }
 
             consoleIO.printAndFlush("> ");
 
-            usrMsg = cmdIn.readLine();
+            String usrMsg = cmdIn.readLine();
 
-            if (usrMsg != null) {
-                System.out.println("Client: " + usrMsg);
+            if (usrMsg == null) {
+                return true;
+            }
 
-                sentMsg.setClientID(recMsg.getClientID());
+            System.out.println("Client: " + usrMsg);
+
+            if (responseCache != null) {
+                processReceivedFrames(reader);
+                String cachedMsg = responseCache.get(usrMsg);
+
+                if (cachedMsg != null) {
+                    outputServerProcessedMessage(listener, cachedMsg);
+                    continue;
+                }
+            }
+
+            pendingMsg = usrMsg;
+
+            sentMsg.setClientID(clientID);
+
+            // pongs of frames reception thread are sent to the same stream
+            synchronized (out) {
                 sentMsg.sendMessage(usrMsg, out);
             }
         }
+    }
+
+    /**
+     * Connects to server and performs messages exchange until its finishing by user or connection loss
+     * @param listener - processes server messages according to predefined method
+     * @param cmdIn - input stream for client's commands
+     * @param consoleIO - console for prompts output
+     * @param isReconnection - flag notifying if session should be restored after connection loss
+     * @return true if exchange is finished by user, false if connection is lost
+     * @throws IOException - if connection with server fails
+     */
+    private boolean connect(ClientListener listener, BufferedReader cmdIn, ConsoleIO consoleIO,
+                            boolean isReconnection) throws IOException {
+        Endpoint endpoint = openEndpoint();
+        boolean isFinished = false;
+
+        // connection streams are encrypted if TLS is enabled, handshake is performed by the first writing
+        TlsStreams secured = tls != null ? endpoint.secure(tls, true) : null;
+
+        try (
+            Endpoint link = endpoint;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    secured != null ? secured.getInputStream() : link.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    secured != null ? secured.getOutputStream() : link.getOutputStream()))
+        ){
+            isMessageExchangeStarted = true;
+
+            if (isReconnection) {
+                restoreSession(out);
+            } else {
+                // sending user name to server
+                sendUserName(userName, out);
+
+                pendingMsg = userName;
+                isHandshakePending = true;
+            }
+
+            // responses cache is requested for each connection after introduction, since proxy chooses backend
+            // by the first frame. Invalidations are lost while client is offline, so cache is cleared
+            if (responseCache != null) {
+                responseCache.invalidate("");
+                new MessageTraits().sendMessage(FRAME_CACHE, "", out);
+            }
+
+            // frames are received in separate thread till connection closing
+            FrameReader reader = new FrameReader(in, out);
+
+            Thread readerThread = new Thread(reader, CLIENT_READER_THREAD_NAME);
+            readerThread.setDaemon(true);
+            readerThread.start();
+
+            // starting commands exchange between client and server
+            isFinished = exchangeCore(listener, cmdIn, reader, out, consoleIO);
+        } catch (IOException exc) {
+            // socket could be already closed by server after exchange finishing
+            if (!isFinished) {
+                log.log(Level.WARNING, "Client \"" + userName + "\": connection with host = \"" + hostName +
+                        "\" port = " + portNumber + " is lost", exc);
+            }
+        }
 
-        // typing farewell message if "quit" command is entered
-        if (Info.QUIT_CMD.equals(usrMsg)) {
-            outputServerProcessedMessage(listener, recMsg);        }
+        return isFinished;
     }
 
     /**
@@ -140,7 +511,83 @@ public class Client {
     }
 
     /**
-     * Initiates messages exchange between client and server
+     * Assigns maximal size of server's message. Should be invoked before "start" method
+     * @param maxMessageSize - maximal size of received message in bytes
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Enables cache of server responses on idempotent commands, so repeated command is answered without round
+     * trip. Should be invoked before "start" method
+     * @param capacity - maximal number of cached responses or 0 to disable cache
+     */
+    public void setResponseCache(int capacity) {
+        this.responseCache = capacity > 0 ? new ResponseCache(capacity) : null;
+    }
+
+    /**
+     * Assigns TLS parameters, so connection with server is encrypted. Should be invoked before "start" method
+     * @param tls - TLS context with trusted certificates
+     */
+    public void setTls(TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Assigns in-JVM loopback transport, so client connects to server of the same process without sockets.
+     * Host name and port number are kept for logging only. Should be invoked before "start" method
+     * @param loopback - transport of started server
+     */
+    public void setLoopback(LoopbackTransport loopback) {
+        this.loopback = loopback;
+    }
+
+    /**
+     * Assigns shared memory transport, so client connects to server placed on the same host through memory
+     * mapped rings. Port number is kept for logging only. Should be invoked before "start" method
+     * @param handshakePort - handshake port number of server's shared memory transport
+     * @param wait - strategy of client's threads waiting for rings
+     */
+    public void setSharedMemory(int handshakePort, SharedMemoryTransport.WaitStrategy wait) {
+        this.shmPortNumber = handshakePort;
+        this.shmWaitStrategy = wait;
+    }
+
+    /**
+     * Assigns Unix domain socket, so client connects to server placed on the same host without TCP stack.
+     * Host name and port number are kept for logging only. Should be invoked before "start" method
+     * @param path - socket file path of server
+     */
+    public void setUnixSocket(String path) {
+        this.unixSocketPath = path;
+    }
+
+    /**
+     * @return new connection of assigned transport
+     * @throws IOException - if connection with server fails
+     */
+    private Endpoint openEndpoint() throws IOException {
+        if (loopback != null) {
+            return loopback.connect();
+        }
+
+        if (shmPortNumber != 0) {
+            return SharedMemoryTransport.connect(hostName, shmPortNumber, shmWaitStrategy);
+        }
+
+        if (unixSocketPath != null) {
+            return UnixDomainTransport.connect(unixSocketPath);
+        }
+
+        return new SocketEndpoint(new Socket(hostName, portNumber));
+    }
+
+    /**
+     * Initiates messages exchange between client and server. Reconnects to
+     * server with exponential backoff and resumes session if connection is
+     * lost
      *
      * @param listener - processes server messages according to predefined
      *                   method
@@ -151,22 +598,32 @@ public class Client {
             // asking user name
             consoleIO.printAndFlush("Enter your name, plz: ");
 
-            String userName = cmdIn.readLine();
+            userName = cmdIn.readLine();
 
-            boolean isMessageExchangeStarted = false;
+            isMessageExchangeStarted = false;
 
-            try (
-                Socket socket = new Socket(hostName, portNumber);
-                ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
-                ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream())
-            ){
-                isMessageExchangeStarted = true;
+            try {
+                boolean isFinished = connect(listener, cmdIn, consoleIO, false);
 
-                // sending user name to server
-                sendUserName(userName, out);
+                for (int attempt = 0; !isFinished; ) {
+                    if (reconnectStartTime == 0) {
+                        reconnectStartTime = System.nanoTime();
+                        attempt = 0;
+                    }
+
+                    if (!waitBeforeReconnect(attempt++)) {
+                        log.severe("Client \"" + userName + "\": unable to reconnect to host = \"" + hostName +
+                                   "\" port = " + portNumber + " after " + attempt + " attempts");
+                        break;
+                    }
 
-                // starting commands exchange between client and server
-                exchangeCore(listener, cmdIn, in, out, consoleIO);
+                    try {
+                        isFinished = connect(listener, cmdIn, consoleIO, true);
+                    } catch (IOException exc) {
+                        log.log(Level.FINE, "Client \"" + userName + "\": reconnection attempt #" + attempt +
+                                " failed", exc);
+                    }
+                }
             } catch (UnknownHostException exc) {
                 log.log(Level.SEVERE, "Client \"" + userName + "\" : Unkown error while connecting to host = \"" +
                         hostName + "\" port = " + portNumber, exc);
@@ -181,12 +638,41 @@ public class Client {
         }
     }
 
+    /**
+     * @return number of sessions restorations after connection loss
+     */
+    public final int getReconnectsNumber() {
+        return reconnectsNumber;
+    }
+
+    /**
+     * @return number of restorations keeping client's identity via resume token
+     */
+    public final int getResumedNumber() {
+        return resumedNumber;
+    }
+
+    /**
+     * @return number of commands answered by responses cache without round trip
+     */
+    public final long getCacheHitsNumber() {
+        return responseCache == null ? 0 : responseCache.getHitsNumber();
+    }
+
+    /**
+     * @return average time in ms from connection loss to session restoration on server side
+     */
+    public final double getAverageReconnectLatency() {
+        return reconnectsNumber == 0 ? 0.0 : totalReconnectLatency / 1e6 / reconnectsNumber;
+    }
+
     public static void main(String[] args) {
         try {
             ConfigReader cfgReader = new ConfigReader();
             cfgReader.parse("../files/config.xml", false);
 
             Client client = new Client(cfgReader.getHostName(), cfgReader.getPortNumber(), System.in, System.out);
+            client.setResponseCache(cfgReader.getResponseCacheSize());
             client.start(new SimpleClientListener());
         } catch(ParserConfigurationException exc) {
             log.log(Level.SEVERE, "ConfigReader error: unable to get DOM document instance from XML", exc);
@@ -0,0 +1,421 @@
+package com.dataart.advanced.task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Server's node of cluster. Nodes exchange membership and connections
+ * numbers by gossip over UDP: each round node increments its heartbeat and
+ * sends states of all alive nodes known to it to several random nodes and
+ * to seeds not joined yet. Received state replaces known one if its
+ * heartbeat is newer, so states are spread transitively. Node silent longer
+ * than failure timeout is considered down and excluded from aggregates
+ * until its newer heartbeat is received. Cluster-wide aggregates are
+ * updated incrementally by gossip thread, so requests read them without
+ * any network exchange.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ClusterNode implements Runnable, Closeable {
+    private final String name;           // node's name unique in cluster
+    private final int gossipPort;        // UDP port of gossip receiving
+    private final List<InetSocketAddress> seeds;   // initially known nodes
+
+    private long gossipInterval = TimeUnit.MILLISECONDS.toNanos(CLUSTER_GOSSIP_INTERVAL);
+    private long failureTimeout = TimeUnit.MILLISECONDS.toNanos(CLUSTER_FAILURE_TIMEOUT);
+
+    // node's own state, restarted node has newer generation, so its heartbeats aren't considered stale
+    private final long generation = System.currentTimeMillis();
+    private long heartbeat = 0;
+    private IntSupplier localConnections;
+
+    // other nodes states by names, used by gossip thread only
+    private final Map<String, Member> members = new HashMap<>();
+
+    // aggregates of alive nodes written by gossip thread only
+    private volatile int remoteConnectionsNumber = 0;     // connections of all other nodes
+    private volatile int precedingConnectionsNumber = 0;  // connections of nodes preceding this one by name
+    private volatile int aliveMembersNumber = 0;          // other alive nodes
+
+    private DatagramSocket socket;
+    private Thread gossipThread;
+    private volatile boolean isStop = false;
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(ClusterNode.class.getName());
+
+    /**
+     * State of other node
+     */
+    private static class Member {
+        private final String name;
+        private InetSocketAddress address;   // gossip address
+
+        private long generation;
+        private long heartbeat;
+        private int connectionsNumber;
+
+        private long lastUpdate;             // moment of the last newer state reception in ns
+        private boolean isAlive = false;
+
+        Member(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return true if specified state is newer than known one
+         */
+        boolean isOlder(long generation, long heartbeat) {
+            return this.generation < generation || this.generation == generation && this.heartbeat < heartbeat;
+        }
+    }
+
+    /**
+     * Constructor creates node without gossip starting
+     * @param name - node's name unique in cluster
+     * @param gossipPort - UDP port of gossip receiving (0 for any free port)
+     * @param seeds - gossip addresses of initially known nodes
+     */
+    public ClusterNode(String name, int gossipPort, List<InetSocketAddress> seeds) {
+        this.name = name;
+        this.gossipPort = gossipPort;
+        this.seeds = new ArrayList<>(seeds);
+    }
+
+    /**
+     * Parses seeds list specified in configuration file. Also used for proxy backends list
+     * @param seeds - comma separated addresses like "host:port" or null
+     * @return parsed addresses
+     */
+    public static List<InetSocketAddress> parseSeeds(String seeds) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+
+        if (seeds == null) {
+            return addresses;
+        }
+
+        for (String seed : seeds.split(",")) {
+            seed = seed.trim();
+            int separatorIndex = seed.lastIndexOf(':');
+
+            if (separatorIndex < 1) {
+                throw new IllegalArgumentException("Illegal address (\"host:port\" is expected): " + seed);
+            }
+
+            addresses.add(new InetSocketAddress(seed.substring(0, separatorIndex),
+                                                Integer.parseInt(seed.substring(separatorIndex + 1))));
+        }
+
+        return addresses;
+    }
+
+    /**
+     * Assigns gossip timing. Should be invoked before "start" method
+     * @param gossipInterval - period of gossip rounds in ms
+     * @param failureTimeout - time in ms after which silent node is considered down
+     */
+    public void setTiming(long gossipInterval, long failureTimeout) {
+        this.gossipInterval = TimeUnit.MILLISECONDS.toNanos(gossipInterval);
+        this.failureTimeout = TimeUnit.MILLISECONDS.toNanos(failureTimeout);
+    }
+
+    /**
+     * Opens gossip socket and starts gossip thread
+     * @param localConnections - supplier of node's own connections number
+     * @throws SocketException - if gossip port couldn't be bound
+     */
+    public void start(IntSupplier localConnections) throws SocketException {
+        this.localConnections = localConnections;
+
+        socket = new DatagramSocket(gossipPort);
+
+        gossipThread = new Thread(this, CLUSTER_THREAD_NAME);
+        gossipThread.setDaemon(true);
+        gossipThread.start();
+
+        log.info(String.format("Cluster node \"%s\" is started on gossip port %d, seeds: %s", name,
+                 socket.getLocalPort(), seeds));
+    }
+
+    /**
+     * Gossip thread function: receives states of other nodes and performs gossip rounds by schedule
+     */
+    @Override
+    public void run() {
+        byte[] buffer = new byte[CLUSTER_PACKET_SZ];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+        long nextRound = System.nanoTime();
+
+        while (!isStop) {
+            long now = System.nanoTime();
+
+            if (now - nextRound >= 0) {
+                detectFailures(now);
+                gossip();
+
+                nextRound = now + gossipInterval;
+            }
+
+            try {
+                socket.setSoTimeout((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextRound - now)));
+
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+
+                merge(packet, System.nanoTime());
+            } catch (SocketTimeoutException exc) {
+                // gossip round is due
+            } catch (IOException exc) {
+                if (!isStop) {
+                    log.log(Level.WARNING, "ClusterNode: illegal gossip message is ignored", exc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends states of this and alive nodes to random alive nodes and to seeds which aren't joined yet
+     */
+    private void gossip() {
+        ++heartbeat;
+
+        List<Member> alive = new ArrayList<>();
+        members.values().stream().filter(m -> m.isAlive).forEach(alive::add);
+
+        // random order spreads different states if not all of them fit single datagram
+        Collections.shuffle(alive);
+
+        byte[] message = encode(alive);
+
+        List<InetSocketAddress> targets = new ArrayList<>();
+        alive.stream().limit(CLUSTER_GOSSIP_FANOUT).forEach(m -> targets.add(m.address));
+
+        for (InetSocketAddress seed : seeds) {
+            if (alive.stream().noneMatch(m -> seed.equals(m.address)) && !seed.isUnresolved()) {
+                targets.add(seed);
+            }
+        }
+
+        for (InetSocketAddress target : targets) {
+            try {
+                socket.send(new DatagramPacket(message, message.length, target));
+            } catch (IOException exc) {
+                // unreachable node is detected by its silence
+                log.log(Level.FINE, "ClusterNode: unable to send gossip to " + target, exc);
+            }
+        }
+    }
+
+    /**
+     * Encodes states of this and specified nodes to datagram. States exceeding datagram size are skipped
+     * @param alive - alive nodes
+     * @return datagram content
+     */
+    private byte[] encode(List<Member> alive) {
+        ByteArrayOutputStream message = new ByteArrayOutputStream(CLUSTER_PACKET_SZ);
+        DataOutputStream out = new DataOutputStream(message);
+
+        try {
+            out.writeInt(CLUSTER_MAGIC);
+
+            // sender's host is taken from datagram by receiver
+            out.write(encodeState(name, "", socket.getLocalPort(), generation, heartbeat,
+                                  localConnections.getAsInt()));
+
+            for (Member member : alive) {
+                byte[] state = encodeState(member.name, member.address.getHostString(), member.address.getPort(),
+                                           member.generation, member.heartbeat, member.connectionsNumber);
+
+                if (message.size() + state.length > CLUSTER_PACKET_SZ) {
+                    break;
+                }
+
+                out.write(state);
+            }
+        } catch (IOException exc) {
+            // writing to memory doesn't fail
+            throw new IllegalStateException(exc);
+        }
+
+        return message.toByteArray();
+    }
+
+    /**
+     * Encodes single node's state
+     * @return encoded state
+     */
+    private static byte[] encodeState(String name, String host, int port, long generation, long heartbeat,
+                                      int connectionsNumber) throws IOException {
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(state);
+
+        out.writeUTF(name);
+        out.writeUTF(host);
+        out.writeInt(port);
+        out.writeLong(generation);
+        out.writeLong(heartbeat);
+        out.writeInt(connectionsNumber);
+
+        return state.toByteArray();
+    }
+
+    /**
+     * Merges received states into known ones updating aggregates
+     * @param packet - received datagram
+     * @param now - moment of reception in ns
+     * @throws IOException - if datagram is malformed
+     */
+    private void merge(DatagramPacket packet, long now) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.getData(), packet.getOffset(),
+                                                                          packet.getLength()));
+        if (in.readInt() != CLUSTER_MAGIC) {
+            throw new IOException("ClusterNode: datagram without gossip header from " + packet.getSocketAddress());
+        }
+
+        while (in.available() > 0) {
+            String memberName = in.readUTF();
+            String host = in.readUTF();
+            int port = in.readInt();
+            long memberGeneration = in.readLong();
+            long memberHeartbeat = in.readLong();
+            int connectionsNumber = in.readInt();
+
+            if (name.equals(memberName)) {
+                continue;
+            }
+
+            Member member = members.computeIfAbsent(memberName, Member::new);
+
+            if (!member.isOlder(memberGeneration, memberHeartbeat)) {
+                continue;
+            }
+
+            member.address = host.isEmpty() ? new InetSocketAddress(packet.getAddress(), port) :
+                                              new InetSocketAddress(host, port);
+            member.generation = memberGeneration;
+            member.heartbeat = memberHeartbeat;
+            member.lastUpdate = now;
+
+            if (member.isAlive) {
+                aggregate(member, connectionsNumber - member.connectionsNumber);
+                member.connectionsNumber = connectionsNumber;
+            } else {
+                member.isAlive = true;
+                member.connectionsNumber = connectionsNumber;
+
+                aggregate(member, connectionsNumber);
+                ++aliveMembersNumber;
+
+                log.info(String.format("Cluster node \"%s\" (%s) is joined", memberName, member.address));
+            }
+        }
+    }
+
+    /**
+     * Excludes nodes silent longer than failure timeout from aggregates
+     * @param now - current moment in ns
+     */
+    private void detectFailures(long now) {
+        for (Member member : members.values()) {
+            if (member.isAlive && now - member.lastUpdate > failureTimeout) {
+                member.isAlive = false;
+
+                aggregate(member, -member.connectionsNumber);
+                --aliveMembersNumber;
+
+                log.info(String.format("Cluster node \"%s\" (%s) is down", member.name, member.address));
+            }
+        }
+    }
+
+    /**
+     * Adds change of node's connections number to aggregates, used by gossip thread only
+     * @param member - changed node
+     * @param delta - change of connections number
+     */
+    private void aggregate(Member member, int delta) {
+        remoteConnectionsNumber += delta;
+
+        if (member.name.compareTo(name) < 0) {
+            precedingConnectionsNumber += delta;
+        }
+    }
+
+    /**
+     * @return node's name
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * @return bound gossip port
+     */
+    public final int getGossipPort() {
+        return socket != null ? socket.getLocalPort() : gossipPort;
+    }
+
+    /**
+     * @return connections number of all other alive nodes
+     */
+    public final int getRemoteConnectionsNumber() {
+        return remoteConnectionsNumber;
+    }
+
+    /**
+     * @return connections number of alive nodes preceding this one by name. Connections of cluster are indexed
+     *         in order of nodes names
+     */
+    public final int getPrecedingConnectionsNumber() {
+        return precedingConnectionsNumber;
+    }
+
+    /**
+     * @return number of alive nodes including this one
+     */
+    public final int getAliveNodesNumber() {
+        return aliveMembersNumber + 1;
+    }
+
+    /**
+     * Stops gossip. Other nodes consider this node down after failure timeout
+     */
+    @Override
+    public void close() {
+        isStop = true;
+
+        if (socket != null) {
+            socket.close();
+        }
+
+        if (gossipThread != null) {
+            try {
+                gossipThread.join();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
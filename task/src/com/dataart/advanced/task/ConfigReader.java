@@ -15,6 +15,70 @@ import static com.dataart.advanced.task.Info.SERVER_TAG;
 import static com.dataart.advanced.task.Info.CLIENT_TAG;
 import static com.dataart.advanced.task.Info.PORT_TAG;
 import static com.dataart.advanced.task.Info.HOST_TAG;
+import static com.dataart.advanced.task.Info.MAX_MESSAGE_SZ;
+import static com.dataart.advanced.task.Info.MAX_MESSAGE_SZ_TAG;
+import static com.dataart.advanced.task.Info.RESPONSE_CACHE_TAG;
+import static com.dataart.advanced.task.Info.SESSION_GRACE_PERIOD;
+import static com.dataart.advanced.task.Info.SESSION_GRACE_TAG;
+import static com.dataart.advanced.task.Info.SESSION_SNAPSHOT_TAG;
+import static com.dataart.advanced.task.Info.CONNECTION_RATE_TAG;
+import static com.dataart.advanced.task.Info.CONNECTION_BURST_TAG;
+import static com.dataart.advanced.task.Info.USER_RATE_TAG;
+import static com.dataart.advanced.task.Info.USER_BURST_TAG;
+import static com.dataart.advanced.task.Info.THROTTLE_DELAY_TAG;
+import static com.dataart.advanced.task.Info.HISTORY_SIZE;
+import static com.dataart.advanced.task.Info.HISTORY_SIZE_TAG;
+import static com.dataart.advanced.task.Info.HISTORY_ENTRY_SZ;
+import static com.dataart.advanced.task.Info.HISTORY_ENTRY_SZ_TAG;
+import static com.dataart.advanced.task.Info.HISTORY_MEMORY;
+import static com.dataart.advanced.task.Info.HISTORY_MEMORY_TAG;
+import static com.dataart.advanced.task.Info.JOURNAL_TAG;
+import static com.dataart.advanced.task.Info.JOURNAL_DIR_TAG;
+import static com.dataart.advanced.task.Info.JOURNAL_SEGMENT_TAG;
+import static com.dataart.advanced.task.Info.JOURNAL_SEGMENT_SZ;
+import static com.dataart.advanced.task.Info.JOURNAL_FSYNC_TAG;
+import static com.dataart.advanced.task.Info.JOURNAL_FSYNC_INTERVAL_TAG;
+import static com.dataart.advanced.task.Info.JOURNAL_FSYNC_INTERVAL;
+import static com.dataart.advanced.task.Info.TLS_TAG;
+import static com.dataart.advanced.task.Info.TLS_KEYSTORE_TAG;
+import static com.dataart.advanced.task.Info.TLS_KEYSTORE_PASSWORD_TAG;
+import static com.dataart.advanced.task.Info.TLS_TRUSTSTORE_TAG;
+import static com.dataart.advanced.task.Info.TLS_TRUSTSTORE_PASSWORD_TAG;
+import static com.dataart.advanced.task.Info.TLS_PROTOCOL_TAG;
+import static com.dataart.advanced.task.Info.TLS_SESSION_CACHE_TAG;
+import static com.dataart.advanced.task.Info.TLS_SESSION_CACHE_SZ;
+import static com.dataart.advanced.task.Info.TLS_SESSION_TIMEOUT_TAG;
+import static com.dataart.advanced.task.Info.TLS_SESSION_TIMEOUT;
+import static com.dataart.advanced.task.Info.CLUSTER_TAG;
+import static com.dataart.advanced.task.Info.CLUSTER_NAME_TAG;
+import static com.dataart.advanced.task.Info.CLUSTER_GOSSIP_PORT_TAG;
+import static com.dataart.advanced.task.Info.CLUSTER_SEEDS_TAG;
+import static com.dataart.advanced.task.Info.CLUSTER_GOSSIP_INTERVAL_TAG;
+import static com.dataart.advanced.task.Info.CLUSTER_GOSSIP_INTERVAL;
+import static com.dataart.advanced.task.Info.CLUSTER_FAILURE_TIMEOUT_TAG;
+import static com.dataart.advanced.task.Info.CLUSTER_FAILURE_TIMEOUT;
+import static com.dataart.advanced.task.Info.PROXY_TAG;
+import static com.dataart.advanced.task.Info.PROXY_BACKENDS_TAG;
+import static com.dataart.advanced.task.Info.PROXY_BALANCING_TAG;
+import static com.dataart.advanced.task.Info.PROXY_HEALTH_INTERVAL_TAG;
+import static com.dataart.advanced.task.Info.PROXY_HEALTH_INTERVAL;
+import static com.dataart.advanced.task.Info.PROXY_HEALTH_TIMEOUT_TAG;
+import static com.dataart.advanced.task.Info.PROXY_HEALTH_TIMEOUT;
+import static com.dataart.advanced.task.Info.ADMIN_TAG;
+import static com.dataart.advanced.task.Info.PING_INTERVAL_TAG;
+import static com.dataart.advanced.task.Info.PING_MISSES_TAG;
+import static com.dataart.advanced.task.Info.PING_MAX_MISSES;
+import static com.dataart.advanced.task.Info.WORKERS_TAG;
+import static com.dataart.advanced.task.Info.WORKER_QUANTUM_TAG;
+import static com.dataart.advanced.task.Info.WORKER_QUANTUM;
+import static com.dataart.advanced.task.Info.STALL_THRESHOLD_TAG;
+import static com.dataart.advanced.task.Info.STALL_ACTION_TAG;
+import static com.dataart.advanced.task.Info.SHM_TAG;
+import static com.dataart.advanced.task.Info.SHM_RING_SZ_TAG;
+import static com.dataart.advanced.task.Info.SHM_RING_SZ;
+import static com.dataart.advanced.task.Info.SHM_WAIT_TAG;
+import static com.dataart.advanced.task.Info.UNIX_TAG;
+import static com.dataart.advanced.task.Info.UNIX_PATH_TAG;
 
 /**
  * Configuration file reader based on SAX.
@@ -27,10 +91,93 @@ public class ConfigReader {
     private int portNumber = 0;       // client/server port number
     private String hostName;          // host name for client's usage
 
+    // maximal size of received message in bytes
+    private int maxMessageSize = MAX_MESSAGE_SZ;
+
+    // number of server responses cached by client (zero size disables cache)
+    private int responseCacheSize = 0;
+
+    // time of detached session storing on server side in ms
+    private long sessionGracePeriod = SESSION_GRACE_PERIOD;
+
+    // file of sessions state kept between server runs (sessions are lost by restart if it's absent)
+    private String sessionSnapshot;
+
+    // requests rate limits on server side (zero rate disables limit)
+    private int connectionRate = 0;   // requests per second of single connection
+    private int connectionBurst = 0;  // requests passed by single connection without delay
+    private int userRate = 0;         // requests per second of all user's connections
+    private int userBurst = 0;        // requests passed by all user's connections without delay
+    private long throttleDelay = 0;   // maximal delay of request waiting for rate limit in ms
+
+    // keepalive of server's links (zero interval disables keepalive)
+    private long pingInterval = 0;                // silence before ping in ms
+    private int pingMaxMisses = PING_MAX_MISSES;  // unanswered pings of dead peer
+
+    // fair worker pool processing client messages on server side (zero threads number disables pool)
+    private int workersNumber = 0;                // pool's threads number
+    private int workerQuantum = WORKER_QUANTUM;   // session's cost per scheduling round in bytes
+
+    // watchdog of in-flight requests on server side (zero threshold disables watchdog)
+    private long stallThreshold = 0;              // in-flight request time of stall in ms
+    private StallWatchdog.Action stallAction = StallWatchdog.Action.LOG;
+
+    // users conversation history limits on server side
+    private int historySize = HISTORY_SIZE;           // exchanges number per user
+    private int historyEntrySize = HISTORY_ENTRY_SZ;  // single exchange size in bytes
+    private long historyMemory = HISTORY_MEMORY;      // all users histories size in bytes
+
+    // messages journal parameters on server side (journal is disabled if folder isn't specified)
+    private String journalDir;                           // journal folder
+    private int journalSegmentSize = JOURNAL_SEGMENT_SZ; // segment file size in bytes
+    private MessageJournal.FsyncPolicy journalFsyncPolicy = MessageJournal.FsyncPolicy.INTERVAL;
+    private long journalFsyncInterval = JOURNAL_FSYNC_INTERVAL;  // segments forcing period in ms
+
+    // TLS parameters of client/server (TLS is disabled if section is absent)
+    private boolean isTlsEnabled = false;
+    private String tlsKeyStore;           // server's key store path
+    private String tlsKeyStorePassword;
+    private String tlsTrustStore;         // trusted certificates store path
+    private String tlsTrustStorePassword;
+    private String tlsProtocol;           // enabled protocol
+    private int tlsSessionCacheSize = TLS_SESSION_CACHE_SZ;  // cached sessions number
+    private int tlsSessionTimeout = TLS_SESSION_TIMEOUT;     // cached session validity in seconds
+
+    // cluster parameters on server side (server is standalone if section is absent)
+    private boolean isClusterEnabled = false;
+    private String clusterNodeName;                 // node's name, server port based by default
+    private int clusterGossipPort = 0;              // UDP port of gossip
+    private String clusterSeeds;                    // comma separated gossip addresses of seeds
+    private long clusterGossipInterval = CLUSTER_GOSSIP_INTERVAL;  // gossip period in ms
+    private long clusterFailureTimeout = CLUSTER_FAILURE_TIMEOUT;  // node failure timeout in ms
+
+    // admin port on loopback address of server (admin port is disabled if section is absent)
+    private int adminPortNumber = 0;
+
+    // shared memory transport of client/server placed on the same host (disabled if section is absent)
+    private int shmPortNumber = 0;                  // handshake port on loopback address
+    private int shmRingSize = SHM_RING_SZ;          // capacity of each ring in bytes
+    private SharedMemoryTransport.WaitStrategy shmWaitStrategy = SharedMemoryTransport.WaitStrategy.PARK;
+
+    // Unix domain socket file of client/server (disabled if section is absent)
+    private String unixSocketPath;
+
+    // proxy parameters read in server mode (proxy isn't configured if section is absent)
+    private boolean isProxyEnabled = false;
+    private int proxyPortNumber = 0;                // port listening for clients
+    private String proxyBackends;                   // comma separated addresses of servers
+    private ProxyServer.Balancing proxyBalancing = ProxyServer.Balancing.LEAST_CONNECTIONS;
+    private long proxyHealthCheckInterval = PROXY_HEALTH_INTERVAL;  // health checks period in ms
+    private int proxyHealthCheckTimeout = PROXY_HEALTH_TIMEOUT;     // health check timeout in ms
+
+    // folder of configuration file for relative paths resolving
+    private File cfgFolder;
+
     // SAX event handlers processor according to known XML configuration file structure
     class XMLParser extends DefaultHandler {
         private boolean isConfigTag = false;     // flag notifying if CONFIG_TAG is found
         private boolean isClientTag = false;     // flag notifying if CLIENT_TAG is found
+        private boolean isServerTag = false;     // flag notifying if SERVER_TAG is found
         private boolean isServerHost = false;    // flag notifying if HOST_TAG is found
 
         private boolean isServer = true;  // flag defining client or server parsing purpose
@@ -44,8 +191,77 @@ public class ConfigReader {
         public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
             if (isConfigTag) {
                 if (isServer) {
-                    if (qName.equalsIgnoreCase(SERVER_TAG)) {
+                    if (isServerTag && qName.equalsIgnoreCase(JOURNAL_TAG)) {
+                        parseJournal(attributes);
+                    }
+                    else if (isServerTag && qName.equalsIgnoreCase(TLS_TAG)) {
+                        parseTls(attributes);
+                    }
+                    else if (isServerTag && qName.equalsIgnoreCase(CLUSTER_TAG)) {
+                        parseCluster(attributes);
+                    }
+                    else if (isServerTag && qName.equalsIgnoreCase(ADMIN_TAG)) {
+                        adminPortNumber = Integer.parseInt(attributes.getValue(PORT_TAG));
+                    }
+                    else if (isServerTag && qName.equalsIgnoreCase(SHM_TAG)) {
+                        parseSharedMemory(attributes);
+                    }
+                    else if (isServerTag && qName.equalsIgnoreCase(UNIX_TAG)) {
+                        unixSocketPath = resolvePath(attributes.getValue(UNIX_PATH_TAG));
+                    }
+                    else if (qName.equalsIgnoreCase(PROXY_TAG)) {
+                        parseProxy(attributes);
+                    }
+                    else if (qName.equalsIgnoreCase(SERVER_TAG)) {
+                        isServerTag = true;
+
                         portNumber = Integer.parseInt(attributes.getValue(PORT_TAG));
+                        parseMaxMessageSize(attributes);
+
+                        String gracePeriod = attributes.getValue(SESSION_GRACE_TAG);
+                        if (gracePeriod != null) {
+                            sessionGracePeriod = Long.parseLong(gracePeriod);
+                        }
+
+                        sessionSnapshot = resolvePath(attributes.getValue(SESSION_SNAPSHOT_TAG));
+
+                        connectionRate = parseInt(attributes, CONNECTION_RATE_TAG, connectionRate);
+                        connectionBurst = parseInt(attributes, CONNECTION_BURST_TAG, connectionBurst);
+                        userRate = parseInt(attributes, USER_RATE_TAG, userRate);
+                        userBurst = parseInt(attributes, USER_BURST_TAG, userBurst);
+
+                        String delay = attributes.getValue(THROTTLE_DELAY_TAG);
+                        if (delay != null) {
+                            throttleDelay = Long.parseLong(delay);
+                        }
+
+                        String interval = attributes.getValue(PING_INTERVAL_TAG);
+                        if (interval != null) {
+                            pingInterval = Long.parseLong(interval);
+                        }
+
+                        pingMaxMisses = parseInt(attributes, PING_MISSES_TAG, pingMaxMisses);
+
+                        workersNumber = parseInt(attributes, WORKERS_TAG, workersNumber);
+                        workerQuantum = parseInt(attributes, WORKER_QUANTUM_TAG, workerQuantum);
+
+                        String threshold = attributes.getValue(STALL_THRESHOLD_TAG);
+                        if (threshold != null) {
+                            stallThreshold = Long.parseLong(threshold);
+                        }
+
+                        String action = attributes.getValue(STALL_ACTION_TAG);
+                        if (action != null) {
+                            stallAction = StallWatchdog.Action.parse(action);
+                        }
+
+                        historySize = parseInt(attributes, HISTORY_SIZE_TAG, historySize);
+                        historyEntrySize = parseInt(attributes, HISTORY_ENTRY_SZ_TAG, historyEntrySize);
+
+                        String memory = attributes.getValue(HISTORY_MEMORY_TAG);
+                        if (memory != null) {
+                            historyMemory = Long.parseLong(memory);
+                        }
                     }
                 }
                 else {
@@ -53,9 +269,22 @@ public class ConfigReader {
                         if (qName.equalsIgnoreCase(HOST_TAG)) {
                             isServerHost = true;
                         }
+                        else if (qName.equalsIgnoreCase(TLS_TAG)) {
+                            parseTls(attributes);
+                        }
+                        else if (qName.equalsIgnoreCase(SHM_TAG)) {
+                            parseSharedMemory(attributes);
+                        }
+                        else if (qName.equalsIgnoreCase(UNIX_TAG)) {
+                            unixSocketPath = resolvePath(attributes.getValue(UNIX_PATH_TAG));
+                        }
                     }
                     else if (qName.equalsIgnoreCase(CLIENT_TAG)) {
                         portNumber = Integer.parseInt(attributes.getValue(PORT_TAG));
+                        parseMaxMessageSize(attributes);
+
+                        responseCacheSize = parseInt(attributes, RESPONSE_CACHE_TAG, responseCacheSize);
+
                         isClientTag = true;
                     }
                 }
@@ -65,11 +294,122 @@ public class ConfigReader {
             }
         }
 
+        // reads optional maximal message size attribute of client/server section
+        private void parseMaxMessageSize(Attributes attributes) {
+            String messageSize = attributes.getValue(MAX_MESSAGE_SZ_TAG);
+            if (messageSize != null) {
+                maxMessageSize = Integer.parseInt(messageSize);
+            }
+        }
+
+        // reads messages journal section of server
+        private void parseJournal(Attributes attributes) {
+            journalDir = attributes.getValue(JOURNAL_DIR_TAG);
+            journalSegmentSize = parseInt(attributes, JOURNAL_SEGMENT_TAG, journalSegmentSize);
+
+            String fsyncPolicy = attributes.getValue(JOURNAL_FSYNC_TAG);
+            if (fsyncPolicy != null) {
+                journalFsyncPolicy = MessageJournal.FsyncPolicy.parse(fsyncPolicy);
+            }
+
+            String fsyncInterval = attributes.getValue(JOURNAL_FSYNC_INTERVAL_TAG);
+            if (fsyncInterval != null) {
+                journalFsyncInterval = Long.parseLong(fsyncInterval);
+            }
+        }
+
+        // reads TLS section of client/server, key stores paths are relative to configuration file folder
+        private void parseTls(Attributes attributes) {
+            isTlsEnabled = true;
+
+            tlsKeyStore = resolvePath(attributes.getValue(TLS_KEYSTORE_TAG));
+            tlsKeyStorePassword = attributes.getValue(TLS_KEYSTORE_PASSWORD_TAG);
+            tlsTrustStore = resolvePath(attributes.getValue(TLS_TRUSTSTORE_TAG));
+            tlsTrustStorePassword = attributes.getValue(TLS_TRUSTSTORE_PASSWORD_TAG);
+            tlsProtocol = attributes.getValue(TLS_PROTOCOL_TAG);
+
+            tlsSessionCacheSize = parseInt(attributes, TLS_SESSION_CACHE_TAG, tlsSessionCacheSize);
+            tlsSessionTimeout = parseInt(attributes, TLS_SESSION_TIMEOUT_TAG, tlsSessionTimeout);
+        }
+
+        // reads cluster section of server
+        private void parseCluster(Attributes attributes) {
+            isClusterEnabled = true;
+
+            clusterNodeName = attributes.getValue(CLUSTER_NAME_TAG);
+            if (clusterNodeName == null) {
+                clusterNodeName = "node-" + portNumber;
+            }
+
+            clusterGossipPort = parseInt(attributes, CLUSTER_GOSSIP_PORT_TAG, clusterGossipPort);
+            clusterSeeds = attributes.getValue(CLUSTER_SEEDS_TAG);
+
+            String interval = attributes.getValue(CLUSTER_GOSSIP_INTERVAL_TAG);
+            if (interval != null) {
+                clusterGossipInterval = Long.parseLong(interval);
+            }
+
+            String timeout = attributes.getValue(CLUSTER_FAILURE_TIMEOUT_TAG);
+            if (timeout != null) {
+                clusterFailureTimeout = Long.parseLong(timeout);
+            }
+        }
+
+        // reads shared memory transport section of client/server
+        private void parseSharedMemory(Attributes attributes) {
+            shmPortNumber = Integer.parseInt(attributes.getValue(PORT_TAG));
+            shmRingSize = parseInt(attributes, SHM_RING_SZ_TAG, shmRingSize);
+
+            String wait = attributes.getValue(SHM_WAIT_TAG);
+            if (wait != null) {
+                shmWaitStrategy = SharedMemoryTransport.WaitStrategy.parse(wait);
+            }
+        }
+
+        // reads proxy section placed beside server section
+        private void parseProxy(Attributes attributes) {
+            isProxyEnabled = true;
+
+            proxyPortNumber = Integer.parseInt(attributes.getValue(PORT_TAG));
+            proxyBackends = attributes.getValue(PROXY_BACKENDS_TAG);
+
+            String balancing = attributes.getValue(PROXY_BALANCING_TAG);
+            if (balancing != null) {
+                proxyBalancing = ProxyServer.Balancing.parse(balancing);
+            }
+
+            String interval = attributes.getValue(PROXY_HEALTH_INTERVAL_TAG);
+            if (interval != null) {
+                proxyHealthCheckInterval = Long.parseLong(interval);
+            }
+
+            proxyHealthCheckTimeout = parseInt(attributes, PROXY_HEALTH_TIMEOUT_TAG, proxyHealthCheckTimeout);
+        }
+
+        // resolves path relative to configuration file folder, absent path remains null
+        private String resolvePath(String path) {
+            if (path == null || new File(path).isAbsolute()) {
+                return path;
+            }
+
+            return new File(cfgFolder, path).getPath();
+        }
+
+        // reads optional integer attribute returning default value if attribute is absent
+        private int parseInt(Attributes attributes, String name, int defaultValue) {
+            String value = attributes.getValue(name);
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        }
+
         // receives notification of the end of an element in XML - configuration file
         @Override
         public void endElement(String uri, String localName,String qName) throws SAXException {
             if (qName.equalsIgnoreCase("config")) {
                 isConfigTag = false;
+            } else if (qName.equalsIgnoreCase(SERVER_TAG)) {
+                isServerTag = false;
+            } else if (qName.equalsIgnoreCase(CLIENT_TAG)) {
+                isClientTag = false;
             }
         }
 
@@ -80,7 +420,6 @@ public class ConfigReader {
                 hostName = new String(ch, start, length);
 
                 isServerHost = false;
-                isClientTag = false;
             }
         }
     }
@@ -99,6 +438,7 @@ public class ConfigReader {
         XMLParser xmlParser = new XMLParser(isServer);
 
         File xmlFile = new File(cfgFileName);
+        cfgFolder = xmlFile.getAbsoluteFile().getParentFile();
 
         saxParser.parse(xmlFile, xmlParser);
     }
@@ -110,6 +450,335 @@ public class ConfigReader {
         return portNumber;
     }
 
+    /**
+     * @return maximal size of received message in bytes
+     */
+    public final int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * @return number of server responses cached by client or 0 if cache is disabled
+     */
+    public final int getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    /**
+     * @return time of detached session storing on server side in ms
+     */
+    public final long getSessionGracePeriod() {
+        return sessionGracePeriod;
+    }
+
+    /**
+     * @return sessions snapshot file path or null if sessions aren't kept between server runs
+     */
+    public final String getSessionSnapshot() {
+        return sessionSnapshot;
+    }
+
+    /**
+     * @return requests per second of single connection or 0 for unlimited rate
+     */
+    public final int getConnectionRate() {
+        return connectionRate;
+    }
+
+    /**
+     * @return requests number passed by single connection without delay
+     */
+    public final int getConnectionBurst() {
+        return connectionBurst;
+    }
+
+    /**
+     * @return requests per second of all user's connections or 0 for unlimited rate
+     */
+    public final int getUserRate() {
+        return userRate;
+    }
+
+    /**
+     * @return requests number passed by all user's connections without delay
+     */
+    public final int getUserBurst() {
+        return userBurst;
+    }
+
+    /**
+     * @return maximal delay of request waiting for rate limit in ms
+     */
+    public final long getThrottleDelay() {
+        return throttleDelay;
+    }
+
+    /**
+     * @return period of link's silence before ping in ms or 0 if keepalive is disabled
+     */
+    public final long getPingInterval() {
+        return pingInterval;
+    }
+
+    /**
+     * @return number of unanswered pings after which peer is considered dead
+     */
+    public final int getPingMaxMisses() {
+        return pingMaxMisses;
+    }
+
+    /**
+     * @return threads number of worker pool or 0 if messages are processed by connections threads
+     */
+    public final int getWorkersNumber() {
+        return workersNumber;
+    }
+
+    /**
+     * @return session's cost per scheduling round of worker pool in bytes
+     */
+    public final int getWorkerQuantum() {
+        return workerQuantum;
+    }
+
+    /**
+     * @return in-flight request time of stall in ms or 0 if watchdog is disabled
+     */
+    public final long getStallThreshold() {
+        return stallThreshold;
+    }
+
+    /**
+     * @return reaction on stalled request in addition to its reporting
+     */
+    public final StallWatchdog.Action getStallAction() {
+        return stallAction;
+    }
+
+    /**
+     * @return maximal exchanges number stored per user
+     */
+    public final int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * @return maximal size of single stored exchange in bytes
+     */
+    public final int getHistoryEntrySize() {
+        return historyEntrySize;
+    }
+
+    /**
+     * @return maximal size of all users histories in bytes
+     */
+    public final long getHistoryMemory() {
+        return historyMemory;
+    }
+
+    /**
+     * @return messages journal folder or null if journal is disabled
+     */
+    public final String getJournalDir() {
+        return journalDir;
+    }
+
+    /**
+     * @return messages journal segment file size in bytes
+     */
+    public final int getJournalSegmentSize() {
+        return journalSegmentSize;
+    }
+
+    /**
+     * @return policy of forcing messages journal to disk
+     */
+    public final MessageJournal.FsyncPolicy getJournalFsyncPolicy() {
+        return journalFsyncPolicy;
+    }
+
+    /**
+     * @return period of forcing messages journal to disk in ms for INTERVAL policy
+     */
+    public final long getJournalFsyncInterval() {
+        return journalFsyncInterval;
+    }
+
+    /**
+     * @return true if TLS section is specified for client/server
+     */
+    public final boolean isTlsEnabled() {
+        return isTlsEnabled;
+    }
+
+    /**
+     * @return server's key store path or null
+     */
+    public final String getTlsKeyStore() {
+        return tlsKeyStore;
+    }
+
+    /**
+     * @return server's key store password or null
+     */
+    public final String getTlsKeyStorePassword() {
+        return tlsKeyStorePassword;
+    }
+
+    /**
+     * @return trusted certificates store path or null for JRE default certificates
+     */
+    public final String getTlsTrustStore() {
+        return tlsTrustStore;
+    }
+
+    /**
+     * @return trusted certificates store password or null
+     */
+    public final String getTlsTrustStorePassword() {
+        return tlsTrustStorePassword;
+    }
+
+    /**
+     * @return enabled TLS protocol or null for provider's defaults
+     */
+    public final String getTlsProtocol() {
+        return tlsProtocol;
+    }
+
+    /**
+     * @return maximal number of cached TLS sessions
+     */
+    public final int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * @return cached TLS session validity in seconds
+     */
+    public final int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    /**
+     * @return true if cluster section is specified for server
+     */
+    public final boolean isClusterEnabled() {
+        return isClusterEnabled;
+    }
+
+    /**
+     * @return cluster node's name
+     */
+    public final String getClusterNodeName() {
+        return clusterNodeName;
+    }
+
+    /**
+     * @return UDP port of cluster gossip
+     */
+    public final int getClusterGossipPort() {
+        return clusterGossipPort;
+    }
+
+    /**
+     * @return comma separated gossip addresses of cluster seeds or null
+     */
+    public final String getClusterSeeds() {
+        return clusterSeeds;
+    }
+
+    /**
+     * @return period of cluster gossip rounds in ms
+     */
+    public final long getClusterGossipInterval() {
+        return clusterGossipInterval;
+    }
+
+    /**
+     * @return time in ms after which silent cluster node is considered down
+     */
+    public final long getClusterFailureTimeout() {
+        return clusterFailureTimeout;
+    }
+
+    /**
+     * @return admin port number of server or 0 if admin port is disabled
+     */
+    public final int getAdminPortNumber() {
+        return adminPortNumber;
+    }
+
+    /**
+     * @return handshake port number of shared memory transport or 0 if transport is disabled
+     */
+    public final int getShmPortNumber() {
+        return shmPortNumber;
+    }
+
+    /**
+     * @return capacity of each shared memory ring in bytes
+     */
+    public final int getShmRingSize() {
+        return shmRingSize;
+    }
+
+    /**
+     * @return strategy of threads waiting for shared memory rings
+     */
+    public final SharedMemoryTransport.WaitStrategy getShmWaitStrategy() {
+        return shmWaitStrategy;
+    }
+
+    /**
+     * @return Unix domain socket file path or null if Unix domain socket is disabled
+     */
+    public final String getUnixSocketPath() {
+        return unixSocketPath;
+    }
+
+    /**
+     * @return true if proxy section is specified
+     */
+    public final boolean isProxyEnabled() {
+        return isProxyEnabled;
+    }
+
+    /**
+     * @return port number listening by proxy for clients
+     */
+    public final int getProxyPortNumber() {
+        return proxyPortNumber;
+    }
+
+    /**
+     * @return comma separated addresses of servers receiving relayed connections
+     */
+    public final String getProxyBackends() {
+        return proxyBackends;
+    }
+
+    /**
+     * @return policy of backend choice for new client connection
+     */
+    public final ProxyServer.Balancing getProxyBalancing() {
+        return proxyBalancing;
+    }
+
+    /**
+     * @return period of backends health checks in ms
+     */
+    public final long getProxyHealthCheckInterval() {
+        return proxyHealthCheckInterval;
+    }
+
+    /**
+     * @return connection timeout of single backend health check in ms
+     */
+    public final int getProxyHealthCheckTimeout() {
+        return proxyHealthCheckTimeout;
+    }
+
     /**
      * @return host name for client case
      */
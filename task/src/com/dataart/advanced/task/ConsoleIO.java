@@ -46,17 +46,13 @@ public class ConsoleIO implements Closeable {
     }
 
     /**
-     * correctly closes reader and writer
-     * @throws IOException if error occurs while closing reader and writer
+     * flushes writer. Standard streams aren't closed, so they remain usable by application embedding client
+     * or server
      *
      *  @see Closeable#close
      */
     @Override
-    public void close() throws IOException {
-        if (reader != null) {
-            reader.close();
-        }
-
-        writer.close();
+    public void close() {
+        writer.flush();
     }
 }
@@ -0,0 +1,393 @@
+package com.dataart.advanced.task;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Storage of the last exchanges of each user outside of Java heap.
+ * Memory is allocated lazily by direct buffer slabs up to global limit.
+ * Each user occupies single block of slab with ring buffer of fixed size
+ * entries, so neither messages nor per-entry objects are created on heap.
+ * Entry keeps exchange moment and UTF-8 request and response truncated
+ * to entry size. When memory limit is reached, history of the least
+ * recently used user is evicted and its block is reused. Users metadata
+ * is stored in arrays indexed by block number.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ConversationHistory {
+    /**
+     * Single exchange restored from history
+     */
+    public static class Entry {
+        private final long time;         // exchange moment in ms
+        private final String request;    // client's message
+        private final String response;   // server's response
+
+        Entry(long time, String request, String response) {
+            this.time = time;
+            this.request = request;
+            this.response = response;
+        }
+
+        /**
+         * @return exchange moment in ms
+         */
+        public final long getTime() {
+            return time;
+        }
+
+        /**
+         * @return client's message, possibly truncated
+         */
+        public final String getRequest() {
+            return request;
+        }
+
+        /**
+         * @return server's response, possibly truncated
+         */
+        public final String getResponse() {
+            return response;
+        }
+    }
+
+    private final int size;           // maximal exchanges number per user
+    private final int entrySize;      // entry size in bytes including header
+    private final int blockSize;      // user's ring buffer size in bytes
+    private final int blocksNumber;   // maximal users number according to memory limit
+    private final int blocksPerSlab;  // users number in single slab
+
+    private final ByteBuffer[] slabs; // direct buffers allocated on demand
+    private int allocatedNumber = 0;  // number of blocks ever allocated
+
+    // block number by user name
+    private final Map<String, Integer> users = new HashMap<>();
+
+    // users metadata by block number
+    private final String[] names;     // user name of block
+    private final int[] head;         // index of the next written entry in ring
+    private final int[] count;        // stored entries number
+    private final int[] prev;         // more recently used block or DEFAULT_ID
+    private final int[] next;         // less recently used block or DEFAULT_ID
+
+    private int mostRecent = DEFAULT_ID;   // the most recently used block
+    private int leastRecent = DEFAULT_ID;  // the least recently used block (eviction candidate)
+
+    private long evictionsNumber = 0;      // number of evicted users histories
+
+    // encoder of messages directly to slab
+    private final CharsetEncoder encoder = MESSAGE_CHARSET.newEncoder()
+                                                          .onMalformedInput(CodingErrorAction.REPLACE)
+                                                          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // lock for access control to all storage content
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Constructor creates storage with specified limits. Memory isn't allocated until the first exchange
+     * @param size - maximal exchanges number per user
+     * @param entrySize - maximal size of single exchange in bytes
+     * @param memoryLimit - maximal size of whole storage in bytes
+     */
+    public ConversationHistory(int size, int entrySize, long memoryLimit) {
+        if (size <= 0 || entrySize <= HISTORY_ENTRY_HEADER_SZ || entrySize > Short.MAX_VALUE ||
+            (long) size * entrySize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ConversationHistory: illegal history size (" + size +
+                                               ") or entry size (" + entrySize + ")");
+        }
+
+        this.size = size;
+        this.entrySize = entrySize;
+
+        blockSize = size * entrySize;
+        blocksNumber = (int) Math.min(Integer.MAX_VALUE, memoryLimit / blockSize);
+        blocksPerSlab = Math.max(1, HISTORY_SLAB_SZ / blockSize);
+
+        if (blocksNumber == 0) {
+            throw new IllegalArgumentException("ConversationHistory: memory limit " + memoryLimit +
+                                               " is less than single user's history size " + blockSize);
+        }
+
+        slabs = new ByteBuffer[(blocksNumber + blocksPerSlab - 1) / blocksPerSlab];
+
+        names = new String[blocksNumber];
+        head = new int[blocksNumber];
+        count = new int[blocksNumber];
+        prev = new int[blocksNumber];
+        next = new int[blocksNumber];
+    }
+
+    /**
+     * Stores exchange to user's history replacing the oldest exchange if history is full
+     * @param usrName - user name
+     * @param request - client's message
+     * @param response - server's response
+     */
+    void record(String usrName, String request, String response) {
+        long time = System.currentTimeMillis();
+
+        lock.lock();
+
+        try {
+            int block = acquireBlock(usrName);
+            ByteBuffer entry = getEntry(block, head[block]);
+
+            entry.putLong(time);
+
+            // request takes not more than half of entry, response takes the rest
+            int requestPosition = entry.position() + 2 * Short.BYTES;
+            entry.position(requestPosition);
+
+            int requestSz = encode(request, entry, requestPosition + (entry.remaining() / 2));
+            int responseSz = encode(response, entry, entry.capacity());
+
+            entry.putShort(Long.BYTES, (short) requestSz)
+                 .putShort(Long.BYTES + Short.BYTES, (short) responseSz);
+
+            head[block] = (head[block] + 1) % size;
+            count[block] = Math.min(count[block] + 1, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores the last exchanges of user
+     * @param usrName - user name
+     * @param number - maximal number of restored exchanges
+     * @return exchanges from the oldest to the newest, empty list if user's history is absent
+     */
+    public List<Entry> getLast(String usrName, int number) {
+        lock.lock();
+
+        try {
+            Integer block = users.get(usrName);
+
+            if (block == null) {
+                return new ArrayList<>();
+            }
+
+            touch(block);
+
+            int entriesNumber = Math.min(Math.max(number, 0), count[block]);
+            List<Entry> entries = new ArrayList<>(entriesNumber);
+
+            for (int i = entriesNumber; i > 0; --i) {
+                ByteBuffer entry = getEntry(block, (head[block] - i + size) % size);
+
+                long time = entry.getLong();
+                int requestSz = entry.getShort();
+                int responseSz = entry.getShort();
+
+                entries.add(new Entry(time, decode(entry, requestSz), decode(entry, responseSz)));
+            }
+
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds block of user allocating new block or evicting the least recently used user, guarded by "lock"
+     * @param usrName - user name
+     * @return block number of user marked as the most recently used
+     */
+    private int acquireBlock(String usrName) {
+        Integer block = users.get(usrName);
+
+        if (block != null) {
+            touch(block);
+            return block;
+        }
+
+        int newBlock;
+
+        if (allocatedNumber < blocksNumber) {
+            newBlock = allocatedNumber++;
+        } else {
+            newBlock = leastRecent;
+
+            unlink(newBlock);
+            users.remove(names[newBlock]);
+
+            ++evictionsNumber;
+        }
+
+        names[newBlock] = usrName;
+        head[newBlock] = 0;
+        count[newBlock] = 0;
+
+        users.put(usrName, newBlock);
+        linkFirst(newBlock);
+
+        return newBlock;
+    }
+
+    /**
+     * Marks block as the most recently used, guarded by "lock"
+     * @param block - block number
+     */
+    private void touch(int block) {
+        if (block != mostRecent) {
+            unlink(block);
+            linkFirst(block);
+        }
+    }
+
+    /**
+     * Removes block from recently used list, guarded by "lock"
+     * @param block - block number
+     */
+    private void unlink(int block) {
+        if (prev[block] == DEFAULT_ID) {
+            mostRecent = next[block];
+        } else {
+            next[prev[block]] = next[block];
+        }
+
+        if (next[block] == DEFAULT_ID) {
+            leastRecent = prev[block];
+        } else {
+            prev[next[block]] = prev[block];
+        }
+    }
+
+    /**
+     * Inserts block to the beginning of recently used list, guarded by "lock"
+     * @param block - block number
+     */
+    private void linkFirst(int block) {
+        prev[block] = DEFAULT_ID;
+        next[block] = mostRecent;
+
+        if (mostRecent != DEFAULT_ID) {
+            prev[mostRecent] = block;
+        }
+
+        mostRecent = block;
+
+        if (leastRecent == DEFAULT_ID) {
+            leastRecent = block;
+        }
+    }
+
+    /**
+     * Returns view of specified entry allocating slab if necessary, guarded by "lock"
+     * @param block - block number
+     * @param index - entry index in user's ring buffer
+     * @return entry buffer positioned to its beginning
+     */
+    private ByteBuffer getEntry(int block, int index) {
+        int slabIndex = block / blocksPerSlab;
+
+        if (slabs[slabIndex] == null) {
+            int slabBlocks = Math.min(blocksPerSlab, blocksNumber - slabIndex * blocksPerSlab);
+            slabs[slabIndex] = ByteBuffer.allocateDirect(slabBlocks * blockSize);
+        }
+
+        ByteBuffer entry = slabs[slabIndex].duplicate();
+        int offset = (block % blocksPerSlab) * blockSize + index * entrySize;
+
+        entry.limit(offset + entrySize).position(offset);
+
+        return entry.slice();
+    }
+
+    /**
+     * Encodes message to entry not exceeding specified limit, guarded by "lock"
+     * @param message - message content
+     * @param entry - entry buffer positioned to message beginning
+     * @param limit - maximal position of message end
+     * @return encoded message size in bytes
+     */
+    private int encode(String message, ByteBuffer entry, int limit) {
+        int start = entry.position();
+        int entryLimit = entry.limit();
+
+        entry.limit(limit);
+
+        // message exceeding space is truncated by whole symbols
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(message), entry, true);
+        encoder.flush(entry);
+
+        entry.limit(entryLimit);
+
+        return entry.position() - start;
+    }
+
+    /**
+     * @param entry - entry buffer positioned to message beginning
+     * @param messageSz - message size in bytes
+     * @return decoded message
+     */
+    private static String decode(ByteBuffer entry, int messageSz) {
+        byte[] content = new byte[messageSz];
+        entry.get(content);
+
+        return new String(content, MESSAGE_CHARSET);
+    }
+
+    /**
+     * @return maximal exchanges number per user
+     */
+    public final int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of users with stored history
+     */
+    public final int getUsersNumber() {
+        lock.lock();
+
+        try {
+            return users.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of users evicted due to memory limit
+     */
+    public final long getEvictionsNumber() {
+        lock.lock();
+
+        try {
+            return evictionsNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return size of allocated direct memory in bytes
+     */
+    public final long getAllocatedMemory() {
+        lock.lock();
+
+        try {
+            return Arrays.stream(slabs)
+                         .filter(slab -> slab != null)
+                         .mapToLong(ByteBuffer::capacity)
+                         .sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
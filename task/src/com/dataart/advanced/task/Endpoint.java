@@ -0,0 +1,54 @@
+package com.dataart.advanced.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Connected byte streams between client and server independent of transport, so server's links and blocking
+ * clients work over TCP sockets and in-JVM loopback pipes alike
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public interface Endpoint extends Closeable {
+    /**
+     * @return stream of bytes received from peer
+     * @throws IOException - if endpoint is closed
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * @return stream of bytes sent to peer
+     * @throws IOException - if endpoint is closed
+     */
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Wraps endpoint streams by TLS without handshake performing
+     * @param tls - TLS context creating engine of connection
+     * @param isClientMode - true for client's side of connection
+     * @return TLS streams over endpoint streams
+     * @throws IOException - if endpoint is closed
+     */
+    TlsStreams secure(TlsContext tls, boolean isClientMode) throws IOException;
+
+    /**
+     * Assigns reading timeout, so reading throws "SocketTimeoutException" if nothing is received during it
+     * @param timeout - timeout in ms or 0 for infinite reading
+     * @throws IOException - if endpoint is closed
+     */
+    void setReadTimeout(int timeout) throws IOException;
+
+    /**
+     * Finishes reading, so blocked and further readings return end of stream
+     * @throws IOException - if endpoint is closed
+     */
+    void shutdownInput() throws IOException;
+
+    /**
+     * @return peer's address for logging
+     */
+    String getRemoteAddress();
+}
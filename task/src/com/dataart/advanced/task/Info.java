@@ -1,5 +1,8 @@
 package com.dataart.advanced.task;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
@@ -29,10 +32,17 @@ public class Info {
     // keyboard command for server stop
     public static final String SERVER_STOP_CMD = "stop";
 
+    // maximal time of server start by builder
+    public static final long SERVER_START_TIMEOUT = 5000;   // in ms
     // server thread name
     public static final String SERVER_THREAD_NAME = "MultiClientServerThread";
+    // thread name of keyboard stop command waiting
+    public static final String SERVER_CONSOLE_THREAD_NAME = "ServerConsoleThread";
     // server starting message
     public static final String SERVER_START_MSG = "Server is successfully started!\n";
+    // buffers size of link streams kept by each connection even if it's idle, messages exceeding buffer
+    // are read and written directly
+    public static final int LINK_BUFFER_SZ = 2048;  // in bytes
     // constants for connection usage
     // message displaying if no clients are connected to server
     public static final String NO_CONNECTION_MSG = "No active connections. Waiting for clients";
@@ -43,11 +53,241 @@ public class Info {
     public static final String CONNECTION_WELCOME_MSG = "Hello, %s! You are successfully connected to server!";
     // message displaying on server in the moment of new client connection
     public static final String CONNECTION_BEGIN_SRVMSG = "User \"%s\" is connected\n";
+    // message displaying on server in the moment of detached session resumption
+    public static final String CONNECTION_RESUME_SRVMSG = "User \"%s\" resumed session\n";
     // message displaying on server in client disconnect case
     public static final String CONNECTION_QUIT_SRVMSG = "User \"%s\" is disconnected\n";
     // constants for messages packing/extracting from stream
     public static final int DEFAULT_ID = -1;  // client's ID default value
     public static final int DEFAULT_SZ = -1;  // default command size value
+    // frame type flag notifying that message is continued by the next frame
+    public static final byte FRAME_MORE = (byte) 0x80;
+    // mask for frame type extraction without continuation flag
+    public static final byte FRAME_TYPE_MASK = 0x7F;
+    // maximal size of message chunk content
+    public static final int CHUNK_SZ = 64 * 1024;         // in bytes
+    // default maximal size of whole message
+    public static final int MAX_MESSAGE_SZ = 1024 * 1024;  // in bytes
+    // messages content encoding
+    public static final Charset MESSAGE_CHARSET = StandardCharsets.UTF_8;
+    // frame header size: content length, client's ID, stream ID and frame type
+    public static final int FRAME_HEADER_SZ = 13;  // in bytes
+    // stream ID of single session connection (logical sessions multiplexing isn't used)
+    public static final int PRIMARY_STREAM_ID = 0;
+    // frame types distinguishing user messages from session control frames
+    public static final byte FRAME_DATA = 0;     // user command or server response
+    public static final byte FRAME_SESSION = 1;  // resume token issued by server
+    public static final byte FRAME_RESUME = 2;   // resume request of reconnecting client
+    public static final byte FRAME_PING = 3;     // keepalive request carrying its moment
+    public static final byte FRAME_PONG = 4;     // keepalive answer repeating ping content
+    public static final byte FRAME_CACHE = 5;    // responses caching request or time to live of the next response
+    public static final byte FRAME_INVALIDATE = 6;  // cached responses invalidation by command token
+    // separator between resume token and user name in FRAME_RESUME content
+    public static final char RESUME_SEPARATOR = '\n';
+    // separator between resume token and number of replies received by client in FRAME_RESUME content
+    public static final char RESUME_REPLIES_SEPARATOR = ':';
+    // constants for keepalive
+    // default number of unanswered pings after which peer is considered dead
+    public static final int PING_MAX_MISSES = 3;
+    // weight of the new round trip time sample in smoothed round trip time (as in TCP)
+    public static final double RTT_SMOOTHING_WEIGHT = 0.125;
+    // constants for in-JVM loopback transport
+    // capacity of single direction pipe between client and server
+    public static final int LOOPBACK_PIPE_SZ = 64 * 1024;   // in bytes
+    // peer's host name of loopback endpoints used by TLS sessions cache
+    public static final String LOOPBACK_HOST = "localhost";
+    // constants for shared memory transport
+    // default capacity of single direction ring
+    public static final int SHM_RING_SZ = 256 * 1024;   // in bytes
+    // folder of memory backed files preferred for rings, temporary folder is used if it's absent
+    public static final String SHM_DIR = "/dev/shm";
+    // prefix of rings file name
+    public static final String SHM_FILE_PREFIX = "client-server-";
+    // maximal duration of rings file exchange
+    public static final int SHM_HANDSHAKE_TIMEOUT = 5000;   // in ms
+    // number of ring checks before yielding and parking of waiting thread
+    public static final int SHM_SPIN_TRIES = 1000;
+    // bounds of parking time growing while ring stays empty or full
+    public static final long SHM_PARK_MIN_TIME = 10000;    // in ns
+    public static final long SHM_PARK_MAX_TIME = 500000;   // in ns
+    // period of peer's liveness checks by handshake connection of waiting thread
+    public static final long SHM_LIVENESS_PERIOD = 10;     // in ms
+    // accepting thread name of additional server's transport
+    public static final String TRANSPORT_THREAD_NAME = "TransportThread#";
+    // constants for fair worker pool
+    // name prefix of threads processing client messages
+    public static final String WORKER_THREAD_NAME = "WorkerThread#";
+    // default cost added to session's deficit per scheduling round, message cost is its frame size
+    public static final int WORKER_QUANTUM = 1024;   // in bytes
+    // maximal cost of session's queued messages, link stops reading from peer while it's exceeded
+    public static final long WORKER_FLOW_CAPACITY = 64 * 1024;   // in bytes
+    // constants for logical sessions multiplexing
+    // maximal number of logical sessions inside single connection
+    public static final int MAX_STREAMS_NUMBER = 1024;
+    // maximal number of unanswered messages of single logical session, server rejects messages above it
+    public static final int STREAM_WINDOW = 16;
+    // reply on message of logical session exceeding its window
+    public static final String STREAM_WINDOW_MSG = "Too many unanswered messages. The message is rejected!";
+    // threads names of multiplexing client
+    public static final String MUX_WRITER_THREAD_NAME = "MultiplexWriterThread";
+    public static final String MUX_READER_THREAD_NAME = "MultiplexReaderThread";
+    // constants for non-blocking client
+    // initial size of buffer for frames reception
+    public static final int ASYNC_READ_BUFFER_SZ = 16 * 1024;  // in bytes
+    // I/O threads name preamble of shared channel group
+    public static final String ASYNC_IO_THREAD_NAME = "AsyncClientIOThread#";
+    // constants for batch client
+    // maximal number of unanswered commands
+    public static final int BATCH_WINDOW = 256;
+    // default results file name suffix appended to commands file name
+    public static final String BATCH_RESULTS_SUFFIX = ".out";
+    // responses collector thread name
+    public static final String BATCH_COLLECTOR_THREAD_NAME = "BatchCollectorThread";
+    // constants for traffic replay
+    // thread name of requests sending according to recorded timing
+    public static final String REPLAY_SCHEDULER_THREAD_NAME = "ReplaySchedulerThread";
+    // speed key value of the fastest replay
+    public static final String REPLAY_ASAP_SPEED = "asap";
+    // constants for users conversation history
+    // default maximal exchanges number stored per user
+    public static final int HISTORY_SIZE = 16;
+    // default maximal size of single stored exchange
+    public static final int HISTORY_ENTRY_SZ = 256;           // in bytes
+    // default memory limit of all users histories
+    public static final long HISTORY_MEMORY = 64L * 1024 * 1024;  // in bytes
+    // size of direct memory slab allocated at once
+    public static final int HISTORY_SLAB_SZ = 1024 * 1024;    // in bytes
+    // stored exchange header: moment, request and response sizes
+    public static final int HISTORY_ENTRY_HEADER_SZ = 12;     // in bytes
+    // command token for history request
+    public static final String HISTORY_CMD = "history";
+    // constants for session resumption
+    // time of detached session storing on server side waiting for client reconnection
+    public static final long SESSION_GRACE_PERIOD = 30000;  // in ms
+    // resume token length before encoding
+    public static final int RESUME_TOKEN_LENGTH = 16;       // in bytes
+    // reconnection attempts number after connection loss on client side
+    public static final int RECONNECT_MAX_ATTEMPTS = 10;
+    // initial and maximal delays of exponential backoff between reconnection attempts
+    public static final long RECONNECT_BASE_DELAY = 100;    // in ms
+    public static final long RECONNECT_MAX_DELAY = 10000;   // in ms
+    // thread name of client's frames reception answering server's pings while user enters command
+    public static final String CLIENT_READER_THREAD_NAME = "ClientReaderThread";
+    // constants for sessions snapshot
+    // snapshot file header notifying its format
+    public static final int SNAPSHOT_MAGIC = 0x53455353;  // "SESS"
+    // magic, clients counter and sessions number
+    public static final int SNAPSHOT_HEADER_SZ = 12;      // in bytes
+    // suffix of temporary file replacing snapshot after writing
+    public static final String SNAPSHOT_TMP_SUFFIX = ".tmp";
+    public static final int SNAPSHOT_BUFFER_SZ = 64 * 1024;  // in bytes
+    // maximal waiting for links closing on server stop before snapshot writing
+    public static final long SNAPSHOT_LINKS_TIMEOUT = 5000;  // in ms
+    // constants for client's responses cache
+    // time to live of response which doesn't change till commands registry change
+    public static final long RESPONSE_CACHE_TTL = 3600000;  // in ms
+    // constants for Flight Recorder events
+    // prefix of message lifecycle events names
+    public static final String JFR_EVENT_PREFIX = "com.dataart.advanced.task.";
+    // category of message lifecycle events in recording viewers
+    public static final String JFR_CATEGORY = "Client-Server";
+    // default duration threshold of message lifecycle events, faster ones aren't recorded
+    public static final String JFR_THRESHOLD = "10 ms";
+    // constants for stall watchdog
+    // name of thread checking in-flight requests of server
+    public static final String STALL_WATCHDOG_THREAD_NAME = "StallWatchdogThread";
+    // number of in-flight requests checks per stall threshold, so stall is found before 1.25 of threshold
+    public static final int STALL_CHECKS_NUMBER = 4;
+    // stages of in-flight request shown in stall report
+    public static final String STALL_STAGE_LISTENER = "listener";      // response forming by listener
+    public static final String STALL_STAGE_WRITE = "socket write";     // response sending to client
+    // constants for requests rate limiting
+    // reply on request throttled by rate limits
+    public static final String THROTTLE_MSG = "Too many requests. Please slow down!";
+    // minimal interval between idle user buckets cleanings
+    public static final long RATE_LIMIT_PURGE_INTERVAL = 1000;  // in ms
+    // constants for messages journal
+    // segment file header notifying its format
+    public static final int JOURNAL_MAGIC = 0x4A524E4C;  // "JRNL"
+    public static final int JOURNAL_MAGIC_SZ = 4;        // in bytes
+    // record header size: record size, moment, client's ID, stream ID, direction and frame type
+    public static final int JOURNAL_RECORD_HEADER_SZ = 22;  // in bytes
+    // directions of journaled messages
+    public static final byte JOURNAL_INBOUND = 0;   // message from client to server
+    public static final byte JOURNAL_OUTBOUND = 1;  // message from server to client
+    // default segment file size
+    public static final int JOURNAL_SEGMENT_SZ = 64 * 1024 * 1024;  // in bytes
+    // default period of segments forcing to disk
+    public static final long JOURNAL_FSYNC_INTERVAL = 1000;  // in ms
+    // segment file name parts surrounding segment number
+    public static final String JOURNAL_SEGMENT_PREFIX = "journal-";
+    public static final String JOURNAL_SEGMENT_SUFFIX = ".seg";
+    // thread name of periodical segments forcing
+    public static final String JOURNAL_SYNC_THREAD_NAME = "JournalSyncThread";
+    // recorded content of resume token, since token allows to take over session
+    public static final String JOURNAL_TOKEN_MASK = "*";
+    // constants for TLS transport
+    // protocol family of SSL context, exact protocol is chosen by handshake
+    public static final String TLS_CONTEXT_PROTOCOL = "TLS";
+    // type of key store files
+    public static final String TLS_KEYSTORE_TYPE = "PKCS12";
+    // default maximal number of cached sessions for abbreviated handshakes
+    public static final int TLS_SESSION_CACHE_SZ = 20480;
+    // default time of cached session validity
+    public static final int TLS_SESSION_TIMEOUT = 86400;  // in seconds
+    // session value notifying of full handshake
+    public static final String TLS_FULL_HANDSHAKE_MARK = "com.dataart.advanced.task.fullHandshake";
+    // constants for cluster mode
+    // default period of gossip rounds
+    public static final long CLUSTER_GOSSIP_INTERVAL = 500;   // in ms
+    // default time after which silent node is considered down
+    public static final long CLUSTER_FAILURE_TIMEOUT = 3000;  // in ms
+    // number of random alive nodes receiving each gossip round
+    public static final int CLUSTER_GOSSIP_FANOUT = 2;
+    // maximal size of gossip datagram
+    public static final int CLUSTER_PACKET_SZ = 8 * 1024;     // in bytes
+    // gossip datagram header notifying its format
+    public static final int CLUSTER_MAGIC = 0x47535350;       // "GSSP"
+    // gossip thread name
+    public static final String CLUSTER_THREAD_NAME = "ClusterGossipThread";
+    // constants for proxy mode
+    // size of relay buffer of each direction
+    public static final int PROXY_BUFFER_SZ = 16 * 1024;      // in bytes
+    // virtual nodes of each backend on consistent hashing ring
+    public static final int PROXY_VIRTUAL_NODES = 64;
+    // default period of backends health checks
+    public static final long PROXY_HEALTH_INTERVAL = 1000;    // in ms
+    // default connection timeout of single health check
+    public static final int PROXY_HEALTH_TIMEOUT = 500;       // in ms
+    // relaying thread name
+    public static final String PROXY_THREAD_NAME = "ProxyThread";
+    // health checks thread name
+    public static final String PROXY_HEALTH_THREAD_NAME = "ProxyHealthThread";
+    // constants for admin port
+    // admin thread name
+    public static final String ADMIN_THREAD_NAME = "AdminThread";
+    // admin commands tokens
+    public static final String ADMIN_STATS_CMD = "stats";              // server statistics
+    public static final String ADMIN_CONNECTIONS_CMD = "connections";  // connections list
+    public static final String ADMIN_KICK_CMD = "kick";                // connection closing
+    public static final String ADMIN_DRAIN_CMD = "drain";              // new connections rejection
+    public static final String ADMIN_LIMITS_CMD = "limits";            // rate limits change
+    public static final String ADMIN_MAX_LINKS_CMD = "maxlinks";       // connections number limit change
+    public static final String ADMIN_LOG_LEVEL_CMD = "loglevel";       // logger level change
+    public static final String ADMIN_INVALIDATE_CMD = "invalidate";    // clients cached responses invalidation
+    public static final String ADMIN_HELP_CMD = "help";                // commands list
+    // reply on admin "help" command
+    public static final String ADMIN_HELP_MSG = "Admin commands:\n" +
+            "- stats - server statistics\n" +
+            "- connections - connections list with their sessions\n" +
+            "- kick <connection number> - closes connection, its sessions could be resumed\n" +
+            "- drain [on|off] - rejects new connections serving existing ones till \"quit\"\n" +
+            "- limits <connection rate> <connection burst> <user rate> <user burst> <throttle delay>\n" +
+            "- maxlinks <number> - maximal connections number (0 for unlimited)\n" +
+            "- loglevel <level> [logger name] - level of specified or root logger\n" +
+            "- invalidate [command token] - drops clients cached responses of token or all of them\n" +
+            "- stop - server stop\n" +
+            "- quit - admin connection closing";
     // service symbols substitutions
     public static final Map<String, String> SYMBOL_SUBSTITUTION =
             new HashMap<String, String>() {{
@@ -66,6 +306,87 @@ public class Info {
 
     public static final String HOST_TAG = "ServerHost"; // server host name tag
 
+    // maximal message size attribute of client/server section
+    public static final String MAX_MESSAGE_SZ_TAG = "maxMessageSize";
+
+    // cached responses number attribute of client section (0 disables cache)
+    public static final String RESPONSE_CACHE_TAG = "responseCache";
+
+    // detached session grace period attribute of server section
+    public static final String SESSION_GRACE_TAG = "sessionGrace";
+
+    // sessions snapshot file attribute of server section
+    public static final String SESSION_SNAPSHOT_TAG = "snapshot";
+
+    // rate limits attributes of server section
+    public static final String CONNECTION_RATE_TAG = "connectionRate";    // requests per second of connection
+    public static final String CONNECTION_BURST_TAG = "connectionBurst";  // connection requests burst
+    public static final String USER_RATE_TAG = "userRate";                // requests per second of user name
+    public static final String USER_BURST_TAG = "userBurst";              // user requests burst
+    public static final String THROTTLE_DELAY_TAG = "throttleDelay";      // maximal request delay in ms
+
+    // keepalive attributes of server section
+    public static final String PING_INTERVAL_TAG = "pingInterval";        // silence before ping in ms
+    public static final String PING_MISSES_TAG = "pingMisses";            // unanswered pings of dead peer
+
+    // worker pool attributes of server section
+    public static final String WORKERS_TAG = "workers";                   // threads number, 0 disables pool
+    public static final String WORKER_QUANTUM_TAG = "workerQuantum";      // session's cost per round in bytes
+
+    // stall watchdog attributes of server section
+    public static final String STALL_THRESHOLD_TAG = "stallThreshold";    // in-flight request time in ms, 0 disables
+    public static final String STALL_ACTION_TAG = "stallAction";          // log, interrupt or disconnect
+
+    // conversation history attributes of server section
+    public static final String HISTORY_SIZE_TAG = "historySize";           // exchanges number per user
+    public static final String HISTORY_ENTRY_SZ_TAG = "historyEntrySize";  // exchange size in bytes
+    public static final String HISTORY_MEMORY_TAG = "historyMemory";       // memory limit in bytes
+
+    // messages journal section tag inside server section and its attributes
+    public static final String JOURNAL_TAG = "journal";
+    public static final String JOURNAL_DIR_TAG = "dir";                      // journal folder
+    public static final String JOURNAL_SEGMENT_TAG = "segmentSize";          // segment file size in bytes
+    public static final String JOURNAL_FSYNC_TAG = "fsync";                  // never, interval or always
+    public static final String JOURNAL_FSYNC_INTERVAL_TAG = "fsyncInterval"; // forcing period in ms
+
+    // TLS section tag inside client/server section and its attributes
+    public static final String TLS_TAG = "tls";
+    public static final String TLS_KEYSTORE_TAG = "keyStore";                     // server's key store path
+    public static final String TLS_KEYSTORE_PASSWORD_TAG = "keyStorePassword";    // key store password
+    public static final String TLS_TRUSTSTORE_TAG = "trustStore";                 // trusted certificates path
+    public static final String TLS_TRUSTSTORE_PASSWORD_TAG = "trustStorePassword";// trust store password
+    public static final String TLS_PROTOCOL_TAG = "protocol";                     // e.g. TLSv1.3 or TLSv1.2
+    public static final String TLS_SESSION_CACHE_TAG = "sessionCacheSize";        // cached sessions number
+    public static final String TLS_SESSION_TIMEOUT_TAG = "sessionTimeout";        // session validity in seconds
+
+    // cluster section tag inside server section and its attributes
+    public static final String CLUSTER_TAG = "cluster";
+    public static final String CLUSTER_NAME_TAG = "name";                         // node's name unique in cluster
+    public static final String CLUSTER_GOSSIP_PORT_TAG = "gossipPort";            // UDP port of gossip
+    public static final String CLUSTER_SEEDS_TAG = "seeds";                       // comma separated "host:port"
+    public static final String CLUSTER_GOSSIP_INTERVAL_TAG = "gossipInterval";    // gossip period in ms
+    public static final String CLUSTER_FAILURE_TIMEOUT_TAG = "failureTimeout";    // node failure timeout in ms
+
+    // proxy section tag and its attributes
+    public static final String PROXY_TAG = "proxy";
+    public static final String PROXY_BACKENDS_TAG = "backends";                   // comma separated "host:port"
+    public static final String PROXY_BALANCING_TAG = "balancing";                 // least_connections, user_hash
+    public static final String PROXY_HEALTH_INTERVAL_TAG = "healthCheckInterval"; // health checks period in ms
+    public static final String PROXY_HEALTH_TIMEOUT_TAG = "healthCheckTimeout";   // health check timeout in ms
+
+    // admin section tag inside server section, the only attribute is PORT_TAG
+    public static final String ADMIN_TAG = "admin";
+
+    // shared memory transport section tag inside client/server section and its attributes besides PORT_TAG
+    // (handshake port number)
+    public static final String SHM_TAG = "shm";
+    public static final String SHM_RING_SZ_TAG = "ringSize";              // ring capacity in bytes (server only)
+    public static final String SHM_WAIT_TAG = "wait";                     // spin or park
+
+    // Unix domain socket section tag inside client/server section and its attribute
+    public static final String UNIX_TAG = "unix";
+    public static final String UNIX_PATH_TAG = "path";                    // socket file path
+
     // "absolute" path to logging resource properties file
     public static final String LOG_RESOURCE_FILE_PATH = "/res/logging.properties";
 
@@ -86,21 +407,27 @@ public class Info {
                 // ask client's name
                 add(ail.new UserCmd("my name", "Hmm... you had introduced as \"%s\"", ail.new UserNameAction()));
                 // ask server's name
-                add(ail.new UserCmd("your name", "\"You can call me Susan if it makes you happy\"(c)Snatch", null));
+                add(ail.new UserCmd("your name", "\"You can call me Susan if it makes you happy\"(c)Snatch", null,
+                                    () -> RESPONSE_CACHE_TTL));
                 // ask current time
-                add(ail.new UserCmd("time", "The current time is: %s", ail.new TimeAction("kk:mm:ss XXX")));
+                AIServerListener.TimeAction time = ail.new TimeAction("kk:mm:ss XXX", ChronoUnit.SECONDS);
+                add(ail.new UserCmd("time", "The current time is: %s", time, time::getTtl));
                 // ask current date
-                add(ail.new UserCmd("date", "Today is: %s", ail.new TimeAction("EEE, MMM dd, yyyy")));
+                AIServerListener.TimeAction date = ail.new TimeAction("EEE, MMM dd, yyyy", ChronoUnit.DAYS);
+                add(ail.new UserCmd("date", "Today is: %s", date, date::getTtl));
                 // swear an oath
-                add(ail.new UserCmd("fuck", ":) ... Spielberg. Watch your tongue!", null));
+                add(ail.new UserCmd("fuck", ":) ... Spielberg. Watch your tongue!", null, () -> RESPONSE_CACHE_TTL));
                 // ask total connections number
                 add(ail.new UserCmd("total", "Total connections number is: %d", ail.new TotalConnectionsAction()));
                 // ask connection index
                 add(ail.new UserCmd("my number", "Your connection index is: %s", ail.new ConnectionIndexAction()));
                 // get maintained user commands set
-                add(ail.new UserCmd("help", "The commands could contain these known tokens:\n- ", null));
+                add(ail.new UserCmd("help", "The commands could contain these known tokens:\n- ", null,
+                                    () -> RESPONSE_CACHE_TTL));
                 // get client's ID assigned by server
                 add(ail.new UserCmd("id", "Client's ID is: %d", ail.new ClientIDAction()));
+                // get the last exchanges of user
+                add(ail.new UserCmd(HISTORY_CMD, "%s", ail.new HistoryAction()));
                 // quit
                 add(ail.new UserCmd(QUIT_CMD, "You are disconnected from server, %s! So long!",
                     ail.new UserNameAction()));
@@ -122,7 +449,9 @@ public class Info {
     public static final String MAIN_ANNOTATION = "Usage: java -classpath " +
             "<path to package folders> MainCore\n" +
             "-config <path to cfg file/cfg file name.xml>\n" +
-            "<mode> (-client or -server)";
+            "<mode> (-client or -server or -proxy)\n" +
+            "[-batch <commands file> [-out <results file>] [-echo]] - client batch mode\n" +
+            "[-replay <journal folder> [-speed <factor> or asap]] - client traffic replay mode";
 
     static {
         // forming response for "help" command
@@ -0,0 +1,169 @@
+package com.dataart.advanced.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Sequential scanner of message journal written by MessageJournal.
+ * Segment files are read one by one in numbers order without any index.
+ * Segment is finished by zero record size or by its end.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class JournalReader implements Closeable {
+    /**
+     * Single journal record
+     */
+    public static class Record {
+        private final long timestamp;   // record moment in ns since epoch
+        private final int clientID;     // client's ID assigned by server
+        private final int streamID;     // logical session ID inside connection
+        private final byte direction;   // JOURNAL_INBOUND or JOURNAL_OUTBOUND
+        private final byte type;        // frame type
+        private final String message;   // message content
+
+        Record(long timestamp, int clientID, int streamID, byte direction, byte type, String message) {
+            this.timestamp = timestamp;
+            this.clientID = clientID;
+            this.streamID = streamID;
+            this.direction = direction;
+            this.type = type;
+            this.message = message;
+        }
+
+        /**
+         * @return record moment in ns since epoch
+         */
+        public final long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return client's ID assigned by server
+         */
+        public final int getClientID() {
+            return clientID;
+        }
+
+        /**
+         * @return logical session ID inside connection
+         */
+        public final int getStreamID() {
+            return streamID;
+        }
+
+        /**
+         * @return true for client's message, false for server's one
+         */
+        public final boolean isInbound() {
+            return direction == JOURNAL_INBOUND;
+        }
+
+        /**
+         * @return frame type of message
+         */
+        public final byte getType() {
+            return type;
+        }
+
+        /**
+         * @return message content
+         */
+        public final String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %s client #%d stream #%d type %d: %s", timestamp, isInbound() ? "<-" : "->",
+                                 clientID, streamID, type, message);
+        }
+    }
+
+    private final Iterator<Path> segments;   // segment files waiting for reading
+    private MappedByteBuffer segment;        // the current segment content
+
+    /**
+     * Constructor opens journal in specified folder for reading from its first segment
+     * @param directory - folder of journal segment files
+     * @throws IOException - if folder could not be read
+     */
+    public JournalReader(Path directory) throws IOException {
+        segments = MessageJournal.listSegments(directory).iterator();
+    }
+
+    /**
+     * Reads the next record of journal
+     * @return the next record or null if the end of journal is reached
+     * @throws IOException - if segment file could not be read or its format is illegal
+     */
+    public Record next() throws IOException {
+        while (segment == null || !hasRecord()) {
+            if (!segments.hasNext()) {
+                segment = null;
+                return null;
+            }
+
+            segment = mapSegment(segments.next());
+        }
+
+        int start = segment.position();
+        int recordSz = segment.getInt();
+
+        if (recordSz < JOURNAL_RECORD_HEADER_SZ || start + recordSz > segment.limit()) {
+            throw new IOException("JournalReader: illegal record size " + recordSz + " at position " + start);
+        }
+
+        long timestamp = segment.getLong();
+        int clientID = segment.getInt();
+        int streamID = segment.getInt();
+        byte direction = segment.get();
+        byte type = segment.get();
+
+        byte[] content = new byte[recordSz - JOURNAL_RECORD_HEADER_SZ];
+        segment.get(content);
+
+        return new Record(timestamp, clientID, streamID, direction, type, new String(content, MESSAGE_CHARSET));
+    }
+
+    /**
+     * @return true if the current segment contains unread record
+     */
+    private boolean hasRecord() {
+        return segment.remaining() >= JOURNAL_RECORD_HEADER_SZ && segment.getInt(segment.position()) != 0;
+    }
+
+    /**
+     * Maps segment file for reading
+     * @param segmentFile - segment file path
+     * @return segment content positioned to the first record
+     * @throws IOException - if segment file could not be read or it isn't journal segment
+     */
+    private static MappedByteBuffer mapSegment(Path segmentFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (mapped.remaining() < JOURNAL_MAGIC_SZ || mapped.getInt() != JOURNAL_MAGIC) {
+                throw new IOException("JournalReader: file " + segmentFile + " isn't journal segment");
+            }
+
+            return mapped;
+        }
+    }
+
+    /**
+     * Finishes journal reading
+     */
+    @Override
+    public void close() {
+        segment = null;
+    }
+}
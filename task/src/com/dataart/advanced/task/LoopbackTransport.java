@@ -0,0 +1,363 @@
+package com.dataart.advanced.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * In-JVM transport connecting clients with server of the same process by pair of memory pipes instead of
+ * sockets. It starts instantly, doesn't occupy ports and excludes kernel networking from measurements of
+ * listener and clients engines. Pipes are bounded, so fast writer is blocked like on full socket buffer.
+ * Transport is closed together with server, pending unaccepted connections are closed as well
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class LoopbackTransport implements Transport {
+    private final int pipeSize;   // capacity of each direction in bytes
+
+    // server's sides of connections waiting for accepting
+    private final BlockingQueue<Endpoint> pending = new LinkedBlockingQueue<>();
+    private boolean isClosed = false;   // guarded by "pending"
+
+    private final AtomicInteger connectionsCounter = new AtomicInteger();
+
+    /**
+     * Constructor creates transport with default pipes capacity
+     */
+    public LoopbackTransport() {
+        this(LOOPBACK_PIPE_SZ);
+    }
+
+    /**
+     * @param pipeSize - capacity of each connection direction in bytes
+     */
+    public LoopbackTransport(int pipeSize) {
+        this.pipeSize = pipeSize;
+    }
+
+    /**
+     * Connects client to server. Connection is established immediately and accepted by server later
+     * @return client's side of connection
+     * @throws ConnectException - if transport is closed
+     */
+    public Endpoint connect() throws ConnectException {
+        Pipe toServer = new Pipe(pipeSize);
+        Pipe toClient = new Pipe(pipeSize);
+
+        int number = connectionsCounter.getAndIncrement();
+
+        synchronized (pending) {
+            if (isClosed) {
+                throw new ConnectException("LoopbackTransport: transport is closed");
+            }
+
+            pending.add(new LoopbackEndpoint(toServer, toClient, "loopback client #" + number));
+        }
+
+        return new LoopbackEndpoint(toClient, toServer, "loopback server");
+    }
+
+    @Override
+    public Endpoint accept(int timeout) throws IOException {
+        try {
+            return pending.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("LoopbackTransport: accepting is interrupted");
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "loopback transport";
+    }
+
+    /**
+     * Rejects further connections closing unaccepted ones
+     */
+    @Override
+    public void close() throws IOException {
+        List<Endpoint> unaccepted = new ArrayList<>();
+
+        synchronized (pending) {
+            isClosed = true;
+            pending.drainTo(unaccepted);
+        }
+
+        for (Endpoint endpoint : unaccepted) {
+            endpoint.close();
+        }
+    }
+
+    /**
+     * Bounded single direction byte queue. Reader waits for data, writer waits for free space
+     */
+    private static class Pipe {
+        private final byte[] buffer;
+        private int head = 0;     // position of the first unread byte
+        private int size = 0;     // number of unread bytes
+
+        private boolean isWriteClosed = false;   // reader gets end of stream after unread bytes
+        private boolean isReadClosed = false;    // reader gets end of stream, writer gets error
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition readable = lock.newCondition();
+        private final Condition writable = lock.newCondition();
+
+        Pipe(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        /**
+         * @param b - destination buffer
+         * @param off - destination offset
+         * @param len - maximal number of read bytes
+         * @param timeout - reading timeout in ms or 0 for infinite waiting
+         * @return number of read bytes or -1 if pipe is closed
+         * @throws IOException - if timeout is expired or waiting is interrupted
+         */
+        int read(byte[] b, int off, int len, int timeout) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            lock.lock();
+
+            try {
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+                while (size == 0) {
+                    if (isReadClosed || isWriteClosed) {
+                        return -1;
+                    }
+
+                    if (timeout == 0) {
+                        readable.await();
+                    } else if (nanos > 0) {
+                        nanos = readable.awaitNanos(nanos);
+                    } else {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                }
+
+                int readSz = Math.min(len, size);
+                int tailSz = Math.min(readSz, buffer.length - head);
+
+                System.arraycopy(buffer, head, b, off, tailSz);
+                System.arraycopy(buffer, 0, b, off + tailSz, readSz - tailSz);
+
+                head = (head + readSz) % buffer.length;
+                size -= readSz;
+
+                writable.signalAll();
+
+                return readSz;
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("LoopbackTransport: reading is interrupted");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @param b - source buffer
+         * @param off - source offset
+         * @param len - number of written bytes
+         * @throws IOException - if pipe is closed or waiting is interrupted
+         */
+        void write(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+
+            try {
+                while (len > 0) {
+                    while (size == buffer.length && !isReadClosed && !isWriteClosed) {
+                        writable.await();
+                    }
+
+                    if (isWriteClosed) {
+                        throw new IOException("LoopbackTransport: connection is closed");
+                    }
+
+                    if (isReadClosed) {
+                        throw new IOException("LoopbackTransport: connection is closed by peer");
+                    }
+
+                    int tail = (head + size) % buffer.length;
+                    int writtenSz = Math.min(len, Math.min(buffer.length - size, buffer.length - tail));
+
+                    System.arraycopy(b, off, buffer, tail, writtenSz);
+
+                    size += writtenSz;
+                    off += writtenSz;
+                    len -= writtenSz;
+
+                    readable.signalAll();
+                }
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("LoopbackTransport: writing is interrupted");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return number of bytes read without waiting
+         */
+        int available() {
+            lock.lock();
+
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Finishes writing, reader gets end of stream after unread bytes
+         */
+        void closeWrite() {
+            close(false);
+        }
+
+        /**
+         * Finishes reading dropping unread bytes, writer gets error
+         */
+        void closeRead() {
+            close(true);
+        }
+
+        private void close(boolean isRead) {
+            lock.lock();
+
+            try {
+                if (isRead) {
+                    isReadClosed = true;
+                    size = 0;
+                } else {
+                    isWriteClosed = true;
+                }
+
+                readable.signalAll();
+                writable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * One side of loopback connection: reads from one pipe and writes to another one
+     */
+    private static class LoopbackEndpoint implements Endpoint {
+        private final Pipe inPipe;
+        private final Pipe outPipe;
+        private final String remoteAddress;
+
+        private volatile int readTimeout = 0;   // in ms
+
+        private final InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return inPipe.read(b, off, len, readTimeout);
+            }
+
+            @Override
+            public int available() {
+                return inPipe.available();
+            }
+
+            @Override
+            public void close() {
+                inPipe.closeRead();
+                outPipe.closeWrite();
+            }
+        };
+
+        private final OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                outPipe.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                inPipe.closeRead();
+                outPipe.closeWrite();
+            }
+        };
+
+        LoopbackEndpoint(Pipe inPipe, Pipe outPipe, String remoteAddress) {
+            this.inPipe = inPipe;
+            this.outPipe = outPipe;
+            this.remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public TlsStreams secure(TlsContext tls, boolean isClientMode) {
+            return new TlsStreams(in, out, tls, isClientMode, LOOPBACK_HOST, 0);
+        }
+
+        @Override
+        public void setReadTimeout(int timeout) {
+            readTimeout = timeout;
+        }
+
+        @Override
+        public void shutdownInput() {
+            inPipe.closeRead();
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * Closes both directions like socket closing: peer gets end of stream after sent bytes
+         */
+        @Override
+        public void close() {
+            inPipe.closeRead();
+            outPipe.closeWrite();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.dataart.advanced.task;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
@@ -26,6 +28,20 @@ public class MainCore {
     private static String cfgFileName = "";
     // notification flag for server/client execution
     private static boolean isServer = false;
+    // notification flag for proxy execution
+    private static boolean isProxy = false;
+
+    // commands file name for client batch mode (interactive mode if empty)
+    private static String batchFileName = "";
+    // results file name for client batch mode
+    private static String resultsFileName = "";
+    // flag of commands and responses console echo in batch mode
+    private static boolean isBatchEcho = false;
+
+    // journal folder for client traffic replay mode (no replay if empty)
+    private static String replayJournalDir = "";
+    // replay timing acceleration factor (0 for the fastest replay)
+    private static double replaySpeed = 1.0;
 
     /**
      * Attempts to create folder for *.log - files
@@ -111,7 +127,7 @@ public class MainCore {
      * @param args - command line for parsing
      */
     private static boolean parseCommandLine(String[] args) {
-        if (args.length != CMD_LINE_ARGS_NUMBER) {
+        if (args.length < CMD_LINE_ARGS_NUMBER) {
             log.log(Level.SEVERE, "Illegal command line arguments number\n" + MAIN_ANNOTATION);
             return false;
         }
@@ -119,7 +135,7 @@ public class MainCore {
         int correctKeysNumber = 0;
 
         for (int i = 0; i < args.length; ++i) {
-            if ("-config".equals(args[i])) {
+            if ("-config".equals(args[i]) && i + 1 < args.length) {
                 cfgFileName = args[++i];
                 ++correctKeysNumber;
 
@@ -129,9 +145,32 @@ public class MainCore {
             if ("-server".equals(args[i])) {
                 isServer = true;
                 ++correctKeysNumber;
+            } else if ("-proxy".equals(args[i])) {
+                isProxy = true;
+                ++correctKeysNumber;
             } else if ("-client".equals(args[i])) {
                 isServer = false;
                 ++correctKeysNumber;
+            } else if ("-batch".equals(args[i]) && i + 1 < args.length) {
+                batchFileName = args[++i];
+            } else if ("-out".equals(args[i]) && i + 1 < args.length) {
+                resultsFileName = args[++i];
+            } else if ("-echo".equals(args[i])) {
+                isBatchEcho = true;
+            } else if ("-replay".equals(args[i]) && i + 1 < args.length) {
+                replayJournalDir = args[++i];
+            } else if ("-speed".equals(args[i]) && i + 1 < args.length) {
+                String speed = args[++i];
+
+                try {
+                    replaySpeed = REPLAY_ASAP_SPEED.equalsIgnoreCase(speed) ? 0 : Double.parseDouble(speed);
+                } catch (NumberFormatException exc) {
+                    log.log(Level.SEVERE, "Illegal replay speed: " + speed + "\n" + MAIN_ANNOTATION);
+                    return false;
+                }
+            } else {
+                log.log(Level.SEVERE, "Illegal command line key: " + args[i] + "\n" + MAIN_ANNOTATION);
+                return false;
             }
         }
 
@@ -140,9 +179,206 @@ public class MainCore {
             return false;
         }
 
+        if (!batchFileName.isEmpty() && resultsFileName.isEmpty()) {
+            resultsFileName = batchFileName + BATCH_RESULTS_SUFFIX;
+        }
+
         return true;
     }
 
+    /**
+     * Executes client in batch mode for commands file specified in command line
+     * @param cfgReader - configuration reader with server host name and port number
+     * @param tls - TLS context or null if connection isn't encrypted
+     */
+    private static void runBatch(ConfigReader cfgReader, TlsContext tls) {
+        BatchClient client = new BatchClient(cfgReader.getHostName(), cfgReader.getPortNumber());
+        client.setEcho(isBatchEcho);
+        client.setTls(tls);
+
+        try {
+            BatchClient.Summary summary = client.run(Paths.get(batchFileName), Paths.get(resultsFileName),
+                                                     new SimpleClientListener());
+            System.out.println(summary);
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "BatchClient error: unable to process commands file \"" + batchFileName +
+                    "\" or results file \"" + resultsFileName + "\"", exc);
+        } catch (InterruptedException exc) {
+            log.log(Level.SEVERE, "BatchClient error: batch execution is interrupted", exc);
+        }
+    }
+
+    /**
+     * Opens messages journal specified in configuration file
+     * @param cfgReader - configuration reader with journal parameters
+     * @return opened journal or null if journal could not be opened, so server is started without journaling
+     */
+    private static MessageJournal openJournal(ConfigReader cfgReader) {
+        try {
+            return new MessageJournal(Paths.get(cfgReader.getJournalDir()), cfgReader.getJournalSegmentSize(),
+                                      cfgReader.getJournalFsyncPolicy(), cfgReader.getJournalFsyncInterval());
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "MessageJournal error: unable to open journal in folder \"" +
+                    cfgReader.getJournalDir() + "\". Server is started without journal", exc);
+            return null;
+        }
+    }
+
+    /**
+     * Opens shared memory transport specified in configuration file
+     * @param cfgReader - configuration reader with shared memory parameters
+     * @return opened transport or null if handshake port could not be bound, so server works without shared memory
+     */
+    private static SharedMemoryTransport openSharedMemory(ConfigReader cfgReader) {
+        try {
+            return new SharedMemoryTransport(cfgReader.getShmPortNumber(), cfgReader.getShmRingSize(),
+                                             cfgReader.getShmWaitStrategy());
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "SharedMemoryTransport error: unable to listen handshake port = " +
+                    cfgReader.getShmPortNumber() + ". Server works without shared memory transport", exc);
+            return null;
+        }
+    }
+
+    /**
+     * Opens Unix domain socket specified in configuration file
+     * @param cfgReader - configuration reader with socket file path
+     * @return opened transport or null if socket file could not be bound, so server works without Unix domain
+     *         socket
+     */
+    private static UnixDomainTransport openUnixSocket(ConfigReader cfgReader) {
+        try {
+            return new UnixDomainTransport(cfgReader.getUnixSocketPath());
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "UnixDomainTransport error: unable to listen socket file \"" +
+                    cfgReader.getUnixSocketPath() + "\". Server works without Unix domain socket", exc);
+            return null;
+        }
+    }
+
+    /**
+     * Creates TLS context specified in configuration file
+     * @param cfgReader - configuration reader with key stores paths
+     * @return TLS context or null if key stores could not be loaded, so neither server nor client is started
+     */
+    static TlsContext openTls(ConfigReader cfgReader) {
+        try {
+            TlsContext tls = new TlsContext(cfgReader.getTlsKeyStore(), cfgReader.getTlsKeyStorePassword(),
+                                            cfgReader.getTlsTrustStore(), cfgReader.getTlsTrustStorePassword(),
+                                            cfgReader.getTlsProtocol());
+            tls.setSessionCache(cfgReader.getTlsSessionCacheSize(), cfgReader.getTlsSessionTimeout());
+
+            return tls;
+        } catch (IOException | GeneralSecurityException exc) {
+            log.log(Level.SEVERE, "TlsContext error: unable to load key store \"" + cfgReader.getTlsKeyStore() +
+                    "\" or trust store \"" + cfgReader.getTlsTrustStore() + "\"", exc);
+            return null;
+        }
+    }
+
+    /**
+     * Creates cluster node specified in configuration file
+     * @param cfgReader - configuration reader with cluster parameters
+     * @return cluster node which isn't started yet or null if seeds addresses are illegal
+     */
+    private static ClusterNode createClusterNode(ConfigReader cfgReader) {
+        try {
+            ClusterNode cluster = new ClusterNode(cfgReader.getClusterNodeName(), cfgReader.getClusterGossipPort(),
+                                                  ClusterNode.parseSeeds(cfgReader.getClusterSeeds()));
+            cluster.setTiming(cfgReader.getClusterGossipInterval(), cfgReader.getClusterFailureTimeout());
+
+            return cluster;
+        } catch (IllegalArgumentException exc) {
+            log.log(Level.SEVERE, "ClusterNode error: illegal seeds \"" + cfgReader.getClusterSeeds() + "\"", exc);
+            return null;
+        }
+    }
+
+    /**
+     * Creates server with connections resources specified in configuration file. Cluster node is created before
+     * other resources are opened, so nothing is left open if it fails. The rest resources failures are logged
+     * and server works without them
+     * @param cfgReader - reader of parsed server section
+     * @param tls - TLS context or null if connections aren't encrypted
+     * @return configured server which isn't started yet or null if cluster node could not be created
+     */
+    static Server createServer(ConfigReader cfgReader, TlsContext tls) {
+        ClusterNode cluster = null;
+
+        if (cfgReader.isClusterEnabled() && (cluster = createClusterNode(cfgReader)) == null) {
+            return null;
+        }
+
+        Server srv = Server.create(cfgReader, new AIServerListener());
+        srv.setTls(tls);
+        srv.setCluster(cluster);
+
+        if (cfgReader.getJournalDir() != null) {
+            srv.setJournal(openJournal(cfgReader));
+        }
+
+        if (cfgReader.getShmPortNumber() != 0) {
+            SharedMemoryTransport shm = openSharedMemory(cfgReader);
+
+            if (shm != null) {
+                srv.addTransport(shm);
+            }
+        }
+
+        if (cfgReader.getUnixSocketPath() != null) {
+            UnixDomainTransport unix = openUnixSocket(cfgReader);
+
+            if (unix != null) {
+                srv.addTransport(unix);
+            }
+        }
+
+        return srv;
+    }
+
+    /**
+     * Starts proxy specified in configuration file
+     * @param cfgReader - configuration reader with proxy parameters
+     */
+    private static void runProxy(ConfigReader cfgReader) {
+        if (!cfgReader.isProxyEnabled()) {
+            log.log(Level.SEVERE, "ProxyServer error: proxy section is absent in configuration file");
+            return;
+        }
+
+        try {
+            ProxyServer proxy = new ProxyServer(cfgReader.getProxyPortNumber(),
+                                                ClusterNode.parseSeeds(cfgReader.getProxyBackends()),
+                                                cfgReader.getProxyBalancing());
+            proxy.setHealthCheck(cfgReader.getProxyHealthCheckInterval(), cfgReader.getProxyHealthCheckTimeout());
+
+            ProxyServer.start(proxy);
+        } catch (IllegalArgumentException exc) {
+            log.log(Level.SEVERE, "ProxyServer error: illegal backends \"" + cfgReader.getProxyBackends() + "\"",
+                    exc);
+        }
+    }
+
+    /**
+     * Replays traffic recorded in journal specified in command line
+     * @param cfgReader - configuration reader with server host name and port number
+     * @param tls - TLS context or null if connections aren't encrypted
+     */
+    private static void runReplay(ConfigReader cfgReader, TlsContext tls) {
+        TrafficReplay replay = new TrafficReplay(cfgReader.getHostName(), cfgReader.getPortNumber());
+        replay.setSpeed(replaySpeed);
+        replay.setTls(tls);
+
+        try {
+            System.out.println(replay.run(Paths.get(replayJournalDir)));
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "TrafficReplay error: unable to read journal in folder \"" + replayJournalDir +
+                    "\"", exc);
+        } catch (InterruptedException exc) {
+            log.log(Level.SEVERE, "TrafficReplay error: replay is interrupted", exc);
+        }
+    }
+
     public static void main(String[] args) {
         // enabling logging
         if (!enableLogging()) {
@@ -155,23 +391,63 @@ public class MainCore {
                 return;
             }
 
-            log.info((isServer ? "Server" : "Client") + " will be started");
+            log.info((isProxy ? "Proxy" : isServer ? "Server" : "Client") + " will be started");
             log.info("Configuration file name: " + cfgFileName);
 
-            // reading specified *.xml - configuration file
+            // reading specified *.xml - configuration file, proxy section is read in server mode
             ConfigReader cfgReader = new ConfigReader();
 
-            cfgReader.parse(cfgFileName, isServer);
+            cfgReader.parse(cfgFileName, isServer || isProxy);
+
+            // relaying bytes proxy doesn't use TLS parameters
+            if (isProxy) {
+                logSystemInfo();
+                runProxy(cfgReader);
+                return;
+            }
+
+            // unencrypted connections aren't allowed if TLS is specified
+            TlsContext tls = null;
+
+            if (cfgReader.isTlsEnabled() && (tls = openTls(cfgReader)) == null) {
+                return;
+            }
 
             // starting server
             if (isServer) {
                 logSystemInfo();
-                Server.start(cfgReader.getPortNumber(), new AIServerListener());
+                Server srv = createServer(cfgReader, tls);
+
+                if (srv == null) {
+                    return;
+                }
+
+                Server.start(srv);
+            }
+            // or client in batch mode
+            else if (!batchFileName.isEmpty()) {
+                runBatch(cfgReader, tls);
+            }
+            // or client in traffic replay mode
+            else if (!replayJournalDir.isEmpty()) {
+                runReplay(cfgReader, tls);
             }
-            // or client
+            // or interactive client
             else {
                 Client client = new Client(cfgReader.getHostName(),
                         cfgReader.getPortNumber(), System.in, System.out);
+                client.setMaxMessageSize(cfgReader.getMaxMessageSize());
+                client.setResponseCache(cfgReader.getResponseCacheSize());
+                client.setTls(tls);
+
+                if (cfgReader.getShmPortNumber() != 0) {
+                    client.setSharedMemory(cfgReader.getShmPortNumber(), cfgReader.getShmWaitStrategy());
+                }
+
+                if (cfgReader.getUnixSocketPath() != null) {
+                    client.setUnixSocket(cfgReader.getUnixSocketPath());
+                }
+
                 client.start(new SimpleClientListener());
             }
         } catch(ParserConfigurationException exc) {
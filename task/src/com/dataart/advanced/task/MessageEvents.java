@@ -0,0 +1,353 @@
+package com.dataart.advanced.task;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Java Flight Recorder events of message lifecycle: link accepting, frame decoding, message dispatching by
+ * session, response encoding and flushing to connection. Event is recorded only if its duration exceeds
+ * threshold, JFR_THRESHOLD is taken by default and recording settings (e.g. "files/messages.jfc") change it,
+ * so recording of production server keeps slow requests only.
+ * Events are created only while some recording is running in the process, so without recording the only cost
+ * is a static flag reading and event classes aren't even loaded. Running recordings are tracked by Flight
+ * Recorder listener. Flight Recorder API requires Java 11 or Java 8 update 262 and later
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MessageEvents {
+    /**
+     * Time from connection accepting till its link thread start
+     */
+    @Name(JFR_EVENT_PREFIX + "Accept")
+    @Label("Link Accept")
+    @Description("Time from connection accepting till its link thread start")
+    @Category(JFR_CATEGORY)
+    @Threshold(JFR_THRESHOLD)
+    @StackTrace(false)
+    static class Accept extends Event {
+        @Label("Link ID")
+        int linkID;
+
+        @Label("Remote Address")
+        String remoteAddress;
+
+        /**
+         * Finishes event recording it if its duration exceeds threshold
+         * @param linkID - link number
+         * @param remoteAddress - peer's address
+         */
+        void finish(int linkID, String remoteAddress) {
+            end();
+
+            if (shouldCommit()) {
+                this.linkID = linkID;
+                this.remoteAddress = remoteAddress;
+
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Frame content reading and decoding after its header arrival
+     */
+    @Name(JFR_EVENT_PREFIX + "Decode")
+    @Label("Frame Decode")
+    @Description("Frame content reading and decoding after its header arrival")
+    @Category(JFR_CATEGORY)
+    @Threshold(JFR_THRESHOLD)
+    @StackTrace(false)
+    static class Decode extends Event {
+        @Label("Client ID")
+        int clientID;
+
+        @Label("Stream ID")
+        int streamID;
+
+        @Label("Frame Type")
+        byte frameType;
+
+        @Label("Size")
+        @DataAmount
+        int size;
+
+        /**
+         * Finishes event recording it if its duration exceeds threshold
+         * @param msg - decoded message
+         * @param size - message content size in bytes
+         */
+        void finish(MessageTraits msg, int size) {
+            end();
+
+            if (shouldCommit()) {
+                clientID = msg.getClientID();
+                streamID = msg.getStreamID();
+                frameType = msg.getType();
+                this.size = size;
+
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Message processing by session: listener's response forming, responses sending, history recording and
+     * logging. Listener's time is kept separately, so the rest of processing time is visible
+     */
+    @Name(JFR_EVENT_PREFIX + "Dispatch")
+    @Label("Message Dispatch")
+    @Description("Message processing by session including listener, responses sending, history and logging")
+    @Category(JFR_CATEGORY)
+    @Threshold(JFR_THRESHOLD)
+    @StackTrace(false)
+    static class Dispatch extends Event {
+        @Label("Client ID")
+        int clientID;
+
+        @Label("Stream ID")
+        int streamID;
+
+        @Label("Request Size")
+        @Description("Request length in characters")
+        int requestSize;
+
+        @Label("Response Size")
+        @Description("Response length in characters")
+        int responseSize;
+
+        @Label("Listener Time")
+        @Timespan
+        long listenerTime;
+
+        /**
+         * Finishes event recording it if its duration exceeds threshold
+         * @param clientID - client's ID of session
+         * @param streamID - session ID inside link
+         * @param requestSize - request length in characters
+         * @param responseSize - response length in characters
+         * @param listenerTime - time of listener's response forming in ns
+         */
+        void finish(int clientID, int streamID, int requestSize, int responseSize, long listenerTime) {
+            end();
+
+            if (shouldCommit()) {
+                this.clientID = clientID;
+                this.streamID = streamID;
+                this.requestSize = requestSize;
+                this.responseSize = responseSize;
+                this.listenerTime = listenerTime;
+
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Frame encoding and writing to buffered connection stream
+     */
+    @Name(JFR_EVENT_PREFIX + "Encode")
+    @Label("Frame Encode")
+    @Description("Frame encoding and writing to buffered connection stream")
+    @Category(JFR_CATEGORY)
+    @Threshold(JFR_THRESHOLD)
+    @StackTrace(false)
+    static class Encode extends Event {
+        @Label("Client ID")
+        int clientID;
+
+        @Label("Stream ID")
+        int streamID;
+
+        @Label("Frame Type")
+        byte frameType;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        /**
+         * Finishes event recording it if its duration exceeds threshold
+         * @param msg - encoded message
+         * @param size - message content size in bytes
+         */
+        void finish(MessageTraits msg, long size) {
+            end();
+
+            if (shouldCommit()) {
+                clientID = msg.getClientID();
+                streamID = msg.getStreamID();
+                frameType = msg.getType();
+                this.size = size;
+
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Flushing of buffered frame to connection
+     */
+    @Name(JFR_EVENT_PREFIX + "Flush")
+    @Label("Frame Flush")
+    @Description("Flushing of buffered frame to connection")
+    @Category(JFR_CATEGORY)
+    @Threshold(JFR_THRESHOLD)
+    @StackTrace(false)
+    static class Flush extends Event {
+        @Label("Client ID")
+        int clientID;
+
+        @Label("Stream ID")
+        int streamID;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+
+        /**
+         * Finishes event recording it if its duration exceeds threshold
+         * @param msg - flushed message
+         * @param size - message content size in bytes
+         */
+        void finish(MessageTraits msg, long size) {
+            end();
+
+            if (shouldCommit()) {
+                clientID = msg.getClientID();
+                streamID = msg.getStreamID();
+                this.size = size;
+
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Tracker of running recordings updating recording flag on their states changes
+     */
+    private static class RecordingsListener implements FlightRecorderListener {
+        // identifiers of running recordings, guarded by listener itself
+        private final Set<Long> running = new HashSet<>();
+
+        /**
+         * Takes into account recordings started before listener's registration, e.g. by JVM option
+         * @param recorder - initialized Flight Recorder
+         */
+        @Override
+        public void recorderInitialized(FlightRecorder recorder) {
+            recorder.getRecordings().forEach(this::recordingStateChanged);
+        }
+
+        @Override
+        public synchronized void recordingStateChanged(Recording recording) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                running.add(recording.getId());
+            } else {
+                running.remove(recording.getId());
+            }
+
+            isRecording = !running.isEmpty();
+        }
+    }
+
+    // flag notifying that some recording is running, so events could be recorded
+    private static volatile boolean isRecording = false;
+
+    static {
+        FlightRecorder.addListener(new RecordingsListener());
+    }
+
+    /**
+     * @return true if some recording is running, so events could be recorded
+     */
+    static boolean isRecording() {
+        return isRecording;
+    }
+
+    /**
+     * @return started link accept event or null if nothing is recorded
+     */
+    static Accept beginAccept() {
+        if (!isRecording()) {
+            return null;
+        }
+
+        Accept event = new Accept();
+        event.begin();
+
+        return event;
+    }
+
+    /**
+     * @return started frame decode event or null if nothing is recorded
+     */
+    static Decode beginDecode() {
+        if (!isRecording()) {
+            return null;
+        }
+
+        Decode event = new Decode();
+        event.begin();
+
+        return event;
+    }
+
+    /**
+     * @return started message dispatch event or null if nothing is recorded
+     */
+    static Dispatch beginDispatch() {
+        if (!isRecording()) {
+            return null;
+        }
+
+        Dispatch event = new Dispatch();
+        event.begin();
+
+        return event;
+    }
+
+    /**
+     * @return started frame encode event or null if nothing is recorded
+     */
+    static Encode beginEncode() {
+        if (!isRecording()) {
+            return null;
+        }
+
+        Encode event = new Encode();
+        event.begin();
+
+        return event;
+    }
+
+    /**
+     * @return started frame flush event or null if nothing is recorded
+     */
+    static Flush beginFlush() {
+        if (!isRecording()) {
+            return null;
+        }
+
+        Flush event = new Flush();
+        event.begin();
+
+        return event;
+    }
+}
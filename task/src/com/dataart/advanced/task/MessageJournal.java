@@ -0,0 +1,455 @@
+package com.dataart.advanced.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Binary append-only journal of messages exchanged between server and
+ * clients. Records are copied to memory-mapped segment files of fixed size,
+ * so appending doesn't perform system calls. When record doesn't fit to
+ * the current segment the journal rolls to the next segment file mapped
+ * in advance, and the thread rolling it maps the following one outside of
+ * lock. The rest of segment remains zero-filled that notifies its end for
+ * reader.
+ * Segment file format:
+ * - 4 bytes -> JOURNAL_MAGIC;
+ * - records one by one:
+ *   - 4 bytes -> whole record size including header;
+ *   - 8 bytes -> record moment in ns since epoch;
+ *   - 4 bytes -> client's ID;
+ *   - 4 bytes -> stream ID of logical session;
+ *   - 1 byte  -> direction (JOURNAL_INBOUND or JOURNAL_OUTBOUND);
+ *   - 1 byte  -> frame type;
+ *   - variable number of bytes -> message content in UTF-8.
+ * Durability is defined by fsync policy: segments are forced to disk after
+ * each record outside of lock, periodically by background thread or by OS
+ * only.
+ * Resume tokens of session control frames are masked, since segments
+ * outlive sessions and token allows to take over session.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MessageJournal implements Closeable {
+    /**
+     * Policy of forcing journal segments to disk
+     */
+    public enum FsyncPolicy {
+        NEVER,     // OS writes pages at its own discretion
+        INTERVAL,  // background thread forces segments periodically
+        ALWAYS;    // segment is forced after each record
+
+        /**
+         * @param name - policy name from configuration file, case insensitive
+         * @return policy with specified name
+         */
+        static FsyncPolicy parse(String name) {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    private final Path directory;       // folder of segment files
+    private final int segmentSize;      // segment file size in bytes
+    private final FsyncPolicy policy;   // policy of forcing segments to disk
+    private final long fsyncInterval;   // period of forcing segments by background thread in ms
+
+    private long segmentNumber;         // number of the current segment file, guarded by "this"
+    private MappedByteBuffer segment;   // the current segment content, guarded by "this"
+    private boolean isClosed = false;   // guarded by "this"
+
+    // segment following the current one or null if it isn't mapped yet, guarded by "this"
+    private MappedByteBuffer spare;
+    // flag notifying that spare segment is being mapped by thread rolled the journal, guarded by "this"
+    private boolean isSparePending = false;
+
+    // rolled segments waiting for forcing by background thread, guarded by "this"
+    private List<MappedByteBuffer> rolled = new ArrayList<>();
+
+    // encoder of messages content directly to segment, guarded by "this"
+    private final CharsetEncoder encoder = MESSAGE_CHARSET.newEncoder()
+                                                          .onMalformedInput(CodingErrorAction.REPLACE)
+                                                          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // base values for records moments calculation via monotonic clock
+    private final long baseTime = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final long baseNanoTime = System.nanoTime();
+
+    private Thread syncThread;          // background thread of INTERVAL policy
+
+    // journaling statistics
+    private final AtomicLong recordsNumber = new AtomicLong();
+    private final AtomicLong droppedNumber = new AtomicLong();
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(MessageJournal.class.getName());
+
+    /**
+     * Constructor opens journal in specified folder. Records are appended to new segment following
+     * the segments existing in folder
+     * @param directory - folder of segment files, created if absent
+     * @param segmentSize - segment file size in bytes
+     * @param policy - policy of forcing segments to disk
+     * @param fsyncInterval - period of forcing segments by background thread in ms for INTERVAL policy
+     * @throws IOException - if folder or segment file could not be created
+     */
+    public MessageJournal(Path directory, int segmentSize, FsyncPolicy policy, long fsyncInterval)
+            throws IOException {
+        if (segmentSize < JOURNAL_MAGIC_SZ + JOURNAL_RECORD_HEADER_SZ) {
+            throw new IllegalArgumentException("MessageJournal: segment size " + segmentSize + " is too small");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.policy = policy;
+        this.fsyncInterval = fsyncInterval;
+
+        Files.createDirectories(directory);
+
+        List<Path> existing = listSegments(directory);
+        segmentNumber = existing.isEmpty() ? 0 : parseSegmentNumber(existing.get(existing.size() - 1)) + 1;
+        segment = mapSegment(segmentNumber);
+        spare = mapSegment(segmentNumber + 1);
+
+        if (policy == FsyncPolicy.INTERVAL) {
+            syncThread = new Thread(this::syncSegments, JOURNAL_SYNC_THREAD_NAME);
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+    }
+
+    /**
+     * Appends message to journal. Record is dropped if journal is closed or message doesn't fit to segment
+     * @param direction - JOURNAL_INBOUND for client's messages or JOURNAL_OUTBOUND for server's ones
+     * @param clientID - client's ID assigned by server
+     * @param msg - received or sent message
+     */
+    void append(byte direction, int clientID, MessageTraits msg) {
+        long timestamp = baseTime + System.nanoTime() - baseNanoTime;
+
+        String message = maskToken(msg.getType(), msg.getMessage() != null ? msg.getMessage() : "");
+        // upper estimation of encoded content size allows to encode message directly to segment
+        long maxRecordSz = JOURNAL_RECORD_HEADER_SZ +
+                           (long) Math.ceil(message.length() * encoder.maxBytesPerChar());
+
+        MappedByteBuffer forced = null;     // segment forced after record for ALWAYS policy
+        long spareNumber = DEFAULT_SZ;      // number of spare segment mapped by this thread
+
+        synchronized (this) {
+            long number = segmentNumber;
+
+            if (isClosed || !reserve(maxRecordSz)) {
+                droppedNumber.incrementAndGet();
+                return;
+            }
+
+            // the journal is rolled and nobody maps spare segment yet
+            if (segmentNumber != number && spare == null && !isSparePending) {
+                isSparePending = true;
+                spareNumber = segmentNumber + 1;
+            }
+
+            // record size is written the last, so reader never meets partially written record
+            int start = segment.position();
+
+            segment.position(start + Integer.BYTES);
+            segment.putLong(timestamp)
+                   .putInt(clientID)
+                   .putInt(msg.getStreamID())
+                   .put(direction)
+                   .put(msg.getType());
+
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(message), segment, true);
+            encoder.flush(segment);
+
+            segment.putInt(start, segment.position() - start);
+
+            if (policy == FsyncPolicy.ALWAYS) {
+                forced = segment;
+            }
+        }
+
+        // disk writing and segment creation don't block appending of other sessions
+        if (forced != null) {
+            forced.force();
+        }
+
+        if (spareNumber != DEFAULT_SZ) {
+            mapSpare(spareNumber);
+        }
+
+        recordsNumber.incrementAndGet();
+    }
+
+    /**
+     * Maps spare segment outside of lock. Segment which isn't needed any more due to journal closing is deleted
+     * @param number - number of spare segment
+     */
+    private void mapSpare(long number) {
+        MappedByteBuffer mapped = null;
+
+        try {
+            mapped = mapSegment(number);
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "MessageJournal error: unable to create segment #" + number, exc);
+        }
+
+        synchronized (this) {
+            isSparePending = false;
+            notifyAll();
+
+            if (mapped == null || !isClosed) {
+                spare = mapped;
+                return;
+            }
+        }
+
+        deleteSegment(number);
+    }
+
+    /**
+     * Deletes unused spare segment
+     * @param number - segment number
+     */
+    private void deleteSegment(long number) {
+        try {
+            Files.deleteIfExists(directory.resolve(getSegmentName(number)));
+        } catch (IOException exc) {
+            log.log(Level.WARNING, "MessageJournal: unable to delete unused segment #" + number, exc);
+        }
+    }
+
+    /**
+     * @param type - frame type
+     * @param message - message content
+     * @return message content with resume token replaced by JOURNAL_TOKEN_MASK
+     */
+    private static String maskToken(byte type, String message) {
+        if (type == FRAME_SESSION) {
+            return JOURNAL_TOKEN_MASK;
+        }
+
+        if (type != FRAME_RESUME) {
+            return message;
+        }
+
+        // user name of resume request is kept for traffic replay
+        int separatorIndex = message.indexOf(RESUME_SEPARATOR);
+
+        return separatorIndex == -1 ? JOURNAL_TOKEN_MASK : JOURNAL_TOKEN_MASK + message.substring(separatorIndex);
+    }
+
+    /**
+     * Provides space for record in the current segment rolling to spare segment if necessary, guarded by "this".
+     * Spare segment being mapped by another thread is waited for, segment is mapped under lock only if spare
+     * one could not be created
+     * @param recordSz - maximal record size in bytes
+     * @return false if record doesn't fit to empty segment, the next segment could not be created or journal
+     *         is closed while waiting
+     */
+    private boolean reserve(long recordSz) {
+        if (recordSz > segmentSize - JOURNAL_MAGIC_SZ) {
+            return recordSz <= segment.remaining();
+        }
+
+        while (recordSz > segment.remaining()) {
+            if (isClosed) {
+                return false;
+            }
+
+            if (spare == null && isSparePending) {
+                try {
+                    wait();
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+
+                continue;
+            }
+
+            MappedByteBuffer next = spare;
+
+            if (next == null) {
+                try {
+                    next = mapSegment(segmentNumber + 1);
+                } catch (IOException exc) {
+                    log.log(Level.SEVERE, "MessageJournal error: unable to create segment #" + (segmentNumber + 1),
+                            exc);
+                    return false;
+                }
+            }
+
+            if (policy == FsyncPolicy.INTERVAL) {
+                rolled.add(segment);
+            }
+
+            segment = next;
+            spare = null;
+            ++segmentNumber;
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates and maps segment file with specified number
+     * @param number - segment number
+     * @return mapped segment content positioned after magic number
+     */
+    private MappedByteBuffer mapSegment(long number) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(getSegmentName(number)),
+                                                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            // mapping remains valid after channel closing
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            mapped.putInt(JOURNAL_MAGIC);
+
+            return mapped;
+        }
+    }
+
+    /**
+     * Background thread body for INTERVAL policy. Forces rolled and the current segments periodically
+     */
+    private void syncSegments() {
+        try {
+            while (true) {
+                TimeUnit.MILLISECONDS.sleep(fsyncInterval);
+
+                List<MappedByteBuffer> segments;
+                MappedByteBuffer current;
+
+                synchronized (this) {
+                    if (isClosed) {
+                        return;
+                    }
+
+                    segments = rolled;
+                    rolled = new ArrayList<>();
+                    current = segment;
+                }
+
+                // forcing is performed outside of lock, so appending isn't blocked by disk writing
+                segments.forEach(MappedByteBuffer::force);
+                current.force();
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param number - segment number
+     * @return segment file name ordered by number lexicographically
+     */
+    static String getSegmentName(long number) {
+        return String.format("%s%020d%s", JOURNAL_SEGMENT_PREFIX, number, JOURNAL_SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @param segmentFile - segment file path
+     * @return segment number from file name
+     */
+    private static long parseSegmentNumber(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+
+        return Long.parseLong(name.substring(JOURNAL_SEGMENT_PREFIX.length(),
+                                             name.length() - JOURNAL_SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @param directory - journal folder
+     * @return segment files of journal in records order
+     * @throws IOException - if folder could not be read
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                                                                    JOURNAL_SEGMENT_PREFIX + "*" +
+                                                                    JOURNAL_SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+
+        segments.sort(null);
+
+        return segments;
+    }
+
+    /**
+     * @return folder of segment files
+     */
+    public final Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return number of appended records
+     */
+    public final long getRecordsNumber() {
+        return recordsNumber.get();
+    }
+
+    /**
+     * @return number of records dropped due to closed journal or segments creation errors
+     */
+    public final long getDroppedNumber() {
+        return droppedNumber.get();
+    }
+
+    /**
+     * Forces all segments to disk except the policy NEVER and stops background thread.
+     * Records appended after closing are dropped
+     */
+    @Override
+    public void close() {
+        boolean isSpareMapped;
+
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+            isSpareMapped = spare != null;
+            spare = null;
+
+            notifyAll();
+        }
+
+        // spare segment being mapped is deleted by mapping thread
+        if (isSpareMapped) {
+            deleteSegment(segmentNumber + 1);
+        }
+
+        if (syncThread != null) {
+            syncThread.interrupt();
+        }
+
+        if (policy != FsyncPolicy.NEVER) {
+            rolled.forEach(MappedByteBuffer::force);
+            segment.force();
+        }
+
+        log.info(String.format("Message journal is closed: records = %d, dropped = %d, the last segment is %s",
+                 recordsNumber.get(), droppedNumber.get(), getSegmentName(segmentNumber)));
+    }
+}
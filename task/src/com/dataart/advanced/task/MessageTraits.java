@@ -1,28 +1,60 @@
 package com.dataart.advanced.task;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
+import static com.dataart.advanced.task.Info.CHUNK_SZ;
 import static com.dataart.advanced.task.Info.DEFAULT_ID;
 import static com.dataart.advanced.task.Info.DEFAULT_SZ;
+import static com.dataart.advanced.task.Info.FRAME_DATA;
+import static com.dataart.advanced.task.Info.FRAME_HEADER_SZ;
+import static com.dataart.advanced.task.Info.FRAME_MORE;
+import static com.dataart.advanced.task.Info.FRAME_TYPE_MASK;
+import static com.dataart.advanced.task.Info.MAX_MESSAGE_SZ;
+import static com.dataart.advanced.task.Info.MESSAGE_CHARSET;
+import static com.dataart.advanced.task.Info.PRIMARY_STREAM_ID;
 import static com.dataart.advanced.task.Info.SYMBOL_SUBSTITUTION;
 
 /**
  * Commands exchange protocol implementation.
  * The command format is:
- * - 4 bytes -> length of text message in bytes. Should be read first via
+ * - 4 bytes -> length of message chunk in bytes. Should be read first via
  *              "readInt()";
  * - 4 bytes -> client's ID assigned by server after connection;
- * - variable number of bytes -> message content.
- * Supports multi-line commands.
+ * - 4 bytes -> stream ID of logical session inside physical connection
+ *              (PRIMARY_STREAM_ID for single session connection);
+ * - 1 byte  -> frame type: user message (FRAME_DATA), session control
+ *              frame (FRAME_SESSION, FRAME_RESUME), keepalive frame
+ *              (FRAME_PING, FRAME_PONG) or responses cache frame
+ *              (FRAME_CACHE, FRAME_INVALIDATE). The high bit FRAME_MORE
+ *              notifies that message is continued by the next frame;
+ * - variable number of bytes -> message chunk content in UTF-8, not more
+ *              than CHUNK_SZ bytes.
+ * Long message is split to chunks sent contiguously one by one, so the
+ * receiver could consume it incrementally keeping only one chunk in memory
+ * by "receive" with sink stream, and the sender could pack it from source
+ * stream without loading. Server and clients don't stream messages, since
+ * their listeners, responses cache and journal process whole text message,
+ * so whole message assembled in memory is limited by maximal message size.
+ * Supports multi-line commands. Messages are exchanged via data streams over
+ * blocking sockets or via byte buffers for non-blocking channels.
  *
  * @author Sergey Sokhnyshev
  * Created on 01.07.16.
  */
 public class MessageTraits {
     private int clientID = DEFAULT_ID;  // client's identification number
+    private int streamID = PRIMARY_STREAM_ID;  // logical session ID inside connection
+    private byte type = FRAME_DATA;     // frame type
     private String message;             // message content
 
+    private int maxMessageSz = MAX_MESSAGE_SZ;  // maximal size of received message in bytes
+    private boolean isContinued = false;        // flag notifying if the last received chunk isn't final
+
+    private byte[] chunkBuffer;                 // buffer for incremental message reception
+    private ByteArrayOutputStream assembly;     // chunks of partially decoded message
+
     /**
      * Assigns client's identification number to message
      * @param clientID - client's identification number generated by server
@@ -31,6 +63,22 @@ public class MessageTraits {
         this.clientID = clientID;
     }
 
+    /**
+     * Assigns stream ID of logical session to message
+     * @param streamID - logical session ID inside physical connection
+     */
+    void setStreamID(int streamID) {
+        this.streamID = streamID;
+    }
+
+    /**
+     * Assigns maximal size of received message. Larger messages are rejected by exception
+     * @param maxMessageSz - maximal size of received message in bytes
+     */
+    void setMaxMessageSize(int maxMessageSz) {
+        this.maxMessageSz = maxMessageSz;
+    }
+
     /**
      * Assigns message content and replaces service symbols with its correct values
      * @param message - message content
@@ -57,6 +105,20 @@ public class MessageTraits {
         return clientID;
     }
 
+    /**
+     * @return stream ID of logical session stored in message
+     */
+    final int getStreamID() {
+        return streamID;
+    }
+
+    /**
+     * @return frame type stored in message
+     */
+    final byte getType() {
+        return type;
+    }
+
     /**
      * @return message content
      */
@@ -64,55 +126,394 @@ public class MessageTraits {
         return message;
     }
 
+    /**
+     * @return false if message is partially decoded from byte buffer and its next chunks are expected
+     */
+    final boolean isComplete() {
+        return assembly == null;
+    }
+
+    /**
+     * Packs chunk header to specified output stream
+     * @param dos - external output stream connected to socket in client/server
+     * @param chunkSz - chunk content size in bytes
+     * @param isContinued - flag notifying that chunk isn't final
+     */
+    private void sendHeader(DataOutputStream dos, int chunkSz, boolean isContinued) throws IOException {
+        dos.writeInt(chunkSz);
+        dos.writeInt(clientID);
+        dos.writeInt(streamID);
+        dos.writeByte(isContinued ? type | FRAME_MORE : type);
+    }
+
     /**
      * Packs message parameters to specified output stream
-     * @param oos - external output stream connected to socket in client/server
+     * @param dos - external output stream connected to socket in client/server
+     */
+    private void send(DataOutputStream dos) throws IOException {
+        MessageEvents.Encode encodeEvent = MessageEvents.beginEncode();
+
+        byte[] content = message.getBytes(MESSAGE_CHARSET);
+        int offset = 0;
+
+        do {
+            int chunkSz = Math.min(CHUNK_SZ, content.length - offset);
+
+            sendHeader(dos, chunkSz, offset + chunkSz < content.length);
+            dos.write(content, offset, chunkSz);
+
+            offset += chunkSz;
+        } while (offset < content.length);
+
+        if (encodeEvent != null) {
+            encodeEvent.finish(this, content.length);
+        }
+
+        flush(dos, content.length);
+    }
+
+    /**
+     * Flushes buffered frames to connection
+     * @param dos - external output stream connected to socket in client/server
+     * @param messageSz - size of flushed message content in bytes
      */
-    private void send(ObjectOutputStream oos) throws IOException {
-        oos.writeInt(message.length());
-        oos.writeInt(clientID);
-        oos.write(message.getBytes());
+    private void flush(DataOutputStream dos, long messageSz) throws IOException {
+        MessageEvents.Flush flushEvent = MessageEvents.beginFlush();
+
+        dos.flush();
 
-        oos.flush();
+        if (flushEvent != null) {
+            flushEvent.finish(this, messageSz);
+        }
     }
 
     /*
     Processes service symbols ('\\r', '\\n', etc) in specified message and packs message to output stream
     * @param message - message content
-    * @param oos - external output stream connected to socket in client/server
+    * @param dos - external output stream connected to socket in client/server
      */
-    void sendMessage(String message, ObjectOutputStream oos) throws IOException {
+    void sendMessage(String message, DataOutputStream dos) throws IOException {
+        sendMessage(FRAME_DATA, message, dos);
+    }
+
+    /**
+     * Processes service symbols in specified message and packs message of given frame type to output stream
+     * @param type - frame type (FRAME_DATA for user messages or session control frame type)
+     * @param message - message content
+     * @param dos - external output stream connected to socket in client/server
+     */
+    void sendMessage(byte type, String message, DataOutputStream dos) throws IOException {
+        this.type = type;
+
         setMessage(message);
-        send(oos);
+        send(dos);
+    }
+
+    /**
+     * Packs message content read from specified source to output stream by chunks without its loading
+     * to memory. Service symbols aren't processed
+     * @param type - frame type (FRAME_DATA for user messages or session control frame type)
+     * @param source - stream with message content
+     * @param dos - external output stream connected to socket in client/server
+     * @return size of sent message content in bytes
+     */
+    long sendMessage(byte type, InputStream source, DataOutputStream dos) throws IOException {
+        this.type = type;
+        message = null;
+
+        byte[] chunk = getChunkBuffer();
+        long messageSz = 0;
+        int chunkSz;
+
+        // the last chunk is shorter than buffer (could be empty)
+        do {
+            chunkSz = 0;
+
+            int readSz;
+            while (chunkSz < chunk.length && (readSz = source.read(chunk, chunkSz, chunk.length - chunkSz)) != -1) {
+                chunkSz += readSz;
+            }
+
+            sendHeader(dos, chunkSz, chunkSz == chunk.length);
+            dos.write(chunk, 0, chunkSz);
+
+            messageSz += chunkSz;
+        } while (chunkSz == chunk.length);
+
+        flush(dos, messageSz);
+
+        return messageSz;
+    }
+
+    /**
+     * Processes service symbols in specified message and packs message of given frame type to byte buffer
+     * for non-blocking channel writing
+     * @param type - frame type (FRAME_DATA for user messages or session control frame type)
+     * @param message - message content
+     * @return buffer ready for writing to channel
+     */
+    ByteBuffer encode(byte type, String message) {
+        this.type = type;
+        setMessage(message);
+
+        byte[] content = this.message.getBytes(MESSAGE_CHARSET);
+        int chunksNumber = Math.max(1, (content.length + CHUNK_SZ - 1) / CHUNK_SZ);
+
+        ByteBuffer frame = ByteBuffer.allocate(chunksNumber * FRAME_HEADER_SZ + content.length);
+        int offset = 0;
+
+        do {
+            int chunkSz = Math.min(CHUNK_SZ, content.length - offset);
+
+            frame.putInt(chunkSz)
+                 .putInt(clientID)
+                 .putInt(streamID)
+                 .put(offset + chunkSz < content.length ? (byte) (type | FRAME_MORE) : type)
+                 .put(content, offset, chunkSz);
+
+            offset += chunkSz;
+        } while (offset < content.length);
+
+        frame.flip();
+
+        return frame;
+    }
+
+    /**
+     * Returns whole frame size if its header is available in specified buffer
+     * @param buffer - buffer filled from non-blocking channel and ready for reading
+     * @return frame size including header or DEFAULT_SZ if header isn't received completely
+     */
+    static int getFrameSize(ByteBuffer buffer) {
+        return buffer.remaining() < FRAME_HEADER_SZ ? DEFAULT_SZ :
+                                                      FRAME_HEADER_SZ + buffer.getInt(buffer.position());
+    }
+
+    /**
+     * Extracts chunk from specified buffer if it contains whole frame. Message is assembled after its final
+     * chunk decoding that is notified by "isComplete()"
+     * @param buffer - buffer filled from non-blocking channel and ready for reading
+     * @return size of chunk content or DEFAULT_SZ if frame isn't received completely
+     * @throws IOException - if chunk or assembled message size exceeds its limits
+     */
+    int decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < FRAME_HEADER_SZ) {
+            return DEFAULT_SZ;
+        }
+
+        int chunkSz = verifyChunkSize(buffer.getInt(buffer.position()));
+
+        if (buffer.remaining() < FRAME_HEADER_SZ + chunkSz) {
+            return DEFAULT_SZ;
+        }
+
+        buffer.getInt();
+        clientID = buffer.getInt();
+        streamID = buffer.getInt();
+        setFrameType(buffer.get());
+
+        byte[] content = new byte[chunkSz];
+        buffer.get(content);
+
+        // single chunk message is decoded without assembly
+        if (assembly == null && !isContinued) {
+            verifyMessageSize(chunkSz);
+            message = new String(content, MESSAGE_CHARSET);
+            return chunkSz;
+        }
+
+        if (assembly == null) {
+            assembly = new ByteArrayOutputStream(2 * CHUNK_SZ);
+        }
+
+        verifyMessageSize((long) assembly.size() + chunkSz);
+        assembly.write(content);
+
+        if (!isContinued) {
+            message = new String(assembly.toByteArray(), MESSAGE_CHARSET);
+            assembly = null;
+        }
+
+        return chunkSz;
     }
 
     /**
      * Extracts message from specified input stream
-     * @param ois - external input stream connected to socket in client/server
-     * @return - size of text message content or DEFAULT_SZ in failure case
+     * @param dis - external input stream connected to socket in client/server
+     * @return - size of text message content or DEFAULT_SZ if stream ends before message
+     * @throws IOException - if chunk or message size exceeds its limits, message is truncated by stream end or
+     *                       stream reading fails
      */
-    int receive(ObjectInputStream ois) throws IOException {
-        int readSz;
+    int receive(DataInputStream dis) throws IOException {
+        int firstByte = dis.read();
+
+        if (firstByte < 0) {
+            return DEFAULT_SZ;
+        }
 
         try {
-            // getting message size
-            int messageSz = ois.readInt();
+            int chunkSz = receiveHeader(dis, firstByte);
+
+            // decoding is measured from header arrival, so waiting for peer's message isn't counted
+            MessageEvents.Decode decodeEvent = MessageEvents.beginDecode();
+            int messageSz = chunkSz;
+
+            // single chunk message is read without assembly
+            if (!isContinued) {
+                byte[] content = new byte[verifyMessageSize(chunkSz)];
+                dis.readFully(content);
 
-            clientID = ois.readInt();
+                message = new String(content, MESSAGE_CHARSET);
+            } else {
+                ByteArrayOutputStream content = new ByteArrayOutputStream(2 * CHUNK_SZ);
+                messageSz = receiveChunks(dis, chunkSz, content);
 
-            // getting message content from input stream
-            byte[] messageContent = new byte[messageSz];
+                message = new String(content.toByteArray(), MESSAGE_CHARSET);
+            }
 
-            if((readSz = ois.read(messageContent)) != messageSz) {
-                throw new IOException("MessageTraits.receive: mismatch of declared (" + messageSz + " bytes) " +
-                                      "and obtained (" + readSz + " bytes) sizes of message");
+            if (decodeEvent != null) {
+                decodeEvent.finish(this, messageSz);
             }
 
-            message = new String(messageContent);
+            return messageSz;
         } catch (EOFException exc) {
+            throw truncated(exc);
+        }
+    }
+
+    /**
+     * Extracts message from specified input stream writing its chunks to given sink as they are received.
+     * Only one chunk of message is kept in memory
+     * @param dis - external input stream connected to socket in client/server
+     * @param sink - stream consuming message content
+     * @return - size of message content or DEFAULT_SZ if stream ends before message
+     * @throws IOException - if chunk or message size exceeds its limits, message is truncated by stream end or
+     *                       stream reading/writing fails
+     */
+    int receive(DataInputStream dis, OutputStream sink) throws IOException {
+        message = null;
+
+        int firstByte = dis.read();
+
+        if (firstByte < 0) {
             return DEFAULT_SZ;
         }
 
-        return readSz;
+        try {
+            return receiveChunks(dis, receiveHeader(dis, firstByte), sink);
+        } catch (EOFException exc) {
+            throw truncated(exc);
+        }
+    }
+
+    /**
+     * @param exc - stream end inside header, chunk or continuation of message
+     * @return exception notifying that message is truncated
+     */
+    private static IOException truncated(EOFException exc) {
+        return new IOException("MessageTraits.receive: message is truncated by stream end", exc);
+    }
+
+    /**
+     * Reads message chunks starting from chunk with already read header
+     * @param dis - external input stream connected to socket in client/server
+     * @param chunkSz - size of the first chunk content
+     * @param sink - stream consuming message content
+     * @return size of message content
+     */
+    private int receiveChunks(DataInputStream dis, int chunkSz, OutputStream sink) throws IOException {
+        byte[] chunk = getChunkBuffer();
+        int messageStreamID = streamID;
+        int messageSz = 0;
+
+        while (true) {
+            messageSz = verifyMessageSize((long) messageSz + chunkSz);
+
+            dis.readFully(chunk, 0, chunkSz);
+            sink.write(chunk, 0, chunkSz);
+
+            if (!isContinued) {
+                return messageSz;
+            }
+
+            chunkSz = receiveHeader(dis);
+
+            if (streamID != messageStreamID) {
+                throw new IOException("MessageTraits.receive: chunks of message from stream #" + messageStreamID +
+                                      " are interleaved with stream #" + streamID);
+            }
+        }
+    }
+
+    /**
+     * Reads chunk header from specified input stream
+     * @param dis - external input stream connected to socket in client/server
+     * @return size of chunk content
+     */
+    private int receiveHeader(DataInputStream dis) throws IOException {
+        return receiveHeader(dis, dis.readUnsignedByte());
+    }
+
+    /**
+     * Reads the rest of chunk header from specified input stream
+     * @param dis - external input stream connected to socket in client/server
+     * @param firstByte - already read the first byte of header
+     * @return size of chunk content
+     */
+    private int receiveHeader(DataInputStream dis, int firstByte) throws IOException {
+        int chunkSz = verifyChunkSize(firstByte << 24 | dis.readUnsignedByte() << 16 | dis.readUnsignedShort());
+
+        clientID = dis.readInt();
+        streamID = dis.readInt();
+        setFrameType(dis.readByte());
+
+        return chunkSz;
+    }
+
+    /**
+     * Splits received frame type byte to frame type and continuation flag
+     * @param frameType - frame type byte with continuation flag
+     */
+    private void setFrameType(byte frameType) {
+        type = (byte) (frameType & FRAME_TYPE_MASK);
+        isContinued = (frameType & FRAME_MORE) != 0;
+    }
+
+    /**
+     * @return buffer for single chunk content
+     */
+    private byte[] getChunkBuffer() {
+        if (chunkBuffer == null) {
+            chunkBuffer = new byte[CHUNK_SZ];
+        }
+
+        return chunkBuffer;
+    }
+
+    /**
+     * @param chunkSz - chunk size declared by peer
+     * @return verified chunk size
+     * @throws IOException - if chunk size is negative or exceeds CHUNK_SZ
+     */
+    private static int verifyChunkSize(int chunkSz) throws IOException {
+        if (chunkSz < 0 || chunkSz > CHUNK_SZ) {
+            throw new IOException("MessageTraits: illegal chunk size (" + chunkSz + " bytes), maximal size is " +
+                                  CHUNK_SZ + " bytes");
+        }
+
+        return chunkSz;
+    }
+
+    /**
+     * @param messageSz - size of received message part
+     * @return verified message size
+     * @throws IOException - if message size exceeds its limit
+     */
+    private int verifyMessageSize(long messageSz) throws IOException {
+        if (messageSz > maxMessageSz) {
+            throw new IOException("MessageTraits: message size exceeds limit of " + maxMessageSz + " bytes");
+        }
+
+        return (int) messageSz;
     }
 }
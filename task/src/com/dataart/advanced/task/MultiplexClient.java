@@ -0,0 +1,458 @@
+package com.dataart.advanced.task;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Client hosting multiple logical user sessions over single connection with
+ * server. Each session has its own user name and client's ID assigned by
+ * server and is distinguished by stream ID in messages.
+ * Frames of different sessions are sent in round-robin order (one frame per
+ * session in turn) so the session with long commands queue doesn't delay
+ * others. Per-session flow control limits number of unanswered messages by
+ * window size, which can't exceed server's window STREAM_WINDOW: server
+ * rejects messages above it.
+ * Multiplexed sessions can't be resumed: sessions are lost with connection
+ * and resume tokens issued by server aren't kept.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MultiplexClient implements Closeable {
+    /**
+     * Logical user session inside multiplexed connection
+     */
+    public class Session {
+        private final int streamID;           // logical session ID
+        private final ClientListener listener; // processes server messages
+        private final OutputStream outStream;  // external stream for server responses output
+
+        // messages waiting for sending, guarded by "lock"
+        private final Queue<String> outgoing = new ArrayDeque<>();
+        private int inFlight = 0;       // sent but unanswered messages number, guarded by "lock"
+        private boolean isQuitQueued = false;
+
+        private volatile int clientID = DEFAULT_ID;  // client's ID assigned by server
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        /**
+         * Constructor creates session and queues user name as its first message
+         * @param streamID - logical session ID
+         * @param userName - user name of session
+         * @param listener - processes server messages according to predefined method
+         * @param outStream - external stream for server responses output
+         */
+        private Session(int streamID, String userName, ClientListener listener, OutputStream outStream) {
+            this.streamID = streamID;
+            this.listener = listener;
+            this.outStream = outStream;
+
+            outgoing.add(userName);
+        }
+
+        /**
+         * Queues message for sending to server. Doesn't wait for response
+         * @param msg - client's message
+         */
+        public void send(String msg) {
+            lock.lock();
+
+            try {
+                if (isQuitQueued) {
+                    throw new IllegalStateException("MultiplexClient.Session: session #" + streamID +
+                                                    " is already finished");
+                }
+
+                outgoing.add(msg);
+                isQuitQueued = QUIT_CMD.equals(msg);
+
+                sendable.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Finishes session by "quit" command
+         */
+        public void quit() {
+            send(QUIT_CMD);
+        }
+
+        /**
+         * Waits until server answers on "quit" command or connection is lost
+         * @param timeout - maximal waiting time
+         * @param unit - time unit of timeout
+         * @return true if session is finished
+         * @throws InterruptedException - if waiting thread is interrupted
+         */
+        public boolean awaitFinish(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        /**
+         * @return client's ID assigned by server or DEFAULT_ID if session isn't established yet
+         */
+        public final int getClientID() {
+            return clientID;
+        }
+
+        /**
+         * @return true if message could be sent without flow control window overflow, guarded by "lock"
+         */
+        private boolean isSendable() {
+            return !outgoing.isEmpty() && inFlight < window;
+        }
+
+        /**
+         * Outputs server response processed by listener and returns flow control credit
+         * @param recMsg - contains received message from server side
+         * @throws IOException - if some problems occur on writing processed server message to output stream
+         */
+        private void onReply(MessageTraits recMsg) throws IOException {
+            clientID = recMsg.getClientID();
+
+            outStream.write(listener.onProcess(recMsg.getMessage()).getBytes());
+            outStream.write('\n');
+
+            lock.lock();
+
+            try {
+                --inFlight;
+
+                if (isQuitQueued && inFlight == 0 && outgoing.isEmpty()) {
+                    finish();
+                } else {
+                    sendable.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Removes session from connection and notifies waiting threads, guarded by "lock"
+         */
+        private void finish() {
+            sessions.remove(streamID);
+            schedule.remove(this);
+
+            finished.countDown();
+        }
+    }
+
+    private final int portNumber;        // server port number
+    private final String hostName;       // host name
+
+    private final int window;            // maximal number of unanswered messages per session
+
+    private Endpoint endpoint;
+    private TlsContext tls;              // TLS parameters or null if connection isn't encrypted
+    private LoopbackTransport loopback;  // in-JVM transport or null for TCP connection
+    private int shmPortNumber = 0;       // handshake port of shared memory transport or 0 for TCP connection
+    private SharedMemoryTransport.WaitStrategy shmWaitStrategy;
+    private String unixSocketPath;       // socket file of Unix domain socket or null for TCP connection
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    // sessions by stream ID
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+
+    // sessions in round-robin sending order, guarded by "lock"
+    private final List<Session> schedule = new ArrayList<>();
+    private int scheduleIndex = 0;       // position of the next session in round-robin order
+    private int nextStreamID = PRIMARY_STREAM_ID + 1;
+
+    private volatile boolean isClosed = false;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition sendable = lock.newCondition();
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(MultiplexClient.class.getName());
+
+    /**
+     * Constructor creates multiplexing client with default flow control window
+     *
+     * @param hostName - host name of server placement
+     * @param portNumber - port number on which server is available for connection
+     */
+    public MultiplexClient(String hostName, int portNumber) {
+        this(hostName, portNumber, STREAM_WINDOW);
+    }
+
+    /**
+     * Constructor creates multiplexing client
+     *
+     * @param hostName - host name of server placement
+     * @param portNumber - port number on which server is available for connection
+     * @param window - maximal number of unanswered messages per session
+     */
+    public MultiplexClient(String hostName, int portNumber, int window) {
+        if (window <= 0 || window > STREAM_WINDOW) {
+            throw new IllegalArgumentException("MultiplexClient: window " + window + " is out of range [1, " +
+                                               STREAM_WINDOW + "]");
+        }
+
+        this.hostName = hostName;
+        this.portNumber = portNumber;
+        this.window = window;
+    }
+
+    /**
+     * Assigns TLS parameters, so connection with server is encrypted. Should be invoked before "connect" method
+     * @param tls - TLS context with trusted certificates
+     */
+    public void setTls(TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Assigns in-JVM loopback transport, so client connects to server of the same process without sockets.
+     * Should be invoked before "connect" method
+     * @param loopback - transport of started server
+     */
+    public void setLoopback(LoopbackTransport loopback) {
+        this.loopback = loopback;
+    }
+
+    /**
+     * Assigns shared memory transport, so client connects to server placed on the same host through memory
+     * mapped rings. Should be invoked before "connect" method
+     * @param handshakePort - handshake port number of server's shared memory transport
+     * @param wait - strategy of client's threads waiting for rings
+     */
+    public void setSharedMemory(int handshakePort, SharedMemoryTransport.WaitStrategy wait) {
+        this.shmPortNumber = handshakePort;
+        this.shmWaitStrategy = wait;
+    }
+
+    /**
+     * Assigns Unix domain socket, so client connects to server placed on the same host without TCP stack.
+     * Should be invoked before "connect" method
+     * @param path - socket file path of server
+     */
+    public void setUnixSocket(String path) {
+        this.unixSocketPath = path;
+    }
+
+    /**
+     * Connects to server and starts frames sending and reception threads
+     * @throws IOException - if connection with server fails
+     */
+    public void connect() throws IOException {
+        if (loopback != null) {
+            endpoint = loopback.connect();
+        } else if (shmPortNumber != 0) {
+            endpoint = SharedMemoryTransport.connect(hostName, shmPortNumber, shmWaitStrategy);
+        } else if (unixSocketPath != null) {
+            endpoint = UnixDomainTransport.connect(unixSocketPath);
+        } else {
+            endpoint = new SocketEndpoint(new Socket(hostName, portNumber));
+        }
+
+        if (tls != null) {
+            // handshake is finished before writing and reading threads start
+            TlsStreams secured = endpoint.secure(tls, true);
+            secured.handshake();
+
+            in = new DataInputStream(new BufferedInputStream(secured.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(secured.getOutputStream()));
+        } else {
+            in = new DataInputStream(new BufferedInputStream(endpoint.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(endpoint.getOutputStream()));
+        }
+
+        new Thread(this::writeFrames, MUX_WRITER_THREAD_NAME).start();
+        new Thread(this::readFrames, MUX_READER_THREAD_NAME).start();
+    }
+
+    /**
+     * Opens new logical session. User name is sent to server as the first session message
+     * @param userName - user name of session
+     * @param listener - processes server messages according to predefined method
+     * @param outStream - external stream for server responses output
+     * @return created session
+     */
+    public Session openSession(String userName, ClientListener listener, OutputStream outStream) {
+        lock.lock();
+
+        try {
+            if (sessions.size() >= MAX_STREAMS_NUMBER) {
+                throw new IllegalStateException("MultiplexClient: sessions number limit (" + MAX_STREAMS_NUMBER +
+                                                ") is exceeded");
+            }
+
+            Session session = new Session(nextStreamID++, userName, listener, outStream);
+
+            sessions.put(session.streamID, session);
+            schedule.add(session);
+
+            sendable.signal();
+
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of active logical sessions
+     */
+    public final int getSessionsNumber() {
+        return sessions.size();
+    }
+
+    /**
+     * Chooses the next session with sendable message in round-robin order waiting for it if necessary
+     * @return session which message should be sent, guarded by "lock"
+     * @throws InterruptedException - if waiting thread is interrupted
+     */
+    private Session nextSendable() throws InterruptedException {
+        while (!isClosed) {
+            for (int i = 0; i < schedule.size(); ++i) {
+                int index = (scheduleIndex + i) % schedule.size();
+                Session session = schedule.get(index);
+
+                if (session.isSendable()) {
+                    scheduleIndex = index + 1;
+                    return session;
+                }
+            }
+
+            sendable.await();
+        }
+
+        return null;
+    }
+
+    /**
+     * Frames sending thread body. Sends one message per session in turn
+     */
+    private void writeFrames() {
+        MessageTraits sentMsg = new MessageTraits();
+
+        try {
+            while (true) {
+                Session session;
+                String msg;
+
+                lock.lock();
+
+                try {
+                    if ((session = nextSendable()) == null) {
+                        return;
+                    }
+
+                    msg = session.outgoing.poll();
+                    ++session.inFlight;
+                } finally {
+                    lock.unlock();
+                }
+
+                sentMsg.setStreamID(session.streamID);
+                sentMsg.setClientID(session.clientID);
+
+                // pongs are sent by reading thread
+                synchronized (out) {
+                    sentMsg.sendMessage(msg, out);
+                }
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        } catch (IOException exc) {
+            if (!isClosed) {
+                log.log(Level.SEVERE, "MultiplexClient error: unable to send message to host = \"" + hostName +
+                        "\" port = " + portNumber, exc);
+                close();
+            }
+        }
+    }
+
+    /**
+     * Frames reception thread body. Dispatches server messages to sessions by stream ID
+     */
+    private void readFrames() {
+        MessageTraits recMsg = new MessageTraits();
+        MessageTraits pongMsg = new MessageTraits();
+
+        try {
+            while (recMsg.receive(in) != DEFAULT_SZ) {
+                // keepalive frames belong to connection, not to session
+                if (recMsg.getType() == FRAME_PING) {
+                    synchronized (out) {
+                        pongMsg.sendMessage(FRAME_PONG, recMsg.getMessage(), out);
+                    }
+
+                    continue;
+                } else if (recMsg.getType() == FRAME_PONG) {
+                    continue;
+                }
+
+                Session session = sessions.get(recMsg.getStreamID());
+
+                if (session == null) {
+                    log.warning("MultiplexClient: message for unknown session #" + recMsg.getStreamID() +
+                                " is ignored");
+                } else if (recMsg.getType() == FRAME_SESSION) {
+                    // resume token is ignored, since multiplexed sessions aren't resumed
+                    session.clientID = recMsg.getClientID();
+                } else {
+                    session.onReply(recMsg);
+                }
+            }
+        } catch (IOException exc) {
+            if (!isClosed) {
+                log.log(Level.SEVERE, "MultiplexClient error: unable to receive message from host = \"" + hostName +
+                        "\" port = " + portNumber, exc);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Closes connection with server finishing all sessions
+     */
+    @Override
+    public void close() {
+        lock.lock();
+
+        try {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+
+            new ArrayList<>(schedule).forEach(Session::finish);
+            sendable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            if (endpoint != null) {
+                endpoint.close();
+            }
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "MultiplexClient error: unable to close connection", exc);
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package com.dataart.advanced.task;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * L4 proxy spreading client connections over several servers (backends).
+ * Single selector thread accepts clients, connects them to chosen backends and relays bytes of both directions
+ * without protocol processing. Data are moved between channels through direct buffers, so relayed content isn't
+ * copied to heap. Backend is chosen by the least active connections or by consistent hashing of user name
+ * introduced by the first client's frame, so the same user reaches the same backend while it's healthy.
+ * Backends are periodically checked by connection attempts in separate thread, unreachable backend is skipped
+ * until it becomes reachable again.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ProxyServer implements Runnable {
+    /**
+     * Policy of backend choice for new client connection
+     */
+    public enum Balancing {
+        LEAST_CONNECTIONS,  // backend with the least active relayed connections
+        USER_HASH;          // consistent hashing of user name from the first frame
+
+        /**
+         * @param name - policy name from configuration file, case insensitive
+         * @return policy with specified name
+         */
+        static Balancing parse(String name) {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    /**
+     * Backend server with its health state and relayed connections counters
+     */
+    static class Backend {
+        private final InetSocketAddress address;
+
+        private volatile boolean isHealthy = true;  // changed by health checks and failed connections
+
+        private int connectionsNumber = 0;   // active relays, accessed only from proxy thread
+        private long relaysNumber = 0;       // all relays, accessed only from proxy thread
+
+        Backend(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Changes health state logging its transitions
+         * @param isHealthy - true if backend accepts connections
+         */
+        synchronized void setHealthy(boolean isHealthy) {
+            if (this.isHealthy != isHealthy) {
+                this.isHealthy = isHealthy;
+                log.log(isHealthy ? Level.INFO : Level.WARNING,
+                        String.format("Proxy backend %s is %s", address, isHealthy ? "up" : "down"));
+            }
+        }
+    }
+
+    private volatile boolean isStop = false;  // flag notifying of proxy stop
+
+    private final int portNumber;            // port listening for clients
+    private final List<Backend> backends = new ArrayList<>();
+    private final Balancing balancing;
+
+    // consistent hashing ring of backends virtual nodes
+    private final TreeMap<Integer, Backend> ring = new TreeMap<>();
+
+    private long healthCheckInterval = PROXY_HEALTH_INTERVAL;  // in ms
+    private int healthCheckTimeout = PROXY_HEALTH_TIMEOUT;     // in ms
+
+    private int nextBackend = 0;   // start of least connections search rotating ties, proxy thread only
+
+    // relayed bytes counters accessed only from proxy thread
+    private long upstreamBytes = 0;     // from clients to backends
+    private long downstreamBytes = 0;   // from backends to clients
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(ProxyServer.class.getName());
+
+    /**
+     * Constructor for proxy instance creation
+     * @param portNumber - port number listening by proxy for client connection
+     * @param backends - addresses of servers receiving relayed connections
+     * @param balancing - policy of backend choice
+     */
+    public ProxyServer(int portNumber, List<InetSocketAddress> backends, Balancing balancing) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("ProxyServer: backends list is empty");
+        }
+
+        this.portNumber = portNumber;
+        this.balancing = balancing;
+
+        for (InetSocketAddress address : backends) {
+            Backend backend = new Backend(address);
+            this.backends.add(backend);
+
+            for (int i = 0; i < PROXY_VIRTUAL_NODES; ++i) {
+                ring.put(hash(address.getHostString() + ":" + address.getPort() + "#" + i), backend);
+            }
+        }
+    }
+
+    /**
+     * Assigns backends health checks timing. Should be invoked before "run" method
+     * @param interval - period of health checks in ms
+     * @param timeout - connection timeout of single health check in ms
+     */
+    public void setHealthCheck(long interval, int timeout) {
+        healthCheckInterval = interval;
+        healthCheckTimeout = timeout;
+    }
+
+    /**
+     * Disables proxy closing all relayed connections
+     */
+    public void stop() {
+        isStop = true;
+    }
+
+    /**
+     * Starts preliminarily configured proxy with termination ability by
+     * command "stop" entered from keyboard
+     * @param proxy - proxy instance
+     */
+    public static void start(ProxyServer proxy) {
+        new Thread(proxy, PROXY_THREAD_NAME).start();
+
+        log.info(String.format("Type \"%s\" for proxy work termination", SERVER_STOP_CMD));
+
+        try (ConsoleIO cmdIn = new ConsoleIO()) {
+            String stopCmd;
+            while ((stopCmd = cmdIn.readLine()) != null) {
+                if (SERVER_STOP_CMD.compareToIgnoreCase(stopCmd) == 0) {
+                    break;
+                }
+            }
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "ProxyServer error: Problems while waiting proxy stop command input", exc);
+        } finally {
+            proxy.stop();
+        }
+    }
+
+    /**
+     * Spreads hash codes of similar strings over the whole ring (FNV-1a with final avalanche)
+     * @param key - backend's virtual node or user name
+     * @return position on consistent hashing ring
+     */
+    static int hash(String key) {
+        int h = 0x811C9DC5;
+
+        for (byte b : key.getBytes(MESSAGE_CHARSET)) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Chooses healthy backend for new connection
+     * @param userName - user name for consistent hashing or null for the least connections choice
+     * @return chosen backend or null if all backends are down
+     */
+    private Backend choose(String userName) {
+        if (userName != null) {
+            int position = hash(userName);
+
+            // the nearest healthy virtual node clockwise, so users of failed backend are spread over the others
+            for (Backend backend : ring.tailMap(position).values()) {
+                if (backend.isHealthy) {
+                    return backend;
+                }
+            }
+
+            for (Backend backend : ring.headMap(position).values()) {
+                if (backend.isHealthy) {
+                    return backend;
+                }
+            }
+
+            return null;
+        }
+
+        Backend chosen = null;
+
+        for (int i = 0; i < backends.size(); ++i) {
+            Backend backend = backends.get((nextBackend + i) % backends.size());
+
+            if (backend.isHealthy && (chosen == null || backend.connectionsNumber < chosen.connectionsNumber)) {
+                chosen = backend;
+            }
+        }
+
+        nextBackend = (nextBackend + 1) % backends.size();
+
+        return chosen;
+    }
+
+    /**
+     * Thread function for proxy execution in separate thread
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        Thread healthThread = new Thread(this::checkHealth, PROXY_HEALTH_THREAD_NAME);
+        healthThread.setDaemon(true);
+
+        try (Selector selector = Selector.open();
+             ServerSocketChannel srvChannel = ServerSocketChannel.open()) {
+            srvChannel.bind(new InetSocketAddress(portNumber));
+            srvChannel.configureBlocking(false);
+            srvChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+            healthThread.start();
+
+            log.info(String.format("Proxy is successfully started on port %d, balancing = %s, backends: %s",
+                     portNumber, balancing, backends.stream().map(b -> b.address).collect(Collectors.toList())));
+
+            try {
+                while (!isStop) {
+                    // timeout gives possibility of proxy stop
+                    selector.select(SERVER_SOCKET_TIMEOUT);
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        if (key.isValid() && key.isAcceptable()) {
+                            accept(srvChannel, selector);
+                        } else if (key.isValid()) {
+                            ((Relay) key.attachment()).handle(key);
+                        }
+                    }
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() != null) {
+                        ((Relay) key.attachment()).close();
+                    }
+                }
+
+                healthThread.interrupt();
+
+                for (Backend backend : backends) {
+                    log.info(String.format("Proxy backend %s: relayed connections = %d, healthy = %b",
+                             backend.address, backend.relaysNumber, backend.isHealthy));
+                }
+
+                log.info(String.format("Proxy relayed bytes: from clients = %d, to clients = %d", upstreamBytes,
+                         downstreamBytes));
+            }
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "ProxyServer error: Problems while listening on port = " + portNumber, exc);
+        }
+    }
+
+    /**
+     * Accepts all pending client connections
+     * @param srvChannel - listening channel
+     * @param selector - proxy's selector
+     */
+    private void accept(ServerSocketChannel srvChannel, Selector selector) {
+        SocketChannel client;
+
+        try {
+            while ((client = srvChannel.accept()) != null) {
+                Relay relay = new Relay(client, selector);
+
+                try {
+                    relay.start();
+                } catch (IOException exc) {
+                    log.log(Level.SEVERE, "ProxyServer error: unable to start relay of " + relay.describe(), exc);
+                    relay.close();
+                }
+            }
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "ProxyServer error: unable to accept client connection", exc);
+        }
+    }
+
+    /**
+     * Body of backends health checks executed in separate thread till proxy stop
+     */
+    private void checkHealth() {
+        while (!isStop) {
+            for (Backend backend : backends) {
+                boolean isReachable;
+
+                try (Socket socket = new Socket()) {
+                    socket.connect(backend.address, healthCheckTimeout);
+                    isReachable = true;
+                } catch (IOException exc) {
+                    isReachable = false;
+                }
+
+                backend.setHealthy(isReachable);
+            }
+
+            try {
+                Thread.sleep(healthCheckInterval);
+            } catch (InterruptedException exc) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Relayed connection: client's channel, backend's channel and buffer of each direction.
+     * Buffers are kept in filling mode, so buffer position is the size of data waiting for sending.
+     * Accessed only from proxy thread
+     */
+    private class Relay {
+        private final SocketChannel client;
+        private final SelectionKey clientKey;
+        private final Selector selector;
+
+        private SocketChannel server;       // backend's channel or null till backend choice
+        private SelectionKey serverKey;
+        private Backend backend;
+        private boolean isConnected = false;
+        private int connectAttempts = 0;
+
+        private String userName;            // user name of consistent hashing or null
+
+        private final ByteBuffer upstream = ByteBuffer.allocateDirect(PROXY_BUFFER_SZ);    // client -> backend
+        private final ByteBuffer downstream = ByteBuffer.allocateDirect(PROXY_BUFFER_SZ);  // backend -> client
+
+        // end of stream is received from client/backend and forwarded to the opposite side
+        private boolean isUpstreamEnd = false;
+        private boolean isUpstreamShut = false;
+        private boolean isDownstreamEnd = false;
+        private boolean isDownstreamShut = false;
+
+        private boolean isClosed = false;
+
+        Relay(SocketChannel client, Selector selector) throws IOException {
+            this.client = client;
+            this.selector = selector;
+
+            client.configureBlocking(false);
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            clientKey = client.register(selector, SelectionKey.OP_READ, this);
+        }
+
+        /**
+         * Connects client to backend immediately or waits for the first frame with user name
+         */
+        void start() throws IOException {
+            if (balancing == Balancing.LEAST_CONNECTIONS) {
+                connect();
+            }
+        }
+
+        /**
+         * @return client's and backend's addresses for logging
+         */
+        String describe() {
+            return "client " + client.socket().getRemoteSocketAddress() +
+                   (backend != null ? " to backend " + backend.address : "");
+        }
+
+        /**
+         * Opens non-blocking connection to chosen backend or closes relay if all backends are down
+         */
+        private void connect() throws IOException {
+            if (++connectAttempts > backends.size() || (backend = choose(userName)) == null) {
+                log.warning("Proxy: no healthy backend for " + describe());
+                close();
+                return;
+            }
+
+            ++backend.connectionsNumber;
+            ++backend.relaysNumber;
+
+            server = SocketChannel.open();
+            server.configureBlocking(false);
+            server.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            isConnected = server.connect(backend.address);
+            serverKey = server.register(selector, isConnected ? 0 : SelectionKey.OP_CONNECT, this);
+        }
+
+        /**
+         * Completes backend connection, unreachable backend is marked down and the next one is tried
+         */
+        private void finishConnect() throws IOException {
+            try {
+                isConnected = server.finishConnect();
+            } catch (IOException exc) {
+                backend.setHealthy(false);
+                releaseBackend();
+
+                connect();
+            }
+        }
+
+        /**
+         * Extracts user name from the first frame. Frame of resume request contains user name after resume token.
+         * Unparsable frame (e.g. TLS handshake) leads to the least connections choice
+         * @return true if backend could be chosen
+         */
+        private boolean parseUserName() {
+            if (upstream.position() < FRAME_HEADER_SZ) {
+                return false;
+            }
+
+            int length = upstream.getInt(0);
+
+            if (length < 0 || length > upstream.capacity() - FRAME_HEADER_SZ) {
+                return true;
+            }
+
+            if (upstream.position() < FRAME_HEADER_SZ + length) {
+                return false;
+            }
+
+            byte[] content = new byte[length];
+            ByteBuffer frame = upstream.duplicate();
+            frame.position(FRAME_HEADER_SZ);
+            frame.get(content);
+
+            userName = new String(content, MESSAGE_CHARSET);
+
+            if ((upstream.get(FRAME_HEADER_SZ - 1) & FRAME_TYPE_MASK) == FRAME_RESUME) {
+                userName = userName.substring(userName.indexOf(RESUME_SEPARATOR) + 1);
+            }
+
+            return true;
+        }
+
+        /**
+         * Processes readiness of client's or backend's channel
+         * @param key - selected key of one of relay channels
+         */
+        void handle(SelectionKey key) {
+            try {
+                if (key == serverKey && key.isConnectable()) {
+                    finishConnect();
+                } else {
+                    if (key.isReadable()) {
+                        read(key == clientKey);
+                    }
+
+                    if (server == null && !isUpstreamEnd && balancing == Balancing.USER_HASH && parseUserName()) {
+                        connect();
+                    }
+                }
+
+                proceed();
+            } catch (IOException exc) {
+                log.log(Level.FINE, "Proxy: relay of " + describe() + " is broken", exc);
+                close();
+            }
+        }
+
+        /**
+         * Reads available data of one direction
+         * @param isFromClient - true for reading from client
+         */
+        private void read(boolean isFromClient) throws IOException {
+            if (isFromClient) {
+                if (client.read(upstream) < 0) {
+                    isUpstreamEnd = true;
+                }
+            } else if (server.read(downstream) < 0) {
+                isDownstreamEnd = true;
+            }
+        }
+
+        /**
+         * Writes pending data of both directions immediately, forwards ends of streams and updates interests
+         */
+        private void proceed() throws IOException {
+            if (isClosed) {
+                return;
+            }
+
+            // client left before backend choice
+            if (server == null && isUpstreamEnd) {
+                close();
+                return;
+            }
+
+            if (isConnected && upstream.position() > 0) {
+                upstream.flip();
+                upstreamBytes += server.write(upstream);
+                upstream.compact();
+            }
+
+            if (downstream.position() > 0) {
+                downstream.flip();
+                downstreamBytes += client.write(downstream);
+                downstream.compact();
+            }
+
+            if (isConnected && isUpstreamEnd && !isUpstreamShut && upstream.position() == 0) {
+                server.shutdownOutput();
+                isUpstreamShut = true;
+            }
+
+            if (isDownstreamEnd && !isDownstreamShut && downstream.position() == 0) {
+                client.shutdownOutput();
+                isDownstreamShut = true;
+            }
+
+            if (isUpstreamShut && isDownstreamShut) {
+                close();
+                return;
+            }
+
+            // reading is suspended while buffer is full, so slow receiver doesn't cause unlimited buffering
+            clientKey.interestOps((!isUpstreamEnd && upstream.hasRemaining() ? SelectionKey.OP_READ : 0) |
+                                  (downstream.position() > 0 ? SelectionKey.OP_WRITE : 0));
+
+            if (serverKey != null) {
+                serverKey.interestOps(!isConnected ? SelectionKey.OP_CONNECT :
+                                      (!isDownstreamEnd && downstream.hasRemaining() ? SelectionKey.OP_READ : 0) |
+                                      (upstream.position() > 0 ? SelectionKey.OP_WRITE : 0));
+            }
+        }
+
+        /**
+         * Closes backend's channel and decreases its active connections number
+         */
+        private void releaseBackend() {
+            if (server == null) {
+                return;
+            }
+
+            --backend.connectionsNumber;
+
+            try {
+                server.close();
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, "ProxyServer error: unable to close backend channel", exc);
+            }
+
+            server = null;
+            serverKey = null;
+            isConnected = false;
+        }
+
+        /**
+         * Closes both channels of relay
+         */
+        void close() {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+            releaseBackend();
+
+            try {
+                client.close();
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, "ProxyServer error: unable to close client channel", exc);
+            }
+        }
+    }
+}
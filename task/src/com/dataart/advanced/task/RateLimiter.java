@@ -0,0 +1,161 @@
+package com.dataart.advanced.task;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dataart.advanced.task.Info.DEFAULT_SZ;
+import static com.dataart.advanced.task.Info.RATE_LIMIT_PURGE_INTERVAL;
+
+/**
+ * Requests rate limits of server side. Each connection has its own token
+ * bucket and all connections of the same user share bucket of user name.
+ * Request passes if both buckets have tokens. Otherwise it is delayed up
+ * to throttle delay waiting for tokens refill or throttled immediately if
+ * the delay isn't allowed. Zero rate disables corresponding limit.
+ * Buckets of idle users are removed lazily.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class RateLimiter {
+    private final int connectionRate;   // requests per second of single connection
+    private final int connectionBurst;  // requests number passed without delay by single connection
+    private final int userRate;         // requests per second of all user's connections
+    private final int userBurst;        // requests number passed without delay by all user's connections
+
+    private final long throttleDelay;   // maximal delay of request waiting for tokens in ns
+
+    // shared buckets by user name
+    private final ConcurrentMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+
+    // moment of the next idle buckets cleaning in ms
+    private final AtomicLong nextPurgeTime = new AtomicLong();
+
+    // throttling statistics
+    private final AtomicLong throttledNumber = new AtomicLong();
+    private final AtomicLong delayedNumber = new AtomicLong();
+
+    /**
+     * Constructor creates limiter without limits
+     */
+    RateLimiter() {
+        this(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Constructor creates limiter with specified limits. Zero burst is replaced by rate value
+     * @param connectionRate - requests per second of single connection or 0 for unlimited rate
+     * @param connectionBurst - requests number passed by single connection without delay
+     * @param userRate - requests per second of all user's connections or 0 for unlimited rate
+     * @param userBurst - requests number passed by all user's connections without delay
+     * @param throttleDelay - maximal delay of request waiting for tokens in ms (0 for immediate throttling)
+     */
+    RateLimiter(int connectionRate, int connectionBurst, int userRate, int userBurst, long throttleDelay) {
+        this.connectionRate = connectionRate;
+        this.connectionBurst = connectionBurst > 0 ? connectionBurst : connectionRate;
+        this.userRate = userRate;
+        this.userBurst = userBurst > 0 ? userBurst : userRate;
+        this.throttleDelay = TimeUnit.MILLISECONDS.toNanos(throttleDelay);
+    }
+
+    /**
+     * @return bucket for new connection or null if connection rate isn't limited
+     */
+    TokenBucket createConnectionBucket() {
+        return connectionRate > 0 ? new TokenBucket(connectionRate, connectionBurst) : null;
+    }
+
+    /**
+     * Takes tokens for request from connection and user buckets
+     * @param connectionBucket - bucket of connection or null if connection rate isn't limited
+     * @param usrName - user name of connection
+     * @param isDelayAllowed - false if request can't wait for tokens, e.g. it's processed by shared worker thread
+     * @return delay in ns before request processing or DEFAULT_SZ if request should be throttled
+     */
+    long acquire(TokenBucket connectionBucket, String usrName, boolean isDelayAllowed) {
+        long maxDelay = isDelayAllowed ? throttleDelay : 0;
+        long delay = 0;
+
+        if (connectionBucket != null && (delay = connectionBucket.reserve(maxDelay)) == DEFAULT_SZ) {
+            throttledNumber.incrementAndGet();
+            return DEFAULT_SZ;
+        }
+
+        if (userRate > 0) {
+            TokenBucket userBucket = userBuckets.computeIfAbsent(usrName, name -> new TokenBucket(userRate,
+                                                                                                  userBurst));
+            long userDelay = userBucket.reserve(maxDelay);
+
+            if (userDelay == DEFAULT_SZ) {
+                // throttled request doesn't spend connection's limit
+                if (connectionBucket != null) {
+                    connectionBucket.release();
+                }
+
+                throttledNumber.incrementAndGet();
+                return DEFAULT_SZ;
+            }
+
+            delay = Math.max(delay, userDelay);
+        }
+
+        if (delay > 0) {
+            delayedNumber.incrementAndGet();
+        }
+
+        return delay;
+    }
+
+    /**
+     * Removes buckets of users which were idle long enough to refill them completely.
+     * Real cleaning is performed not often than once per purge interval so method could be invoked in any loop
+     */
+    void purgeIdle() {
+        long now = System.currentTimeMillis();
+        long purgeTime = nextPurgeTime.get();
+
+        if (userBuckets.isEmpty() || now < purgeTime ||
+            !nextPurgeTime.compareAndSet(purgeTime, now + RATE_LIMIT_PURGE_INTERVAL)) {
+            return;
+        }
+
+        userBuckets.values().removeIf(TokenBucket::isFull);
+    }
+
+    /**
+     * @return true if at least one limit is specified
+     */
+    final boolean isEnabled() {
+        return connectionRate > 0 || userRate > 0;
+    }
+
+    /**
+     * @return requests per second of single connection or 0 for unlimited rate
+     */
+    final int getConnectionRate() {
+        return connectionRate;
+    }
+
+    /**
+     * @return requests per second of all user's connections or 0 for unlimited rate
+     */
+    final int getUserRate() {
+        return userRate;
+    }
+
+    /**
+     * @return number of throttled requests
+     */
+    final long getThrottledNumber() {
+        return throttledNumber.get();
+    }
+
+    /**
+     * @return number of requests delayed waiting for tokens refill
+     */
+    final long getDelayedNumber() {
+        return delayedNumber.get();
+    }
+}
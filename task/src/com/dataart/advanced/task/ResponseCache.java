@@ -0,0 +1,132 @@
+package com.dataart.advanced.task;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client's cache of server responses on idempotent commands. Server marks cacheable response by its time to
+ * live, so repeated command is answered by client without round trip till response expiration or its
+ * invalidation by server. Responses are kept by normalized command: it's trimmed and lowered, since server
+ * searches command tokens in lowered message, so normalized commands get the same response. The least recently
+ * used response is evicted if cache is full. Cache isn't thread-safe, it's used by client's thread only
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ResponseCache {
+    /**
+     * Cached response with its expiration moment
+     */
+    private static class Entry {
+        private final String response;
+        private final long expirationTime;  // in ns
+
+        Entry(String response, long expirationTime) {
+            this.response = response;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private final Map<String, Entry> entries;  // responses by normalized command in access order
+
+    private long hitsNumber = 0;
+    private long missesNumber = 0;
+
+    /**
+     * @param capacity - maximal number of cached responses
+     */
+    public ResponseCache(int capacity) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param command - user's command
+     * @return command key of cache
+     */
+    static String normalize(String command) {
+        return command.trim().toLowerCase();
+    }
+
+    /**
+     * Searches unexpired response of command
+     * @param command - user's command
+     * @return cached response or null if it's absent or expired
+     */
+    String get(String command) {
+        String key = normalize(command);
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.expirationTime - System.nanoTime() <= 0) {
+            entries.remove(key);
+            entry = null;
+        }
+
+        if (entry == null) {
+            ++missesNumber;
+            return null;
+        }
+
+        ++hitsNumber;
+        return entry.response;
+    }
+
+    /**
+     * Stores server's response of command
+     * @param command - user's command
+     * @param response - server's response
+     * @param ttl - response time to live assigned by server in ms
+     */
+    void put(String command, String response, long ttl) {
+        if (ttl > 0) {
+            long expirationTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+            entries.put(normalize(command), new Entry(response, expirationTime));
+        }
+    }
+
+    /**
+     * Drops responses of commands containing specified token, as server chooses response by token
+     * @param token - command token or empty string for all responses
+     * @return number of dropped responses
+     */
+    int invalidate(String token) {
+        String key = normalize(token);
+        int number = 0;
+
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().contains(key)) {
+                it.remove();
+                ++number;
+            }
+        }
+
+        return number;
+    }
+
+    /**
+     * @return number of cached responses including expired ones
+     */
+    final int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of commands answered by cache
+     */
+    final long getHitsNumber() {
+        return hitsNumber;
+    }
+
+    /**
+     * @return number of commands sent to server
+     */
+    final long getMissesNumber() {
+        return missesNumber;
+    }
+}
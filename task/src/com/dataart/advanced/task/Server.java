@@ -2,16 +2,24 @@ package com.dataart.advanced.task;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,12 +38,91 @@ public class Server implements Runnable {
 
     private int portNumber = 8080;     // server's port number
 
+    // source of connections or null for TCP connections on server's port
+    private Transport transport;
+
+    // additional sources of connections accepted by their own threads, e.g. shared memory transport
+    private final List<Transport> extraTransports = new ArrayList<>();
+
+    // counted down when connections are accepted or server fails to listen
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private volatile boolean isListening = false;
+
+    // thread of server started by builder or null
+    private Thread thread;
+
     // clients counter for ID assigning
     private AtomicInteger clientsCounter;
 
-    // connections list maintaining by server
+    // maximal size of received client's message in bytes
+    private int maxMessageSize = MAX_MESSAGE_SZ;
+
+    // detached sessions waiting for clients reconnection
+    private SessionRegistry sessions = new SessionRegistry(SESSION_GRACE_PERIOD);
+
+    // file of sessions state kept between server runs or null if sessions are lost by restart
+    private String snapshotPath;
+
+    // requests rate limits of connections and users (disabled by default), could be changed by admin
+    private volatile RateLimiter limiter = new RateLimiter();
+
+    // the last exchanges of users stored outside of heap
+    private ConversationHistory history = new ConversationHistory(HISTORY_SIZE, HISTORY_ENTRY_SZ, HISTORY_MEMORY);
+
+    // binary journal of all received and sent messages or null if journaling is disabled
+    private MessageJournal journal;
+
+    // TLS parameters of connections or null if connections aren't encrypted
+    private TlsContext tls;
+
+    // cluster node exchanging connections numbers with other servers or null for standalone server
+    private ClusterNode cluster;
+
+    // admin port number listened on loopback address or 0 if admin port is disabled
+    private int adminPort = 0;
+
+    // maximal number of links (and their threads) or 0 for unlimited number, could be changed by admin
+    private volatile int maxLinksNumber = 0;
+
+    // flag notifying that new links are rejected while existing ones are served
+    private volatile boolean isDraining = false;
+
+    // links counter for links threads naming
+    private final AtomicInteger linksCounter = new AtomicInteger();
+
+    // number of links rejected by draining or links number limit
+    private final AtomicLong rejectedNumber = new AtomicLong();
+
+    // period of silence after which idle link is pinged in ms or 0 if keepalive is disabled
+    private long pingInterval = 0;
+    // number of unanswered pings after which peer is considered dead
+    private int pingMaxMisses = PING_MAX_MISSES;
+
+    // number of links closed because of dead peer
+    private final AtomicLong deadPeersNumber = new AtomicLong();
+
+    // number of threads processing client messages fairly or 0 for processing by links threads
+    private int workersNumber = 0;
+    // cost in bytes added to session's deficit per round of worker pool
+    private int workerQuantum = WORKER_QUANTUM;
+
+    // pool processing client messages created by "run" method or null if messages are processed by links threads
+    private WorkerPool workers;
+
+    // in-flight request time after which request is reported as stalled in ms or 0 if watchdog is disabled
+    private long stallThreshold = 0;
+    // reaction on stalled request in addition to its reporting
+    private StallWatchdog.Action stallAction = StallWatchdog.Action.LOG;
+
+    // watchdog of in-flight requests created by "run" method or null if it's disabled
+    private StallWatchdog watchdog;
+
+    // logical sessions list maintaining by server
     private final List<Connection> connectList;
 
+    // physical connections list maintaining by server
+    private final List<Link> linkList = Collections.synchronizedList(new ArrayList<Link>());
+
     // lock for access control to "connectList"
     private final Lock readLock;
     private final Lock writeLock;
@@ -53,6 +140,33 @@ public class Server implements Runnable {
         isStop = true;
     }
 
+    /**
+     * Creates server with all settings of configuration file's server section. Connections resources (TLS
+     * context, additional transports, cluster node and journal) aren't opened here, they are assigned by caller
+     * according to its errors handling
+     * @param cfgReader - reader of parsed server section
+     * @param listener - processes client messages according to predefined method
+     * @return configured server which isn't started yet
+     */
+    public static Server create(ConfigReader cfgReader, ServerListener listener) {
+        Server srv = new Server(cfgReader.getPortNumber(), listener);
+        srv.setSessionGracePeriod(cfgReader.getSessionGracePeriod());
+        srv.setSessionSnapshot(cfgReader.getSessionSnapshot());
+        srv.setMaxMessageSize(cfgReader.getMaxMessageSize());
+        srv.setRateLimits(cfgReader.getConnectionRate(), cfgReader.getConnectionBurst(), cfgReader.getUserRate(),
+                          cfgReader.getUserBurst(), cfgReader.getThrottleDelay());
+
+        srv.setHistoryLimits(cfgReader.getHistorySize(), cfgReader.getHistoryEntrySize(),
+                             cfgReader.getHistoryMemory());
+
+        srv.setKeepalive(cfgReader.getPingInterval(), cfgReader.getPingMaxMisses());
+        srv.setWorkerPool(cfgReader.getWorkersNumber(), cfgReader.getWorkerQuantum());
+        srv.setStallWatchdog(cfgReader.getStallThreshold(), cfgReader.getStallAction());
+        srv.setAdminPort(cfgReader.getAdminPortNumber());
+
+        return srv;
+    }
+
     /**
      * Starts server with termination ability by command "stop" entered from
      * keyboard
@@ -62,19 +176,38 @@ public class Server implements Runnable {
      *                   method
      */
     public static void start(int portNumber, ServerListener listener) {
-        Server srv = new Server(portNumber, listener);
-        new Thread(srv, SERVER_THREAD_NAME).start();
+        start(new Server(portNumber, listener));
+    }
+
+    /**
+     * Starts preliminarily configured server with termination ability by
+     * command "stop" entered from keyboard
+     * @param srv - server instance
+     */
+    public static void start(Server srv) {
+        Thread srvThread = new Thread(srv, SERVER_THREAD_NAME);
+        srvThread.start();
 
         log.info(String.format("Type \"%s\" for server work termination", SERVER_STOP_CMD));
-/*
-        try ( BufferedReader cmdIn = new BufferedReader(new InputStreamReader(System.in)) ) {
-            String stopCmd;
-            while ((stopCmd = cmdIn.readLine()) != null) {
-                if (SERVER_STOP_CMD.compareToIgnoreCase(stopCmd) == 0) {
-                    break;
-                }
-            }
-*/
+
+        // console isn't waited for, so server stopped by admin command finishes application
+        Thread consoleThread = new Thread(() -> waitStopCommand(srv), SERVER_CONSOLE_THREAD_NAME);
+        consoleThread.setDaemon(true);
+        consoleThread.start();
+
+        try {
+            srvThread.join();
+        } catch (InterruptedException exc) {
+            srv.stop();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops server by command "stop" entered from keyboard or by standard input closing
+     * @param srv - started server
+     */
+    private static void waitStopCommand(Server srv) {
         try ( ConsoleIO cmdIn = new ConsoleIO() ) {
             String stopCmd;
             while ((stopCmd = cmdIn.readLine()) != null) {
@@ -112,216 +245,1811 @@ public class Server implements Runnable {
     }
 
     /**
-     * Thread function for server execution in separate thread
-     * @see java.lang.Runnable#run()
+     * Assigns time of detached sessions storing. Should be invoked before "run" method
+     * @param gracePeriod - time in ms during which client could resume lost session
      */
-    @Override
-    public void run() {
-        try (ServerSocket srvSocket = new ServerSocket(portNumber)) {
-            // setting server socket timeout
-            srvSocket.setSoTimeout(SERVER_SOCKET_TIMEOUT);
+    public void setSessionGracePeriod(long gracePeriod) {
+        sessions = new SessionRegistry(gracePeriod);
+    }
 
-            log.info(SERVER_START_MSG + NO_CONNECTION_MSG);
+    /**
+     * Enables warm restart: sessions state is written to snapshot file on server stop and loaded on start,
+     * so clients reconnecting after restart resume their sessions. Loaded snapshot file is removed, so identities
+     * of stale snapshot aren't restored after server crash. Should be invoked before "run" method
+     * @param snapshotPath - snapshot file path or null for sessions losing by restart
+     */
+    public void setSessionSnapshot(String snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
 
-            try {
-                while (!isStop) {
-                    Socket usrSocket;
+    /**
+     * Assigns maximal size of client's message. Should be invoked before "run" method
+     * @param maxMessageSize - maximal size of received message in bytes
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
 
-                    try {
-                        usrSocket = srvSocket.accept();
-                    } catch (SocketTimeoutException exc) {
-                        // checking server stop flag if timeout is expired
-                        continue;
-                    }
+    /**
+     * Assigns requests rate limits. Request exceeding limits is delayed waiting for limit or throttled
+     * by short reply without processing. Could be invoked by admin for running server: users limits are applied
+     * at once, connections limits are applied to new connections
+     * @param connectionRate - requests per second of single connection or 0 for unlimited rate
+     * @param connectionBurst - requests number passed by single connection without delay
+     * @param userRate - requests per second of all connections with the same user name or 0 for unlimited rate
+     * @param userBurst - requests number passed by all user's connections without delay
+     * @param throttleDelay - maximal delay of request waiting for limit in ms (0 for immediate throttling)
+     */
+    public void setRateLimits(int connectionRate, int connectionBurst, int userRate, int userBurst,
+                              long throttleDelay) {
+        limiter = new RateLimiter(connectionRate, connectionBurst, userRate, userBurst, throttleDelay);
+    }
 
-                    // creating connection and adding it to connection list
-                    Connection link = new Connection(usrSocket, clientsCounter.getAndIncrement());
-                    connectList.add(link);
+    /**
+     * Assigns limits of users conversation history. Should be invoked before "run" method
+     * @param size - maximal exchanges number stored per user
+     * @param entrySize - maximal size of single stored exchange in bytes
+     * @param memoryLimit - maximal size of all users histories in bytes
+     */
+    public void setHistoryLimits(int size, int entrySize, long memoryLimit) {
+        history = new ConversationHistory(size, entrySize, memoryLimit);
+    }
 
-                    // executing connection in separate thread
-                    new Thread(link, CONNECTION_THREAD_NAME + link.getClientID()).start();
-                }
-            } finally {
-                synchronized (connectList) {
-                    //connectList.forEach(Connection::close);
-                    connectList.forEach(Connection::stop);
-                }
-            }
-        } catch (IOException exc) {
-            log.log(Level.SEVERE, "Server error: Problems while listening on port = " + portNumber, exc);
-        }
+    /**
+     * Assigns journal for recording of all received and sent messages. Journal is closed on server stop.
+     * Should be invoked before "run" method
+     * @param journal - opened messages journal
+     */
+    public void setJournal(MessageJournal journal) {
+        this.journal = journal;
     }
 
     /**
-     * Single client connection. Performs client messages processing via method
-     * specified by server's field "responder"
+     * Assigns TLS parameters, so all client connections are encrypted. Should be invoked before "run" method
+     * @param tls - TLS context with server's key and sessions cache
      */
-    class Connection implements Runnable, Closeable {
-        // socket for client connection created and listed by server
-        private final Socket socket;
+    public void setTls(TlsContext tls) {
+        this.tls = tls;
+    }
 
-        private String usrName = "";  // client's name
-        private final int clientID;   // client ID
+    /**
+     * Assigns cluster node, so connections number and index are cluster-wide. Node is started and stopped
+     * with server. Should be invoked before "run" method
+     * @param cluster - cluster node which isn't started yet
+     */
+    public void setCluster(ClusterNode cluster) {
+        this.cluster = cluster;
+    }
 
-        private boolean isUserNameReceived = false;
+    /**
+     * Enables keepalive of links: link without received frames during ping interval is pinged by control frame
+     * answered by peer's pong without processing by listener. Pongs form smoothed round trip time of link.
+     * Link is closed if peer doesn't send anything during given number of ping intervals, so its sessions could
+     * be resumed. Busy link isn't pinged. Should be invoked before "run" method
+     * @param pingInterval - period of silence before ping in ms or 0 for keepalive disabling
+     * @param maxMisses - number of unanswered pings after which peer is considered dead
+     */
+    public void setKeepalive(long pingInterval, int maxMisses) {
+        this.pingInterval = pingInterval;
+        this.pingMaxMisses = maxMisses;
+    }
 
-        // logger for tracing error messages
-        private final Logger log = Logger.getLogger(Client.class.getName());
+    /**
+     * Enables worker pool processing client messages instead of links threads. Each session has its own queue
+     * served by deficit round robin, so client pipelining many messages doesn't delay other sessions of the same
+     * or other links, messages of single session are processed in order. Should be invoked before "run" method
+     * @param workersNumber - number of pool threads or 0 for processing by links threads
+     * @param quantum - bytes of messages processed for session per round
+     */
+    public void setWorkerPool(int workersNumber, int quantum) {
+        this.workersNumber = workersNumber;
+        this.workerQuantum = quantum;
+    }
 
-        /**
-         * Constructor for connection instance initialization and entering
-         * client name corresponding to this connection
-         *
-         * @param socket - socket instance obtained by invoking
-         *                 "server.accept()"
-         */
-        Connection(Socket socket, int clientID) {
-            this.socket = socket;
-            this.clientID = clientID;
-        }
+    /**
+     * Enables watchdog of requests stuck inside listener or blocked in socket write. Request exceeding
+     * threshold is reported once with the stack trace of its thread. Should be invoked before "run" method
+     * @param threshold - in-flight request time of stall in ms or 0 for watchdog disabling
+     * @param action - reaction on stalled request: LOG (reporting only), INTERRUPT (thread interruption
+     *                 cancelling interruptible listener) or DISCONNECT (link closing)
+     */
+    public void setStallWatchdog(long threshold, StallWatchdog.Action action) {
+        this.stallThreshold = threshold;
+        this.stallAction = action;
+    }
 
-        /**
-         *
-         * @param receivedMsg - contains received message from client side
-         * @param sentMsg - contains message sending for client
-         * @param out - output stream linked with client's socket
-         * @throws IOException - throws if error occurs upon message transmission/reception
-         */
-        private void sendProcessedClientMessage(MessageTraits receivedMsg, MessageTraits sentMsg,
-                                                ObjectOutputStream out) throws IOException{
-            String svrMsg = listener.onProcess(receivedMsg.getMessage(), this);
-            sentMsg.sendMessage(svrMsg, out);
+    /**
+     * Enables admin port listened on loopback address by separate thread. Should be invoked before "run" method
+     * @param adminPort - admin port number
+     */
+    public void setAdminPort(int adminPort) {
+        this.adminPort = adminPort;
+    }
 
-            log.info(usrName.isEmpty() ? String.format(CONNECTION_BEGIN_SRVMSG,
-                                                      (usrName = receivedMsg.getMessage())) :
-                                                       usrName + ": " + receivedMsg.getMessage());
-            isUserNameReceived = true;
+    /**
+     * Adds source of connections accepted by separate thread along with server's port, e.g. shared memory
+     * transport of co-located clients. Transport is closed together with server. Should be invoked before
+     * "run" method
+     * @param extraTransport - additional source of connections
+     */
+    public void addTransport(Transport extraTransport) {
+        extraTransports.add(extraTransport);
+    }
+
+    /**
+     * Assigns maximal number of links, each link is served by its own thread. Exceeding links are closed
+     * just after accepting. Could be invoked for running server
+     * @param maxLinksNumber - maximal links number or 0 for unlimited number
+     */
+    public void setMaxLinksNumber(int maxLinksNumber) {
+        this.maxLinksNumber = maxLinksNumber;
+    }
+
+    /**
+     * Switches draining mode: new links are closed just after accepting, existing ones are served till
+     * their clients quit. Could be invoked for running server
+     * @param isDraining - true for draining mode, false for normal mode
+     */
+    public void setDraining(boolean isDraining) {
+        this.isDraining = isDraining;
+        log.info("Draining is " + (isDraining ? "on" : "off"));
+    }
+
+    /**
+     * @return true if new links are rejected
+     */
+    final boolean isDraining() {
+        return isDraining;
+    }
+
+    /**
+     * @return snapshot of physical connections list
+     */
+    final List<Link> getLinks() {
+        synchronized (linkList) {
+            return new ArrayList<>(linkList);
         }
+    }
 
-        /**
-         * Body of messages exchange mechanism between client and server
-         *
-         * @see java.lang.Thread#run()
-         */
-        @Override
-        public void run() {
-            try (
-                 Connection link = this;
-                 ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-                 ObjectInputStream in = new ObjectInputStream(socket.getInputStream())
-            ) {
-                //getting client name
-                MessageTraits recMsg = new MessageTraits();
+    /**
+     * Disconnects link shutting down its input, so unfinished sessions are detached for resumption
+     * @param linkID - link number
+     * @return true if link is found
+     */
+    boolean kick(int linkID) {
+        for (Link link : getLinks()) {
+            if (link.linkID == linkID) {
+                link.stop();
+                return true;
+            }
+        }
 
-                MessageTraits sentMsg = new MessageTraits();
-                sentMsg.setClientID(clientID);
+        return false;
+    }
 
-                // getting and decoding command from client's side
-                while (recMsg.receive(in) != DEFAULT_SZ && (!QUIT_CMD.equals(recMsg.getMessage()) || !isUserNameReceived)) {
-                    link.sendProcessedClientMessage(recMsg, sentMsg, out);
-                }
+    /**
+     * Invalidates responses cached by clients, e.g. after commands registry change. Could be invoked for
+     * running server
+     * @param token - command token of invalidated responses or empty string for all responses
+     * @return number of notified sessions caching responses
+     */
+    public int invalidateResponses(String token) {
+        List<Connection> connections;
+
+        synchronized (connectList) {
+            connections = new ArrayList<>(connectList);
+        }
+
+        int number = 0;
 
-                if (QUIT_CMD.equals(recMsg.getMessage())) {
-                    link.sendProcessedClientMessage(recMsg, sentMsg, out);
-                    log.info(String.format(CONNECTION_QUIT_SRVMSG, usrName));
+        for (Connection connection : connections) {
+            try {
+                if (connection.invalidateResponses(token)) {
+                    ++number;
                 }
             } catch (IOException exc) {
-                log.log(Level.SEVERE, (usrName.isEmpty() ? "Unestablished connection" : "Connection with user \"" +
-                        usrName + "\"") + " error: problems with I/O while messages exchange is proceeded", exc);
+                // closed link detaches its session by itself
+                log.log(Level.FINE, "Server: unable to invalidate cached responses of user \"" +
+                        connection.getUsrName() + "\"", exc);
             }
         }
-        /**
-         * @return user name corresponding to this connection
-         */
-        final String getUsrName() {
-            return usrName;
+
+        log.info(String.format("Cached responses%s are invalidated for %d sessions",
+                               token.isEmpty() ? "" : " of \"" + token + "\"", number));
+
+        return number;
+    }
+
+    /**
+     * @return lines of server statistics
+     */
+    List<String> collectStats() {
+        List<String> stats = new ArrayList<>();
+
+        stats.add(String.format("Connections: links = %d, sessions = %d, accepted links = %d, rejected links = %d, " +
+                                "maximal links = %d, draining = %s", linkList.size(), connectList.size(),
+                                linksCounter.get(), rejectedNumber.get(), maxLinksNumber, isDraining ? "on" : "off"));
+
+        stats.add(String.format("Sessions resumption: hits = %d, misses = %d, hit rate = %.1f%%",
+                  sessions.getResumeHits(), sessions.getResumeMisses(), sessions.getResumeHitRate() * 100));
+
+        if (limiter.isEnabled()) {
+            stats.add(String.format("Rate limiting: throttled requests = %d, delayed requests = %d",
+                      limiter.getThrottledNumber(), limiter.getDelayedNumber()));
         }
 
-        /**
-         * @return total connections number
-         */
-        final int getConnectionsNumber() {
-            readLock.lock();
+        stats.add(String.format("Conversation history: users = %d, evicted users = %d, memory = %d bytes",
+                  history.getUsersNumber(), history.getEvictionsNumber(), history.getAllocatedMemory()));
 
-            try {
-                return Server.this.connectList.size();
-            } finally {
-                readLock.unlock();
-            }
+        if (tls != null) {
+            stats.add(String.format("TLS handshakes: full = %d, resumed = %d", tls.getFullHandshakesNumber(),
+                      tls.getResumedHandshakesNumber()));
         }
 
-        /**
-         * @return index of this connection in general server connections list
-         */
-        final int getConnectionIndex() {
-            readLock.lock();
+        if (pingInterval > 0) {
+            double rttSum = 0;
+            int rttNumber = 0;
 
-            try {
-                return Server.this.connectList.indexOf(this);
-            } finally {
-                readLock.unlock();
+            for (Link link : getLinks()) {
+                double rtt = link.getSmoothedRtt();
+
+                if (rtt > 0) {
+                    rttSum += rtt;
+                    ++rttNumber;
+                }
             }
+
+            stats.add(String.format("Keepalive: ping interval = %d ms, dead peers = %d, mean smoothed RTT = %.3f ms",
+                      pingInterval, deadPeersNumber.get(), rttNumber == 0 ? 0.0 : rttSum / rttNumber / 1e6));
         }
 
-        /**
-         * @return client's ID assigned by server
-         */
-        final int getClientID() {
-            return clientID;
+        if (workers != null) {
+            stats.add("Worker pool: " + workers.describe());
         }
 
-        /**
-         * @return flag notifying if user name is received by server from client's side
-         */
-        final boolean isUserNameReceived() {
-            return isUserNameReceived;
+        if (watchdog != null) {
+            stats.add(String.format("Stall watchdog: threshold = %d ms, action = %s, stalled requests = %d, " +
+                                    "incidents = %d", watchdog.getThreshold(),
+                                    watchdog.getAction().name().toLowerCase(), watchdog.getStalledNumber(),
+                                    watchdog.getIncidentsNumber()));
         }
 
-        /**
-         * Stops and closes given connection
-         */
-        void stop() {
-            try {
-                socket.shutdownInput();
-            } catch (IOException exc) {
-                log.log(Level.SEVERE, "Connection error: unexpected error is occured while shutting down socket " +
-                        "input stream", exc);
-            }
+        if (cluster != null) {
+            stats.add(String.format("Cluster: alive nodes = %d, connections of other nodes = %d",
+                      cluster.getAliveNodesNumber(), cluster.getRemoteConnectionsNumber()));
         }
 
-        /**
-         * Closes socket corresponding to given connection instance
-         */
-        @Override
-        public void close() throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+
+        stats.add(String.format("JVM: threads = %d, used heap = %d KB, maximal heap = %d KB", Thread.activeCount(),
+                  (runtime.totalMemory() - runtime.freeMemory()) / 1024, runtime.maxMemory() / 1024));
+
+        return stats;
+    }
+
+    /**
+     * @return storage of detached sessions with resumption statistics
+     */
+    final SessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * @return requests rate limits with throttling statistics
+     */
+    final RateLimiter getRateLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return watchdog of in-flight requests or null if it's disabled
+     */
+    final StallWatchdog getStallWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * Thread function for server execution in separate thread
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+        try (Transport listened = transport != null ? transport : new SocketTransport(portNumber)) {
+            // sessions are restored before any client is accepted
+            loadSnapshot();
+
+            // pool and watchdog are visible to threads awaiting listening
+            if (workersNumber > 0) {
+                workers = new WorkerPool(workersNumber, workerQuantum, WORKER_FLOW_CAPACITY, WORKER_THREAD_NAME);
+            }
+
+            if (stallThreshold > 0) {
+                watchdog = new StallWatchdog(stallThreshold, stallAction);
+            }
+
+            isListening = true;
+            listening.countDown();
+
+            log.info(SERVER_START_MSG + NO_CONNECTION_MSG);
+
+            startCluster();
+
+            AdminServer admin = startAdmin();
+            startTransports();
+
             try {
-                if (!socket.isClosed()) {
-                    socket.close();
-                }
+                while (!isStop) {
+                    // accepting is interrupted by timeout for checking server stop flag
+                    Endpoint usrEndpoint = listened.accept(SERVER_SOCKET_TIMEOUT);
 
-                // removing current connection from list
-                // switching server off if list is empty
-                writeLock.lock();
-                try {
-                    connectList.remove(this);
-                    if (connectList.isEmpty()) {
-                        log.info(NO_CONNECTION_MSG);
+                    if (usrEndpoint != null) {
+                        admit(usrEndpoint);
                     }
-                } finally {
-                    writeLock.unlock();
+
+                    sessions.purgeExpired();
+                    limiter.purgeIdle();
+                }
+            } finally {
+                if (admin != null) {
+                    admin.close();
                 }
-            } catch (IOException exc) {
-                log.log(Level.SEVERE, "Connection error: Unable to close socket", exc);
-            }
-        }
-    }
 
-    public static void main(String[] args) {
-        try {
-            ConfigReader cfgReader = new ConfigReader();
-            cfgReader.parse("../files/config.xml", true);
+                synchronized (linkList) {
+                    //linkList.forEach(Link::close);
+                    linkList.forEach(Link::stop);
+                }
+
+                // links wait for their queued messages, so pool threads finish after draining
+                if (workers != null) {
+                    workers.close();
+                }
+
+                saveSnapshot();
+
+                if (watchdog != null) {
+                    watchdog.close();
+                }
+
+                if (journal != null) {
+                    journal.close();
+                }
+
+                for (String stats : collectStats()) {
+                    log.info(stats);
+                }
+
+                if (cluster != null) {
+                    cluster.close();
+                }
+            }
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "Server error: Problems while listening on " +
+                    (transport != null ? transport.describe() : "port = " + portNumber), exc);
+        } finally {
+            isStop = true;
+
+            for (Transport extraTransport : extraTransports) {
+                try {
+                    extraTransport.close();
+                } catch (IOException exc) {
+                    log.log(Level.SEVERE, "Server error: unable to close " + extraTransport.describe(), exc);
+                }
+            }
+
+            listening.countDown();
+        }
+    }
+
+    /**
+     * Waits till server starts accepting connections
+     * @param timeout - maximal waiting time in ms
+     * @return true if server accepts connections, false if it fails to listen or timeout is expired
+     * @throws InterruptedException - if waiting is interrupted
+     */
+    public boolean awaitListening(long timeout) throws InterruptedException {
+        return listening.await(timeout, TimeUnit.MILLISECONDS) && isListening;
+    }
+
+    /**
+     * Stops server started by builder waiting for its thread finishing, so port is released after return
+     * @throws InterruptedException - if waiting is interrupted
+     */
+    public void close() throws InterruptedException {
+        stop();
+
+        if (thread != null) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Restores sessions and clients counter from snapshot of previous run if it exists. Server starts without
+     * previous sessions if snapshot couldn't be read
+     */
+    private void loadSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+
+        Path path = Paths.get(snapshotPath);
+
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try {
+            long startTime = System.nanoTime();
+            SessionSnapshot snapshot = SessionSnapshot.read(path);
+
+            clientsCounter.set(Math.max(clientsCounter.get(), snapshot.getClientsCounter()));
+            sessions.restore(snapshot.getSessions());
+
+            // snapshot is consumed, so it isn't loaded again after crash
+            Files.delete(path);
+
+            log.info(String.format("Sessions snapshot: %d sessions are loaded from %s in %.1f ms",
+                     snapshot.getSessions().size(), snapshotPath, (System.nanoTime() - startTime) / 1e6));
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "Server error: unable to load sessions snapshot " + snapshotPath +
+                    ". Server starts without previous sessions", exc);
+        }
+    }
+
+    /**
+     * Writes snapshot of detached sessions and clients counter. Stopped links detach their sessions by closing,
+     * so they are waited for during limited time
+     */
+    private void saveSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+
+        long deadline = System.currentTimeMillis() + SNAPSHOT_LINKS_TIMEOUT;
+
+        while (!linkList.isEmpty() && System.currentTimeMillis() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (!linkList.isEmpty()) {
+            log.warning("Sessions snapshot: " + linkList.size() + " links aren't closed, their sessions are lost");
+        }
+
+        try {
+            long startTime = System.nanoTime();
+            List<SessionRegistry.Session> detached = sessions.collectDetached();
+
+            SessionSnapshot.write(Paths.get(snapshotPath), clientsCounter.get(), detached);
+
+            log.info(String.format("Sessions snapshot: %d sessions are written to %s in %.1f ms", detached.size(),
+                     snapshotPath, (System.nanoTime() - startTime) / 1e6));
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "Server error: unable to write sessions snapshot " + snapshotPath, exc);
+        }
+    }
+
+    /**
+     * Starts cluster node if it's assigned. Server works standalone if gossip port couldn't be bound
+     */
+    private void startCluster() {
+        if (cluster == null) {
+            return;
+        }
+
+        try {
+            cluster.start(connectList::size);
+        } catch (SocketException exc) {
+            log.log(Level.SEVERE, "Server error: unable to start cluster node on gossip port = " +
+                    cluster.getGossipPort() + ". Server works standalone", exc);
+            cluster = null;
+        }
+    }
+
+    /**
+     * Starts admin port thread if admin port is assigned. Server works without admin port if it couldn't be bound
+     * @return started admin or null
+     */
+    private AdminServer startAdmin() {
+        if (adminPort == 0) {
+            return null;
+        }
+
+        try {
+            AdminServer admin = new AdminServer(this, adminPort);
+            new Thread(admin, ADMIN_THREAD_NAME).start();
+
+            return admin;
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "Server error: unable to listen admin port = " + adminPort +
+                    ". Server works without admin port", exc);
+            return null;
+        }
+    }
+
+    /**
+     * Starts accepting thread for each additional transport. Thread finishes when transport is closed
+     */
+    private void startTransports() {
+        for (int i = 0; i < extraTransports.size(); ++i) {
+            Transport extraTransport = extraTransports.get(i);
+
+            new Thread(() -> {
+                try {
+                    while (!isStop) {
+                        Endpoint usrEndpoint = extraTransport.accept(SERVER_SOCKET_TIMEOUT);
+
+                        if (usrEndpoint != null) {
+                            admit(usrEndpoint);
+                        }
+                    }
+                } catch (IOException exc) {
+                    if (!isStop) {
+                        log.log(Level.SEVERE, "Server error: Problems while listening on " +
+                                extraTransport.describe(), exc);
+                    }
+                }
+            }, TRANSPORT_THREAD_NAME + i).start();
+        }
+    }
+
+    /**
+     * Starts link of accepted connection or rejects it by server stop, draining or links number limit
+     * @param usrEndpoint - just accepted connection
+     */
+    private void admit(Endpoint usrEndpoint) {
+        if (isStop || isDraining || maxLinksNumber > 0 && linkList.size() >= maxLinksNumber) {
+            reject(usrEndpoint);
+            return;
+        }
+
+        // creating link and adding it to links list
+        Link link = new Link(usrEndpoint, linksCounter.getAndIncrement());
+        linkList.add(link);
+
+        // executing link in separate thread
+        new Thread(link, CONNECTION_THREAD_NAME + link.linkID).start();
+    }
+
+    /**
+     * Closes link rejected by draining or links number limit
+     * @param usrEndpoint - just accepted connection
+     */
+    private void reject(Endpoint usrEndpoint) {
+        rejectedNumber.incrementAndGet();
+
+        try {
+            usrEndpoint.close();
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "Server error: unable to close rejected connection", exc);
+        }
+    }
+
+    /**
+     * Physical client connection carrying one or several logical sessions.
+     * Receives frames in separate thread and dispatches them to sessions
+     * according to stream ID. Legacy client uses single session with
+     * PRIMARY_STREAM_ID
+     */
+    class Link implements Runnable, Closeable {
+        // client connection accepted by server
+        private final Endpoint endpoint;
+        private final int linkID;   // link number for thread naming
+
+        // TLS wrapper of endpoint streams created by link thread or null if TLS is disabled
+        private TlsStreams secured;
+
+        // logical sessions by stream ID changed from link thread (and pool threads on "quit") and read by admin
+        private final Map<Integer, Connection> streams = new ConcurrentHashMap<>();
+
+        // messages of link queued to worker pool, guarded by "requests"
+        private final Object requests = new Object();
+        private int pendingNumber = 0;
+
+        // I/O error of message processing by pool thread rethrown by link thread
+        private volatile IOException failure;
+
+        // keepalive state accessed only from link thread
+        private DataOutputStream out;       // stream for pings and responses sending, guarded by itself
+        private final MessageTraits controlMsg = new MessageTraits();
+        private long pingTime = 0;          // moment of the last unanswered ping in ns
+        private int missedPings = 0;        // pings sent since the last received frame
+
+        // smoothed round trip time in ns or 0 if pong isn't received yet, read by admin
+        private volatile double smoothedRtt = 0;
+
+        // Flight Recorder event started by accepting or null if recorder isn't initialized
+        private MessageEvents.Accept acceptEvent = MessageEvents.beginAccept();
+
+        /**
+         * Constructor for link instance initialization
+         *
+         * @param endpoint - connection obtained by invoking
+         *                   "transport.accept()"
+         * @param linkID - link number
+         */
+        Link(Endpoint endpoint, int linkID) {
+            this.endpoint = endpoint;
+            this.linkID = linkID;
+        }
+
+        /**
+         * Searches logical session by stream ID creating it for unknown stream
+         * @param streamID - logical session ID from received frame
+         * @return logical session corresponding to stream ID
+         * @throws IOException - if sessions number limit is exceeded
+         */
+        private Connection getStream(int streamID) throws IOException {
+            Connection connection = streams.get(streamID);
+
+            if (connection == null) {
+                if (streams.size() >= MAX_STREAMS_NUMBER) {
+                    throw new IOException("Server.Link: sessions number limit (" + MAX_STREAMS_NUMBER +
+                                          ") is exceeded");
+                }
+
+                connection = new Connection(this, streamID, clientsCounter.getAndIncrement());
+
+                streams.put(streamID, connection);
+                connectList.add(connection);
+            }
+
+            return connection;
+        }
+
+        /**
+         * Removes logical session from link and from general server connections list
+         * @param connection - finished logical session
+         */
+        private void finishStream(Connection connection) {
+            streams.remove(connection.getStreamID());
+            unregister(connection);
+        }
+
+        /**
+         * Body of messages exchange mechanism between client and server
+         *
+         * @see java.lang.Thread#run()
+         */
+        @Override
+        public void run() {
+            if (acceptEvent != null) {
+                acceptEvent.finish(linkID, endpoint.getRemoteAddress());
+                acceptEvent = null;
+            }
+
+            try (
+                 Link link = this;
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(link.getOutputStream(),
+                                                                                      LINK_BUFFER_SZ));
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(link.getInputStream(),
+                                                                                  LINK_BUFFER_SZ))
+            ) {
+                link.out = out;
+                link.startKeepalive();
+
+                try {
+                    exchange(in);
+                } finally {
+                    // responses of queued messages are sent before connection closing
+                    link.awaitRequests();
+                }
+
+                if (failure != null) {
+                    throw failure;
+                }
+            } catch (DeadPeerException exc) {
+                log.warning(describe() + ": " + exc.getMessage());
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, describe() + " error: problems with I/O while messages exchange is proceeded",
+                        exc);
+            }
+        }
+
+        /**
+         * Receives frames and processes them by link thread or queues them to worker pool
+         * @param in - input stream linked with client's socket
+         * @throws IOException - throws if error occurs upon message transmission/reception
+         */
+        private void exchange(DataInputStream in) throws IOException {
+            MessageTraits recMsg = new MessageTraits();
+            recMsg.setMaxMessageSize(maxMessageSize);
+
+            int messageSz;
+
+            // getting and decoding command from client's side
+            while ((messageSz = recMsg.receive(in)) != DEFAULT_SZ) {
+                // any frame proves peer's liveness, control frames don't reach sessions
+                missedPings = 0;
+
+                if (recMsg.getType() == FRAME_PING || recMsg.getType() == FRAME_PONG) {
+                    onControlFrame(recMsg);
+                    continue;
+                }
+
+                Connection connection = getStream(recMsg.getStreamID());
+
+                if (journal != null) {
+                    journal.append(JOURNAL_INBOUND, connection.getClientID(), recMsg);
+                }
+
+                // message above session's window isn't processed, it's answered by rejection in its turn
+                boolean isRejected = recMsg.getType() == FRAME_DATA && !connection.acquireWindow();
+
+                if (workers != null) {
+                    if (dispatch(connection, recMsg, messageSz, isRejected)) {
+                        break;
+                    }
+
+                    continue;
+                }
+
+                if (isRejected) {
+                    connection.reject(out);
+                } else if (!connection.process(recMsg.getType(), recMsg.getMessage(), out)) {
+                    finishStream(connection);
+
+                    // single session connection is finished by "quit" command
+                    if (connection.getStreamID() == PRIMARY_STREAM_ID && streams.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Queues received message to session's flow of worker pool. Link stops reading while session's queue is
+         * full, so flooding peer is slowed down by transport. Legacy client's "quit" is waited for, since it could
+         * finish the link
+         * @param connection - session of received frame
+         * @param recMsg - received frame
+         * @param messageSz - size of received message content in bytes
+         * @param isRejected - flag notifying that message exceeds session's window
+         * @return true if link is finished by "quit" command
+         */
+        private boolean dispatch(Connection connection, MessageTraits recMsg, int messageSz, boolean isRejected) {
+            synchronized (requests) {
+                ++pendingNumber;
+            }
+
+            connection.flow.submit(new Request(connection, recMsg.getType(), recMsg.getMessage(), messageSz,
+                                               isRejected));
+
+            if (connection.getStreamID() != PRIMARY_STREAM_ID || recMsg.getType() != FRAME_DATA ||
+                !QUIT_CMD.equals(recMsg.getMessage())) {
+                return false;
+            }
+
+            awaitRequests();
+            return streams.isEmpty();
+        }
+
+        /**
+         * Processes queued message in pool thread. Processing error stops link, so link thread rethrows it
+         * @param connection - session of message
+         * @param type - frame type
+         * @param message - received message
+         * @param isRejected - flag notifying that message exceeds session's window
+         */
+        private void execute(Connection connection, byte type, String message, boolean isRejected) {
+            try {
+                if (failure != null) {
+                    return;
+                }
+
+                if (isRejected) {
+                    connection.reject(out);
+                } else if (!connection.process(type, message, out)) {
+                    finishStream(connection);
+                }
+            } catch (IOException exc) {
+                failure = exc;
+                stop();
+            } finally {
+                synchronized (requests) {
+                    if (--pendingNumber == 0) {
+                        requests.notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits till all queued messages of link are processed
+         */
+        private void awaitRequests() {
+            synchronized (requests) {
+                while (pendingNumber > 0) {
+                    try {
+                        requests.wait();
+                    } catch (InterruptedException exc) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Received message queued to worker pool, its cost is frame size
+         */
+        private class Request extends WorkerPool.Task {
+            private final Connection connection;
+            private final byte type;
+            private final String message;
+            private final boolean isRejected;   // flag notifying that message exceeds session's window
+
+            /**
+             * @param connection - session of message
+             * @param type - frame type
+             * @param message - received message
+             * @param messageSz - size of encoded message content in bytes
+             * @param isRejected - flag notifying that message exceeds session's window
+             */
+            Request(Connection connection, byte type, String message, int messageSz, boolean isRejected) {
+                super(FRAME_HEADER_SZ + messageSz);
+
+                this.connection = connection;
+                this.type = type;
+                this.message = message;
+                this.isRejected = isRejected;
+            }
+
+            @Override
+            protected void run() {
+                execute(connection, type, message, isRejected);
+            }
+        }
+
+        /**
+         * Assigns reading timeout for pinging of silent peer. TLS handshake is performed before, so it isn't
+         * interrupted by ping, silent peer doesn't finish handshake during the whole keepalive period
+         * @throws IOException - if connection is closed or handshake fails
+         */
+        private void startKeepalive() throws IOException {
+            if (pingInterval <= 0) {
+                return;
+            }
+
+            if (tls != null) {
+                endpoint.setReadTimeout((int) (pingInterval * pingMaxMisses));
+                secure().handshake();
+            }
+
+            endpoint.setReadTimeout((int) pingInterval);
+        }
+
+        /**
+         * Pings silent peer or closes link if peer doesn't answer. Invoked by link thread on reading timeout, so
+         * pings don't interleave with responses
+         * @throws IOException - if peer is dead or ping sending fails
+         */
+        private void onSilence() throws IOException {
+            if (missedPings >= pingMaxMisses) {
+                deadPeersNumber.incrementAndGet();
+                throw new DeadPeerException("peer doesn't answer " + missedPings + " pings, connection is closed");
+            }
+
+            ++missedPings;
+
+            pingTime = System.nanoTime();
+
+            synchronized (out) {
+                controlMsg.sendMessage(FRAME_PING, Long.toString(pingTime), out);
+            }
+        }
+
+        /**
+         * Answers peer's ping by pong and takes round trip time sample from pong on the last sent ping.
+         * Pong received after the next ping moment isn't a sample, e.g. blocking client answers after user's input
+         * @param recMsg - received control frame
+         * @throws IOException - if pong sending fails
+         */
+        private void onControlFrame(MessageTraits recMsg) throws IOException {
+            if (recMsg.getType() == FRAME_PING) {
+                synchronized (out) {
+                    controlMsg.sendMessage(FRAME_PONG, recMsg.getMessage(), out);
+                }
+
+                return;
+            }
+
+            long rtt = System.nanoTime() - pingTime;
+
+            if (pingTime != 0 && Long.toString(pingTime).equals(recMsg.getMessage()) &&
+                rtt < TimeUnit.MILLISECONDS.toNanos(pingInterval)) {
+                smoothedRtt = smoothedRtt == 0 ? rtt : smoothedRtt + RTT_SMOOTHING_WEIGHT * (rtt - smoothedRtt);
+            }
+
+            pingTime = 0;
+        }
+
+        /**
+         * @return smoothed round trip time of link in ns or 0 if it isn't measured yet
+         */
+        final double getSmoothedRtt() {
+            return smoothedRtt;
+        }
+
+        /**
+         * @return connection output stream encrypted by TLS if it's enabled
+         * @throws IOException - if connection is closed
+         */
+        private OutputStream getOutputStream() throws IOException {
+            return tls != null ? secure().getOutputStream() : endpoint.getOutputStream();
+        }
+
+        /**
+         * @return connection input stream decrypted by TLS if it's enabled. Handshake is performed by the first
+         * reading
+         * @throws IOException - if connection is closed
+         */
+        private InputStream getInputStream() throws IOException {
+            InputStream source = tls != null ? secure().getInputStream() : endpoint.getInputStream();
+            return pingInterval > 0 ? new KeepaliveInputStream(source) : source;
+        }
+
+        /**
+         * Stream retrying reading after peer's silence during ping interval. Frames decoding isn't broken by
+         * timeout, since it's invisible above this stream
+         */
+        private class KeepaliveInputStream extends FilterInputStream {
+            KeepaliveInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                while (true) {
+                    try {
+                        return in.read();
+                    } catch (SocketTimeoutException exc) {
+                        onSilence();
+                    }
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (true) {
+                    try {
+                        return in.read(b, off, len);
+                    } catch (SocketTimeoutException exc) {
+                        onSilence();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Wraps connection streams by TLS in link thread, so accepting thread isn't loaded by TLS
+         * @return TLS wrapper of connection streams
+         * @throws IOException - if connection is closed
+         */
+        private TlsStreams secure() throws IOException {
+            if (secured == null) {
+                secured = endpoint.secure(tls, false);
+            }
+
+            return secured;
+        }
+
+        /**
+         * @return link description for logging
+         */
+        private String describe() {
+            if (streams.size() == 1) {
+                String usrName = streams.values().iterator().next().getUsrName();
+                return usrName.isEmpty() ? "Unestablished connection" : "Connection with user \"" + usrName + "\"";
+            }
+
+            return "Connection #" + linkID + " with " + streams.size() + " sessions";
+        }
+
+        /**
+         * @return link number, remote address and sessions description for admin
+         */
+        String describeSessions() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('#').append(linkID).append(' ').append(endpoint.getRemoteAddress());
+
+            if (tls != null) {
+                sb.append(" tls");
+            }
+
+            sb.append(", sessions = ").append(streams.size());
+
+            if (smoothedRtt > 0) {
+                sb.append(String.format(", rtt = %.3f ms", smoothedRtt / 1e6));
+            }
+
+            for (Connection connection : streams.values()) {
+                sb.append(String.format("\n  stream %d: client's ID = %d, user = \"%s\"", connection.getStreamID(),
+                                        connection.getClientID(), connection.getUsrName()));
+
+                if (connection.flow != null) {
+                    sb.append(String.format(", queue = %d, mean wait = %.3f ms, max wait = %.3f ms",
+                                            connection.flow.getQueueSize(), connection.flow.getMeanWait() / 1e6,
+                                            connection.flow.getMaxWait() / 1e6));
+                }
+            }
+
+            return sb.toString();
+        }
+
+        /**
+         * Closes endpoint of link stuck in socket write, so blocked write fails and link thread detaches its
+         * sessions for resumption
+         */
+        void abort() {
+            try {
+                endpoint.close();
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, "Connection error: Unable to close stalled connection", exc);
+            }
+        }
+
+        /**
+         * Stops and closes given link
+         */
+        void stop() {
+            try {
+                endpoint.shutdownInput();
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, "Connection error: unexpected error is occured while shutting down " +
+                        "connection input stream", exc);
+            }
+        }
+
+        /**
+         * Closes connection corresponding to given link instance detaching its
+         * unfinished logical sessions
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                endpoint.close();
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, "Connection error: Unable to close connection", exc);
+            }
+
+            // keeping identity of unexpectedly disconnected clients for resumption
+            for (Connection connection : streams.values()) {
+                connection.detach();
+                unregister(connection);
+            }
+
+            linkList.remove(this);
+        }
+    }
+
+    /**
+     * Notifies that peer doesn't answer pings
+     */
+    private static class DeadPeerException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        DeadPeerException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Removes logical session from general server connections list
+     * @param connection - finished logical session
+     */
+    private void unregister(Connection connection) {
+        if (connection.probe != null) {
+            connection.probe.release();
+        }
+
+        writeLock.lock();
+        try {
+            connectList.remove(connection);
+            if (connectList.isEmpty()) {
+                log.info(NO_CONNECTION_MSG);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Single client session. Performs client messages processing via method
+     * specified by server's field "responder"
+     */
+    class Connection {
+        private final int streamID;   // logical session ID inside link
+
+        private String usrName = "";  // client's name
+        private int clientID;         // client ID
+
+        private boolean isUserNameReceived = false;
+        private boolean isQuit = false;  // flag notifying if client is disconnected by "quit" command
+
+        private String resumeToken;   // token for session resumption after connection loss
+
+        // requests answered in session, so request repeated by client after resumption isn't processed twice
+        private long repliesNumber = 0;
+        private String lastReply;        // reply on the last answered request
+        private String repeatedReply;    // reply on request lost by connection or null if nothing is lost
+
+        // output stream of client caching responses or null if client doesn't cache them
+        private volatile DataOutputStream cacheOut;
+        private long responseTtl = 0;  // time to live of the current response in ms assigned by listener
+
+        // flag of storing the current exchange in user's history, cleared by listener
+        private boolean isHistoryRecorded = true;
+
+        // requests rate limit of session or null if rate isn't limited
+        private final TokenBucket bucket = limiter.createConnectionBucket();
+        private long throttledNumber = 0;  // number of throttled requests of session
+
+        // received but unanswered data messages of multiplexed session, decreased before reply sending, so
+        // client sending the next message after reply doesn't exceed window
+        private final AtomicInteger unansweredNumber = new AtomicInteger();
+        private long rejectedNumber = 0;   // number of messages of session rejected by window
+
+        // queue of session's messages in worker pool or null if messages are processed by link thread
+        private final WorkerPool.Flow flow = workers != null ? workers.createFlow() : null;
+
+        // message sending for client
+        private final MessageTraits sentMsg = new MessageTraits();
+
+        // in-flight request state checked by watchdog or null if watchdog is disabled
+        private final StallWatchdog.Probe probe;
+
+        // logger for tracing error messages
+        private final Logger log = Logger.getLogger(Client.class.getName());
+
+        /**
+         * Constructor for session instance initialization
+         *
+         * @param link - physical connection carrying session
+         * @param streamID - logical session ID inside link
+         * @param clientID - client's ID assigned by server
+         */
+        Connection(Link link, int streamID, int clientID) {
+            this.streamID = streamID;
+            this.clientID = clientID;
+
+            sentMsg.setStreamID(streamID);
+            sentMsg.setClientID(clientID);
+
+            probe = watchdog != null ? watchdog.createProbe(() -> String.format("user \"%s\" of connection #%d",
+                                                                                usrName, link.linkID), link::abort)
+                                     : null;
+        }
+
+        /**
+         * Processes frame received for given session
+         * @param type - received frame type
+         * @param message - received message from client side
+         * @param out - output stream linked with client's socket
+         * @return false if session is finished by "quit" command
+         * @throws IOException - throws if error occurs upon message transmission
+         */
+        boolean process(byte type, String message, DataOutputStream out) throws IOException {
+            if (type == FRAME_RESUME) {
+                if (!isUserNameReceived) {
+                    resumeSession(message, out);
+                }
+
+                return true;
+            }
+
+            if (type == FRAME_CACHE) {
+                cacheOut = out;
+                return true;
+            }
+
+            // request repeated after resumption is answered by kept reply, since it's already processed
+            if (repeatedReply != null) {
+                String reply = repeatedReply;
+                repeatedReply = null;
+
+                reply(FRAME_DATA, reply, out);
+                return true;
+            }
+
+            isQuit = isUserNameReceived && QUIT_CMD.equals(message);
+
+            // user name and "quit" command aren't limited
+            if (isUserNameReceived && !isQuit && !acquireRateLimit(out)) {
+                return true;
+            }
+
+            sendProcessedClientMessage(message, out);
+
+            if (isQuit) {
+                log.info(String.format(CONNECTION_QUIT_SRVMSG, usrName));
+
+                if (throttledNumber > 0) {
+                    log.info(String.format("User \"%s\": %d requests are throttled", usrName, throttledNumber));
+                }
+
+                if (rejectedNumber > 0) {
+                    log.info(String.format("User \"%s\": %d messages are rejected by window", usrName,
+                                           rejectedNumber));
+                }
+            }
+
+            return !isQuit;
+        }
+
+        /**
+         * Checks request against rate limits waiting for limit if delay is allowed. Request processed by worker
+         * pool doesn't wait, since sleeping worker would delay other sessions, so it's throttled if limit isn't
+         * available at once. Throttled request is answered by short reply without processing and logging
+         * @param out - output stream linked with client's socket
+         * @return true if request should be processed
+         * @throws IOException - throws if error occurs upon throttle reply transmission or waiting is interrupted
+         */
+        private boolean acquireRateLimit(DataOutputStream out) throws IOException {
+            long delay = limiter.acquire(bucket, usrName, flow == null);
+
+            if (delay == DEFAULT_SZ) {
+                ++throttledNumber;
+                answer(THROTTLE_MSG, out);
+
+                return false;
+            }
+
+            if (delay > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Server.Connection: waiting for rate limit is interrupted");
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         *
+         * @param receivedMsg - received message from client side
+         * @param out - output stream linked with client's socket
+         * @throws IOException - throws if error occurs upon message transmission/reception
+         */
+        private void sendProcessedClientMessage(String receivedMsg, DataOutputStream out) throws IOException{
+            MessageEvents.Dispatch dispatchEvent = MessageEvents.beginDispatch();
+
+            if (probe != null) {
+                probe.begin(STALL_STAGE_WRITE);
+            }
+
+            String svrMsg;
+            long listenerTime;
+
+            try {
+                // issuing resume token before response on client's introduction
+                if (!isUserNameReceived) {
+                    resumeToken = sessions.issueToken();
+                    reply(FRAME_SESSION, resumeToken, out);
+                }
+
+                long listenerStartTime = dispatchEvent != null ? System.nanoTime() : 0;
+
+                if (probe != null) {
+                    probe.enter(STALL_STAGE_LISTENER);
+                }
+
+                responseTtl = 0;
+                isHistoryRecorded = true;
+                svrMsg = listener.onProcess(receivedMsg, this);
+
+                listenerTime = dispatchEvent != null ? System.nanoTime() - listenerStartTime : 0;
+
+                if (probe != null) {
+                    probe.enter(STALL_STAGE_WRITE);
+                }
+
+                // time to live of cacheable response precedes it
+                if (cacheOut != null && responseTtl > 0) {
+                    reply(FRAME_CACHE, Long.toString(responseTtl), out);
+                }
+
+                answer(svrMsg, out);
+            } finally {
+                if (probe != null) {
+                    probe.end();
+                }
+            }
+
+            // user's introduction and exchanges excluded by listener aren't stored in history
+            if (isUserNameReceived && isHistoryRecorded) {
+                history.record(usrName, receivedMsg, svrMsg);
+            }
+
+            log.info(usrName.isEmpty() ? String.format(CONNECTION_BEGIN_SRVMSG, (usrName = receivedMsg)) :
+                                         usrName + ": " + receivedMsg);
+            isUserNameReceived = true;
+
+            if (dispatchEvent != null) {
+                dispatchEvent.finish(clientID, streamID, receivedMsg.length(), svrMsg.length(), listenerTime);
+            }
+        }
+
+        /**
+         * Restores client's identity from detached session specified by resume
+         * token. Starts new session with user name from request if token is
+         * unknown or expired. Replies with resume token only.
+         *
+         * @param request - resume request from client side
+         * @param out - output stream linked with client's socket
+         * @throws IOException - throws if resume request is malformed or error occurs upon message transmission
+         */
+        private void resumeSession(String request, DataOutputStream out) throws IOException {
+            int separatorIndex = request.indexOf(RESUME_SEPARATOR);
+
+            if (separatorIndex == -1) {
+                throw new IOException("Server.Connection: malformed resume request without user name");
+            }
+
+            String token = request.substring(0, separatorIndex);
+            long clientRepliesNumber = DEFAULT_SZ;
+
+            // number of replies received by client follows token, it's absent in requests of older clients
+            int repliesIndex = token.indexOf(RESUME_REPLIES_SEPARATOR);
+
+            if (repliesIndex != -1) {
+                try {
+                    clientRepliesNumber = Long.parseLong(token.substring(repliesIndex + 1));
+                } catch (NumberFormatException exc) {
+                    throw new IOException("Server.Connection: malformed replies number in resume request", exc);
+                }
+
+                token = token.substring(0, repliesIndex);
+            }
+
+            repliesNumber = Math.max(clientRepliesNumber, 0);
+            SessionRegistry.Session session = sessions.resume(token);
+
+            if (session != null) {
+                clientID = session.getClientID();
+                usrName = session.getUsrName();
+                resumeToken = session.getToken();
+
+                // the last request is processed, but its reply is lost with connection
+                if (clientRepliesNumber != DEFAULT_SZ && session.getRepliesNumber() == clientRepliesNumber + 1) {
+                    repliesNumber = session.getRepliesNumber();
+                    lastReply = session.getLastReply();
+                    repeatedReply = lastReply;
+                }
+
+                log.info(String.format(CONNECTION_RESUME_SRVMSG, usrName));
+            } else {
+                usrName = request.substring(separatorIndex + 1);
+                resumeToken = sessions.issueToken();
+
+                log.info(String.format(CONNECTION_BEGIN_SRVMSG, usrName));
+            }
+
+            isUserNameReceived = true;
+
+            sentMsg.setClientID(clientID);
+            reply(FRAME_SESSION, resumeToken, out);
+        }
+
+        /**
+         * Sends reply on client's request keeping it for request repeated after resumption
+         * @param msg - reply content
+         * @param out - output stream linked with client's socket
+         * @throws IOException - throws if error occurs upon message transmission
+         */
+        private void answer(String msg, DataOutputStream out) throws IOException {
+            // request is answered even if reply is lost by connection
+            lastReply = msg;
+            ++repliesNumber;
+
+            reply(FRAME_DATA, msg, out);
+        }
+
+        /**
+         * Sends message to client recording it to journal
+         * @param type - frame type (FRAME_DATA for server responses or session control frame type)
+         * @param msg - message content
+         * @param out - output stream linked with client's socket
+         * @throws IOException - throws if error occurs upon message transmission
+         */
+        private void reply(byte type, String msg, DataOutputStream out) throws IOException {
+            if (type == FRAME_DATA) {
+                unansweredNumber.decrementAndGet();
+            }
+
+            // pings of link thread and responses of other sessions are sent to the same stream
+            synchronized (out) {
+                sentMsg.sendMessage(type, msg, out);
+            }
+
+            if (journal != null) {
+                journal.append(JOURNAL_OUTBOUND, clientID, sentMsg);
+            }
+        }
+
+        /**
+         * Notifies client caching responses that its cached responses of command token aren't valid
+         * @param token - command token or empty string for all responses
+         * @return false if client doesn't cache responses
+         * @throws IOException - throws if error occurs upon message transmission
+         */
+        boolean invalidateResponses(String token) throws IOException {
+            DataOutputStream out = cacheOut;
+
+            if (out == null) {
+                return false;
+            }
+
+            MessageTraits invalidateMsg = new MessageTraits();
+            invalidateMsg.setStreamID(streamID);
+            invalidateMsg.setClientID(clientID);
+
+            synchronized (out) {
+                invalidateMsg.sendMessage(FRAME_INVALIDATE, token, out);
+            }
+
+            return true;
+        }
+
+        /**
+         * Assigns time to live of the current response, so client caching responses answers the same command
+         * by it without round trip. Invoked by listener while response is formed
+         * @param responseTtl - time to live in ms or 0 if response isn't cacheable
+         */
+        void setResponseTtl(long responseTtl) {
+            this.responseTtl = responseTtl;
+        }
+
+        /**
+         * Counts received data message of session. Window limits multiplexed sessions only, since single session
+         * client pipelining its commands is limited by flow capacity of worker pool
+         * @return false if message exceeds window of unanswered messages
+         */
+        boolean acquireWindow() {
+            int number = unansweredNumber.incrementAndGet();
+
+            return streamID == PRIMARY_STREAM_ID || number <= STREAM_WINDOW;
+        }
+
+        /**
+         * Answers message exceeding window of unanswered messages by rejection without processing
+         * @param out - output stream linked with client's socket
+         * @throws IOException - throws if error occurs upon rejection reply transmission
+         */
+        void reject(DataOutputStream out) throws IOException {
+            ++rejectedNumber;
+            answer(STREAM_WINDOW_MSG, out);
+        }
+
+        /**
+         * Excludes the current exchange from user's history, so history request doesn't push out exchanges
+         * it shows. Invoked by listener while response is formed
+         */
+        void skipHistory() {
+            isHistoryRecorded = false;
+        }
+
+        /**
+         * Keeps identity of unexpectedly disconnected client for resumption
+         */
+        void detach() {
+            if (isUserNameReceived && !isQuit) {
+                sessions.detach(resumeToken, usrName, clientID, repliesNumber, lastReply);
+            }
+        }
+
+        /**
+         * @return user name corresponding to this connection
+         */
+        final String getUsrName() {
+            return usrName;
+        }
+
+        /**
+         * @return total connections number of server or of all alive nodes of cluster
+         */
+        final int getConnectionsNumber() {
+            readLock.lock();
+
+            try {
+                return Server.this.connectList.size() + (cluster != null ? cluster.getRemoteConnectionsNumber() : 0);
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        /**
+         * @return index of this connection in general server connections list. Connections of cluster nodes
+         *         preceding this node by name are counted before it
+         */
+        final int getConnectionIndex() {
+            readLock.lock();
+
+            try {
+                int index = Server.this.connectList.indexOf(this);
+                return index == CMD_NOT_FOUND || cluster == null ? index :
+                                                                   cluster.getPrecedingConnectionsNumber() + index;
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        /**
+         * @return storage of the last exchanges of all users
+         */
+        final ConversationHistory getHistory() {
+            return history;
+        }
+
+        /**
+         * @return client's ID assigned by server
+         */
+        final int getClientID() {
+            return clientID;
+        }
+
+        /**
+         * @return logical session ID inside physical connection
+         */
+        final int getStreamID() {
+            return streamID;
+        }
+
+        /**
+         * @return number of requests of session throttled by rate limits
+         */
+        final long getThrottledNumber() {
+            return throttledNumber;
+        }
+
+        /**
+         * @return number of received but unanswered data messages of session
+         */
+        final int getUnansweredNumber() {
+            return unansweredNumber.get();
+        }
+
+        /**
+         * @return number of messages of session rejected by window of unanswered messages
+         */
+        final long getRejectedNumber() {
+            return rejectedNumber;
+        }
+
+        /**
+         * @return flag notifying if user name is received by server from client's side
+         */
+        final boolean isUserNameReceived() {
+            return isUserNameReceived;
+        }
+    }
+
+    /**
+     * Builder of server embedded into application or test. Server could listen to TCP port or accept clients of
+     * in-JVM loopback transport. Started server runs in its own thread without waiting for "stop" command from
+     * keyboard and is stopped by "close" method
+     */
+    public static class Builder {
+        private final ServerListener listener;
+        private int portNumber = 8080;
+        private Transport transport;
+
+        // settings applied to built server in invocation order
+        private final List<Consumer<Server>> settings = new ArrayList<>();
+
+        /**
+         * @param listener - processes client messages according to predefined method
+         */
+        public Builder(ServerListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @param portNumber - port number listening by server for client connection
+         * @return this builder
+         */
+        public Builder port(int portNumber) {
+            this.portNumber = portNumber;
+            return this;
+        }
+
+        /**
+         * @param transport - source of connections instead of listened port, e.g. loopback transport
+         * @return this builder
+         */
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * @param extraTransport - additional source of connections, e.g. shared memory transport
+         * @return this builder
+         */
+        public Builder addTransport(Transport extraTransport) {
+            settings.add(srv -> srv.addTransport(extraTransport));
+            return this;
+        }
+
+        /**
+         * @param gracePeriod - time in ms during which client could resume lost session
+         * @return this builder
+         */
+        public Builder sessionGracePeriod(long gracePeriod) {
+            settings.add(srv -> srv.setSessionGracePeriod(gracePeriod));
+            return this;
+        }
+
+        /**
+         * @see Server#setSessionSnapshot(String)
+         * @return this builder
+         */
+        public Builder sessionSnapshot(String snapshotPath) {
+            settings.add(srv -> srv.setSessionSnapshot(snapshotPath));
+            return this;
+        }
+
+        /**
+         * @param maxMessageSize - maximal size of received message in bytes
+         * @return this builder
+         */
+        public Builder maxMessageSize(int maxMessageSize) {
+            settings.add(srv -> srv.setMaxMessageSize(maxMessageSize));
+            return this;
+        }
+
+        /**
+         * @see Server#setRateLimits(int, int, int, int, long)
+         * @return this builder
+         */
+        public Builder rateLimits(int connectionRate, int connectionBurst, int userRate, int userBurst,
+                                  long throttleDelay) {
+            settings.add(srv -> srv.setRateLimits(connectionRate, connectionBurst, userRate, userBurst,
+                                                  throttleDelay));
+            return this;
+        }
+
+        /**
+         * @see Server#setHistoryLimits(int, int, long)
+         * @return this builder
+         */
+        public Builder historyLimits(int size, int entrySize, long memoryLimit) {
+            settings.add(srv -> srv.setHistoryLimits(size, entrySize, memoryLimit));
+            return this;
+        }
+
+        /**
+         * @param journal - opened journal of received messages
+         * @return this builder
+         */
+        public Builder journal(MessageJournal journal) {
+            settings.add(srv -> srv.setJournal(journal));
+            return this;
+        }
+
+        /**
+         * @param tls - TLS context with server's key
+         * @return this builder
+         */
+        public Builder tls(TlsContext tls) {
+            settings.add(srv -> srv.setTls(tls));
+            return this;
+        }
+
+        /**
+         * @param cluster - cluster node of server
+         * @return this builder
+         */
+        public Builder cluster(ClusterNode cluster) {
+            settings.add(srv -> srv.setCluster(cluster));
+            return this;
+        }
+
+        /**
+         * @see Server#setKeepalive(long, int)
+         * @return this builder
+         */
+        public Builder keepalive(long pingInterval, int maxMisses) {
+            settings.add(srv -> srv.setKeepalive(pingInterval, maxMisses));
+            return this;
+        }
+
+        /**
+         * @see Server#setWorkerPool(int, int)
+         * @return this builder
+         */
+        public Builder workerPool(int workersNumber, int quantum) {
+            settings.add(srv -> srv.setWorkerPool(workersNumber, quantum));
+            return this;
+        }
+
+        /**
+         * @see Server#setStallWatchdog(long, StallWatchdog.Action)
+         * @return this builder
+         */
+        public Builder stallWatchdog(long threshold, StallWatchdog.Action action) {
+            settings.add(srv -> srv.setStallWatchdog(threshold, action));
+            return this;
+        }
+
+        /**
+         * @param adminPort - admin port number
+         * @return this builder
+         */
+        public Builder adminPort(int adminPort) {
+            settings.add(srv -> srv.setAdminPort(adminPort));
+            return this;
+        }
+
+        /**
+         * @param maxLinksNumber - maximal connections number or 0 for unlimited number
+         * @return this builder
+         */
+        public Builder maxLinksNumber(int maxLinksNumber) {
+            settings.add(srv -> srv.setMaxLinksNumber(maxLinksNumber));
+            return this;
+        }
+
+        /**
+         * @return configured server ready for "run" method invocation
+         */
+        public Server build() {
+            Server srv = new Server(portNumber, listener);
+            srv.transport = transport;
+
+            for (Consumer<Server> setting : settings) {
+                setting.accept(srv);
+            }
+
+            return srv;
+        }
+
+        /**
+         * Builds server and starts it in separate thread waiting for connections accepting
+         * @return started server
+         * @throws IOException - if server fails to listen
+         * @throws InterruptedException - if waiting for server's start is interrupted
+         */
+        public Server start() throws IOException, InterruptedException {
+            Server srv = build();
+
+            srv.thread = new Thread(srv, SERVER_THREAD_NAME);
+            srv.thread.start();
+
+            if (!srv.awaitListening(SERVER_START_TIMEOUT)) {
+                srv.close();
+                throw new IOException("Server error: server isn't started on " +
+                                      (transport != null ? transport.describe() : "port = " + portNumber));
+            }
+
+            return srv;
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            ConfigReader cfgReader = new ConfigReader();
+            cfgReader.parse("../files/config.xml", true);
+
+            // unencrypted connections aren't allowed if TLS is specified
+            TlsContext tls = null;
+
+            if (cfgReader.isTlsEnabled() && (tls = MainCore.openTls(cfgReader)) == null) {
+                return;
+            }
+
+            Server srv = MainCore.createServer(cfgReader, tls);
+
+            if (srv == null) {
+                return;
+            }
 
-             Server.start(cfgReader.getPortNumber(), new AIServerListener());
+            Server.start(srv);
  //           Server.start(cfgReader.getPortNumber(), (String msg, Server.Connection connection) -> msg);
         } catch(ParserConfigurationException exc) {
             log.log(Level.SEVERE, "ConfigReader error: unable to get DOM document instance from XML", exc);
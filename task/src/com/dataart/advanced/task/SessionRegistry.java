@@ -0,0 +1,248 @@
+package com.dataart.advanced.task;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dataart.advanced.task.Info.DEFAULT_SZ;
+import static com.dataart.advanced.task.Info.RESUME_TOKEN_LENGTH;
+
+/**
+ * Storage of detached client sessions on server side.
+ * The session is detached when connection with client is lost without "quit"
+ * command. Client could resume it during grace period presenting resume token
+ * obtained from server, so user name and client's ID are restored without
+ * repeated handshake. Expired sessions are removed lazily.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SessionRegistry {
+    /**
+     * Client's identity kept by server after connection loss
+     */
+    static class Session {
+        private final String token;    // resume token issued for session
+        private final String usrName;  // client's name
+        private final int clientID;    // client's ID assigned by server
+
+        // number of client's requests answered by server or DEFAULT_SZ if it's unknown (e.g. after restart)
+        private final long repliesNumber;
+        private final String lastReply;  // reply on the last answered request or null
+
+        private final long detachTime; // moment of connection loss in ms
+
+        /**
+         * Constructor creates detached session description without replies, so repeated request isn't recognized
+         * @param token - resume token issued for session
+         * @param usrName - client's name
+         * @param clientID - client's ID assigned by server
+         * @param detachTime - moment of connection loss in ms
+         */
+        Session(String token, String usrName, int clientID, long detachTime) {
+            this(token, usrName, clientID, DEFAULT_SZ, null, detachTime);
+        }
+
+        /**
+         * Constructor creates detached session description
+         * @param token - resume token issued for session
+         * @param usrName - client's name
+         * @param clientID - client's ID assigned by server
+         * @param repliesNumber - number of client's requests answered by server
+         * @param lastReply - reply on the last answered request or null
+         * @param detachTime - moment of connection loss in ms
+         */
+        Session(String token, String usrName, int clientID, long repliesNumber, String lastReply, long detachTime) {
+            this.token = token;
+            this.usrName = usrName;
+            this.clientID = clientID;
+            this.repliesNumber = repliesNumber;
+            this.lastReply = lastReply;
+            this.detachTime = detachTime;
+        }
+
+        /**
+         * @return resume token issued for session
+         */
+        final String getToken() {
+            return token;
+        }
+
+        /**
+         * @return client's name
+         */
+        final String getUsrName() {
+            return usrName;
+        }
+
+        /**
+         * @return client's ID assigned by server
+         */
+        final int getClientID() {
+            return clientID;
+        }
+
+        /**
+         * @return number of client's requests answered by server or DEFAULT_SZ if it's unknown
+         */
+        final long getRepliesNumber() {
+            return repliesNumber;
+        }
+
+        /**
+         * @return reply on the last answered request or null
+         */
+        final String getLastReply() {
+            return lastReply;
+        }
+    }
+
+    // detached sessions by resume token
+    private final ConcurrentMap<String, Session> detached = new ConcurrentHashMap<>();
+
+    private final long gracePeriod;  // time of detached session storing in ms
+
+    // moment of the next expired sessions cleaning in ms
+    private final AtomicLong nextPurgeTime = new AtomicLong();
+
+    // resumption statistics
+    private final AtomicLong resumeHits = new AtomicLong();
+    private final AtomicLong resumeMisses = new AtomicLong();
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Constructor creates registry with specified grace period
+     * @param gracePeriod - time of detached session storing in ms
+     */
+    SessionRegistry(long gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * @return new unique resume token
+     */
+    String issueToken() {
+        byte[] token = new byte[RESUME_TOKEN_LENGTH];
+        random.nextBytes(token);
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Stores session of lost connection for further resumption. Reply on the last request is kept, since it
+     * could be lost with connection and client repeats the request after resumption
+     * @param token - resume token issued for session
+     * @param usrName - client's name
+     * @param clientID - client's ID assigned by server
+     * @param repliesNumber - number of client's requests answered by server
+     * @param lastReply - reply on the last answered request or null
+     */
+    void detach(String token, String usrName, int clientID, long repliesNumber, String lastReply) {
+        detached.put(token, new Session(token, usrName, clientID, repliesNumber, lastReply,
+                                        System.currentTimeMillis()));
+    }
+
+    /**
+     * Extracts detached session specified by resume token
+     * @param token - resume token presented by reconnecting client
+     * @return detached session or null if token is unknown or session is expired
+     */
+    Session resume(String token) {
+        Session session = detached.remove(token);
+
+        if (session == null || isExpired(session, System.currentTimeMillis())) {
+            resumeMisses.incrementAndGet();
+            return null;
+        }
+
+        resumeHits.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * @return detached sessions which aren't expired yet
+     */
+    List<Session> collectDetached() {
+        long now = System.currentTimeMillis();
+        List<Session> sessions = new ArrayList<>(detached.size());
+
+        for (Session session : detached.values()) {
+            if (!isExpired(session, now)) {
+                sessions.add(session);
+            }
+        }
+
+        return sessions;
+    }
+
+    /**
+     * Stores sessions of previous server run, e.g. loaded from snapshot
+     * @param sessions - detached sessions
+     */
+    void restore(Collection<Session> sessions) {
+        for (Session session : sessions) {
+            detached.put(session.token, session);
+        }
+    }
+
+    /**
+     * Removes expired sessions. Real cleaning is performed not often than once
+     * per grace period so method could be invoked in any loop
+     */
+    void purgeExpired() {
+        long now = System.currentTimeMillis();
+        long purgeTime = nextPurgeTime.get();
+
+        if (now < purgeTime || !nextPurgeTime.compareAndSet(purgeTime, now + gracePeriod)) {
+            return;
+        }
+
+        detached.values().removeIf(session -> isExpired(session, now));
+    }
+
+    /**
+     * @param session - detached session
+     * @param now - current moment in ms
+     * @return true if grace period of specified session is over
+     */
+    private boolean isExpired(Session session, long now) {
+        return now - session.detachTime > gracePeriod;
+    }
+
+    /**
+     * @return number of detached sessions waiting for resumption
+     */
+    final int getDetachedNumber() {
+        return detached.size();
+    }
+
+    /**
+     * @return number of successful resumptions
+     */
+    final long getResumeHits() {
+        return resumeHits.get();
+    }
+
+    /**
+     * @return number of resume attempts with unknown or expired token
+     */
+    final long getResumeMisses() {
+        return resumeMisses.get();
+    }
+
+    /**
+     * @return ratio of successful resumptions to all resume attempts
+     */
+    final double getResumeHitRate() {
+        long hits = resumeHits.get();
+        long total = hits + resumeMisses.get();
+
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
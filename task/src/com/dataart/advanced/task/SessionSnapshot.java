@@ -0,0 +1,168 @@
+package com.dataart.advanced.task;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Binary snapshot of server's sessions state kept between server runs. Snapshot is written on graceful stop
+ * and loaded on start, so clients reconnecting after restart resume their sessions without handshake and new
+ * clients don't get IDs of previous run. Snapshot is written to temporary file moved over previous snapshot,
+ * so crash during writing doesn't corrupt it.
+ * Snapshot file format:
+ * - 4 bytes -> SNAPSHOT_MAGIC;
+ * - 4 bytes -> clients counter of server;
+ * - 4 bytes -> sessions number;
+ * - sessions one by one:
+ *   - 4 bytes -> client's ID;
+ *   - 2 bytes -> resume token size, resume token in UTF-8;
+ *   - 4 bytes -> user name size, user name in UTF-8;
+ * - 8 bytes -> CRC32 of all previous bytes.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SessionSnapshot {
+    private final int clientsCounter;                        // clients counter of server
+    private final List<SessionRegistry.Session> sessions;    // sessions waiting for resumption
+
+    /**
+     * @param clientsCounter - clients counter of server
+     * @param sessions - sessions waiting for resumption
+     */
+    private SessionSnapshot(int clientsCounter, List<SessionRegistry.Session> sessions) {
+        this.clientsCounter = clientsCounter;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Writes snapshot replacing previous one
+     * @param path - snapshot file path
+     * @param clientsCounter - clients counter of server
+     * @param sessions - sessions waiting for resumption
+     * @throws IOException - if snapshot couldn't be written
+     */
+    static void write(Path path, int clientsCounter, Collection<SessionRegistry.Session> sessions)
+            throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path tmpPath = path.resolveSibling(path.getFileName() + SNAPSHOT_TMP_SUFFIX);
+        CRC32 crc = new CRC32();
+
+        // checksum is calculated by whole buffers
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Files.newOutputStream(tmpPath), crc), SNAPSHOT_BUFFER_SZ))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(clientsCounter);
+            out.writeInt(sessions.size());
+
+            for (SessionRegistry.Session session : sessions) {
+                byte[] token = session.getToken().getBytes(MESSAGE_CHARSET);
+                byte[] usrName = session.getUsrName().getBytes(MESSAGE_CHARSET);
+
+                out.writeInt(session.getClientID());
+                out.writeShort(token.length);
+                out.write(token);
+                out.writeInt(usrName.length);
+                out.write(usrName);
+            }
+
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads snapshot file. Grace period of read sessions starts from reading moment, since clients couldn't
+     * reconnect while server was stopped
+     * @param path - snapshot file path
+     * @return read snapshot
+     * @throws IOException - if snapshot couldn't be read or it's corrupted
+     */
+    static SessionSnapshot read(Path path) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+
+        if (content.length < SNAPSHOT_HEADER_SZ + Long.BYTES) {
+            throw new IOException("SessionSnapshot: snapshot file " + path + " is truncated");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length - Long.BYTES);
+
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+
+        if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getLong(content.length - Long.BYTES) != crc.getValue()) {
+            throw new IOException("SessionSnapshot: snapshot file " + path + " is corrupted");
+        }
+
+        buffer.limit(content.length - Long.BYTES);
+        long detachTime = System.currentTimeMillis();
+
+        try {
+            int clientsCounter = buffer.getInt();
+            int sessionsNumber = buffer.getInt();
+
+            List<SessionRegistry.Session> sessions = new ArrayList<>(Math.min(sessionsNumber, buffer.remaining()));
+
+            for (int i = 0; i < sessionsNumber; ++i) {
+                int clientID = buffer.getInt();
+                String token = readString(buffer, buffer.getShort() & 0xFFFF);
+                String usrName = readString(buffer, buffer.getInt());
+
+                sessions.add(new SessionRegistry.Session(token, usrName, clientID, detachTime));
+            }
+
+            return new SessionSnapshot(clientsCounter, sessions);
+        } catch (BufferUnderflowException | IllegalArgumentException exc) {
+            throw new IOException("SessionSnapshot: snapshot file " + path + " is corrupted", exc);
+        }
+    }
+
+    /**
+     * @param buffer - snapshot content positioned on string
+     * @param size - string size in bytes
+     * @return decoded string, buffer is positioned after it
+     */
+    private static String readString(ByteBuffer buffer, int size) {
+        if (size < 0 || size > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        String value = new String(buffer.array(), buffer.position(), size, MESSAGE_CHARSET);
+        buffer.position(buffer.position() + size);
+
+        return value;
+    }
+
+    /**
+     * @return clients counter of server
+     */
+    final int getClientsCounter() {
+        return clientsCounter;
+    }
+
+    /**
+     * @return sessions waiting for resumption
+     */
+    final List<SessionRegistry.Session> getSessions() {
+        return sessions;
+    }
+}
@@ -0,0 +1,586 @@
+package com.dataart.advanced.task;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Transport of client and server placed on the same host. Frames are exchanged through memory mapped file
+ * holding two single producer single consumer rings, one per direction, so TCP stack is bypassed. Connection
+ * is set up by short TCP handshake on loopback port: server creates and maps rings file, sends its path to
+ * client and removes file after client's mapping, so file doesn't outlive processes. Handshake connection stays
+ * open and its closing notifies of peer's death. Thread waiting for empty or full ring busy spins or parks with
+ * growing time according to wait strategy. Mapped memory is released by garbage collector after connection
+ * closing
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SharedMemoryTransport implements Transport {
+    /**
+     * Strategy of thread waiting for ring change
+     */
+    public enum WaitStrategy {
+        SPIN,   // the lowest latency, waiting thread occupies processor core
+        PARK;   // spinning, then yielding and parking with growing time
+
+        /**
+         * @param name - strategy name from configuration file, case insensitive
+         * @return strategy with specified name
+         */
+        static WaitStrategy parse(String name) {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    // ring layout: consumer's and producer's positions in separate cache lines, closing flags and data
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 64;
+    private static final int WRITE_CLOSED_OFFSET = 128;
+    private static final int READ_CLOSED_OFFSET = 132;
+    private static final int DATA_OFFSET = 192;
+
+    // spinning on single processor only delays peer, so waiting thread yields at once
+    private static final int SPIN_TRIES = Runtime.getRuntime().availableProcessors() > 1 ? SHM_SPIN_TRIES : 0;
+
+    private final ServerSocket srvSocket;   // listening socket of handshakes
+    private final int ringSize;             // capacity of each ring in bytes
+    private final WaitStrategy wait;
+    private final File directory;           // folder of rings files
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(SharedMemoryTransport.class.getName());
+
+    /**
+     * Constructor binds handshake port on loopback address only. Rings files are placed in memory backed folder
+     * if it's available
+     * @param handshakePort - handshake port number
+     * @param ringSize - capacity of each ring in bytes
+     * @param wait - strategy of server's threads waiting for rings
+     * @throws IOException - if handshake port couldn't be bound
+     */
+    public SharedMemoryTransport(int handshakePort, int ringSize, WaitStrategy wait) throws IOException {
+        this.ringSize = ringSize;
+        this.wait = wait;
+
+        File shmDir = new File(SHM_DIR);
+        directory = shmDir.isDirectory() && shmDir.canWrite() ? shmDir : new File(System.getProperty("java.io.tmpdir"));
+
+        ServerSocketChannel channel = ServerSocketChannel.open();
+
+        try {
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), handshakePort));
+        } catch (IOException exc) {
+            channel.close();
+            throw exc;
+        }
+
+        srvSocket = channel.socket();
+    }
+
+    /**
+     * Accepts handshake connection and shares new rings file with client. Failed handshake is logged, so
+     * server continues accepting
+     * @see Transport#accept(int)
+     */
+    @Override
+    public Endpoint accept(int timeout) throws IOException {
+        srvSocket.setSoTimeout(timeout);
+
+        SocketChannel channel;
+
+        try {
+            channel = srvSocket.accept().getChannel();
+        } catch (SocketTimeoutException exc) {
+            return null;
+        }
+
+        File file = null;
+
+        try {
+            file = File.createTempFile(SHM_FILE_PREFIX, ".ring", directory);
+            MappedByteBuffer rings = map(file, ringSize, true);
+
+            Socket socket = channel.socket();
+            socket.setSoTimeout(SHM_HANDSHAKE_TIMEOUT);
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(file.getAbsolutePath());
+            out.writeInt(ringSize);
+            out.flush();
+
+            // client confirms rings mapping
+            if (socket.getInputStream().read() < 0) {
+                throw new EOFException("SharedMemoryTransport: handshake connection is closed by client");
+            }
+
+            return new SharedMemoryEndpoint(channel, rings, ringSize, false, wait);
+        } catch (IOException exc) {
+            log.log(Level.WARNING, "SharedMemoryTransport: handshake with client is failed", exc);
+            channel.close();
+
+            return null;
+        } finally {
+            // mapped file remains available for both processes after its removal
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Connects to server placed on the same host
+     * @param hostName - host name of server placement
+     * @param handshakePort - handshake port number of server's shared memory transport
+     * @param wait - strategy of client's threads waiting for rings
+     * @return client's side of connection
+     * @throws IOException - if handshake or rings file mapping fails
+     */
+    public static Endpoint connect(String hostName, int handshakePort, WaitStrategy wait) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(hostName, handshakePort));
+
+        try {
+            Socket socket = channel.socket();
+            socket.setSoTimeout(SHM_HANDSHAKE_TIMEOUT);
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            File file = new File(in.readUTF());
+            int ringSize = in.readInt();
+
+            MappedByteBuffer rings = map(file, ringSize, false);
+            socket.getOutputStream().write(1);
+
+            return new SharedMemoryEndpoint(channel, rings, ringSize, true, wait);
+        } catch (IOException exc) {
+            channel.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Maps rings file. Mapping stays valid after file closing and removal
+     * @param file - rings file
+     * @param ringSize - capacity of each ring in bytes
+     * @param isCreated - true if file is just created and its size should be assigned
+     * @return mapped memory of both rings
+     * @throws IOException - if file couldn't be mapped or has unexpected size
+     */
+    private static MappedByteBuffer map(File file, int ringSize, boolean isCreated) throws IOException {
+        long size = 2L * (DATA_OFFSET + ringSize);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (isCreated) {
+                raf.setLength(size);
+            } else if (raf.length() != size) {
+                throw new IOException("SharedMemoryTransport: unexpected size of rings file " + file);
+            }
+
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "shared memory handshake port = " + srvSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        srvSocket.close();
+    }
+
+    /**
+     * Single producer single consumer ring inside mapped memory. Each process uses ring either as producer or as
+     * consumer, so it keeps its own position locally and only publishes it. Peer's position is read with acquire
+     * semantics by acquire fence after it and own position is published with release semantics by release fence
+     * before it: consumer doesn't read data before it's written, producer doesn't overwrite data before it's read.
+     * Positions are aligned 8 bytes values, so their plain reading and writing aren't torn
+     */
+    private static class Ring {
+        private final ByteBuffer memory;   // ring's part of mapped memory
+        private final int capacity;        // data capacity in bytes
+
+        private long position = 0;         // consumer's head or producer's tail, only growing
+
+        Ring(ByteBuffer rings, int offset, int capacity) {
+            ByteBuffer view = rings.duplicate();
+            view.position(offset);
+            view.limit(offset + DATA_OFFSET + capacity);
+
+            memory = view.slice().order(ByteOrder.nativeOrder());
+            this.capacity = capacity;
+        }
+
+        /**
+         * Consumer's reading of available data
+         * @return number of read bytes or 0 if ring is empty
+         */
+        int read(byte[] b, int off, int len) {
+            long tail = memory.getLong(TAIL_OFFSET);
+            VarHandle.acquireFence();
+
+            int readSz = (int) Math.min(len, tail - position);
+
+            if (readSz <= 0) {
+                return 0;
+            }
+
+            copy(b, off, readSz, false);
+            VarHandle.releaseFence();
+
+            position += readSz;
+            memory.putLong(HEAD_OFFSET, position);
+
+            return readSz;
+        }
+
+        /**
+         * Producer's writing to free space
+         * @return number of written bytes or 0 if ring is full
+         */
+        int write(byte[] b, int off, int len) {
+            long head = memory.getLong(HEAD_OFFSET);
+            VarHandle.acquireFence();
+
+            int writtenSz = (int) Math.min(len, capacity - (position - head));
+
+            if (writtenSz <= 0) {
+                return 0;
+            }
+
+            copy(b, off, writtenSz, true);
+            VarHandle.releaseFence();
+
+            position += writtenSz;
+            memory.putLong(TAIL_OFFSET, position);
+
+            return writtenSz;
+        }
+
+        /**
+         * Copies data between array and ring starting from own position, data crossing ring's end is split
+         */
+        private void copy(byte[] b, int off, int len, boolean isWrite) {
+            int index = (int) (position % capacity);
+            int firstSz = Math.min(len, capacity - index);
+
+            memory.position(DATA_OFFSET + index);
+            transfer(b, off, firstSz, isWrite);
+
+            if (len > firstSz) {
+                memory.position(DATA_OFFSET);
+                transfer(b, off + firstSz, len - firstSz, isWrite);
+            }
+        }
+
+        private void transfer(byte[] b, int off, int len, boolean isWrite) {
+            if (isWrite) {
+                memory.put(b, off, len);
+            } else {
+                memory.get(b, off, len);
+            }
+        }
+
+        boolean isWriteClosed() {
+            boolean isClosed = memory.getInt(WRITE_CLOSED_OFFSET) != 0;
+            VarHandle.acquireFence();
+
+            return isClosed;
+        }
+
+        boolean isReadClosed() {
+            boolean isClosed = memory.getInt(READ_CLOSED_OFFSET) != 0;
+            VarHandle.acquireFence();
+
+            return isClosed;
+        }
+
+        /**
+         * Producer's closing: consumer gets end of stream after written data
+         */
+        void closeWrite() {
+            VarHandle.releaseFence();
+            memory.putInt(WRITE_CLOSED_OFFSET, 1);
+        }
+
+        /**
+         * Consumer's closing: producer gets error
+         */
+        void closeRead() {
+            VarHandle.releaseFence();
+            memory.putInt(READ_CLOSED_OFFSET, 1);
+        }
+    }
+
+    /**
+     * One side of shared memory connection: consumer of one ring and producer of another one. Reading and
+     * writing could be performed by different threads simultaneously
+     */
+    private static class SharedMemoryEndpoint implements Endpoint {
+        private final SocketChannel channel;   // handshake connection notifying of peer's death
+        private final String remoteAddress;
+        private final int peerPort;
+
+        private final Ring inRing;
+        private final Ring outRing;
+        private final WaitStrategy wait;
+
+        private final Object readLock = new Object();
+        private final Object writeLock = new Object();
+
+        private final ByteBuffer probe = ByteBuffer.allocate(1);   // liveness probe, guarded by "channel"
+        private volatile long lastCheckTime = System.nanoTime();   // moment of the last liveness check in ns
+
+        private volatile int readTimeout = 0;          // in ms
+        private volatile boolean isPeerDead = false;
+        private volatile boolean isInputShutdown = false;
+        private volatile boolean isClosed = false;
+
+        private final InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return receive(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                SharedMemoryEndpoint.this.close();
+            }
+        };
+
+        private final OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                send(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                SharedMemoryEndpoint.this.close();
+            }
+        };
+
+        /**
+         * @param channel - finished handshake connection
+         * @param rings - mapped memory of both rings
+         * @param ringSize - capacity of each ring in bytes
+         * @param isClient - true for client's side: client produces to the first ring, server to the second one
+         * @param wait - strategy of waiting for rings
+         * @throws IOException - if handshake connection is closed
+         */
+        SharedMemoryEndpoint(SocketChannel channel, ByteBuffer rings, int ringSize, boolean isClient,
+                             WaitStrategy wait) throws IOException {
+            this.channel = channel;
+            this.wait = wait;
+
+            InetSocketAddress address = (InetSocketAddress) channel.getRemoteAddress();
+            remoteAddress = "shm " + address;
+            peerPort = address.getPort();
+
+            Ring toServer = new Ring(rings, 0, ringSize);
+            Ring toClient = new Ring(rings, DATA_OFFSET + ringSize, ringSize);
+
+            inRing = isClient ? toClient : toServer;
+            outRing = isClient ? toServer : toClient;
+
+            // liveness is probed without blocking
+            channel.configureBlocking(false);
+        }
+
+        /**
+         * @return number of read bytes or -1 if connection is closed
+         * @throws IOException - if reading timeout is expired
+         */
+        private int receive(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            synchronized (readLock) {
+                long start = System.nanoTime();
+
+                for (int idleNumber = 0; ; ++idleNumber) {
+                    if (isInputShutdown || isClosed) {
+                        return -1;
+                    }
+
+                    // closing is checked before reading, so data written before closing isn't lost
+                    boolean isFinished = inRing.isWriteClosed() || isPeerDead;
+
+                    int readSz = inRing.read(b, off, len);
+
+                    if (readSz > 0) {
+                        return readSz;
+                    }
+
+                    if (isFinished) {
+                        return -1;
+                    }
+
+                    idle(idleNumber, start, readTimeout);
+                }
+            }
+        }
+
+        /**
+         * @throws IOException - if connection is closed
+         */
+        private void send(byte[] b, int off, int len) throws IOException {
+            synchronized (writeLock) {
+                long start = System.nanoTime();
+                int idleNumber = 0;
+
+                while (len > 0) {
+                    if (isClosed) {
+                        throw new IOException("SharedMemoryTransport: connection is closed");
+                    }
+
+                    if (outRing.isReadClosed() || isPeerDead) {
+                        throw new IOException("SharedMemoryTransport: connection is closed by peer");
+                    }
+
+                    int writtenSz = outRing.write(b, off, len);
+
+                    if (writtenSz > 0) {
+                        off += writtenSz;
+                        len -= writtenSz;
+                        idleNumber = 0;
+                    } else {
+                        idle(idleNumber++, start, 0);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits for ring change according to wait strategy checking peer's liveness periodically
+         * @param idleNumber - number of ring checks since waiting start
+         * @param start - moment of waiting start in ns
+         * @param timeout - waiting timeout in ms or 0 for infinite waiting
+         * @throws SocketTimeoutException - if timeout is expired
+         */
+        private void idle(int idleNumber, long start, int timeout) throws SocketTimeoutException {
+            long now = System.nanoTime();
+
+            if (timeout > 0 && now - start >= TimeUnit.MILLISECONDS.toNanos(timeout)) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+
+            if (now - lastCheckTime >= TimeUnit.MILLISECONDS.toNanos(SHM_LIVENESS_PERIOD)) {
+                lastCheckTime = now;
+                checkPeer();
+            }
+
+            if (wait == WaitStrategy.SPIN || idleNumber < SPIN_TRIES) {
+                return;
+            }
+
+            if (idleNumber < SPIN_TRIES + SHM_SPIN_TRIES) {
+                Thread.yield();
+            } else {
+                int growth = Math.min(idleNumber - SPIN_TRIES - SHM_SPIN_TRIES, 16);
+                LockSupport.parkNanos(Math.min(SHM_PARK_MAX_TIME, SHM_PARK_MIN_TIME << growth));
+            }
+        }
+
+        /**
+         * Detects peer's death by closing of handshake connection
+         */
+        private void checkPeer() {
+            synchronized (channel) {
+                try {
+                    probe.clear();
+
+                    if (channel.read(probe) < 0) {
+                        isPeerDead = true;
+                    }
+                } catch (IOException exc) {
+                    isPeerDead = true;
+                }
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public TlsStreams secure(TlsContext tls, boolean isClientMode) {
+            return new TlsStreams(in, out, tls, isClientMode, LOOPBACK_HOST, peerPort);
+        }
+
+        @Override
+        public void setReadTimeout(int timeout) {
+            readTimeout = timeout;
+        }
+
+        @Override
+        public void shutdownInput() {
+            isInputShutdown = true;
+            inRing.closeRead();
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * Closes both directions: peer gets end of stream after written data
+         */
+        @Override
+        public void close() throws IOException {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+
+            outRing.closeWrite();
+            inRing.closeRead();
+
+            channel.close();
+        }
+    }
+}
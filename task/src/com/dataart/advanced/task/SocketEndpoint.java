@@ -0,0 +1,60 @@
+package com.dataart.advanced.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Endpoint over connected TCP socket
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SocketEndpoint implements Endpoint {
+    private final Socket socket;
+
+    /**
+     * @param socket - connected socket closed together with endpoint
+     */
+    public SocketEndpoint(Socket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public TlsStreams secure(TlsContext tls, boolean isClientMode) throws IOException {
+        return new TlsStreams(socket, tls, isClientMode);
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) throws IOException {
+        socket.setSoTimeout(timeout);
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        socket.shutdownInput();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!socket.isClosed()) {
+            socket.close();
+        }
+    }
+}
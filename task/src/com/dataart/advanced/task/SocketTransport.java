@@ -0,0 +1,45 @@
+package com.dataart.advanced.task;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Transport accepting TCP connections on listened port
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SocketTransport implements Transport {
+    private final ServerSocket srvSocket;
+
+    /**
+     * Constructor binds listened port
+     * @param portNumber - listened port number
+     * @throws IOException - if port couldn't be bound
+     */
+    public SocketTransport(int portNumber) throws IOException {
+        srvSocket = new ServerSocket(portNumber);
+    }
+
+    @Override
+    public Endpoint accept(int timeout) throws IOException {
+        srvSocket.setSoTimeout(timeout);
+
+        try {
+            return new SocketEndpoint(srvSocket.accept());
+        } catch (SocketTimeoutException exc) {
+            return null;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "port = " + srvSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        srvSocket.close();
+    }
+}
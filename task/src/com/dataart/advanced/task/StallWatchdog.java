@@ -0,0 +1,305 @@
+package com.dataart.advanced.task;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Watchdog of server's requests stuck inside listener or blocked in socket write. Each session has its probe
+ * keeping start moment, stage and thread of in-flight request. Probe is changed by request processing thread
+ * with volatile writes and single CAS at request end, so request path takes no locks. Background thread checks
+ * probes several times per threshold and reports request exceeding threshold once per incident with the stack
+ * trace of its thread. Stalled request could be also cancelled by thread interruption (listener waiting for
+ * interruptible call gives up) or by link disconnecting (blocked socket write fails, session could be resumed)
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class StallWatchdog implements Closeable {
+    /**
+     * Reaction on stalled request in addition to its reporting
+     */
+    public enum Action {
+        LOG,         // request is reported only
+        INTERRUPT,   // thread of request is interrupted
+        DISCONNECT;  // link of request is closed
+
+        /**
+         * @param name - action name from configuration file, case insensitive
+         * @return action with specified name
+         */
+        static Action parse(String name) {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    // probe states: session is idle, request is in flight, its thread is being interrupted or is interrupted
+    private static final int IDLE = 0;
+    private static final int BUSY = 1;
+    private static final int INTERRUPTING = 2;
+    private static final int INTERRUPTED = 3;
+
+    /**
+     * In-flight request state of single session. Written by request processing thread, read by watchdog.
+     * Interruption is performed in INTERRUPTING state, and request end waits for its finishing, so thread is
+     * interrupted only while its request is in flight
+     */
+    class Probe {
+        private volatile long startTime = 0;   // start moment of in-flight request in ns or 0 if session is idle
+        private volatile String stage;         // stage of in-flight request
+        private volatile Thread thread;        // thread processing in-flight request
+
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+
+        // start moment of the last reported request, accessed only from watchdog thread
+        private long reportedTime = 0;
+
+        private final Supplier<String> describer;  // session description for report
+        private final Runnable disconnector;       // closing of session's link
+
+        Probe(Supplier<String> describer, Runnable disconnector) {
+            this.describer = describer;
+            this.disconnector = disconnector;
+        }
+
+        /**
+         * Marks request start by current thread. Start moment is written the last, so watchdog seeing it sees
+         * thread, stage and state of the same request
+         * @param stage - initial request stage
+         */
+        void begin(String stage) {
+            thread = Thread.currentThread();
+            this.stage = stage;
+            state.set(BUSY);
+            startTime = System.nanoTime();
+        }
+
+        /**
+         * @param stage - the next stage of in-flight request
+         */
+        void enter(String stage) {
+            this.stage = stage;
+        }
+
+        /**
+         * Marks request end clearing interruption of cancelled request, so it doesn't break further exchange.
+         * Start moment is cleared first, so watchdog starting interruption later doesn't interrupt thread
+         */
+        void end() {
+            startTime = 0;
+
+            while (true) {
+                int current = state.get();
+
+                // watchdog is interrupting thread right now
+                if (current == INTERRUPTING) {
+                    Thread.yield();
+                    continue;
+                }
+
+                if (state.compareAndSet(current, IDLE)) {
+                    if (current == INTERRUPTED) {
+                        Thread.interrupted();
+                    }
+
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Interrupts thread of stalled request if it's still in flight. Invoked by watchdog thread
+         * @param startTime - start moment of stalled request in ns
+         */
+        private void interrupt(long startTime) {
+            if (!state.compareAndSet(BUSY, INTERRUPTING)) {
+                return;
+            }
+
+            // request can't end till state change, so checked request is interrupted
+            boolean isInFlight = this.startTime == startTime;
+
+            if (isInFlight) {
+                thread.interrupt();
+            }
+
+            state.set(isInFlight ? INTERRUPTED : BUSY);
+        }
+
+        /**
+         * Removes probe of finished session from watchdog
+         */
+        void release() {
+            probes.remove(this);
+        }
+    }
+
+    private final long threshold;   // in-flight request time of stall in ns
+    private final Action action;
+
+    // probes of all sessions added and removed by links threads
+    private final Set<Probe> probes = ConcurrentHashMap.newKeySet();
+
+    // number of requests stalled now, updated by each check
+    private volatile int stalledNumber = 0;
+    // number of all stall incidents
+    private final AtomicLong incidentsNumber = new AtomicLong();
+
+    private final Thread watchThread;
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(StallWatchdog.class.getName());
+
+    /**
+     * Stack trace of stalled request's thread logged with report
+     */
+    private static class StallTrace extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        StallTrace(Thread thread) {
+            super("stack trace of thread \"" + thread.getName() + "\"", null, false, true);
+            setStackTrace(thread.getStackTrace());
+        }
+    }
+
+    /**
+     * Constructor starts checking thread
+     * @param threshold - in-flight request time of stall in ms
+     * @param action - reaction on stalled request in addition to its reporting
+     */
+    public StallWatchdog(long threshold, Action action) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("StallWatchdog: threshold " + threshold + " isn't positive");
+        }
+
+        this.threshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+        this.action = action;
+
+        watchThread = new Thread(this::watch, STALL_WATCHDOG_THREAD_NAME);
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Creates probe of new session
+     * @param describer - session description for report
+     * @param disconnector - closing of session's link for DISCONNECT action
+     * @return probe registered in watchdog till its release
+     */
+    Probe createProbe(Supplier<String> describer, Runnable disconnector) {
+        Probe probe = new Probe(describer, disconnector);
+        probes.add(probe);
+
+        return probe;
+    }
+
+    /**
+     * Body of probes checking executed in separate thread till watchdog closing
+     */
+    private void watch() {
+        long period = Math.max(TimeUnit.NANOSECONDS.toMillis(threshold) / STALL_CHECKS_NUMBER, 1);
+
+        try {
+            while (true) {
+                TimeUnit.MILLISECONDS.sleep(period);
+                check(System.nanoTime());
+            }
+        } catch (InterruptedException exc) {
+            // watchdog is closed
+        }
+    }
+
+    /**
+     * Reports and handles requests exceeding threshold. Request is reported once, while it stays stalled
+     * it's only counted
+     * @param now - check moment in ns
+     * @return number of stalled requests
+     */
+    int check(long now) {
+        int number = 0;
+
+        for (Probe probe : probes) {
+            long startTime = probe.startTime;
+
+            if (startTime == 0 || now - startTime < threshold) {
+                continue;
+            }
+
+            ++number;
+
+            if (startTime == probe.reportedTime) {
+                continue;
+            }
+
+            probe.reportedTime = startTime;
+            incidentsNumber.incrementAndGet();
+
+            Thread thread = probe.thread;
+
+            log.log(Level.WARNING, String.format("Stall watchdog: request of %s is in %s stage for %d ms, action " +
+                                                 "is %s", probe.describer.get(), probe.stage,
+                                                 TimeUnit.NANOSECONDS.toMillis(now - startTime),
+                                                 action.name().toLowerCase()), new StallTrace(thread));
+
+            if (action == Action.INTERRUPT) {
+                probe.interrupt(startTime);
+            } else if (action == Action.DISCONNECT) {
+                probe.disconnector.run();
+            }
+        }
+
+        stalledNumber = number;
+
+        return number;
+    }
+
+    /**
+     * @return in-flight request time of stall in ms
+     */
+    final long getThreshold() {
+        return TimeUnit.NANOSECONDS.toMillis(threshold);
+    }
+
+    /**
+     * @return reaction on stalled request
+     */
+    final Action getAction() {
+        return action;
+    }
+
+    /**
+     * @return number of requests stalled at the last check
+     */
+    final int getStalledNumber() {
+        return stalledNumber;
+    }
+
+    /**
+     * @return number of stall incidents since watchdog start
+     */
+    final long getIncidentsNumber() {
+        return incidentsNumber.get();
+    }
+
+    /**
+     * Stops checking thread waiting for its finishing
+     */
+    @Override
+    public void close() {
+        watchThread.interrupt();
+
+        try {
+            watchThread.join();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.dataart.advanced.task;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * TLS parameters shared by all connections of server or client: keys,
+ * trusted certificates, enabled protocol and sessions cache. Sessions cache
+ * of context allows abbreviated handshakes: server keeps sessions and
+ * issues session tickets, client offers cached session on reconnection to
+ * the same host and port. Context counts full and resumed handshakes. Full
+ * handshake is recognized by server's key choosing or by server's
+ * certificate verification on client side, both are skipped on resumption.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TlsContext {
+    private final SSLContext context;
+    private final String protocol;     // enabled protocol or null for provider's defaults
+
+    // flag notifying if client's side offers cached sessions for abbreviated handshakes
+    private volatile boolean isResumptionEnabled = true;
+
+    // handshakes statistics
+    private final AtomicLong fullNumber = new AtomicLong();
+    private final AtomicLong resumedNumber = new AtomicLong();
+
+    /**
+     * Constructor loads keys and trusted certificates from PKCS12 key stores
+     * @param keyStore - key store path with private key and certificate of server or null for client
+     * @param keyStorePassword - key store password
+     * @param trustStore - key store path with trusted certificates or null for JRE default ones
+     * @param trustStorePassword - trusted certificates store password
+     * @param protocol - enabled protocol name (e.g. "TLSv1.3") or null for provider's defaults
+     * @throws IOException - if key store could not be read
+     * @throws GeneralSecurityException - if key store content or protocol is illegal
+     */
+    public TlsContext(String keyStore, String keyStorePassword, String trustStore, String trustStorePassword,
+                      String protocol) throws IOException, GeneralSecurityException {
+        this.protocol = protocol;
+
+        KeyManager[] keyManagers = null;
+
+        if (keyStore != null) {
+            KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            factory.init(loadKeyStore(keyStore, keyStorePassword), toChars(keyStorePassword));
+
+            keyManagers = new KeyManager[] {
+                new MarkingKeyManager((X509ExtendedKeyManager) factory.getKeyManagers()[0])
+            };
+        }
+
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(trustStore != null ? loadKeyStore(trustStore, trustStorePassword) : null);
+
+        TrustManager[] trustManagers = {
+            new MarkingTrustManager((X509ExtendedTrustManager) factory.getTrustManagers()[0])
+        };
+
+        context = SSLContext.getInstance(TLS_CONTEXT_PROTOCOL);
+        context.init(keyManagers, trustManagers, null);
+
+        setSessionCache(TLS_SESSION_CACHE_SZ, TLS_SESSION_TIMEOUT);
+    }
+
+    /**
+     * Assigns limits of sessions cache used for abbreviated handshakes. Should be invoked before engines creation
+     * @param size - maximal number of cached sessions
+     * @param timeout - time of cached session validity in seconds
+     */
+    public void setSessionCache(int size, int timeout) {
+        for (SSLSessionContext sessions : new SSLSessionContext[] {context.getServerSessionContext(),
+                                                                   context.getClientSessionContext()}) {
+            sessions.setSessionCacheSize(size);
+            sessions.setSessionTimeout(timeout);
+        }
+    }
+
+    /**
+     * Switches client's side sessions resumption. Disabled resumption forces full handshakes (e.g. for
+     * handshakes cost measurement). Server side always accepts resumption offered by client
+     * @param isResumptionEnabled - true for abbreviated handshakes on reconnection
+     */
+    public void setResumptionEnabled(boolean isResumptionEnabled) {
+        this.isResumptionEnabled = isResumptionEnabled;
+    }
+
+    /**
+     * Creates engine for single connection
+     * @param isClientMode - true for client's side of connection
+     * @param hostName - peer host name, client's cached sessions are searched by it
+     * @param portNumber - peer port number, client's cached sessions are searched by it
+     * @return engine ready for handshake
+     */
+    SSLEngine createEngine(boolean isClientMode, String hostName, int portNumber) {
+        // client's engine without peer's address doesn't search cached sessions
+        SSLEngine engine = isClientMode && !isResumptionEnabled ? context.createSSLEngine() :
+                                                                  context.createSSLEngine(hostName, portNumber);
+        engine.setUseClientMode(isClientMode);
+
+        if (protocol != null) {
+            engine.setEnabledProtocols(new String[] {protocol});
+        }
+
+        return engine;
+    }
+
+    /**
+     * Counts finished handshake as full or resumed one
+     * @param engine - engine with finished handshake
+     * @return true if handshake resumed cached session
+     */
+    boolean registerHandshake(SSLEngine engine) {
+        SSLSession session = engine.getSession();
+
+        // mark is removed, so the next handshake resuming the same session isn't counted as full one
+        boolean isResumed = session.getValue(TLS_FULL_HANDSHAKE_MARK) == null;
+        session.removeValue(TLS_FULL_HANDSHAKE_MARK);
+
+        (isResumed ? resumedNumber : fullNumber).incrementAndGet();
+
+        return isResumed;
+    }
+
+    /**
+     * Marks session of engine with handshake in progress as fully negotiated one
+     * @param engine - engine with handshake in progress or null for socket based connections
+     */
+    private static void markFullHandshake(SSLEngine engine) {
+        SSLSession session = engine != null ? engine.getHandshakeSession() : null;
+
+        if (session != null) {
+            session.putValue(TLS_FULL_HANDSHAKE_MARK, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @param path - PKCS12 key store path
+     * @param password - key store password or null
+     * @return loaded key store
+     */
+    private static KeyStore loadKeyStore(String path, String password) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance(TLS_KEYSTORE_TYPE);
+
+        try (InputStream in = Files.newInputStream(Paths.get(path))) {
+            store.load(in, toChars(password));
+        }
+
+        return store;
+    }
+
+    /**
+     * @param password - password or null
+     * @return password symbols or null
+     */
+    private static char[] toChars(String password) {
+        return password != null ? password.toCharArray() : null;
+    }
+
+    /**
+     * @return number of full handshakes
+     */
+    public final long getFullHandshakesNumber() {
+        return fullNumber.get();
+    }
+
+    /**
+     * @return number of abbreviated handshakes resuming cached sessions
+     */
+    public final long getResumedHandshakesNumber() {
+        return resumedNumber.get();
+    }
+
+    /**
+     * Server's key manager marking full handshakes on key choosing
+     */
+    private static class MarkingKeyManager extends X509ExtendedKeyManager {
+        private final X509ExtendedKeyManager keyManager;
+
+        MarkingKeyManager(X509ExtendedKeyManager keyManager) {
+            this.keyManager = keyManager;
+        }
+
+        @Override
+        public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+            String alias = keyManager.chooseEngineServerAlias(keyType, issuers, engine);
+
+            if (alias != null) {
+                markFullHandshake(engine);
+            }
+
+            return alias;
+        }
+
+        @Override
+        public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+            return keyManager.chooseEngineClientAlias(keyType, issuers, engine);
+        }
+
+        @Override
+        public String[] getClientAliases(String keyType, Principal[] issuers) {
+            return keyManager.getClientAliases(keyType, issuers);
+        }
+
+        @Override
+        public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+            return keyManager.chooseClientAlias(keyType, issuers, socket);
+        }
+
+        @Override
+        public String[] getServerAliases(String keyType, Principal[] issuers) {
+            return keyManager.getServerAliases(keyType, issuers);
+        }
+
+        @Override
+        public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+            return keyManager.chooseServerAlias(keyType, issuers, socket);
+        }
+
+        @Override
+        public X509Certificate[] getCertificateChain(String alias) {
+            return keyManager.getCertificateChain(alias);
+        }
+
+        @Override
+        public PrivateKey getPrivateKey(String alias) {
+            return keyManager.getPrivateKey(alias);
+        }
+    }
+
+    /**
+     * Client's trust manager marking full handshakes on server's certificate verification
+     */
+    private static class MarkingTrustManager extends X509ExtendedTrustManager {
+        private final X509ExtendedTrustManager trustManager;
+
+        MarkingTrustManager(X509ExtendedTrustManager trustManager) {
+            this.trustManager = trustManager;
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+                throws CertificateException {
+            trustManager.checkServerTrusted(chain, authType, engine);
+            markFullHandshake(engine);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine)
+                throws CertificateException {
+            trustManager.checkClientTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket)
+                throws CertificateException {
+            trustManager.checkClientTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket)
+                throws CertificateException {
+            trustManager.checkServerTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            trustManager.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            trustManager.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return trustManager.getAcceptedIssuers();
+        }
+    }
+}
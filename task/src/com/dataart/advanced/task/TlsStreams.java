@@ -0,0 +1,399 @@
+package com.dataart.advanced.task;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/**
+ * Blocking TLS streams over socket or other transport based on SSLEngine.
+ * Engine encrypts written bytes to TLS records and decrypts received
+ * records, while transport I/O remains in the owner's hands, so the same
+ * engine approach serves both blocking streams and non-blocking channels.
+ * Handshake is performed by the first reading or writing unless it's
+ * started explicitly. Reading and writing could be performed by different
+ * threads simultaneously.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TlsStreams implements Closeable {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final TlsContext tls;
+    private final SSLEngine engine;
+
+    private final InputStream socketIn;
+    private final OutputStream socketOut;
+
+    private final InputStream in = new TlsInputStream();
+    private final OutputStream out = new TlsOutputStream();
+
+    // received records, kept ready for reading, guarded by "readLock"
+    private ByteBuffer netIn;
+    // decrypted data, kept ready for reading, guarded by "readLock"
+    private ByteBuffer appIn;
+    // encrypted records waiting for sending, guarded by "writeLock"
+    private ByteBuffer netOut;
+
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+
+    private volatile boolean isHandshakeFinished = false;
+    private boolean isResumed = false;   // flag notifying if handshake resumed cached session
+    private boolean isClosed = false;    // guarded by "writeLock"
+
+    /**
+     * Constructor wraps socket streams without handshake performing
+     * @param socket - connected socket
+     * @param tls - TLS context creating engine of connection
+     * @param isClientMode - true for client's side of connection
+     * @throws IOException - if socket streams are unavailable or socket is closed
+     */
+    public TlsStreams(Socket socket, TlsContext tls, boolean isClientMode) throws IOException {
+        // server side doesn't use peer's name, so reverse lookup is avoided
+        this(socket.getInputStream(), socket.getOutputStream(), tls, isClientMode,
+             isClientMode ? socket.getInetAddress().getHostName() : socket.getInetAddress().getHostAddress(),
+             socket.getPort());
+
+        // records are sent by batches, while Nagle's algorithm delays data following the last handshake flight
+        socket.setTcpNoDelay(true);
+    }
+
+    /**
+     * Constructor wraps streams of any transport without handshake performing
+     * @param transportIn - stream of encrypted records received from peer
+     * @param transportOut - stream of encrypted records sent to peer
+     * @param tls - TLS context creating engine of connection
+     * @param isClientMode - true for client's side of connection
+     * @param peerHost - peer's host name identifying cached session
+     * @param peerPort - peer's port number identifying cached session
+     */
+    public TlsStreams(InputStream transportIn, OutputStream transportOut, TlsContext tls, boolean isClientMode,
+                      String peerHost, int peerPort) {
+        this.tls = tls;
+
+        socketIn = transportIn;
+        socketOut = transportOut;
+
+        engine = tls.createEngine(isClientMode, peerHost, peerPort);
+
+        int packetSize = engine.getSession().getPacketBufferSize();
+
+        netIn = ByteBuffer.allocate(packetSize).flip();
+        appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize()).flip();
+        netOut = ByteBuffer.allocate(packetSize);
+    }
+
+    /**
+     * Performs handshake if it isn't performed yet
+     * @throws IOException - if handshake fails or connection is closed
+     */
+    public synchronized void handshake() throws IOException {
+        if (isHandshakeFinished) {
+            return;
+        }
+
+        engine.beginHandshake();
+        SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+
+        while (status != SSLEngineResult.HandshakeStatus.FINISHED &&
+               status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+            switch (status) {
+                case NEED_WRAP:
+                    status = wrap(EMPTY);
+                    break;
+                case NEED_TASK:
+                    runDelegatedTasks();
+                    status = engine.getHandshakeStatus();
+                    break;
+                default:
+                    synchronized (readLock) {
+                        status = unwrap();
+                    }
+
+                    if (status == null) {
+                        throw new EOFException("TlsStreams: connection is closed during handshake");
+                    }
+            }
+        }
+
+        isResumed = tls.registerHandshake(engine);
+        isHandshakeFinished = true;
+    }
+
+    /**
+     * Encrypts data to records and sends them to socket. Consecutive handshake records are sent together
+     * @param src - data for sending
+     * @return handshake status after encryption
+     * @throws IOException - if encryption or sending fails
+     */
+    private SSLEngineResult.HandshakeStatus wrap(ByteBuffer src) throws IOException {
+        synchronized (writeLock) {
+            netOut.clear();
+
+            while (true) {
+                SSLEngineResult result = engine.wrap(src, netOut);
+
+                if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                    if (netOut.position() == 0) {
+                        netOut = ByteBuffer.allocate(netOut.capacity() + engine.getSession().getPacketBufferSize());
+                    } else {
+                        send();
+                    }
+
+                    continue;
+                }
+
+                SSLEngineResult.HandshakeStatus status = result.getHandshakeStatus();
+
+                if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                    runDelegatedTasks();
+                    status = engine.getHandshakeStatus();
+                }
+
+                boolean isStalled = result.bytesConsumed() == 0 && result.bytesProduced() == 0;
+
+                if (result.getStatus() == SSLEngineResult.Status.CLOSED || isStalled ||
+                    !src.hasRemaining() && status != SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                    send();
+
+                    if (src.hasRemaining()) {
+                        throw new SSLException("TlsStreams: engine is closed or renegotiation is requested " +
+                                               "while writing");
+                    }
+
+                    return status;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends encrypted records from "netOut" to socket, guarded by "writeLock"
+     * @throws IOException - if sending fails
+     */
+    private void send() throws IOException {
+        if (netOut.position() > 0) {
+            socketOut.write(netOut.array(), 0, netOut.position());
+            socketOut.flush();
+
+            netOut.clear();
+        }
+    }
+
+    /**
+     * Decrypts the next record to "appIn" receiving data from socket if necessary, guarded by "readLock".
+     * Replies to engine's messages (e.g. close notification or key update) on behalf of reading thread
+     * @return handshake status after decryption or null if connection is closed
+     * @throws IOException - if decryption or reception fails
+     */
+    private SSLEngineResult.HandshakeStatus unwrap() throws IOException {
+        while (true) {
+            appIn.compact();
+            SSLEngineResult result = engine.unwrap(netIn, appIn);
+            appIn.flip();
+
+            switch (result.getStatus()) {
+                case BUFFER_OVERFLOW:
+                    appIn = ByteBuffer.allocate(appIn.remaining() + engine.getSession().getApplicationBufferSize())
+                                      .put(appIn).flip();
+                    continue;
+                case BUFFER_UNDERFLOW:
+                    if (!receive()) {
+                        return null;
+                    }
+                    continue;
+                case CLOSED:
+                    if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                        wrap(EMPTY);
+                    }
+                    return null;
+                default:
+            }
+
+            SSLEngineResult.HandshakeStatus status = result.getHandshakeStatus();
+
+            if (status == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks();
+                status = engine.getHandshakeStatus();
+            }
+
+            // post-handshake messages after initial handshake are answered immediately
+            if (isHandshakeFinished && status == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+                status = wrap(EMPTY);
+            }
+
+            return status;
+        }
+    }
+
+    /**
+     * Receives data from socket to "netIn" growing it for record exceeding its capacity, guarded by "readLock"
+     * @return false if connection is closed
+     * @throws IOException - if reception fails
+     */
+    private boolean receive() throws IOException {
+        int packetSize = engine.getSession().getPacketBufferSize();
+
+        if (netIn.capacity() < packetSize) {
+            netIn = ByteBuffer.allocate(packetSize).put(netIn);
+        } else {
+            netIn.compact();
+        }
+
+        int receivedSz;
+
+        try {
+            receivedSz = socketIn.read(netIn.array(), netIn.position(), netIn.remaining());
+        } catch (SocketTimeoutException exc) {
+            // received records are kept for reading retry
+            netIn.flip();
+            throw exc;
+        }
+
+        if (receivedSz < 0) {
+            netIn.flip();
+
+            try {
+                engine.closeInbound();
+            } catch (SSLException exc) {
+                // peer closed connection without close notification, no more data is expected anyway
+            }
+
+            return false;
+        }
+
+        netIn.position(netIn.position() + receivedSz).flip();
+
+        return true;
+    }
+
+    /**
+     * Runs engine's long operations (e.g. certificates verification) in the current thread
+     */
+    private void runDelegatedTasks() {
+        Runnable task;
+
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * @return stream of decrypted data received from socket
+     */
+    public final InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * @return stream encrypting data sent to socket
+     */
+    public final OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * @return true if handshake resumed cached session
+     */
+    public final boolean isResumed() {
+        return isResumed;
+    }
+
+    /**
+     * Sends close notification to peer and closes socket streams
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (isClosed) {
+                return;
+            }
+
+            isClosed = true;
+        }
+
+        try {
+            engine.closeOutbound();
+
+            if (isHandshakeFinished) {
+                wrap(EMPTY);
+            }
+        } catch (IOException exc) {
+            // peer could close connection already
+        } finally {
+            socketOut.close();
+            socketIn.close();
+        }
+    }
+
+    /**
+     * Stream of decrypted data
+     */
+    private class TlsInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] symbol = new byte[1];
+            return read(symbol, 0, 1) < 0 ? -1 : symbol[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            handshake();
+
+            synchronized (readLock) {
+                while (!appIn.hasRemaining()) {
+                    if (unwrap() == null && !appIn.hasRemaining()) {
+                        return -1;
+                    }
+                }
+
+                int readSz = Math.min(len, appIn.remaining());
+                appIn.get(b, off, readSz);
+
+                return readSz;
+            }
+        }
+
+        @Override
+        public int available() {
+            synchronized (readLock) {
+                return appIn.remaining();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsStreams.this.close();
+        }
+    }
+
+    /**
+     * Stream encrypting data
+     */
+    private class TlsOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            handshake();
+            wrap(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            TlsStreams.this.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dataart.advanced.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.dataart.advanced.task.Info.DEFAULT_SZ;
+
+/**
+ * Lock-free token bucket for requests rate limiting.
+ * Bucket state is stored as single moment when the bucket becomes full
+ * again, so tokens are refilled lazily on each request without timer
+ * threads: the number of available tokens is the time remaining to that
+ * moment subtracted from the whole bucket refill time. Tokens are taken
+ * by single CAS operation.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TokenBucket {
+    private final long interval;   // refill time of single token in ns
+    private final long capacity;   // refill time of whole bucket (burst size) in ns
+
+    // moment in ns when bucket becomes full
+    private final AtomicLong fullTime;
+
+    /**
+     * Constructor creates full bucket
+     * @param rate - tokens number refilled per second
+     * @param burst - bucket size, i.e. maximal number of requests passed without delay
+     */
+    public TokenBucket(int rate, int burst) {
+        if (rate <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("TokenBucket: rate (" + rate + ") and burst (" + burst +
+                                               ") should be positive");
+        }
+
+        interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        capacity = interval * burst;
+
+        fullTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes token if it is available
+     * @return true if token is taken, false if request should be throttled
+     */
+    public boolean tryAcquire() {
+        return reserve(0, System.nanoTime()) == 0;
+    }
+
+    /**
+     * Takes token now or reserves the next refilled token if waiting for it doesn't exceed specified time
+     * @param maxDelay - maximal waiting time for token in ns
+     * @return waiting time in ns before request could be processed (0 if token is available now)
+     *         or DEFAULT_SZ if token isn't reserved
+     */
+    public long reserve(long maxDelay) {
+        return reserve(maxDelay, System.nanoTime());
+    }
+
+    /**
+     * Reserves token relatively to specified moment
+     * @param maxDelay - maximal waiting time for token in ns
+     * @param now - current moment in ns
+     * @return waiting time in ns or DEFAULT_SZ if token isn't reserved
+     */
+    long reserve(long maxDelay, long now) {
+        while (true) {
+            long current = fullTime.get();
+
+            // the bucket which has been full for a while doesn't accumulate extra tokens
+            long next = Math.max(current, now) + interval;
+            long delay = next - capacity - now;
+
+            if (delay > maxDelay) {
+                return DEFAULT_SZ;
+            }
+
+            if (fullTime.compareAndSet(current, next)) {
+                return Math.max(0, delay);
+            }
+        }
+    }
+
+    /**
+     * Returns reserved token back to bucket, e.g. when request is throttled by another bucket after reservation.
+     * Bucket which has been full meanwhile doesn't get extra token, since its full moment is in the past
+     */
+    public void release() {
+        fullTime.addAndGet(-interval);
+    }
+
+    /**
+     * @return true if bucket is full, so it is equivalent to newly created one
+     */
+    boolean isFull() {
+        return fullTime.get() - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return number of tokens available now
+     */
+    public final long getAvailableTokens() {
+        long refillTime = Math.max(0, fullTime.get() - System.nanoTime());
+
+        return (capacity - refillTime) / interval;
+    }
+}
@@ -0,0 +1,487 @@
+package com.dataart.advanced.task;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Replay driver of traffic recorded by server's message journal.
+ * Client sessions are restored from journal by client's ID: each session
+ * is replayed via separate connection sending the same messages. Messages
+ * are sent at recorded moments (original timing), at moments accelerated
+ * by speed factor or as fast as possible, i.e. each message is sent right
+ * after response on the previous one. Responses are compared with recorded
+ * ones, so responses depending on time, client's ID or connections number
+ * are counted as mismatches too.
+ * Throughput and latency of replay are reported together with recorded
+ * ones. Note that recorded latency is measured by server (time from
+ * request reception to response sending) while replay latency is round
+ * trip time measured by client.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TrafficReplay {
+    /**
+     * Replay results compared with recorded traffic
+     */
+    public static class Summary {
+        private int sessionsNumber = 0;    // replayed sessions number
+        private int requestsNumber = 0;    // sent requests number including user names
+        private int responsesNumber = 0;   // received responses number
+        private int mismatchesNumber = 0;  // responses different from recorded ones
+        private int errorsNumber = 0;      // requests without response due to I/O errors
+
+        private long recordedTime = 0;     // time span of recorded traffic in ns
+        private long elapsedTime = 0;      // replay time in ns
+
+        private long[] recordedLatency = new long[0];   // sorted recorded latencies in ns
+        private long[] replayLatency = new long[0];     // sorted replay latencies in ns
+
+        /**
+         * @return replayed sessions number
+         */
+        public final int getSessionsNumber() {
+            return sessionsNumber;
+        }
+
+        /**
+         * @return sent requests number including user names
+         */
+        public final int getRequestsNumber() {
+            return requestsNumber;
+        }
+
+        /**
+         * @return received responses number
+         */
+        public final int getResponsesNumber() {
+            return responsesNumber;
+        }
+
+        /**
+         * @return number of responses different from recorded ones
+         */
+        public final int getMismatchesNumber() {
+            return mismatchesNumber;
+        }
+
+        /**
+         * @return number of requests without response due to I/O errors
+         */
+        public final int getErrorsNumber() {
+            return errorsNumber;
+        }
+
+        /**
+         * @return recorded requests number per second
+         */
+        public final double getRecordedThroughput() {
+            return recordedTime == 0 ? 0.0 : recordedLatency.length * 1e9 / recordedTime;
+        }
+
+        /**
+         * @return replay responses number per second
+         */
+        public final double getReplayThroughput() {
+            return elapsedTime == 0 ? 0.0 : responsesNumber * 1e9 / elapsedTime;
+        }
+
+        /**
+         * @param percentile - percentile in range [0, 100]
+         * @return recorded latency percentile in ns
+         */
+        public final long getRecordedLatency(double percentile) {
+            return getPercentile(recordedLatency, percentile);
+        }
+
+        /**
+         * @param percentile - percentile in range [0, 100]
+         * @return replay latency percentile in ns
+         */
+        public final long getReplayLatency(double percentile) {
+            return getPercentile(replayLatency, percentile);
+        }
+
+        /**
+         * @param sorted - sorted values
+         * @param percentile - percentile in range [0, 100]
+         * @return value of specified percentile or 0 for empty values
+         */
+        private static long getPercentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        /**
+         * @param name - row name
+         * @param recorded - recorded value
+         * @param replayed - replayed value
+         * @return table row with values difference
+         */
+        private static String formatRow(String name, double recorded, double replayed) {
+            return String.format("\n - %-22s %12.3f %12.3f %+9.1f%%", name, recorded, replayed,
+                                 recorded == 0 ? 0.0 : (replayed - recorded) * 100 / recorded);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format(
+                    "Replay summary:\n - sessions: %d\n - requests: %d\n - responses: %d\n - mismatches: %d\n" +
+                    " - errors: %d\n - elapsed time: %.3f s (recorded %.3f s)\n   %-22s %12s %12s %10s",
+                    sessionsNumber, requestsNumber, responsesNumber, mismatchesNumber, errorsNumber,
+                    elapsedTime / 1e9, recordedTime / 1e9, "", "recorded", "replay", "delta"));
+
+            report.append(formatRow("throughput, msg/s", getRecordedThroughput(), getReplayThroughput()));
+
+            for (double percentile : new double[] {50, 90, 99, 100}) {
+                report.append(formatRow(String.format("latency p%.0f, ms", percentile),
+                                        getRecordedLatency(percentile) / 1e6, getReplayLatency(percentile) / 1e6));
+            }
+
+            return report.toString();
+        }
+    }
+
+    /**
+     * Recorded request with its response
+     */
+    static class Exchange {
+        private final String request;      // client's message
+        private final long offset;         // request moment relatively to traffic beginning in ns
+
+        private String response;           // recorded response or null if it isn't recorded
+        private long latency = 0;          // recorded latency in ns
+
+        Exchange(String request, long offset) {
+            this.request = request;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Recorded session of single client
+     */
+    static class Script {
+        private final List<Exchange> exchanges = new ArrayList<>();
+
+        // requests waiting for recorded responses in receiving order
+        private final Queue<Exchange> unanswered = new ArrayDeque<>();
+
+        /**
+         * @return recorded exchanges of session starting from user name introduction
+         */
+        final List<Exchange> getExchanges() {
+            return exchanges;
+        }
+    }
+
+    private final int portNumber;        // server port number
+    private final String hostName;       // host name
+
+    private double speed = 1.0;          // timing acceleration factor or 0 for the fastest replay
+    private TlsContext tls;              // TLS parameters or null if connections aren't encrypted
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(TrafficReplay.class.getName());
+
+    /**
+     * Constructor creates replay driver instance
+     *
+     * @param hostName - host name of server placement
+     * @param portNumber - port number on which server is available for connection
+     */
+    public TrafficReplay(String hostName, int portNumber) {
+        this.hostName = hostName;
+        this.portNumber = portNumber;
+    }
+
+    /**
+     * Assigns replay timing. Should be invoked before "run" method
+     * @param speed - acceleration factor of recorded timing (1 for original timing)
+     *                or 0 for sending messages as fast as possible
+     */
+    public void setSpeed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("TrafficReplay: speed factor " + speed + " should not be negative");
+        }
+
+        this.speed = speed;
+    }
+
+    /**
+     * Assigns TLS parameters, so connections with server are encrypted. Should be invoked before "run" method
+     * @param tls - TLS context with trusted certificates
+     */
+    public void setTls(TlsContext tls) {
+        this.tls = tls;
+    }
+
+    /**
+     * Restores client sessions from server's message journal. Session control frames are skipped, session
+     * resumed after token miss is introduced by user name from resume request
+     * @param journalDir - folder of journal segment files
+     * @return recorded sessions in order of their beginning
+     * @throws IOException - if journal could not be read
+     */
+    static List<Script> load(Path journalDir) throws IOException {
+        Map<Integer, Script> scripts = new LinkedHashMap<>();
+        long startTime = DEFAULT_SZ;
+
+        try (JournalReader reader = new JournalReader(journalDir)) {
+            JournalReader.Record record;
+
+            while ((record = reader.next()) != null) {
+                if (startTime == DEFAULT_SZ) {
+                    startTime = record.getTimestamp();
+                }
+
+                Script script = scripts.computeIfAbsent(record.getClientID(), id -> new Script());
+                long offset = record.getTimestamp() - startTime;
+
+                if (record.getType() == FRAME_RESUME && record.isInbound() && script.exchanges.isEmpty()) {
+                    String request = record.getMessage();
+                    script.exchanges.add(new Exchange(request.substring(request.indexOf(RESUME_SEPARATOR) + 1),
+                                                      offset));
+                } else if (record.getType() != FRAME_DATA) {
+                    continue;
+                } else if (record.isInbound()) {
+                    Exchange exchange = new Exchange(record.getMessage(), offset);
+
+                    script.exchanges.add(exchange);
+                    script.unanswered.add(exchange);
+                } else {
+                    Exchange exchange = script.unanswered.poll();
+
+                    if (exchange != null) {
+                        exchange.response = record.getMessage();
+                        exchange.latency = offset - exchange.offset;
+                    }
+                }
+            }
+        }
+
+        List<Script> sessions = new ArrayList<>();
+
+        // resume request of successfully resumed session is recorded under temporary ID and isn't replayed
+        for (Script script : scripts.values()) {
+            if (!script.exchanges.isEmpty() &&
+                (script.exchanges.size() > 1 || script.exchanges.get(0).response != null)) {
+                sessions.add(script);
+            }
+        }
+
+        return sessions;
+    }
+
+    /**
+     * Replays traffic recorded in specified journal
+     * @param journalDir - folder of journal segment files
+     * @return replay summary
+     * @throws IOException - if journal could not be read
+     * @throws InterruptedException - if replay is interrupted
+     */
+    public Summary run(Path journalDir) throws IOException, InterruptedException {
+        List<Script> scripts = load(journalDir);
+
+        AsynchronousChannelGroup group = AsyncClient.createGroup(Runtime.getRuntime().availableProcessors());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, REPLAY_SCHEDULER_THREAD_NAME);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        CountDownLatch finished = new CountDownLatch(scripts.size());
+        List<SessionReplay> sessions = new ArrayList<>(scripts.size());
+
+        long startTime = System.nanoTime();
+
+        try {
+            for (Script script : scripts) {
+                SessionReplay session = new SessionReplay(script, group, scheduler, finished, startTime);
+                sessions.add(session);
+
+                session.schedule(0);
+            }
+
+            finished.await();
+        } finally {
+            scheduler.shutdownNow();
+            group.shutdownNow();
+        }
+
+        Summary summary = summarize(sessions, System.nanoTime() - startTime);
+
+        log.info(summary.toString());
+
+        return summary;
+    }
+
+    /**
+     * Collects replay results of all sessions
+     * @param sessions - finished sessions
+     * @param elapsedTime - replay time in ns
+     * @return replay summary
+     */
+    private static Summary summarize(List<SessionReplay> sessions, long elapsedTime) {
+        Summary summary = new Summary();
+        summary.sessionsNumber = sessions.size();
+        summary.elapsedTime = elapsedTime;
+
+        int recordedNumber = 0;
+        long firstTime = Long.MAX_VALUE;
+        long lastTime = 0;
+
+        for (SessionReplay session : sessions) {
+            for (Exchange exchange : session.exchanges) {
+                recordedNumber += exchange.response != null ? 1 : 0;
+                firstTime = Math.min(firstTime, exchange.offset);
+                lastTime = Math.max(lastTime, exchange.offset + exchange.latency);
+            }
+        }
+
+        summary.recordedTime = lastTime > firstTime ? lastTime - firstTime : 0;
+        summary.recordedLatency = new long[recordedNumber];
+        List<Long> replayLatency = new ArrayList<>();
+
+        int recordedIndex = 0;
+
+        for (SessionReplay session : sessions) {
+            summary.requestsNumber += session.sentNumber;
+            summary.errorsNumber += session.sentNumber - session.answeredNumber;
+            summary.mismatchesNumber += session.mismatchesNumber;
+
+            for (int i = 0; i < session.exchanges.size(); ++i) {
+                if (session.exchanges.get(i).response != null) {
+                    summary.recordedLatency[recordedIndex++] = session.exchanges.get(i).latency;
+                }
+
+                if (session.latency[i] != DEFAULT_SZ) {
+                    replayLatency.add(session.latency[i]);
+                }
+            }
+        }
+
+        summary.responsesNumber = replayLatency.size();
+        summary.replayLatency = replayLatency.stream().mapToLong(Long::longValue).sorted().toArray();
+
+        Arrays.sort(summary.recordedLatency);
+
+        return summary;
+    }
+
+    /**
+     * Replay of single recorded session via separate connection
+     */
+    private class SessionReplay {
+        private final List<Exchange> exchanges;        // recorded exchanges of session
+        private final long[] latency;                  // replay latencies in ns or DEFAULT_SZ if not answered
+
+        private final AsyncClient client;
+        private final ScheduledExecutorService scheduler;
+        private final CountDownLatch finished;
+        private final long startTime;                  // replay beginning moment in ns
+
+        // replay statistics written by scheduler thread and by connection's completion handlers
+        private volatile int sentNumber = 0;
+        private volatile int answeredNumber = 0;
+        private volatile int mismatchesNumber = 0;
+
+        // number of exchanges not completed yet
+        private final AtomicInteger remaining;
+
+        SessionReplay(Script script, AsynchronousChannelGroup group, ScheduledExecutorService scheduler,
+                      CountDownLatch finished, long startTime) {
+            this.exchanges = script.exchanges;
+            this.scheduler = scheduler;
+            this.finished = finished;
+            this.startTime = startTime;
+
+            latency = new long[exchanges.size()];
+            Arrays.fill(latency, DEFAULT_SZ);
+
+            remaining = new AtomicInteger(exchanges.size());
+            client = new AsyncClient(hostName, portNumber, group, new AsyncClientListener() {});
+            client.setTls(tls);
+        }
+
+        /**
+         * Schedules sending of specified exchange according to replay timing
+         * @param index - exchange index
+         */
+        void schedule(int index) {
+            long delay = 0;
+
+            if (speed != 0) {
+                delay = startTime + (long) (exchanges.get(index).offset / speed) - System.nanoTime();
+            }
+
+            // overdue requests are sent via scheduler too, so sending isn't nested in completion handlers
+            scheduler.schedule(() -> send(index), Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Sends request of specified exchange and schedules the next one. The next request is sent
+         * after response in the fastest replay and independently in timed replay
+         * @param index - exchange index
+         */
+        private void send(int index) {
+            Exchange exchange = exchanges.get(index);
+            long sendTime = System.nanoTime();
+
+            ++sentNumber;
+
+            CompletableFuture<String> reply = index == 0 ? client.connect(exchange.request) :
+                                                           client.send(exchange.request);
+
+            reply.whenComplete((response, exc) -> {
+                if (exc == null) {
+                    latency[index] = System.nanoTime() - sendTime;
+                    ++answeredNumber;
+
+                    if (exchange.response != null && !exchange.response.equals(response)) {
+                        ++mismatchesNumber;
+                        log.log(Level.FINE, "TrafficReplay: response on \"" + exchange.request +
+                                "\" differs from recorded one: \"" + response + "\"");
+                    }
+                }
+
+                if (speed == 0 && index + 1 < exchanges.size()) {
+                    schedule(index + 1);
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    client.close();
+                    finished.countDown();
+                }
+            });
+
+            if (speed != 0 && index + 1 < exchanges.size()) {
+                schedule(index + 1);
+            }
+        }
+    }
+}
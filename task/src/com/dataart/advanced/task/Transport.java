@@ -0,0 +1,25 @@
+package com.dataart.advanced.task;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of server's connections: listened TCP port or in-JVM loopback transport
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public interface Transport extends Closeable {
+    /**
+     * Waits for the next client's connection
+     * @param timeout - maximal waiting time in ms, so server could check its stop flag
+     * @return server's side of accepted connection or null if timeout is expired
+     * @throws IOException - if transport is closed or accepting fails
+     */
+    Endpoint accept(int timeout) throws IOException;
+
+    /**
+     * @return transport description for logging
+     */
+    String describe();
+}
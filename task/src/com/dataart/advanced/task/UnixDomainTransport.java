@@ -0,0 +1,334 @@
+package com.dataart.advanced.task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Transport of local clients connected through Unix domain socket file instead of TCP loopback, so TCP stack
+ * processing is skipped while framing and listener pipeline stay the same. Unix domain socket channels have
+ * no socket adaptor with reading timeout, so channels are non-blocking and waiting is performed by selectors.
+ * Channels of Unix domain sockets appear in Java 16, they are created reflectively, so sources are compatible
+ * with earlier Java versions where transport isn't available
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class UnixDomainTransport implements Transport {
+    private final String path;                  // socket file path
+    private final ServerSocketChannel srvChannel;
+    private final Selector selector;            // waits for connections with accepting timeout
+
+    private final AtomicInteger connectionsCounter = new AtomicInteger();
+
+    /**
+     * Constructor binds socket file, stale file of previous run is removed
+     * @param path - socket file path
+     * @throws IOException - if socket file couldn't be bound or Unix domain sockets aren't supported
+     */
+    public UnixDomainTransport(String path) throws IOException {
+        this.path = path;
+
+        SocketAddress address = createAddress(path);
+        Files.deleteIfExists(Paths.get(path));
+
+        srvChannel = openServerChannel();
+
+        try {
+            srvChannel.bind(address);
+            srvChannel.configureBlocking(false);
+
+            selector = Selector.open();
+            srvChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException exc) {
+            srvChannel.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * Connects to server listening on socket file
+     * @param path - socket file path
+     * @return client's side of connection
+     * @throws IOException - if connection fails or Unix domain sockets aren't supported
+     */
+    public static Endpoint connect(String path) throws IOException {
+        // channel family is chosen by address
+        SocketChannel channel = SocketChannel.open(createAddress(path));
+
+        try {
+            return new UnixDomainEndpoint(channel, "unix server " + path);
+        } catch (IOException exc) {
+            channel.close();
+            throw exc;
+        }
+    }
+
+    /**
+     * @param path - socket file path
+     * @return address of Unix domain socket
+     * @throws IOException - if Unix domain sockets aren't supported by Java version or path is invalid
+     */
+    private static SocketAddress createAddress(String path) throws IOException {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                                        .getMethod("of", String.class)
+                                        .invoke(null, path);
+        } catch (InvocationTargetException exc) {
+            throw new IOException("UnixDomainTransport: invalid socket file path " + path, exc.getCause());
+        } catch (ReflectiveOperationException exc) {
+            throw new IOException("UnixDomainTransport: Unix domain sockets require Java 16 or later", exc);
+        }
+    }
+
+    /**
+     * @return unbound server channel of Unix domain socket
+     * @throws IOException - if Unix domain sockets aren't supported by Java version or platform
+     */
+    private static ServerSocketChannel openServerChannel() throws IOException {
+        try {
+            return (ServerSocketChannel) ServerSocketChannel.class
+                                                            .getMethod("open", ProtocolFamily.class)
+                                                            .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        } catch (InvocationTargetException exc) {
+            throw new IOException("UnixDomainTransport: Unix domain sockets aren't supported", exc.getCause());
+        } catch (ReflectiveOperationException | IllegalArgumentException exc) {
+            throw new IOException("UnixDomainTransport: Unix domain sockets require Java 16 or later", exc);
+        }
+    }
+
+    @Override
+    public Endpoint accept(int timeout) throws IOException {
+        selector.select(timeout);
+        selector.selectedKeys().clear();
+
+        SocketChannel channel = srvChannel.accept();
+
+        if (channel == null) {
+            return null;
+        }
+
+        try {
+            return new UnixDomainEndpoint(channel, "unix client #" + connectionsCounter.getAndIncrement());
+        } catch (IOException exc) {
+            channel.close();
+            throw exc;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "unix socket path = " + path;
+    }
+
+    /**
+     * Closes listening channel removing socket file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            selector.close();
+            srvChannel.close();
+        } finally {
+            Files.deleteIfExists(Paths.get(path));
+        }
+    }
+
+    /**
+     * Connection of Unix domain socket. Reading and writing could be performed by different threads
+     * simultaneously, each of them waits by its own selector
+     */
+    private static class UnixDomainEndpoint implements Endpoint {
+        private final SocketChannel channel;
+        private final String remoteAddress;
+
+        private final Selector readSelector;
+        private final Selector writeSelector;
+
+        private volatile int readTimeout = 0;   // in ms
+
+        private final InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return receive(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                UnixDomainEndpoint.this.close();
+            }
+        };
+
+        private final OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                send(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                UnixDomainEndpoint.this.close();
+            }
+        };
+
+        /**
+         * @param channel - connected channel
+         * @param remoteAddress - peer's description for logging
+         * @throws IOException - if channel is closed
+         */
+        UnixDomainEndpoint(SocketChannel channel, String remoteAddress) throws IOException {
+            this.channel = channel;
+            this.remoteAddress = remoteAddress;
+
+            channel.configureBlocking(false);
+
+            readSelector = Selector.open();
+            writeSelector = Selector.open();
+
+            channel.register(readSelector, SelectionKey.OP_READ);
+            channel.register(writeSelector, SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * @return number of read bytes or -1 if connection is closed by peer
+         * @throws IOException - if reading timeout is expired or connection is closed
+         */
+        private int receive(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            synchronized (readSelector) {
+                ByteBuffer dst = ByteBuffer.wrap(b, off, len);
+
+                int timeout = readTimeout;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+                while (true) {
+                    int readSz = channel.read(dst);
+
+                    if (readSz != 0) {
+                        return readSz;
+                    }
+
+                    long waitTime = 0;
+
+                    if (timeout > 0) {
+                        long rest = deadline - System.nanoTime();
+
+                        if (rest <= 0) {
+                            throw new SocketTimeoutException("Read timed out");
+                        }
+
+                        waitTime = Math.max(1, TimeUnit.NANOSECONDS.toMillis(rest));
+                    }
+
+                    await(readSelector, waitTime);
+                }
+            }
+        }
+
+        /**
+         * @throws IOException - if connection is closed
+         */
+        private void send(byte[] b, int off, int len) throws IOException {
+            synchronized (writeSelector) {
+                ByteBuffer src = ByteBuffer.wrap(b, off, len);
+
+                while (src.hasRemaining()) {
+                    if (channel.write(src) == 0) {
+                        await(writeSelector, 0);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits for channel readiness
+         * @param selector - selector of reading or writing
+         * @param timeout - waiting time in ms or 0 for infinite waiting
+         * @throws ClosedChannelException - if endpoint is closed during waiting
+         */
+        private static void await(Selector selector, long timeout) throws IOException {
+            try {
+                selector.select(timeout);
+                selector.selectedKeys().clear();
+            } catch (ClosedSelectorException exc) {
+                throw new ClosedChannelException();
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public TlsStreams secure(TlsContext tls, boolean isClientMode) {
+            return new TlsStreams(in, out, tls, isClientMode, LOOPBACK_HOST, 0);
+        }
+
+        @Override
+        public void setReadTimeout(int timeout) {
+            readTimeout = timeout;
+        }
+
+        @Override
+        public void shutdownInput() throws IOException {
+            channel.shutdownInput();
+            readSelector.wakeup();
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * Closes channel waking up waiting threads
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                readSelector.close();
+                writeSelector.close();
+            }
+        }
+    }
+}
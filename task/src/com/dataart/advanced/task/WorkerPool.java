@@ -0,0 +1,286 @@
+package com.dataart.advanced.task;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of threads processing tasks of many flows fairly by deficit round robin. Each flow (server's session) has
+ * its own queue, tasks of one flow are processed strictly in submission order by one thread at a time. Flow with
+ * queued tasks gets quantum of cost per round and is moved to the end of round when quantum is spent, so client
+ * pipelining thousands of messages doesn't monopolize threads and doesn't inflate queue wait of other flows.
+ * Queued cost of each flow is bounded by pool's capacity: submission waits till flow is drained enough, so
+ * submitting thread (server's link) stops reading from flooding peer. Queue wait time of each task is accounted
+ * for its flow and for the whole pool
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class WorkerPool implements Closeable {
+    private final int quantum;            // cost added to flow's deficit per round
+    private final long capacity;          // maximal cost of flow's queued tasks
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    // flows with queued tasks waiting for thread in round robin order, guarded by "lock"
+    private final ArrayDeque<Flow> round = new ArrayDeque<>();
+    private boolean isClosed = false;
+
+    // queue wait statistics of the whole pool, guarded by "lock"
+    private int queuedNumber = 0;         // tasks waiting for thread
+    private long tasksNumber = 0;         // started tasks
+    private long totalWait = 0;           // in ns
+    private long maxWait = 0;             // in ns
+
+    // logger for tracing error messages
+    private static final Logger log = Logger.getLogger(WorkerPool.class.getName());
+
+    /**
+     * Task of flow with cost spent from flow's deficit
+     */
+    public abstract static class Task {
+        private final int cost;
+        private long enqueueTime;         // moment of submission in ns
+
+        /**
+         * @param cost - positive task cost, e.g. message size in bytes
+         */
+        protected Task(int cost) {
+            this.cost = cost;
+        }
+
+        /**
+         * Performs task in pool's thread
+         */
+        protected abstract void run();
+    }
+
+    /**
+     * Queue of tasks processed in submission order
+     */
+    public class Flow {
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();   // guarded by pool's "lock"
+        private long queuedCost = 0;         // cost of queued tasks
+        private int deficit = 0;             // unspent cost of current round
+        private boolean isActive = false;    // flow is in round or is served by thread
+
+        // queue wait statistics of flow, guarded by pool's "lock"
+        private long tasksNumber = 0;
+        private long totalWait = 0;          // in ns
+        private long maxWait = 0;            // in ns
+
+        /**
+         * Queues task after previously submitted tasks of flow waiting while queued cost exceeds pool's capacity.
+         * Task more expensive than capacity waits for empty queue. Task of idle flow submitted after pool closing
+         * is performed by submitting thread
+         * @param task - task of flow
+         */
+        public void submit(Task task) {
+            lock.lock();
+
+            try {
+                // queued tasks are processed by threads even after closing, so waiting is finished
+                while (!queue.isEmpty() && queuedCost + task.cost > capacity) {
+                    drained.awaitUninterruptibly();
+                }
+
+                // active flow is drained by threads even after closing, so order of its tasks is kept
+                if (!isClosed || isActive) {
+                    task.enqueueTime = System.nanoTime();
+                    queue.add(task);
+                    queuedCost += task.cost;
+                    ++queuedNumber;
+
+                    if (!isActive) {
+                        isActive = true;
+                        round.add(this);
+                        ready.signal();
+                    }
+
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            task.run();
+        }
+
+        /**
+         * @return number of queued tasks of flow
+         */
+        public int getQueueSize() {
+            lock.lock();
+
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return mean queue wait of flow's tasks in ns or 0 if no task is started yet
+         */
+        public double getMeanWait() {
+            lock.lock();
+
+            try {
+                return tasksNumber > 0 ? (double) totalWait / tasksNumber : 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return maximal queue wait of flow's tasks in ns
+         */
+        public long getMaxWait() {
+            lock.lock();
+
+            try {
+                return maxWait;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Constructor starts pool's threads
+     * @param threadsNumber - number of threads
+     * @param quantum - cost added to flow's deficit per round, task more expensive than quantum waits for
+     *                  several rounds
+     * @param capacity - maximal cost of flow's queued tasks
+     * @param threadName - prefix of threads names
+     */
+    public WorkerPool(int threadsNumber, int quantum, long capacity, String threadName) {
+        this.quantum = quantum;
+        this.capacity = capacity;
+
+        for (int i = 0; i < threadsNumber; ++i) {
+            Thread thread = new Thread(this::work, threadName + i);
+            thread.setDaemon(true);
+            thread.start();
+
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * @return new empty flow
+     */
+    public Flow createFlow() {
+        return new Flow();
+    }
+
+    /**
+     * Thread function serving flows of round one by one. Served flow leaves round, so its next task isn't taken
+     * by another thread
+     */
+    private void work() {
+        lock.lock();
+
+        try {
+            while (true) {
+                while (round.isEmpty()) {
+                    if (isClosed) {
+                        return;
+                    }
+
+                    ready.awaitUninterruptibly();
+                }
+
+                Flow flow = round.poll();
+                flow.deficit += quantum;
+
+                while (!flow.queue.isEmpty() && flow.queue.peek().cost <= flow.deficit) {
+                    Task task = flow.queue.poll();
+                    flow.deficit -= task.cost;
+                    flow.queuedCost -= task.cost;
+                    drained.signalAll();
+
+                    account(flow, System.nanoTime() - task.enqueueTime);
+
+                    lock.unlock();
+
+                    try {
+                        task.run();
+                    } catch (RuntimeException exc) {
+                        log.log(Level.SEVERE, "WorkerPool error: task is failed", exc);
+                    } finally {
+                        lock.lock();
+                    }
+                }
+
+                // empty flow doesn't save deficit for later rounds
+                if (flow.queue.isEmpty()) {
+                    flow.deficit = 0;
+                    flow.isActive = false;
+                } else {
+                    round.add(flow);
+                    ready.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accounts queue wait of started task, invoked under "lock"
+     * @param flow - flow of task
+     * @param wait - queue wait in ns
+     */
+    private void account(Flow flow, long wait) {
+        --queuedNumber;
+
+        ++flow.tasksNumber;
+        flow.totalWait += wait;
+        flow.maxWait = Math.max(flow.maxWait, wait);
+
+        ++tasksNumber;
+        totalWait += wait;
+        maxWait = Math.max(maxWait, wait);
+    }
+
+    /**
+     * @return pool's statistics line
+     */
+    public String describe() {
+        lock.lock();
+
+        try {
+            return String.format("threads = %d, quantum = %d, capacity = %d, queued = %d, processed = %d, " +
+                                 "mean wait = %.3f ms, max wait = %.3f ms", threads.size(), quantum, capacity,
+                                 queuedNumber, tasksNumber, tasksNumber > 0 ? totalWait / 1e6 / tasksNumber : 0.0,
+                                 maxWait / 1e6);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finishes threads after queued tasks processing. Tasks submitted later are performed by submitting threads
+     */
+    @Override
+    public void close() {
+        lock.lock();
+
+        try {
+            isClosed = true;
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Admin port verification: statistics and connections listing, kicking and draining of connections, runtime
+ * change of limits and log levels, invalidation of clients cached responses, server stop by admin command
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class AdminServerTest {
+    private static final String host = "localhost";
+    private static final int port = 18400;
+    private static final int adminPort = 18401;
+
+    private static final long startTimeout = 5000;   // in ms
+
+    private Server server;
+    private Thread serverThread;
+
+    private Admin admin;
+
+    private final List<User> users = new ArrayList<>();
+
+    /**
+     * Admin connection sending commands and reading replies finished by empty line
+     */
+    private static class Admin implements Closeable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Admin(Socket socket) throws IOException {
+            this.socket = socket;
+
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), MESSAGE_CHARSET));
+            out = new PrintWriter(socket.getOutputStream(), true);
+        }
+
+        /**
+         * @param command - admin command with arguments
+         * @return admin reply without finishing empty line
+         */
+        String execute(String command) throws IOException {
+            out.println(command);
+
+            StringBuilder reply = new StringBuilder();
+            String line;
+
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                reply.append(line).append('\n');
+            }
+
+            return reply.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * User's connection exchanging messages with server
+     */
+    private static class User implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final MessageTraits msg = new MessageTraits();
+
+        private final String greeting;  // reply on user's introduction or null if connection is rejected
+
+        User(String userName) throws IOException {
+            socket = new Socket(host, port);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            greeting = request(userName);
+        }
+
+        /**
+         * Sends message and waits for server's response skipping resume token
+         * @param message - user's message
+         * @return server's response or null if connection is closed by server
+         */
+        String request(String message) throws IOException {
+            msg.sendMessage(message, out);
+
+            do {
+                if (msg.receive(in) == DEFAULT_SZ) {
+                    return null;
+                }
+            } while (msg.getType() == FRAME_SESSION);
+
+            return msg.getMessage();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * @param userName - user's name
+     * @return connection of introduced user kept till test end
+     */
+    private User connect(String userName) throws IOException {
+        User user = new User(userName);
+        users.add(user);
+
+        return user;
+    }
+
+    /**
+     * @param userName - user's name
+     * @return true if server closes new connection without response on user's introduction
+     */
+    private static boolean isRejected(String userName) {
+        try (User user = new User(userName)) {
+            return user.greeting == null;
+        } catch (IOException exc) {
+            return true;
+        }
+    }
+
+    /**
+     * @param connections - reply on "connections" command
+     * @param userName - user's name
+     * @return number of connection with user's session
+     */
+    private static int findLink(String connections, String userName) {
+        Matcher matcher = Pattern.compile("#(\\d+)[^\\n]*\\n[^#]*user = \"" + userName + "\"").matcher(connections);
+
+        Assert.assertTrue(connections, matcher.find());
+
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    @Before
+    public void before() throws IOException, InterruptedException {
+        server = new Server(port, new AIServerListener());
+        server.setAdminPort(adminPort);
+
+        serverThread = new Thread(server, SERVER_THREAD_NAME);
+        serverThread.start();
+
+        // admin port is listened after server's port
+        long deadline = System.currentTimeMillis() + startTimeout;
+
+        while (admin == null) {
+            try {
+                admin = new Admin(new Socket(host, adminPort));
+            } catch (ConnectException exc) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw exc;
+                }
+
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        for (User user : users) {
+            user.close();
+        }
+
+        admin.close();
+
+        server.stop();
+        serverThread.join();
+    }
+
+    @Test
+    public void testStatsAndConnections() throws Exception {
+        Assert.assertEquals(NO_CONNECTION_MSG + "\n", admin.execute(ADMIN_CONNECTIONS_CMD));
+
+        connect(TESTING_USER_NAME.get(0));
+        connect(TESTING_USER_NAME.get(1));
+
+        String connections = admin.execute(ADMIN_CONNECTIONS_CMD);
+        Assert.assertNotEquals(findLink(connections, TESTING_USER_NAME.get(0)),
+                               findLink(connections, TESTING_USER_NAME.get(1)));
+
+        String stats = admin.execute(ADMIN_STATS_CMD);
+        Assert.assertTrue(stats, stats.contains("links = 2, sessions = 2"));
+
+        Assert.assertTrue(admin.execute(ADMIN_HELP_CMD).startsWith("Admin commands:"));
+        Assert.assertEquals("Cached responses are invalidated for 0 sessions\n",
+                            admin.execute(ADMIN_INVALIDATE_CMD + " your name"));
+        Assert.assertTrue(admin.execute("unknown").startsWith("Error: "));
+        Assert.assertTrue(admin.execute(ADMIN_KICK_CMD).startsWith("Error: "));
+    }
+
+    @Test
+    public void testKickAndDrain() throws Exception {
+        User kicked = connect(TESTING_USER_NAME.get(0));
+        User remained = connect(TESTING_USER_NAME.get(1));
+
+        int linkID = findLink(admin.execute(ADMIN_CONNECTIONS_CMD), TESTING_USER_NAME.get(0));
+        Assert.assertTrue(admin.execute(ADMIN_KICK_CMD + " " + linkID).contains("is kicked"));
+
+        // kicked connection is closed by server
+        Assert.assertEquals(-1, kicked.in.read());
+        Assert.assertNotNull(remained.request("time"));
+
+        // existing connection is served while new ones are rejected
+        Assert.assertTrue(admin.execute(ADMIN_DRAIN_CMD).startsWith("Draining is on"));
+
+        Assert.assertTrue(isRejected(TESTING_USER_NAME.get(2)));
+        Assert.assertNotNull(remained.request("time"));
+
+        Assert.assertTrue(admin.execute(ADMIN_DRAIN_CMD + " off").startsWith("Draining is off"));
+        Assert.assertFalse(isRejected(TESTING_USER_NAME.get(2)));
+
+        String stats = admin.execute(ADMIN_STATS_CMD);
+        Assert.assertTrue(stats, stats.contains("rejected links = 1"));
+    }
+
+    @Test
+    public void testLimitsAndLogLevel() throws Exception {
+        connect(TESTING_USER_NAME.get(0));
+
+        admin.execute(ADMIN_MAX_LINKS_CMD + " 1");
+        Assert.assertTrue(isRejected(TESTING_USER_NAME.get(1)));
+
+        admin.execute(ADMIN_MAX_LINKS_CMD + " 0");
+
+        // connection limit is applied to new connection
+        admin.execute(ADMIN_LIMITS_CMD + " 1 1 0 0 0");
+
+        User limited = connect(TESTING_USER_NAME.get(1));
+        Assert.assertNotEquals(THROTTLE_MSG, limited.request("time"));
+        Assert.assertEquals(THROTTLE_MSG, limited.request("time"));
+
+        String loggerName = Server.class.getName();
+
+        try {
+            admin.execute(ADMIN_LOG_LEVEL_CMD + " warning " + loggerName);
+            Assert.assertEquals(Level.WARNING, Logger.getLogger(loggerName).getLevel());
+        } finally {
+            Logger.getLogger(loggerName).setLevel(null);
+        }
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        connect(TESTING_USER_NAME.get(0));
+
+        Assert.assertTrue(admin.execute(SERVER_STOP_CMD).startsWith("Server is stopping"));
+
+        serverThread.join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertFalse(serverThread.isAlive());
+    }
+}
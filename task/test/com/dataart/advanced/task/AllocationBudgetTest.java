@@ -0,0 +1,301 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Allocation budget of server's request path. Bytes allocated by server's connection thread are measured for
+ * round trips of known commands and compared with budget, so GC pressure regressions fail the build. Each stage
+ * of request processing is measured separately in test thread: frame reception, response forming by listener,
+ * response sending and logging. Log records are formatted to discarding stream instead of console.
+ * Parameters are taken from system properties "requestsNumber" and "allocationBudget" (bytes per round trip)
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class AllocationBudgetTest {
+    private static final Logger log = Logger.getLogger(AllocationBudgetTest.class.getName());
+
+    private static final String host = "localhost";
+    private static final int port = 18300;
+    private static final long startTimeout = 5000;   // in ms
+
+    private static final int requestsNumber = Integer.getInteger("requestsNumber", 20000);
+    private static final long allocationBudget = Long.getLong("allocationBudget", 16 * 1024);
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // output discarding formatted log records and sent frames
+    private static final OutputStream discard = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private final Logger rootLog = LogManager.getLogManager().getLogger("");
+    private Handler[] rootHandlers;
+
+    private Server server;
+    private Thread serverThread;
+
+    // commands of request path excluding "quit"
+    private final List<String> commands = new ArrayList<>();
+
+    /**
+     * @param thread - measured thread
+     * @return total bytes allocated by thread
+     */
+    private static long allocatedBytes(Thread thread) {
+        return threads.getThreadAllocatedBytes(thread.getId());
+    }
+
+    /**
+     * Measures allocation of action repeated for each request in test thread. Allocation of measurement itself
+     * is subtracted
+     * @param action - single request stage
+     * @return allocated bytes per request
+     */
+    private static long measure(Stage action) throws IOException {
+        Thread current = Thread.currentThread();
+
+        long probe = allocatedBytes(current);
+        long overhead = allocatedBytes(current) - probe;
+
+        long start = allocatedBytes(current);
+
+        for (int i = 0; i < requestsNumber; ++i) {
+            action.run(i);
+        }
+
+        return Math.max(0, allocatedBytes(current) - start - overhead) / requestsNumber;
+    }
+
+    /**
+     * Single request stage measured by allocation
+     */
+    private interface Stage {
+        /**
+         * @param index - request number
+         */
+        void run(int index) throws IOException;
+    }
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (AIServerListener.UserCmd cmd : KNOWN_CMD) {
+            if (!QUIT_CMD.equals(cmd.getToken())) {
+                commands.add(cmd.getToken());
+            }
+        }
+
+        // server logs each request, so console is replaced by formatting to discarding stream
+        rootHandlers = rootLog.getHandlers();
+
+        for (Handler handler : rootHandlers) {
+            rootLog.removeHandler(handler);
+        }
+
+        rootLog.addHandler(new StreamHandler(discard, new SimpleFormatter()));
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.stop();
+            serverThread.join();
+        }
+
+        restoreLogging();
+    }
+
+    /**
+     * Returns console logging replaced for measurement
+     */
+    private void restoreLogging() {
+        if (rootHandlers == null) {
+            return;
+        }
+
+        for (Handler handler : rootLog.getHandlers()) {
+            rootLog.removeHandler(handler);
+        }
+
+        for (Handler handler : rootHandlers) {
+            rootLog.addHandler(handler);
+        }
+
+        rootHandlers = null;
+    }
+
+    /**
+     * Connects to started server waiting for its listening
+     * @return connected socket
+     */
+    private static Socket connect() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + startTimeout;
+
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException exc) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw exc;
+                }
+
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    /**
+     * @return server's thread of the only client connection
+     */
+    private static Thread findConnectionThread() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(CONNECTION_THREAD_NAME)) {
+                return thread;
+            }
+        }
+
+        throw new AssertionError("AllocationBudgetTest: server's connection thread isn't found");
+    }
+
+    /**
+     * Sends request and waits for response skipping session control frames
+     * @param msg - request and response holder
+     * @param request - request content
+     */
+    private static void exchange(MessageTraits msg, String request, DataInputStream in, DataOutputStream out)
+            throws IOException {
+        msg.sendMessage(request, out);
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+        } while (msg.getType() != FRAME_DATA);
+    }
+
+    /**
+     * Measures allocation of connection thread per round trip of known commands after warm-up
+     * @return allocated bytes per round trip
+     */
+    private long measureRoundTrip() throws IOException, InterruptedException {
+        server = new Server(port, new AIServerListener());
+        serverThread = new Thread(server, SERVER_THREAD_NAME);
+        serverThread.start();
+
+        try (Socket socket = connect();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+            exchange(msg, TESTING_USER_NAME.get(0), in, out);
+
+            Thread connectionThread = findConnectionThread();
+
+            // warming up so allocations of class loading and compilation aren't measured
+            for (int i = 0; i < requestsNumber; ++i) {
+                exchange(msg, commands.get(i % commands.size()), in, out);
+            }
+
+            long start = allocatedBytes(connectionThread);
+
+            for (int i = 0; i < requestsNumber; ++i) {
+                exchange(msg, commands.get(i % commands.size()), in, out);
+            }
+
+            long allocated = allocatedBytes(connectionThread) - start;
+
+            exchange(msg, QUIT_CMD, in, out);
+
+            return allocated / requestsNumber;
+        }
+    }
+
+    @Test
+    public void testRequestPathBudget() throws Exception {
+        long roundTrip = measureRoundTrip();
+
+        // requests frames as they are received by connection thread
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        MessageTraits request = new MessageTraits();
+
+        try (DataOutputStream out = new DataOutputStream(frames)) {
+            for (int i = 0; i < requestsNumber; ++i) {
+                request.sendMessage(commands.get(i % commands.size()), out);
+            }
+        }
+
+        byte[] content = frames.toByteArray();
+
+        MessageTraits received = new MessageTraits();
+        MessageTraits sent = new MessageTraits();
+        AIServerListener listener = new AIServerListener();
+        // session without link, since watchdog is disabled
+        Server.Connection connection = server.new Connection(null, PRIMARY_STREAM_ID, 0);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(discard));
+        String[] responses = new String[commands.size()];
+
+        Logger stageLog = Logger.getAnonymousLogger();
+        stageLog.setUseParentHandlers(false);
+        stageLog.addHandler(new StreamHandler(discard, new SimpleFormatter()));
+
+        long[] stages = new long[4];
+
+        // each stage is warmed up by the first pass
+        for (int pass = 0; pass < 2; ++pass) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new ByteArrayInputStream(content)));
+
+            stages[0] = measure(i -> received.receive(in));
+            stages[1] = measure(i -> responses[i % responses.length] =
+                                listener.onProcess(commands.get(i % commands.size()), connection));
+            stages[2] = measure(i -> sent.sendMessage(FRAME_DATA, responses[i % responses.length], out));
+            stages[3] = measure(i -> stageLog.info(TESTING_USER_NAME.get(0) + ": " +
+                                                   commands.get(i % commands.size())));
+        }
+
+        restoreLogging();
+
+        log.info(LOG_SEPARATOR);
+        log.info(String.format("Allocation per request (%d requests): receive = %d B, onProcess = %d B, " +
+                               "sendMessage = %d B, logging = %d B", requestsNumber, stages[0], stages[1],
+                               stages[2], stages[3]));
+        log.info(String.format("Allocation per round trip on connection thread: %d B (budget = %d B)", roundTrip,
+                               allocationBudget));
+        log.info(LOG_SEPARATOR);
+
+        Assert.assertTrue("Allocation per round trip " + roundTrip + " B exceeds budget " + allocationBudget + " B",
+                          roundTrip <= allocationBudget);
+    }
+}
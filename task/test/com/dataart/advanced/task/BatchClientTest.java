@@ -0,0 +1,200 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Batch client verification: responses written to results file in commands order, execution summary, batch
+ * finishing by "quit" command in the middle of commands file and exact window of unanswered commands
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class BatchClientTest {
+    private static final String host = "localhost";
+    private static final int port = 19600;
+
+    private static final int commandsNumber = 100;
+    private static final long silenceTimeout = 300;   // in ms
+
+    private static final String UNKNOWN_CMD = "unknown";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Server server;
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Listener answering by request content and unknown command response on UNKNOWN_CMD
+     */
+    private static String onProcess(String msg, Server.Connection connection) {
+        return UNKNOWN_CMD.equals(msg) ? DEFAULT_CMD.getResponse() : "reply on " + msg;
+    }
+
+    /**
+     * Writes commands file with user name in the first line
+     * @param commands - commands following user name
+     * @return commands file
+     */
+    private Path createCommandsFile(List<String> commands) throws IOException {
+        List<String> lines = new ArrayList<>(commands.size() + 1);
+        lines.add(TESTING_USER_NAME.get(0));
+        lines.addAll(commands);
+
+        return Files.write(folder.newFile().toPath(), lines);
+    }
+
+    @Test
+    public void testResultsOrder() throws Exception {
+        server = new Server.Builder(BatchClientTest::onProcess).port(port).start();
+
+        List<String> commands = new ArrayList<>();
+
+        for (int i = 0; i < commandsNumber; ++i) {
+            commands.add(i % 10 == 0 ? UNKNOWN_CMD : "command #" + i);
+        }
+
+        commands.add(QUIT_CMD);
+
+        Path resultsFile = folder.newFile().toPath();
+
+        BatchClient client = new BatchClient(host, port);
+        client.setWindow(8);
+
+        BatchClient.Summary summary = client.run(createCommandsFile(commands), resultsFile, msg -> msg);
+
+        // user name, commands and "quit"
+        Assert.assertEquals(commandsNumber + 2, summary.getCommandsNumber());
+        Assert.assertEquals(commandsNumber + 2, summary.getResponsesNumber());
+        Assert.assertEquals(0, summary.getErrorsNumber());
+        Assert.assertEquals(commandsNumber / 10, summary.getUnknownNumber());
+
+        List<String> results = Files.readAllLines(resultsFile);
+        Assert.assertEquals(commandsNumber + 2, results.size());
+        Assert.assertEquals("reply on " + TESTING_USER_NAME.get(0), results.get(0));
+
+        for (int i = 0; i < commands.size(); ++i) {
+            Assert.assertEquals(onProcess(commands.get(i), null), results.get(i + 1));
+        }
+    }
+
+    @Test
+    public void testQuit() throws Exception {
+        server = new Server.Builder(BatchClientTest::onProcess).port(port).start();
+
+        List<String> commands = new ArrayList<>();
+
+        for (int i = 0; i < commandsNumber; ++i) {
+            commands.add(i == commandsNumber / 2 ? QUIT_CMD : "command #" + i);
+        }
+
+        Path resultsFile = folder.newFile().toPath();
+
+        BatchClient.Summary summary = new BatchClient(host, port).run(createCommandsFile(commands), resultsFile,
+                                                                      msg -> msg);
+
+        // commands after "quit" aren't sent
+        Assert.assertEquals(commandsNumber / 2 + 2, summary.getCommandsNumber());
+        Assert.assertEquals(commandsNumber / 2 + 2, summary.getResponsesNumber());
+        Assert.assertEquals(0, summary.getErrorsNumber());
+
+        List<String> results = Files.readAllLines(resultsFile);
+        Assert.assertEquals(commandsNumber / 2 + 2, results.size());
+        Assert.assertEquals("reply on " + QUIT_CMD, results.get(results.size() - 1));
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        final int window = 5;
+        AtomicInteger unansweredMax = new AtomicInteger();
+
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            // server answers user name, then counts commands sent without replies till client's silence
+            Thread peer = new Thread(() -> {
+                try (Socket socket = serverSocket.accept();
+                     DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                             socket.getOutputStream()))) {
+                    MessageTraits msg = new MessageTraits();
+
+                    msg.receive(in);
+                    msg.sendMessage(msg.getMessage(), out);
+
+                    socket.setSoTimeout((int) silenceTimeout);
+                    List<String> unanswered = new ArrayList<>();
+
+                    try {
+                        while (msg.receive(in) != DEFAULT_SZ) {
+                            unanswered.add(msg.getMessage());
+                        }
+                    } catch (SocketTimeoutException exc) {
+                        // client waits for replies
+                    }
+
+                    unansweredMax.set(unanswered.size());
+                    socket.setSoTimeout(0);
+
+                    for (String request : unanswered) {
+                        msg.sendMessage(request, out);
+                    }
+
+                    while (msg.receive(in) != DEFAULT_SZ) {
+                        msg.sendMessage(msg.getMessage(), out);
+
+                        if (QUIT_CMD.equals(msg.getMessage())) {
+                            break;
+                        }
+                    }
+                } catch (IOException exc) {
+                    Assert.fail(exc.getMessage());
+                }
+            });
+            peer.start();
+
+            List<String> commands = new ArrayList<>();
+
+            for (int i = 0; i < commandsNumber; ++i) {
+                commands.add("command #" + i);
+            }
+
+            commands.add(QUIT_CMD);
+
+            BatchClient client = new BatchClient(host, port);
+            client.setWindow(window);
+
+            BatchClient.Summary summary = client.run(createCommandsFile(commands), folder.newFile().toPath(),
+                                                     msg -> msg);
+            peer.join();
+
+            Assert.assertEquals(window, unansweredMax.get());
+            Assert.assertEquals(commandsNumber + 2, summary.getResponsesNumber());
+            Assert.assertEquals(0, summary.getErrorsNumber());
+        }
+    }
+}
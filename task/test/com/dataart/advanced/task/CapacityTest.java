@@ -0,0 +1,293 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Idle connections capacity of server. Many idle clients introduce themselves and stay connected while a few
+ * active clients exchange messages, so footprint of idle connection and latency of active ones are measured
+ * together. Resident memory, heap and threads number are taken before and after connecting, footprint per
+ * connection is compared with budget and round trip percentile of active clients is compared with latency
+ * objective. Client sockets are opened in the same JVM, so footprint includes their client's side.
+ * Connections are spread over several loopback source addresses, since ephemeral ports of single address are
+ * exhausted before 100k connections. Connections number is reduced to open files and processes limits of
+ * the process with warning.
+ * Parameters are taken from system properties "connectionsNumber", "activeClientsNumber", "requestsNumber",
+ * "latencySlo" (99th percentile in ms) and "footprintBudget" (bytes per connection)
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class CapacityTest {
+    private static final Logger log = Logger.getLogger(CapacityTest.class.getName());
+
+    private static final String host = "localhost";
+    private static final int port = 19100;
+
+    private static final int connectionsNumber = Integer.getInteger("connectionsNumber", 2000);
+    private static final int activeClientsNumber = Integer.getInteger("activeClientsNumber", 4);
+    private static final int requestsNumber = Integer.getInteger("requestsNumber", 200);
+    private static final long latencySlo = Long.getLong("latencySlo", 100);              // in ms
+    private static final long footprintBudget = Long.getLong("footprintBudget", 256 * 1024);  // in bytes
+
+    // connections of single loopback source address, less than ephemeral ports range
+    private static final int connectionsPerSource = 20000;
+    // open files and threads kept for JVM, server's listening and active clients
+    private static final int reservedResources = 512;
+
+    private final Logger rootLog = LogManager.getLogManager().getLogger("");
+    private Level rootLevel;
+
+    private Server server;
+    private final List<Socket> idle = new ArrayList<>();
+
+    @After
+    public void after() throws InterruptedException {
+        // links are stopped by server before their sockets closing
+        if (server != null) {
+            server.close();
+        }
+
+        for (Socket socket : idle) {
+            try {
+                socket.close();
+            } catch (IOException exc) {
+                log.log(Level.SEVERE, "CapacityTest error: unable to close idle connection", exc);
+            }
+        }
+
+        if (rootLevel != null) {
+            rootLog.setLevel(rootLevel);
+        }
+    }
+
+    /**
+     * Resources snapshot of process
+     */
+    private static class Footprint {
+        private final long rss;       // resident memory in bytes or 0 if it isn't available
+        private final long heap;      // used heap after GC in bytes
+        private final int threads;
+
+        Footprint() throws InterruptedException {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+            // several collections let finalizable objects go
+            for (int i = 0; i < 3; ++i) {
+                System.gc();
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+
+            heap = memory.getHeapMemoryUsage().getUsed();
+            threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            rss = readStatus("VmRSS:") * 1024;
+        }
+    }
+
+    /**
+     * @param name - field name of "/proc/self/status" including colon
+     * @return field value or 0 if it isn't available (e.g. not Linux)
+     */
+    private static long readStatus(String name) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith(name)) {
+                    return Long.parseLong(line.substring(name.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException exc) {
+            log.fine("CapacityTest: process status isn't available: " + exc.getMessage());
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param name - limit name of "/proc/self/limits"
+     * @return soft limit or Long.MAX_VALUE if it's unlimited or isn't available
+     */
+    private static long readLimit(String name) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/limits"))) {
+                if (line.startsWith(name)) {
+                    String value = line.substring(name.length()).trim().split("\\s+")[0];
+                    return "unlimited".equals(value) ? Long.MAX_VALUE : Long.parseLong(value);
+                }
+            }
+        } catch (IOException | NumberFormatException exc) {
+            log.fine("CapacityTest: process limits aren't available: " + exc.getMessage());
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * @return connections number reduced to open files and processes limits. Each connection takes two files
+     *         (client's and server's sockets) and one server's thread
+     */
+    private static int limitConnectionsNumber() {
+        long limit = connectionsNumber;
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            com.sun.management.UnixOperatingSystemMXBean unix = (com.sun.management.UnixOperatingSystemMXBean) os;
+            limit = Math.min(limit, (unix.getMaxFileDescriptorCount() - unix.getOpenFileDescriptorCount() -
+                                     reservedResources) / 2);
+        }
+
+        long processes = readLimit("Max processes");
+
+        if (processes != Long.MAX_VALUE) {
+            limit = Math.min(limit, processes - readStatus("Threads:") - reservedResources);
+        }
+
+        if (limit < connectionsNumber) {
+            log.warning(String.format("CapacityTest: connections number is reduced from %d to %d by process limits",
+                                      connectionsNumber, limit));
+        }
+
+        return (int) Math.max(limit, 0);
+    }
+
+    /**
+     * Sends request and waits for response skipping session control frames
+     * @param msg - request and response holder
+     * @param request - request content
+     */
+    private static void exchange(MessageTraits msg, String request, DataInputStream in, DataOutputStream out)
+            throws IOException {
+        msg.sendMessage(request, out);
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+        } while (msg.getType() != FRAME_DATA);
+    }
+
+    /**
+     * Opens idle connection introducing user to server
+     * @param index - connection number defining loopback source address
+     */
+    private void openIdle(int index) throws IOException {
+        Socket socket = new Socket();
+        idle.add(socket);
+
+        byte[] source = {127, 0, 0, (byte) (1 + index / connectionsPerSource)};
+
+        socket.bind(new InetSocketAddress(InetAddress.getByAddress(source), 0));
+        socket.connect(new InetSocketAddress(InetAddress.getByAddress(new byte[] {127, 0, 0, 1}), port));
+
+        // streams buffers aren't kept, since connection stays idle
+        exchange(new MessageTraits(), "idle #" + index, new DataInputStream(socket.getInputStream()),
+                 new DataOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Exchanges messages of single active client
+     * @param latencies - round trip times in ns filled by client
+     */
+    private static void runActive(int clientIndex, long[] latencies) {
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+            exchange(msg, "active #" + clientIndex, in, out);
+
+            for (int i = 0; i < latencies.length; ++i) {
+                long startTime = System.nanoTime();
+                exchange(msg, "request #" + i, in, out);
+                latencies[i] = System.nanoTime() - startTime;
+            }
+
+            exchange(msg, QUIT_CMD, in, out);
+        } catch (IOException exc) {
+            log.log(Level.SEVERE, "CapacityTest error: active client #" + clientIndex + " fails", exc);
+            Arrays.fill(latencies, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testIdleConnections() throws Exception {
+        int number = limitConnectionsNumber();
+        Assert.assertTrue("CapacityTest: process limits don't allow connections", number > 0);
+
+        // server logs each introduction, only warnings are kept
+        rootLevel = rootLog.getLevel();
+        rootLog.setLevel(Level.WARNING);
+
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg).port(port).start();
+        Footprint before = new Footprint();
+
+        long startTime = System.nanoTime();
+
+        for (int i = 0; i < number; ++i) {
+            openIdle(i);
+        }
+
+        double connectTime = (System.nanoTime() - startTime) / 1e9;
+
+        // active clients exchange messages while idle connections are kept
+        long[][] latencies = new long[activeClientsNumber][requestsNumber];
+        Thread[] clients = new Thread[activeClientsNumber];
+
+        for (int i = 0; i < clients.length; ++i) {
+            int index = i;
+
+            clients[i] = new Thread(() -> runActive(index, latencies[index]));
+            clients[i].start();
+        }
+
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        double p50 = all[all.length / 2] / 1e6;
+        double p99 = all[(int) Math.min(all.length - 1, Math.ceil(all.length * 0.99) - 1)] / 1e6;
+
+        Footprint after = new Footprint();
+
+        long rssPerConnection = (after.rss - before.rss) / number;
+        long heapPerConnection = (after.heap - before.heap) / number;
+
+        log.warning(String.format("Capacity: connections = %d (%.1f s to open), threads = %d -> %d, " +
+                                  "heap = %d -> %d KB, RSS = %d -> %d KB", number, connectTime, before.threads,
+                                  after.threads, before.heap / 1024, after.heap / 1024, before.rss / 1024,
+                                  after.rss / 1024));
+        log.warning(String.format("Capacity: per connection heap = %d bytes, RSS = %d bytes, threads = %.2f; " +
+                                  "active clients round trip p50 = %.3f ms, p99 = %.3f ms", heapPerConnection,
+                                  rssPerConnection, (double) (after.threads - before.threads) / number, p50, p99));
+
+        Assert.assertTrue("Round trip p99 " + p99 + " ms exceeds objective " + latencySlo + " ms",
+                          p99 <= latencySlo);
+
+        // resident memory covers heap, threads stacks and native buffers, heap is checked without procfs
+        long footprint = after.rss > 0 ? rssPerConnection : heapPerConnection;
+        Assert.assertTrue("Connection footprint " + footprint + " bytes exceeds budget " + footprintBudget +
+                          " bytes", footprint <= footprintBudget);
+    }
+}
@@ -0,0 +1,133 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cluster nodes verification: transitive joining through seed, aggregates convergence, node failure detection and
+ * restarted node rejoining. Nodes gossip over loopback with short timing
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ClusterNodeTest {
+    private static final long gossipInterval = 50;    // in ms
+    private static final long failureTimeout = 400;   // in ms
+    private static final long convergenceTimeout = 5000;   // in ms
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+
+    /**
+     * Starts node on any free gossip port
+     * @param name - node's name
+     * @param connections - node's own connections number
+     * @param seed - node for joining or null for the first node
+     * @return started node
+     */
+    private ClusterNode startNode(String name, AtomicInteger connections, ClusterNode seed) throws SocketException {
+        List<InetSocketAddress> seeds = seed == null ? Collections.emptyList() : Collections.singletonList(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), seed.getGossipPort()));
+
+        ClusterNode node = new ClusterNode(name, 0, seeds);
+        node.setTiming(gossipInterval, failureTimeout);
+        node.start(connections::get);
+
+        nodes.add(node);
+
+        return node;
+    }
+
+    /**
+     * Waits for condition fulfilment
+     * @param condition - awaited condition
+     * @return true if condition is fulfilled before timeout
+     */
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + convergenceTimeout;
+
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            Thread.sleep(gossipInterval / 2);
+        }
+
+        return true;
+    }
+
+    @After
+    public void after() {
+        nodes.forEach(ClusterNode::close);
+    }
+
+    @Test
+    public void testAggregatesConvergence() throws Exception {
+        AtomicInteger connectionsA = new AtomicInteger(3);
+        AtomicInteger connectionsB = new AtomicInteger(5);
+        AtomicInteger connectionsC = new AtomicInteger(7);
+
+        ClusterNode nodeA = startNode("a", connectionsA, null);
+        ClusterNode nodeB = startNode("b", connectionsB, nodeA);
+
+        // the third node knows only the second one, the first node is learned from gossip
+        ClusterNode nodeC = startNode("c", connectionsC, nodeB);
+
+        Assert.assertTrue(await(() -> nodeA.getAliveNodesNumber() == 3 && nodeC.getAliveNodesNumber() == 3));
+        Assert.assertTrue(await(() -> nodeA.getRemoteConnectionsNumber() == 12 &&
+                                      nodeB.getRemoteConnectionsNumber() == 10 &&
+                                      nodeC.getRemoteConnectionsNumber() == 8));
+
+        // connections are indexed in order of nodes names
+        Assert.assertEquals(0, nodeA.getPrecedingConnectionsNumber());
+        Assert.assertEquals(3, nodeB.getPrecedingConnectionsNumber());
+        Assert.assertEquals(8, nodeC.getPrecedingConnectionsNumber());
+
+        // changes are applied incrementally
+        connectionsA.addAndGet(10);
+        connectionsC.set(0);
+
+        Assert.assertTrue(await(() -> nodeB.getRemoteConnectionsNumber() == 13 &&
+                                      nodeC.getPrecedingConnectionsNumber() == 18));
+    }
+
+    @Test
+    public void testFailureAndRejoining() throws Exception {
+        AtomicInteger connectionsA = new AtomicInteger(1);
+        AtomicInteger connectionsB = new AtomicInteger(2);
+
+        ClusterNode nodeA = startNode("a", connectionsA, null);
+        ClusterNode nodeB = startNode("b", connectionsB, nodeA);
+
+        Assert.assertTrue(await(() -> nodeA.getRemoteConnectionsNumber() == 2 &&
+                                      nodeB.getRemoteConnectionsNumber() == 1));
+
+        int gossipPortB = nodeB.getGossipPort();
+        nodeB.close();
+
+        // the remaining node excludes silent node from aggregates
+        Assert.assertTrue(await(() -> nodeA.getAliveNodesNumber() == 1));
+        Assert.assertEquals(0, nodeA.getRemoteConnectionsNumber());
+
+        // restarted node has the newer generation, so its heartbeats aren't considered stale
+        Thread.sleep(5);
+
+        ClusterNode restartedB = new ClusterNode("b", gossipPortB, Collections.singletonList(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), nodeA.getGossipPort())));
+        restartedB.setTiming(gossipInterval, failureTimeout);
+        restartedB.start(() -> 4);
+        nodes.add(restartedB);
+
+        Assert.assertTrue(await(() -> nodeA.getAliveNodesNumber() == 2 && nodeA.getRemoteConnectionsNumber() == 4));
+    }
+}
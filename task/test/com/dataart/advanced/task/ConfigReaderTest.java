@@ -7,6 +7,7 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -22,6 +23,46 @@ public class ConfigReaderTest {
     private static final int correctClientPortNumber = 8100;
     private static final String correctHostName = "192.168.197.35";
 
+    private static final int correctConnectionRate = 10;
+    private static final int correctConnectionBurst = 20;
+    private static final int correctUserRate = 30;
+    private static final long correctThrottleDelay = 50;
+
+    private static final long correctPingInterval = 2000;
+    private static final int correctPingMaxMisses = 4;
+
+    private static final String correctSessionSnapshot = new File("../files/test-sessions.snapshot").getAbsolutePath();
+
+    private static final int correctWorkersNumber = 2;
+    private static final int correctWorkerQuantum = 512;
+
+    private static final long correctStallThreshold = 3000;
+
+    private static final String correctJournalDir = "test-journal";
+    private static final int correctJournalSegmentSize = 1048576;
+
+    private static final String correctTlsKeyStore = new File("../files/tls/server.p12").getAbsolutePath();
+    private static final String correctTlsTrustStore = new File("../files/tls/trust.p12").getAbsolutePath();
+    private static final String correctTlsKeyStorePassword = "changeit";
+    private static final String correctTlsProtocol = "TLSv1.2";
+    private static final int correctTlsSessionCacheSize = 100;
+
+    private static final String correctClusterNodeName = "test-node";
+    private static final int correctClusterGossipPort = 9100;
+    private static final String correctClusterSeeds = "localhost:9101,127.0.0.1:9102";
+    private static final long correctClusterFailureTimeout = 5000;
+
+    private static final int correctAdminPortNumber = 8110;
+
+    private static final int correctShmPortNumber = 8210;
+    private static final int correctShmRingSize = 65536;
+
+    private static final String correctUnixSocketPath = new File("../files/test.sock").getAbsolutePath();
+
+    private static final int correctProxyPortNumber = 8090;
+    private static final String correctProxyBackends = "localhost:8081,localhost:8082";
+    private static final int correctProxyHealthCheckTimeout = 200;
+
     private ConfigReader cfgReader;
 
     @Before
@@ -34,6 +75,61 @@ public class ConfigReaderTest {
         cfgReader.parse(cfgFileName, true);
 
         Assert.assertEquals(cfgReader.getPortNumber(), correctServerPortNumber);
+
+        Assert.assertEquals(cfgReader.getConnectionRate(), correctConnectionRate);
+        Assert.assertEquals(cfgReader.getConnectionBurst(), correctConnectionBurst);
+        Assert.assertEquals(cfgReader.getUserRate(), correctUserRate);
+        Assert.assertEquals(cfgReader.getUserBurst(), 0);
+        Assert.assertEquals(cfgReader.getThrottleDelay(), correctThrottleDelay);
+
+        Assert.assertEquals(cfgReader.getPingInterval(), correctPingInterval);
+        Assert.assertEquals(cfgReader.getPingMaxMisses(), correctPingMaxMisses);
+
+        Assert.assertEquals(new File(cfgReader.getSessionSnapshot()).getCanonicalPath(),
+                            new File(correctSessionSnapshot).getCanonicalPath());
+
+        Assert.assertEquals(cfgReader.getWorkersNumber(), correctWorkersNumber);
+        Assert.assertEquals(cfgReader.getWorkerQuantum(), correctWorkerQuantum);
+
+        Assert.assertEquals(cfgReader.getStallThreshold(), correctStallThreshold);
+        Assert.assertEquals(cfgReader.getStallAction(), StallWatchdog.Action.DISCONNECT);
+
+        Assert.assertEquals(cfgReader.getJournalDir(), correctJournalDir);
+        Assert.assertEquals(cfgReader.getJournalSegmentSize(), correctJournalSegmentSize);
+        Assert.assertEquals(cfgReader.getJournalFsyncPolicy(), MessageJournal.FsyncPolicy.ALWAYS);
+        Assert.assertEquals(cfgReader.getJournalFsyncInterval(), Info.JOURNAL_FSYNC_INTERVAL);
+
+        Assert.assertTrue(cfgReader.isTlsEnabled());
+        Assert.assertEquals(new File(cfgReader.getTlsKeyStore()).getCanonicalPath(),
+                            new File(correctTlsKeyStore).getCanonicalPath());
+        Assert.assertEquals(cfgReader.getTlsKeyStorePassword(), correctTlsKeyStorePassword);
+        Assert.assertNull(cfgReader.getTlsTrustStore());
+        Assert.assertEquals(cfgReader.getTlsProtocol(), correctTlsProtocol);
+        Assert.assertEquals(cfgReader.getTlsSessionCacheSize(), correctTlsSessionCacheSize);
+        Assert.assertEquals(cfgReader.getTlsSessionTimeout(), Info.TLS_SESSION_TIMEOUT);
+
+        Assert.assertTrue(cfgReader.isClusterEnabled());
+        Assert.assertEquals(cfgReader.getClusterNodeName(), correctClusterNodeName);
+        Assert.assertEquals(cfgReader.getClusterGossipPort(), correctClusterGossipPort);
+        Assert.assertEquals(cfgReader.getClusterSeeds(), correctClusterSeeds);
+        Assert.assertEquals(cfgReader.getClusterGossipInterval(), Info.CLUSTER_GOSSIP_INTERVAL);
+        Assert.assertEquals(cfgReader.getClusterFailureTimeout(), correctClusterFailureTimeout);
+        Assert.assertEquals(ClusterNode.parseSeeds(cfgReader.getClusterSeeds()).size(), 2);
+
+        Assert.assertEquals(cfgReader.getAdminPortNumber(), correctAdminPortNumber);
+
+        Assert.assertEquals(cfgReader.getShmPortNumber(), correctShmPortNumber);
+        Assert.assertEquals(cfgReader.getShmRingSize(), correctShmRingSize);
+        Assert.assertEquals(cfgReader.getShmWaitStrategy(), SharedMemoryTransport.WaitStrategy.SPIN);
+        Assert.assertEquals(new File(cfgReader.getUnixSocketPath()).getCanonicalPath(),
+                            new File(correctUnixSocketPath).getCanonicalPath());
+
+        Assert.assertTrue(cfgReader.isProxyEnabled());
+        Assert.assertEquals(cfgReader.getProxyPortNumber(), correctProxyPortNumber);
+        Assert.assertEquals(cfgReader.getProxyBackends(), correctProxyBackends);
+        Assert.assertEquals(cfgReader.getProxyBalancing(), ProxyServer.Balancing.USER_HASH);
+        Assert.assertEquals(cfgReader.getProxyHealthCheckInterval(), Info.PROXY_HEALTH_INTERVAL);
+        Assert.assertEquals(cfgReader.getProxyHealthCheckTimeout(), correctProxyHealthCheckTimeout);
     }
 
     @Test
@@ -42,5 +138,26 @@ public class ConfigReaderTest {
 
         Assert.assertEquals(cfgReader.getPortNumber(), correctClientPortNumber);
         Assert.assertEquals(cfgReader.getHostName(), correctHostName);
+        Assert.assertEquals(cfgReader.getResponseCacheSize(), 64);
+
+        Assert.assertEquals(cfgReader.getConnectionRate(), 0);
+        Assert.assertEquals(cfgReader.getPingInterval(), 0);
+        Assert.assertEquals(cfgReader.getWorkersNumber(), 0);
+        Assert.assertEquals(cfgReader.getStallThreshold(), 0);
+        Assert.assertNull(cfgReader.getSessionSnapshot());
+        Assert.assertNull(cfgReader.getJournalDir());
+        Assert.assertTrue(cfgReader.isTlsEnabled());
+        Assert.assertNull(cfgReader.getTlsKeyStore());
+        Assert.assertEquals(new File(cfgReader.getTlsTrustStore()).getCanonicalPath(),
+                            new File(correctTlsTrustStore).getCanonicalPath());
+        Assert.assertEquals(cfgReader.getTlsTrustStorePassword(), correctTlsKeyStorePassword);
+        Assert.assertNull(cfgReader.getTlsProtocol());
+        Assert.assertFalse(cfgReader.isClusterEnabled());
+        Assert.assertEquals(cfgReader.getAdminPortNumber(), 0);
+        Assert.assertEquals(cfgReader.getShmPortNumber(), correctShmPortNumber);
+        Assert.assertEquals(cfgReader.getShmRingSize(), Info.SHM_RING_SZ);
+        Assert.assertEquals(cfgReader.getShmWaitStrategy(), SharedMemoryTransport.WaitStrategy.PARK);
+        Assert.assertEquals(cfgReader.getUnixSocketPath(), "/tmp/test.sock");
+        Assert.assertFalse(cfgReader.isProxyEnabled());
     }
 }
\ No newline at end of file
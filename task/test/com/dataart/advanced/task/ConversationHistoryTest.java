@@ -0,0 +1,120 @@
+package com.dataart.advanced.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Conversation history verification: ring buffer overwriting, messages truncation, eviction of the least
+ * recently used users on memory limit and history command, which isn't stored in history and rejects
+ * non-positive exchanges number
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ConversationHistoryTest {
+    private static final int size = 4;
+    private static final int entrySize = 64;
+
+    private static final String USAGE_RESPONSE = "History size should be a positive number";
+
+    /**
+     * @param text - searched text
+     * @param fragment - counted fragment
+     * @return number of fragment occurrences in text
+     */
+    private static int count(String text, String fragment) {
+        return text.split(Pattern.quote(fragment), -1).length - 1;
+    }
+
+    @Test
+    public void testRingOverwriting() {
+        ConversationHistory history = new ConversationHistory(size, entrySize, 1024 * 1024);
+
+        for (int i = 0; i < 2 * size + 1; ++i) {
+            history.record("Bob", "request " + i, "response " + i);
+        }
+
+        List<ConversationHistory.Entry> entries = history.getLast("Bob", size + 1);
+
+        Assert.assertEquals(size, entries.size());
+
+        for (int i = 0; i < size; ++i) {
+            Assert.assertEquals("request " + (size + 1 + i), entries.get(i).getRequest());
+            Assert.assertEquals("response " + (size + 1 + i), entries.get(i).getResponse());
+        }
+
+        Assert.assertEquals("request " + 2 * size, history.getLast("Bob", 1).get(0).getRequest());
+        Assert.assertTrue(history.getLast("Alice", size).isEmpty());
+    }
+
+    @Test
+    public void testTruncation() {
+        ConversationHistory history = new ConversationHistory(size, entrySize, 1024 * 1024);
+
+        // two bytes symbols aren't split by truncation
+        String request = new String(new char[entrySize]).replace('\0', '\u0436');
+        String response = new String(new char[entrySize]).replace('\0', 'r');
+
+        history.record("Bob", request, response);
+
+        ConversationHistory.Entry entry = history.getLast("Bob", 1).get(0);
+        int payloadSize = entrySize - HISTORY_ENTRY_HEADER_SZ;
+
+        Assert.assertEquals(request.substring(0, payloadSize / 4), entry.getRequest());
+        Assert.assertEquals(response.substring(0, payloadSize - payloadSize / 4 * 2), entry.getResponse());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        int usersNumber = 3;
+        ConversationHistory history = new ConversationHistory(size, entrySize, usersNumber * size * entrySize);
+
+        history.record("Bob", "hello", "Hi, Bob!");
+        history.record("Alice", "hello", "Hi, Alice!");
+        history.record("Jane", "hello", "Hi, Jane!");
+
+        // Bob becomes the most recently used, so Alice is evicted by the next user
+        history.getLast("Bob", 1);
+        history.record("Paul", "hello", "Hi, Paul!");
+
+        Assert.assertEquals(usersNumber, history.getUsersNumber());
+        Assert.assertEquals(1, history.getEvictionsNumber());
+        Assert.assertTrue(history.getLast("Alice", size).isEmpty());
+        Assert.assertEquals("Hi, Bob!", history.getLast("Bob", size).get(0).getResponse());
+        Assert.assertEquals("Hi, Paul!", history.getLast("Paul", size).get(0).getResponse());
+        Assert.assertEquals(usersNumber * size * entrySize, history.getAllocatedMemory());
+    }
+
+    @Test
+    public void testHistoryCommand() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        Server server = new Server.Builder(new AIServerListener()).transport(loopback).start();
+
+        try {
+            String commands = TESTING_USER_NAME.get(0) + "\nhello\n" + HISTORY_CMD + "\n" + HISTORY_CMD + " -3\n" +
+                              HISTORY_CMD + " 0\n" + HISTORY_CMD + " many\n" + HISTORY_CMD + " 1\n" + QUIT_CMD + "\n";
+            ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+            Client client = new Client("localhost", 0, new ByteArrayInputStream(commands.getBytes()), responses);
+            client.setLoopback(loopback);
+            client.start(msg -> msg);
+
+            String output = responses.toString();
+
+            // both history requests show greeting only, since history requests aren't stored
+            Assert.assertEquals(output, 2, count(output, "hello -> "));
+            Assert.assertEquals(output, 0, count(output, HISTORY_CMD + " -> "));
+            Assert.assertEquals(output, 0, count(output, HISTORY_CMD + " -3 -> "));
+            Assert.assertEquals(output, 3, count(output, USAGE_RESPONSE));
+        } finally {
+            server.close();
+        }
+    }
+}
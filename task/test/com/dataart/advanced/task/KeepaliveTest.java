@@ -0,0 +1,327 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Keepalive verification: pings of silent link answered below listener and forming smoothed round trip time,
+ * dead peer detection, absence of pings on busy link and pongs of blocking, multiplexing and non-blocking clients
+ * over plain and TLS connections
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class KeepaliveTest {
+    private static final String host = "localhost";
+    private static final int port = 18500;
+
+    private static final long pingInterval = 100;   // in ms
+    private static final int pingMaxMisses = 3;
+    private static final long startTimeout = 5000;   // in ms
+
+    private static final String keyStore = "../files/tls/server.p12";
+    private static final String trustStore = "../files/tls/trust.p12";
+    private static final String password = "changeit";
+
+    private Server server;
+    private Thread serverThread;
+
+    // messages processed by server's listener
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+
+    /**
+     * Starts server with keepalive
+     * @param tls - TLS context of server or null for plain connections
+     */
+    private void startServer(TlsContext tls) {
+        server = new Server(port, (String msg, Server.Connection connection) -> {
+            processed.add(msg);
+            return msg;
+        });
+
+        server.setKeepalive(pingInterval, pingMaxMisses);
+        server.setTls(tls);
+
+        serverThread = new Thread(server, SERVER_THREAD_NAME);
+        serverThread.start();
+    }
+
+    /**
+     * Connects to started server waiting for its listening
+     * @return connected socket
+     */
+    private static Socket connect() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + startTimeout;
+
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException exc) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw exc;
+                }
+
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    /**
+     * Sends message and waits for response skipping session control frames
+     * @param msg - request and response holder
+     * @param request - request content
+     */
+    private static void exchange(MessageTraits msg, String request, DataInputStream in, DataOutputStream out)
+            throws IOException {
+        msg.sendMessage(request, out);
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+            Assert.assertNotEquals(FRAME_PING, msg.getType());
+        } while (msg.getType() != FRAME_DATA);
+    }
+
+    /**
+     * @return statistics line of keepalive
+     */
+    private String getKeepaliveStats() {
+        return server.collectStats().stream().filter(line -> line.startsWith("Keepalive")).findAny().orElse("");
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.stop();
+            serverThread.join();
+        }
+    }
+
+    @Test
+    public void testPingPong() throws Exception {
+        startServer(null);
+
+        try (Socket socket = connect();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+            exchange(msg, TESTING_USER_NAME.get(0), in, out);
+
+            // silent link is pinged, pongs are answered with ping content
+            for (int i = 0; i < 3; ++i) {
+                Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+                Assert.assertEquals(FRAME_PING, msg.getType());
+
+                msg.sendMessage(FRAME_PONG, msg.getMessage(), out);
+            }
+
+            // client's ping is answered by server
+            msg.sendMessage(FRAME_PING, "42", out);
+
+            do {
+                Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+            } while (msg.getType() == FRAME_PING);
+
+            Assert.assertEquals(FRAME_PONG, msg.getType());
+            Assert.assertEquals("42", msg.getMessage());
+
+            exchange(msg, QUIT_CMD, in, out);
+        }
+
+        // control frames don't reach listener
+        Assert.assertEquals(2, processed.size());
+        Assert.assertTrue(getKeepaliveStats(), getKeepaliveStats().contains("dead peers = 0"));
+    }
+
+    @Test
+    public void testSmoothedRtt() throws Exception {
+        startServer(null);
+
+        try (Socket socket = connect();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+            exchange(msg, TESTING_USER_NAME.get(0), in, out);
+
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+            msg.sendMessage(FRAME_PONG, msg.getMessage(), out);
+
+            // the next ping is sent after pong processing
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+
+            double rtt = server.getLinks().get(0).getSmoothedRtt();
+
+            Assert.assertTrue(rtt > 0);
+            Assert.assertTrue(rtt < TimeUnit.MILLISECONDS.toNanos(pingInterval));
+        }
+    }
+
+    @Test
+    public void testDeadPeer() throws Exception {
+        startServer(null);
+
+        try (Socket socket = connect();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+            exchange(msg, TESTING_USER_NAME.get(0), in, out);
+
+            long start = System.nanoTime();
+            int pingsNumber = 0;
+
+            // pings aren't answered
+            while (msg.receive(in) != DEFAULT_SZ) {
+                Assert.assertEquals(FRAME_PING, msg.getType());
+                ++pingsNumber;
+            }
+
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Assert.assertEquals(pingMaxMisses, pingsNumber);
+            Assert.assertTrue(elapsed >= pingInterval * pingMaxMisses);
+        }
+
+        Assert.assertTrue(getKeepaliveStats(), getKeepaliveStats().contains("dead peers = 1"));
+    }
+
+    @Test
+    public void testBusyLinkIsNotPinged() throws Exception {
+        startServer(null);
+
+        try (Socket socket = connect();
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+            exchange(msg, TESTING_USER_NAME.get(0), in, out);
+
+            long deadline = System.currentTimeMillis() + 5 * pingInterval;
+
+            while (System.currentTimeMillis() < deadline) {
+                exchange(msg, "time", in, out);
+                Thread.sleep(pingInterval / 4);
+            }
+
+            exchange(msg, QUIT_CMD, in, out);
+        }
+    }
+
+    @Test
+    public void testIdleClientPongs() throws Exception {
+        startServer(null);
+
+        // waiting for server's listening
+        connect().close();
+
+        PipedOutputStream commands = new PipedOutputStream();
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new PipedInputStream(commands), responses);
+
+        Thread clientThread = new Thread(() -> client.start(msg -> msg), TESTING_CLIENT_THREAD_NAME + 0);
+        clientThread.start();
+
+        commands.write((TESTING_USER_NAME.get(0) + "\n").getBytes());
+        commands.flush();
+
+        // user doesn't enter command during several ping intervals, pings are answered meanwhile
+        Thread.sleep(pingInterval * (pingMaxMisses + 3));
+
+        String stats = getKeepaliveStats();
+
+        Assert.assertTrue(stats, stats.contains("dead peers = 0"));
+        Assert.assertFalse(stats, stats.contains("mean smoothed RTT = 0.000 ms"));
+
+        commands.write(("time\n" + QUIT_CMD + "\n").getBytes());
+        commands.flush();
+
+        clientThread.join(startTimeout);
+        Assert.assertFalse(clientThread.isAlive());
+
+        Assert.assertEquals(0, client.getReconnectsNumber());
+        Assert.assertEquals(Arrays.asList(TESTING_USER_NAME.get(0), "time", QUIT_CMD), processed);
+    }
+
+    /**
+     * Verifies that idle sessions of multiplexing and non-blocking clients survive several ping intervals
+     * @param srvTls - TLS context of server or null for plain connections
+     * @param tls - TLS context of clients or null for plain connections
+     */
+    private void verifyClientsPongs(TlsContext srvTls, TlsContext tls) throws Exception {
+        startServer(srvTls);
+
+        MultiplexClient mux = new MultiplexClient(host, port);
+        mux.setTls(tls);
+
+        // waiting for server's listening without probe connections
+        long deadline = System.currentTimeMillis() + startTimeout;
+
+        while (true) {
+            try {
+                mux.connect();
+                break;
+            } catch (ConnectException exc) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw exc;
+                }
+
+                Thread.sleep(20);
+            }
+        }
+
+        AsynchronousChannelGroup group = AsyncClient.createGroup(1);
+        AsyncClient async = new AsyncClient(host, port, group, new AsyncClientListener() {});
+        async.setTls(tls);
+
+        try {
+            MultiplexClient.Session session = mux.openSession(TESTING_USER_NAME.get(0), msg -> msg,
+                                                              new ByteArrayOutputStream());
+            async.connect(TESTING_USER_NAME.get(1)).get(startTimeout, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(pingInterval * (pingMaxMisses + 3));
+
+            Assert.assertEquals("time", async.send("time").get(startTimeout, TimeUnit.MILLISECONDS));
+
+            // round trip time is measured by links of both clients
+            String stats = getKeepaliveStats();
+
+            Assert.assertTrue(stats, stats.contains("dead peers = 0"));
+            Assert.assertFalse(stats, stats.contains("mean smoothed RTT = 0.000 ms"));
+
+            session.quit();
+            Assert.assertTrue(session.awaitFinish(startTimeout, TimeUnit.MILLISECONDS));
+        } finally {
+            async.close();
+            mux.close();
+            group.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClientsPongs() throws Exception {
+        verifyClientsPongs(null, null);
+    }
+
+    @Test
+    public void testTlsClientsPongs() throws Exception {
+        verifyClientsPongs(new TlsContext(keyStore, password, null, null, null),
+                           new TlsContext(null, null, trustStore, password, null));
+    }
+}
@@ -0,0 +1,216 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * In-JVM loopback transport verification: pipes semantics, blocking and multiplexing clients exchange with server
+ * started by builder over plain and TLS loopback connections, builder's start of server on TCP port
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class LoopbackTransportTest {
+    private static final String host = "localhost";
+    private static final int port = 18600;
+
+    private static final long timeout = 5000;   // in ms
+
+    private static final String keyStore = "../files/tls/server.p12";
+    private static final String trustStore = "../files/tls/trust.p12";
+    private static final String password = "changeit";
+
+    private Server server;
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * @return echo server started over given transport
+     */
+    private static Server startEcho(LoopbackTransport loopback, TlsContext tls)
+            throws IOException, InterruptedException {
+        return new Server.Builder((String msg, Server.Connection connection) -> msg).transport(loopback)
+                                                                                     .tls(tls)
+                                                                                     .start();
+    }
+
+    @Test
+    public void testPipes() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport(16);
+
+        Endpoint client = loopback.connect();
+        Endpoint server = loopback.accept(0);
+
+        Assert.assertNotNull(server);
+        Assert.assertNull(loopback.accept(10));
+
+        // writer of data exceeding pipe capacity waits for reader
+        byte[] data = new byte[100];
+        Arrays.fill(data, (byte) 7);
+
+        Thread writer = new Thread(() -> {
+            try {
+                client.getOutputStream().write(data);
+                client.close();
+            } catch (IOException exc) {
+                Assert.fail(exc.getMessage());
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        InputStream in = server.getInputStream();
+        byte[] buffer = new byte[40];
+        int readSz;
+
+        while ((readSz = in.read(buffer)) >= 0) {
+            received.write(buffer, 0, readSz);
+        }
+
+        writer.join();
+        Assert.assertArrayEquals(data, received.toByteArray());
+
+        // peer's closing is reported to writer
+        try {
+            server.getOutputStream().write(1);
+            Assert.fail("Writing to closed connection");
+        } catch (IOException exc) {
+            // expected
+        }
+
+        loopback.close();
+
+        try {
+            loopback.connect();
+            Assert.fail("Connection of closed transport");
+        } catch (ConnectException exc) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+
+        Endpoint client = loopback.connect();
+        Endpoint server = loopback.accept(0);
+
+        server.setReadTimeout(20);
+
+        try {
+            server.getInputStream().read();
+            Assert.fail("Reading isn't interrupted by timeout");
+        } catch (SocketTimeoutException exc) {
+            // expected
+        }
+
+        // reading is continued after timeout
+        client.getOutputStream().write(42);
+        Assert.assertEquals(42, server.getInputStream().read());
+
+        server.shutdownInput();
+        Assert.assertEquals(-1, server.getInputStream().read());
+
+        loopback.close();
+    }
+
+    @Test
+    public void testBlockingClient() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = startEcho(loopback, null);
+
+        String commands = TESTING_USER_NAME.get(0) + "\ntime\nhello\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setLoopback(loopback);
+        client.start(msg -> msg);
+
+        Assert.assertEquals(commands, responses.toString());
+        Assert.assertEquals(0, client.getReconnectsNumber());
+    }
+
+    /**
+     * Exchanges messages of two multiplexed sessions with loopback server
+     * @param srvTls - TLS context of server or null for plain connections
+     * @param tls - TLS context of client or null for plain connections
+     */
+    private void verifyMultiplexClient(TlsContext srvTls, TlsContext tls) throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = startEcho(loopback, srvTls);
+
+        MultiplexClient mux = new MultiplexClient(host, port);
+        mux.setTls(tls);
+        mux.setLoopback(loopback);
+        mux.connect();
+
+        try {
+            OutputStream[] outputs = {new ByteArrayOutputStream(), new ByteArrayOutputStream()};
+            MultiplexClient.Session[] sessions = new MultiplexClient.Session[outputs.length];
+
+            for (int i = 0; i < sessions.length; ++i) {
+                sessions[i] = mux.openSession(TESTING_USER_NAME.get(i), msg -> msg, outputs[i]);
+                sessions[i].send("time");
+                sessions[i].quit();
+            }
+
+            for (int i = 0; i < sessions.length; ++i) {
+                Assert.assertTrue(sessions[i].awaitFinish(timeout, TimeUnit.MILLISECONDS));
+                Assert.assertEquals(TESTING_USER_NAME.get(i) + "\ntime\n" + QUIT_CMD + "\n", outputs[i].toString());
+            }
+        } finally {
+            mux.close();
+        }
+    }
+
+    @Test
+    public void testMultiplexClient() throws Exception {
+        verifyMultiplexClient(null, null);
+    }
+
+    @Test
+    public void testTlsMultiplexClient() throws Exception {
+        TlsContext srvTls = new TlsContext(keyStore, password, null, null, null);
+        verifyMultiplexClient(srvTls, new TlsContext(null, null, trustStore, password, null));
+
+        Assert.assertTrue(server.collectStats().stream().anyMatch(line -> line.contains("full = 1")));
+    }
+
+    @Test
+    public void testBuilderOnPort() throws Exception {
+        // started server accepts connections without waiting for listening
+        for (int i = 0; i < 2; ++i) {
+            server = new Server.Builder((String msg, Server.Connection connection) -> msg).port(port)
+                                                                                         .maxLinksNumber(1)
+                                                                                         .start();
+
+            try (Socket socket = new Socket(host, port)) {
+                Assert.assertTrue(socket.isConnected());
+            }
+
+            // port is released by closing
+            server.close();
+        }
+
+        server = null;
+    }
+}
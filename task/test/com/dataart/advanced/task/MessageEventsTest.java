@@ -0,0 +1,134 @@
+package com.dataart.advanced.task;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Flight Recorder events verification: message lifecycle events of exchange with their fields, thresholds
+ * filtering fast events out, events creation only while recording is running
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MessageEventsTest {
+    private static final String host = "localhost";
+    private static final int port = 19300;
+
+    private static final List<String> eventNames = Arrays.asList("Accept", "Decode", "Dispatch", "Encode", "Flush");
+
+    private Path path;
+    private Server server;
+
+    @Before
+    public void before() throws IOException {
+        path = Files.createTempFile("client-server-test", ".jfr");
+    }
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Records exchange of single client with echo server
+     * @param threshold - duration threshold of all message lifecycle events
+     * @return recorded message lifecycle events
+     */
+    private List<RecordedEvent> recordExchange(Duration threshold) throws Exception {
+        try (Recording recording = new Recording()) {
+            for (String name : eventNames) {
+                recording.enable(JFR_EVENT_PREFIX + name).withThreshold(threshold);
+            }
+
+            recording.start();
+            Assert.assertTrue(MessageEvents.isRecording());
+
+            LoopbackTransport loopback = new LoopbackTransport();
+            server = new Server.Builder((String msg, Server.Connection connection) -> msg).transport(loopback)
+                                                                                         .start();
+
+            String commands = TESTING_USER_NAME.get(0) + "\nhello\n" + QUIT_CMD + "\n";
+
+            Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()),
+                                       new ByteArrayOutputStream());
+            client.setLoopback(loopback);
+            client.start(msg -> msg);
+
+            // link thread finishes its events before server stop
+            server.close();
+            server = null;
+
+            recording.stop();
+            recording.dump(path);
+        }
+
+        // events aren't created after recording finishing
+        Assert.assertFalse(MessageEvents.isRecording());
+        Assert.assertNull(MessageEvents.beginDispatch());
+
+        return RecordingFile.readAllEvents(path).stream()
+                                                .filter(e -> e.getEventType().getName().startsWith(JFR_EVENT_PREFIX))
+                                                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param events - recorded events
+     * @param name - event name without prefix
+     * @return events of given type
+     */
+    private static List<RecordedEvent> select(List<RecordedEvent> events, String name) {
+        return events.stream()
+                     .filter(e -> e.getEventType().getName().equals(JFR_EVENT_PREFIX + name))
+                     .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testLifecycleEvents() throws Exception {
+        List<RecordedEvent> events = recordExchange(Duration.ZERO);
+
+        Assert.assertEquals(1, select(events, "Accept").size());
+
+        // introduction, "hello" and "quit" are processed by server
+        List<RecordedEvent> dispatches = select(events, "Dispatch");
+        Assert.assertEquals(3, dispatches.size());
+
+        RecordedEvent hello = dispatches.get(1);
+        Assert.assertEquals("hello".length(), hello.getInt("requestSize"));
+        Assert.assertEquals("hello".length(), hello.getInt("responseSize"));
+        Assert.assertTrue(hello.getDuration("listenerTime").compareTo(hello.getDuration()) <= 0);
+
+        // frames of client and server are decoded and encoded in the same process
+        Assert.assertTrue(select(events, "Decode").stream()
+                                                  .anyMatch(e -> e.getInt("size") == "hello".length() &&
+                                                                 e.getByte("frameType") == FRAME_DATA &&
+                                                                 e.getInt("clientID") == hello.getInt("clientID")));
+        Assert.assertEquals(select(events, "Encode").size(), select(events, "Flush").size());
+        Assert.assertTrue(select(events, "Encode").size() >= 6);
+    }
+
+    @Test
+    public void testThreshold() throws Exception {
+        Assert.assertTrue(recordExchange(Duration.ofHours(1)).isEmpty());
+    }
+}
@@ -0,0 +1,253 @@
+package com.dataart.advanced.task;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Message journal verification: records order and content after segments rolling, journal reopening,
+ * records dropping on oversized messages, concurrent appending and masking of resume tokens recorded by server
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MessageJournalTest {
+    private static final int segmentSize = 4096;
+    private static final int recordsNumber = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * @param index - record index
+     * @return message with non-ASCII symbols
+     */
+    private static String createMessage(int index) {
+        return "message #" + index + " \u043f\u0440\u0438\u0432\u0435\u0442";
+    }
+
+    /**
+     * Appends numbered messages to journal alternating directions
+     * @param journal - opened journal
+     * @param first - index of the first message
+     * @param number - messages number
+     */
+    private static void appendMessages(MessageJournal journal, int first, int number) {
+        MessageTraits msg = new MessageTraits();
+
+        for (int i = first; i < first + number; ++i) {
+            msg.setStreamID(i % 3);
+            msg.encode(i % 2 == 0 ? FRAME_DATA : FRAME_CACHE, createMessage(i));
+
+            journal.append(i % 2 == 0 ? JOURNAL_INBOUND : JOURNAL_OUTBOUND, i, msg);
+        }
+    }
+
+    /**
+     * Verifies that journal contains sequentially numbered messages only
+     * @param directory - journal folder
+     * @return number of read records
+     */
+    private static int verifyRecords(Path directory) throws IOException {
+        int index = 0;
+        long timestamp = 0;
+
+        try (JournalReader reader = new JournalReader(directory)) {
+            JournalReader.Record record;
+
+            while ((record = reader.next()) != null) {
+                Assert.assertEquals(createMessage(index), record.getMessage());
+                Assert.assertEquals(index, record.getClientID());
+                Assert.assertEquals(index % 3, record.getStreamID());
+                Assert.assertEquals(index % 2 == 0, record.isInbound());
+                Assert.assertEquals(index % 2 == 0 ? FRAME_DATA : FRAME_CACHE, record.getType());
+                Assert.assertTrue(record.getTimestamp() >= timestamp);
+
+                timestamp = record.getTimestamp();
+                ++index;
+            }
+        }
+
+        return index;
+    }
+
+    @Test
+    public void testSegmentsRolling() throws IOException {
+        Path directory = folder.getRoot().toPath();
+
+        try (MessageJournal journal = new MessageJournal(directory, segmentSize, MessageJournal.FsyncPolicy.NEVER,
+                                                         JOURNAL_FSYNC_INTERVAL)) {
+            appendMessages(journal, 0, recordsNumber);
+
+            Assert.assertEquals(recordsNumber, journal.getRecordsNumber());
+        }
+
+        Assert.assertTrue(MessageJournal.listSegments(directory).size() > 1);
+        Assert.assertEquals(recordsNumber, verifyRecords(directory));
+    }
+
+    @Test
+    public void testJournalReopening() throws IOException {
+        Path directory = folder.getRoot().toPath();
+
+        try (MessageJournal journal = new MessageJournal(directory, segmentSize, MessageJournal.FsyncPolicy.ALWAYS,
+                                                         JOURNAL_FSYNC_INTERVAL)) {
+            appendMessages(journal, 0, recordsNumber / 2);
+        }
+
+        try (MessageJournal journal = new MessageJournal(directory, segmentSize,
+                                                         MessageJournal.FsyncPolicy.INTERVAL, 10)) {
+            appendMessages(journal, recordsNumber / 2, recordsNumber / 2);
+        }
+
+        Assert.assertEquals(recordsNumber, verifyRecords(directory));
+    }
+
+    @Test
+    public void testOversizedMessageDropping() throws IOException {
+        Path directory = folder.getRoot().toPath();
+
+        try (MessageJournal journal = new MessageJournal(directory, segmentSize, MessageJournal.FsyncPolicy.NEVER,
+                                                         JOURNAL_FSYNC_INTERVAL)) {
+            MessageTraits msg = new MessageTraits();
+            msg.encode(FRAME_DATA, new String(new char[segmentSize]).replace('\0', 'x'));
+
+            journal.append(JOURNAL_INBOUND, 0, msg);
+
+            appendMessages(journal, 0, 1);
+
+            Assert.assertEquals(1, journal.getDroppedNumber());
+        }
+
+        Assert.assertEquals(1, verifyRecords(directory));
+    }
+
+    @Test
+    public void testConcurrentAppending() throws Exception {
+        final int threadsNumber = 4;
+        Path directory = folder.getRoot().toPath();
+
+        try (MessageJournal journal = new MessageJournal(directory, segmentSize, MessageJournal.FsyncPolicy.ALWAYS,
+                                                         JOURNAL_FSYNC_INTERVAL)) {
+            Thread[] threads = new Thread[threadsNumber];
+
+            for (int i = 0; i < threadsNumber; ++i) {
+                threads[i] = new Thread(() -> appendMessages(journal, 0, recordsNumber));
+                threads[i].start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            Assert.assertEquals(threadsNumber * recordsNumber, journal.getRecordsNumber());
+            Assert.assertEquals(0, journal.getDroppedNumber());
+        }
+
+        int number = 0;
+
+        try (JournalReader reader = new JournalReader(directory)) {
+            while (reader.next() != null) {
+                ++number;
+            }
+        }
+
+        Assert.assertEquals(threadsNumber * recordsNumber, number);
+
+        // spare segment mapped in advance isn't left after closing
+        List<Path> segments = MessageJournal.listSegments(directory);
+        ByteBuffer last = ByteBuffer.wrap(Files.readAllBytes(segments.get(segments.size() - 1)));
+        Assert.assertNotEquals(0, last.getInt(JOURNAL_MAGIC_SZ));
+    }
+
+    /**
+     * Introduces session by user name or resume request
+     * @param type - FRAME_DATA for user name or FRAME_RESUME for resume request
+     * @param content - user name or resume request
+     * @return resume token issued by server
+     */
+    private static String introduce(Endpoint endpoint, byte type, String content) throws IOException {
+        DataInputStream in = new DataInputStream(endpoint.getInputStream());
+        DataOutputStream out = new DataOutputStream(endpoint.getOutputStream());
+
+        MessageTraits msg = new MessageTraits();
+        msg.sendMessage(type, content, out);
+
+        Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+        Assert.assertEquals(FRAME_SESSION, msg.getType());
+
+        String token = msg.getMessage();
+
+        // reply on user name is awaited, so session isn't closed while server answers
+        if (type == FRAME_DATA) {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+            Assert.assertEquals(FRAME_DATA, msg.getType());
+        }
+
+        return token;
+    }
+
+    @Test
+    public void testTokenMasking() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        String usrName = TESTING_USER_NAME.get(0);
+        String token;
+        String resumedToken;
+
+        LoopbackTransport loopback = new LoopbackTransport();
+        MessageJournal journal = new MessageJournal(directory, segmentSize, MessageJournal.FsyncPolicy.NEVER,
+                                                    JOURNAL_FSYNC_INTERVAL);
+        Server server = new Server.Builder((String msg, Server.Connection connection) -> msg).transport(loopback)
+                                                                                              .journal(journal)
+                                                                                              .start();
+
+        // journal is closed by server stop
+        try {
+            try (Endpoint endpoint = loopback.connect()) {
+                token = introduce(endpoint, FRAME_DATA, usrName);
+            }
+
+            // token missed by resume request before session detaching is replaced by the new one
+            try (Endpoint endpoint = loopback.connect()) {
+                resumedToken = introduce(endpoint, FRAME_RESUME, token + RESUME_SEPARATOR + usrName);
+            }
+        } finally {
+            server.close();
+        }
+
+        int resumeRecordsNumber = 0;
+
+        for (Path segment : MessageJournal.listSegments(directory)) {
+            String content = new String(Files.readAllBytes(segment), StandardCharsets.ISO_8859_1);
+            Assert.assertFalse(content.contains(token));
+            Assert.assertFalse(content.contains(resumedToken));
+        }
+
+        try (JournalReader reader = new JournalReader(directory)) {
+            JournalReader.Record record;
+
+            while ((record = reader.next()) != null) {
+                if (record.getType() == FRAME_SESSION) {
+                    Assert.assertEquals(JOURNAL_TOKEN_MASK, record.getMessage());
+                } else if (record.getType() == FRAME_RESUME) {
+                    Assert.assertEquals(JOURNAL_TOKEN_MASK + RESUME_SEPARATOR + usrName, record.getMessage());
+                    ++resumeRecordsNumber;
+                }
+            }
+        }
+
+        Assert.assertEquals(1, resumeRecordsNumber);
+    }
+}
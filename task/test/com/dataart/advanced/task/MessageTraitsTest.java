@@ -0,0 +1,162 @@
+package com.dataart.advanced.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Messages framing verification: byte lengths of non-ASCII messages, chunked transfer of large messages via
+ * streams and byte buffers, incremental reception, truncated message reception and message size limit
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MessageTraitsTest {
+    private static final String nonAsciiMessage = "\u041f\u0440\u0438\u0432\u0435\u0442, J\u00fcrgen! \u263a";
+
+    /**
+     * @param size - message size in characters
+     * @return multi-chunk ASCII message without service symbols
+     */
+    private static String createLargeMessage(int size) {
+        StringBuilder message = new StringBuilder(size);
+        Random rnd = new Random(size);
+
+        for (int i = 0; i < size; ++i) {
+            message.append((char) ('a' + rnd.nextInt(26)));
+        }
+
+        return message.toString();
+    }
+
+    /**
+     * @param message - message content
+     * @return bytes of message sent to data stream
+     */
+    private static byte[] sendToBytes(String message) throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+
+        MessageTraits sentMsg = new MessageTraits();
+        sentMsg.setClientID(7);
+        sentMsg.sendMessage(message, new DataOutputStream(wire));
+
+        return wire.toByteArray();
+    }
+
+    @Test
+    public void testNonAsciiMessageReception() throws IOException {
+        MessageTraits recMsg = new MessageTraits();
+
+        int messageSz = recMsg.receive(new DataInputStream(new ByteArrayInputStream(sendToBytes(nonAsciiMessage))));
+
+        Assert.assertEquals(nonAsciiMessage.getBytes(MESSAGE_CHARSET).length, messageSz);
+        Assert.assertEquals(nonAsciiMessage, recMsg.getMessage());
+        Assert.assertEquals(7, recMsg.getClientID());
+    }
+
+    @Test
+    public void testChunkedMessageReception() throws IOException {
+        String message = createLargeMessage(3 * CHUNK_SZ + 17);
+        byte[] wire = sendToBytes(message);
+
+        Assert.assertEquals(4 * FRAME_HEADER_SZ + message.length(), wire.length);
+
+        MessageTraits recMsg = new MessageTraits();
+
+        Assert.assertEquals(message.length(), recMsg.receive(new DataInputStream(new ByteArrayInputStream(wire))));
+        Assert.assertEquals(message, recMsg.getMessage());
+    }
+
+    @Test
+    public void testIncrementalReception() throws IOException {
+        byte[] content = new byte[5 * CHUNK_SZ];
+        new Random(1).nextBytes(content);
+
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        new MessageTraits().sendMessage(FRAME_DATA, new ByteArrayInputStream(content), new DataOutputStream(wire));
+
+        MessageTraits recMsg = new MessageTraits();
+        recMsg.setMaxMessageSize(content.length);
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+
+        Assert.assertEquals(content.length, recMsg.receive(new DataInputStream(
+                new ByteArrayInputStream(wire.toByteArray())), sink));
+        Assert.assertTrue(Arrays.equals(content, sink.toByteArray()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMessageSizeLimit() throws IOException {
+        MessageTraits recMsg = new MessageTraits();
+        recMsg.setMaxMessageSize(CHUNK_SZ);
+
+        recMsg.receive(new DataInputStream(new ByteArrayInputStream(sendToBytes(createLargeMessage(CHUNK_SZ + 1)))));
+    }
+
+    @Test
+    public void testTruncatedMessageReception() throws IOException {
+        String message = createLargeMessage(2 * CHUNK_SZ + 5);
+        byte[] wire = sendToBytes(message);
+
+        MessageTraits recMsg = new MessageTraits();
+
+        // stream end before message isn't an error
+        Assert.assertEquals(DEFAULT_SZ, recMsg.receive(new DataInputStream(new ByteArrayInputStream(new byte[0]))));
+
+        // stream ends inside the first header, the first chunk, continuation header and continuation chunk
+        int[] truncatedSizes = {1, FRAME_HEADER_SZ - 1, FRAME_HEADER_SZ + 1, FRAME_HEADER_SZ + CHUNK_SZ + 1,
+                                2 * FRAME_HEADER_SZ + CHUNK_SZ + 1};
+
+        for (int truncatedSz : truncatedSizes) {
+            byte[] truncated = Arrays.copyOf(wire, truncatedSz);
+
+            try {
+                recMsg.receive(new DataInputStream(new ByteArrayInputStream(truncated)));
+                Assert.fail("message truncated to " + truncatedSz + " bytes is received");
+            } catch (IOException exc) {
+                Assert.assertFalse(exc instanceof EOFException);
+            }
+
+            try {
+                recMsg.receive(new DataInputStream(new ByteArrayInputStream(truncated)), new ByteArrayOutputStream());
+                Assert.fail("message truncated to " + truncatedSz + " bytes is received");
+            } catch (IOException exc) {
+                Assert.assertFalse(exc instanceof EOFException);
+            }
+        }
+    }
+
+    @Test
+    public void testChunkedMessageDecoding() throws IOException {
+        String message = createLargeMessage(2 * CHUNK_SZ + 5) + nonAsciiMessage;
+        ByteBuffer wire = new MessageTraits().encode(FRAME_DATA, message);
+
+        MessageTraits recMsg = new MessageTraits();
+        ByteBuffer buffer = ByteBuffer.allocate(wire.remaining());
+
+        // feeding buffer by small portions like non-blocking channel does
+        while (wire.hasRemaining()) {
+            ByteBuffer portion = wire.slice();
+            portion.limit(Math.min(portion.remaining(), 1000));
+            wire.position(wire.position() + portion.limit());
+
+            buffer.put(portion);
+            buffer.flip();
+
+            while (recMsg.decode(buffer) != DEFAULT_SZ) {
+                Assert.assertEquals(!wire.hasRemaining() && !buffer.hasRemaining(), recMsg.isComplete());
+            }
+
+            buffer.compact();
+        }
+
+        Assert.assertTrue(recMsg.isComplete());
+        Assert.assertEquals(message, recMsg.getMessage());
+    }
+}
@@ -0,0 +1,222 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Multiplexing verification: logical sessions of single connection processed by worker pool with their own
+ * client's IDs and replies order, client's window kept without rejections and server's window rejecting
+ * messages of multiplexed session above it, while single session stream isn't limited
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class MultiplexClientTest {
+    private static final String host = "localhost";
+    private static final int port = 19700;
+    private static final long waitTimeout = 5000;       // in ms
+
+    private static final int sessionsNumber = 4;
+    private static final int messagesNumber = 200;
+
+    private static final String STALL_CMD = "stall";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // sessions of stalled messages by stream ID
+    private final Map<Integer, Server.Connection> stalled = new ConcurrentHashMap<>();
+
+    private Server server;
+
+    @After
+    public void after() throws InterruptedException {
+        release.countDown();
+
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Listener stalling on STALL_CMD till release and answering the rest by request content
+     */
+    private String onProcess(String msg, Server.Connection connection) {
+        if (!STALL_CMD.equals(msg)) {
+            return "reply on " + msg;
+        }
+
+        stalled.put(connection.getStreamID(), connection);
+
+        try {
+            return release.await(waitTimeout, TimeUnit.MILLISECONDS) ? "released" : "timeout";
+        } catch (InterruptedException exc) {
+            return "cancelled";
+        }
+    }
+
+    /**
+     * @param condition - awaited condition
+     * @return true if condition is met before timeout
+     */
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitTimeout;
+
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        return true;
+    }
+
+    /**
+     * Receives response skipping session control frames
+     * @return response content
+     */
+    private static String receive(DataInputStream in) throws IOException {
+        MessageTraits msg = new MessageTraits();
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+        } while (msg.getType() != FRAME_DATA);
+
+        return msg.getMessage();
+    }
+
+    /**
+     * Introduces session and sends stalled message followed by numbered messages
+     * @param msg - frames sending of session's stream
+     * @param number - number of sent messages including stalled one
+     */
+    private static void sendBurst(MessageTraits msg, DataInputStream in, DataOutputStream out, int number)
+            throws IOException {
+        msg.sendMessage(TESTING_USER_NAME.get(msg.getStreamID()), out);
+        Assert.assertEquals("reply on " + TESTING_USER_NAME.get(msg.getStreamID()), receive(in));
+
+        msg.sendMessage(STALL_CMD, out);
+
+        for (int i = 1; i < number; ++i) {
+            msg.sendMessage("message #" + i, out);
+        }
+    }
+
+    @Test
+    public void testSessions() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = new Server.Builder(this::onProcess).transport(loopback).workerPool(2, WORKER_QUANTUM).start();
+
+        MultiplexClient mux = new MultiplexClient(host, port);
+        mux.setLoopback(loopback);
+        mux.connect();
+
+        try {
+            ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[sessionsNumber];
+            MultiplexClient.Session[] sessions = new MultiplexClient.Session[sessionsNumber];
+
+            for (int i = 0; i < sessionsNumber; ++i) {
+                outputs[i] = new ByteArrayOutputStream();
+                sessions[i] = mux.openSession(TESTING_USER_NAME.get(i), msg -> msg, outputs[i]);
+            }
+
+            // sessions fill their windows at once
+            for (int j = 0; j < messagesNumber; ++j) {
+                for (MultiplexClient.Session session : sessions) {
+                    session.send("message #" + j);
+                }
+            }
+
+            Set<Integer> clientIDs = new HashSet<>();
+
+            for (int i = 0; i < sessionsNumber; ++i) {
+                sessions[i].quit();
+                Assert.assertTrue(sessions[i].awaitFinish(waitTimeout, TimeUnit.MILLISECONDS));
+
+                StringBuilder expected = new StringBuilder("reply on " + TESTING_USER_NAME.get(i) + "\n");
+
+                for (int j = 0; j < messagesNumber; ++j) {
+                    expected.append("reply on message #").append(j).append("\n");
+                }
+
+                expected.append("reply on ").append(QUIT_CMD).append("\n");
+
+                Assert.assertEquals(expected.toString(), outputs[i].toString());
+                Assert.assertTrue(clientIDs.add(sessions[i].getClientID()));
+            }
+        } finally {
+            mux.close();
+        }
+    }
+
+    @Test
+    public void testServerWindow() throws Exception {
+        final int rejectedNumber = 4;
+
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = new Server.Builder(this::onProcess).transport(loopback).workerPool(2, WORKER_QUANTUM).start();
+
+        try (Endpoint muxEndpoint = loopback.connect();
+             DataInputStream muxIn = new DataInputStream(muxEndpoint.getInputStream());
+             DataOutputStream muxOut = new DataOutputStream(muxEndpoint.getOutputStream());
+             Endpoint endpoint = loopback.connect();
+             DataInputStream in = new DataInputStream(endpoint.getInputStream());
+             DataOutputStream out = new DataOutputStream(endpoint.getOutputStream())) {
+            MessageTraits muxMsg = new MessageTraits();
+            muxMsg.setStreamID(PRIMARY_STREAM_ID + 1);
+
+            MessageTraits msg = new MessageTraits();
+
+            // messages wait behind stalled one, so they stay unanswered
+            sendBurst(muxMsg, muxIn, muxOut, STREAM_WINDOW + rejectedNumber);
+            sendBurst(msg, in, out, 2 * STREAM_WINDOW);
+
+            Assert.assertTrue(await(() -> stalled.size() == 2 &&
+                                   stalled.get(PRIMARY_STREAM_ID + 1).getUnansweredNumber() ==
+                                   STREAM_WINDOW + rejectedNumber &&
+                                   stalled.get(PRIMARY_STREAM_ID).getUnansweredNumber() == 2 * STREAM_WINDOW));
+            release.countDown();
+
+            // messages above window of multiplexed session are rejected in their turn
+            Assert.assertEquals("released", receive(muxIn));
+
+            for (int i = 1; i < STREAM_WINDOW + rejectedNumber; ++i) {
+                Assert.assertEquals(i < STREAM_WINDOW ? "reply on message #" + i : STREAM_WINDOW_MSG,
+                                    receive(muxIn));
+            }
+
+            // single session stream isn't limited by window
+            Assert.assertEquals("released", receive(in));
+
+            for (int i = 1; i < 2 * STREAM_WINDOW; ++i) {
+                Assert.assertEquals("reply on message #" + i, receive(in));
+            }
+
+            Assert.assertEquals(rejectedNumber, stalled.get(PRIMARY_STREAM_ID + 1).getRejectedNumber());
+            Assert.assertEquals(0, stalled.get(PRIMARY_STREAM_ID).getRejectedNumber());
+            Assert.assertEquals(0, stalled.get(PRIMARY_STREAM_ID + 1).getUnansweredNumber());
+
+            muxMsg.sendMessage(QUIT_CMD, muxOut);
+            Assert.assertEquals("reply on " + QUIT_CMD, receive(muxIn));
+
+            msg.sendMessage(QUIT_CMD, out);
+            Assert.assertEquals("reply on " + QUIT_CMD, receive(in));
+        }
+    }
+}
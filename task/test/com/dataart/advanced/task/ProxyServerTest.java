@@ -0,0 +1,304 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Proxy verification with several local servers: the least connections spreading, user affinity of consistent
+ * hashing, failover to healthy backends and relaying latency. Each backend replies by its number, so client
+ * knows the backend reached through proxy
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ProxyServerTest {
+    private static final Logger log = Logger.getLogger(ProxyServerTest.class.getName());
+
+    private static final String host = "localhost";
+    private static final int proxyPort = 18200;
+    private static final int[] backendPorts = {18201, 18202, 18203};
+
+    private static final long healthCheckInterval = 100;  // in ms
+    private static final long startTimeout = 5000;        // in ms
+    private static final int roundTripsNumber = 2000;
+
+    private final Server[] backends = new Server[backendPorts.length];
+    private final Thread[] backendThreads = new Thread[backendPorts.length];
+
+    private ProxyServer proxy;
+    private Thread proxyThread;
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    /**
+     * Client's session exchanging messages with server directly or through proxy
+     */
+    private static class Session implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final MessageTraits msg = new MessageTraits();
+
+        private final String backend;   // reply on user's introduction
+
+        Session(int port, String userName) throws IOException {
+            socket = new Socket(host, port);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            backend = request(userName);
+        }
+
+        /**
+         * Sends message and waits for server's response skipping resume token
+         * @param message - user's message
+         * @return server's response
+         */
+        String request(String message) throws IOException {
+            msg.sendMessage(message, out);
+
+            do {
+                if (msg.receive(in) == DEFAULT_SZ) {
+                    throw new IOException("ProxyServerTest: connection is closed by server");
+                }
+            } while (msg.getType() == FRAME_SESSION);
+
+            return msg.getMessage();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                request(QUIT_CMD);
+            } finally {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Waits for port listening by server
+     * @param port - server's port
+     */
+    private static void awaitListening(int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + startTimeout;
+
+        while (true) {
+            try {
+                new Socket(host, port).close();
+                return;
+            } catch (ConnectException exc) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw exc;
+                }
+
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    /**
+     * Starts backend replying by its number on any message
+     * @param index - backend number
+     */
+    private void startBackend(int index) throws IOException, InterruptedException {
+        String reply = "backend#" + index;
+
+        backends[index] = new Server(backendPorts[index], (String msg, Server.Connection connection) -> reply);
+        backendThreads[index] = new Thread(backends[index], SERVER_THREAD_NAME + index);
+        backendThreads[index].start();
+
+        awaitListening(backendPorts[index]);
+    }
+
+    /**
+     * Stops backend waiting for its port release
+     * @param index - backend number
+     */
+    private void stopBackend(int index) throws InterruptedException {
+        if (backends[index] != null) {
+            backends[index].stop();
+            backendThreads[index].join();
+
+            backends[index] = null;
+        }
+    }
+
+    /**
+     * Starts proxy over all backends
+     * @param balancing - policy of backend choice
+     */
+    private void startProxy(ProxyServer.Balancing balancing) throws IOException, InterruptedException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+
+        for (int port : backendPorts) {
+            addresses.add(new InetSocketAddress(host, port));
+        }
+
+        proxy = new ProxyServer(proxyPort, addresses, balancing);
+        proxy.setHealthCheck(healthCheckInterval, (int) healthCheckInterval);
+
+        proxyThread = new Thread(proxy, PROXY_THREAD_NAME);
+        proxyThread.start();
+
+        awaitListening(proxyPort);
+    }
+
+    /**
+     * Opens session through proxy kept till test end
+     * @param userName - user's name
+     * @return opened session
+     */
+    private Session open(String userName) throws IOException {
+        Session session = new Session(proxyPort, userName);
+        sessions.add(session);
+
+        return session;
+    }
+
+    @Before
+    public void before() throws IOException, InterruptedException {
+        for (int i = 0; i < backendPorts.length; ++i) {
+            startBackend(i);
+        }
+    }
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        for (Session session : sessions) {
+            session.socket.close();
+        }
+
+        if (proxy != null) {
+            proxy.stop();
+            proxyThread.join();
+        }
+
+        for (int i = 0; i < backendPorts.length; ++i) {
+            stopBackend(i);
+        }
+    }
+
+    @Test
+    public void testLeastConnections() throws Exception {
+        startProxy(ProxyServer.Balancing.LEAST_CONNECTIONS);
+
+        int[] counts = new int[backendPorts.length];
+
+        for (int i = 0; i < 2 * backendPorts.length; ++i) {
+            Session session = open(TESTING_USER_NAME.get(0));
+            ++counts[Integer.parseInt(session.backend.substring(session.backend.indexOf('#') + 1))];
+        }
+
+        for (int count : counts) {
+            Assert.assertEquals(2, count);
+        }
+
+        // closed sessions release their backend
+        Session released = sessions.remove(0);
+        released.close();
+
+        Thread.sleep(healthCheckInterval);
+
+        Assert.assertEquals(released.backend, open(TESTING_USER_NAME.get(1)).backend);
+    }
+
+    @Test
+    public void testUserHashAffinity() throws Exception {
+        startProxy(ProxyServer.Balancing.USER_HASH);
+
+        Set<String> reached = new HashSet<>();
+
+        for (String userName : TESTING_USER_NAME) {
+            String backend;
+
+            try (Session session = new Session(proxyPort, userName)) {
+                backend = session.backend;
+                reached.add(backend);
+
+                Assert.assertEquals(backend, session.request("where"));
+            }
+
+            // reconnected user reaches the same backend
+            try (Session session = new Session(proxyPort, userName)) {
+                Assert.assertEquals(backend, session.backend);
+            }
+        }
+
+        Assert.assertTrue(reached.size() > 1);
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        startProxy(ProxyServer.Balancing.LEAST_CONNECTIONS);
+        stopBackend(0);
+
+        // connections are relayed to the remaining backends before and after health check
+        for (int i = 0; i < 2 * backendPorts.length; ++i) {
+            Assert.assertNotEquals("backend#0", open(TESTING_USER_NAME.get(i)).backend);
+        }
+
+        // restarted backend receives new connections as the least loaded one
+        startBackend(0);
+
+        long deadline = System.currentTimeMillis() + startTimeout;
+        String backend;
+
+        do {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(healthCheckInterval);
+
+            backend = open(TESTING_USER_NAME.get(0)).backend;
+        } while (!"backend#0".equals(backend));
+    }
+
+    @Test
+    public void testRelayLatency() throws Exception {
+        startProxy(ProxyServer.Balancing.LEAST_CONNECTIONS);
+
+        long[] elapsed = new long[2];
+
+        try (Session direct = new Session(backendPorts[0], TESTING_USER_NAME.get(0));
+             Session proxied = new Session(proxyPort, TESTING_USER_NAME.get(1))) {
+            Session[] modes = {direct, proxied};
+
+            // warming up both paths before measurement
+            for (int i = 0; i < 2 * roundTripsNumber; ++i) {
+                for (int j = 0; j < modes.length; ++j) {
+                    long start = System.nanoTime();
+                    Assert.assertEquals(modes[j].backend, modes[j].request("ping"));
+
+                    if (i >= roundTripsNumber) {
+                        elapsed[j] += System.nanoTime() - start;
+                    }
+                }
+            }
+        }
+
+        double nanosInMicro = TimeUnit.MICROSECONDS.toNanos(1);
+
+        log.info(String.format("Round trip latency: direct = %.1f us, through proxy = %.1f us, added = %.1f us",
+                 elapsed[0] / nanosInMicro / roundTripsNumber, elapsed[1] / nanosInMicro / roundTripsNumber,
+                 (elapsed[1] - elapsed[0]) / nanosInMicro / roundTripsNumber));
+    }
+}
@@ -0,0 +1,203 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Client's responses cache verification: normalization, expiration, eviction and invalidation of cached
+ * responses, times to live of idempotent commands assigned by server, answering of repeated commands without
+ * round trip and invalidation of cached responses by server
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class ResponseCacheTest {
+    private static final String host = "localhost";
+    private static final int port = 19200;
+    private static final long invalidationDelay = 200;   // in ms
+
+    private static final String NAME_RESPONSE = "\"You can call me Susan if it makes you happy\"(c)Snatch";
+
+    private LoopbackTransport loopback;
+    private Server server;
+
+    // number of client messages processed by server
+    private final AtomicInteger requestsNumber = new AtomicInteger();
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Starts loopback server counting processed messages
+     */
+    private void startServer() throws IOException, InterruptedException {
+        AIServerListener listener = new AIServerListener();
+        loopback = new LoopbackTransport();
+
+        server = new Server.Builder((String msg, Server.Connection connection) -> {
+            requestsNumber.incrementAndGet();
+            return listener.onProcess(msg, connection);
+        }).transport(loopback).start();
+    }
+
+    @Test
+    public void testCache() throws InterruptedException {
+        ResponseCache cache = new ResponseCache(2);
+
+        cache.put("your name", NAME_RESPONSE, RESPONSE_CACHE_TTL);
+        Assert.assertEquals(NAME_RESPONSE, cache.get("  Your NAME "));
+        Assert.assertNull(cache.get("your  name"));
+
+        // response isn't cached without time to live and expires after it
+        cache.put("hello", "Hi, Bob!", 0);
+        Assert.assertNull(cache.get("hello"));
+
+        cache.put("time", "The current time is: 12:00:00", 50);
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assert.assertNull(cache.get("time"));
+
+        // the least recently used response is evicted
+        cache.put("help", "The commands could contain these known tokens", RESPONSE_CACHE_TTL);
+        cache.get("your name");
+        cache.put("what is your name?", NAME_RESPONSE, RESPONSE_CACHE_TTL);
+
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertNull(cache.get("help"));
+
+        Assert.assertEquals(2, cache.invalidate("NAME"));
+        Assert.assertEquals(0, cache.getSize());
+
+        Assert.assertEquals(2, cache.getHitsNumber());
+        Assert.assertEquals(4, cache.getMissesNumber());
+    }
+
+    /**
+     * Sends message and receives response
+     * @return time to live of response or 0 if it isn't cacheable
+     */
+    private static long exchange(byte type, String request, DataInputStream in, DataOutputStream out)
+            throws IOException {
+        MessageTraits msg = new MessageTraits();
+        msg.sendMessage(type, request, out);
+
+        long ttl = 0;
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+
+            if (msg.getType() == FRAME_CACHE) {
+                ttl = Long.parseLong(msg.getMessage());
+            }
+        } while (msg.getType() != FRAME_DATA);
+
+        return ttl;
+    }
+
+    @Test
+    public void testServerTtl() throws Exception {
+        startServer();
+
+        try (Endpoint endpoint = loopback.connect();
+             DataInputStream in = new DataInputStream(endpoint.getInputStream());
+             DataOutputStream out = new DataOutputStream(endpoint.getOutputStream())) {
+            exchange(FRAME_DATA, TESTING_USER_NAME.get(0), in, out);
+
+            // responses of client without cache aren't marked
+            Assert.assertEquals(0, exchange(FRAME_DATA, "your name", in, out));
+
+            new MessageTraits().sendMessage(FRAME_CACHE, "", out);
+
+            Assert.assertEquals(RESPONSE_CACHE_TTL, exchange(FRAME_DATA, "your name", in, out));
+            Assert.assertEquals(RESPONSE_CACHE_TTL, exchange(FRAME_DATA, "help", in, out));
+            Assert.assertEquals(0, exchange(FRAME_DATA, "hello", in, out));
+            Assert.assertEquals(0, exchange(FRAME_DATA, "unknown command", in, out));
+
+            long timeTtl = exchange(FRAME_DATA, "time", in, out);
+            Assert.assertTrue("time TTL = " + timeTtl, timeTtl >= 0 && timeTtl <= 1000);
+
+            // day with daylight saving time change could take 25 hours
+            long dateTtl = exchange(FRAME_DATA, "date", in, out);
+            Assert.assertTrue("date TTL = " + dateTtl, dateTtl >= 0 && dateTtl <= TimeUnit.HOURS.toMillis(25));
+
+            exchange(FRAME_DATA, QUIT_CMD, in, out);
+        }
+    }
+
+    @Test
+    public void testClientCache() throws Exception {
+        startServer();
+
+        String commands = TESTING_USER_NAME.get(1) + "\nyour name\n YOUR NAME \nhello\nhello\nhelp\nhelp\n" +
+                          QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setLoopback(loopback);
+        client.setResponseCache(16);
+        client.start(msg -> msg);
+
+        String[] lines = responses.toString().split("\n");
+        String hello = "Hi, " + TESTING_USER_NAME.get(1) + "!";
+
+        Assert.assertEquals(NAME_RESPONSE, lines[1]);
+        Assert.assertEquals(NAME_RESPONSE, lines[2]);
+        Assert.assertEquals(hello, lines[3]);
+        Assert.assertEquals(hello, lines[4]);
+
+        // repeated "your name" and "help" are answered without round trip
+        Assert.assertEquals(2, client.getCacheHitsNumber());
+        Assert.assertEquals(6, requestsNumber.get());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        startServer();
+
+        String commands = TESTING_USER_NAME.get(2) + "\nhelp\nyour name\nyour name\nhelp\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+        AtomicInteger notifiedNumber = new AtomicInteger(-1);
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setLoopback(loopback);
+        client.setResponseCache(16);
+
+        // server's commands are changed after the first "your name" response
+        client.start(msg -> {
+            if (NAME_RESPONSE.equals(msg) && notifiedNumber.get() == -1) {
+                notifiedNumber.set(server.invalidateResponses("name"));
+
+                // invalidation frame is received by client's reception thread before the next command
+                try {
+                    TimeUnit.MILLISECONDS.sleep(invalidationDelay);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return msg;
+        });
+
+        Assert.assertEquals(1, notifiedNumber.get());
+
+        // invalidated "your name" is sent to server, "help" is still cached
+        Assert.assertEquals(1, client.getCacheHitsNumber());
+        Assert.assertEquals(5, requestsNumber.get());
+        Assert.assertEquals(2, responses.toString().split(Pattern.quote(NAME_RESPONSE), -1).length - 1);
+    }
+}
@@ -1,5 +1,6 @@
 package com.dataart.advanced.task;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.SAXException;
@@ -7,23 +8,48 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.IntStream;
 
 import static com.dataart.advanced.task.Info.*;
 import static org.junit.Assert.assertTrue;
 
 /**
  * Server loading test. It performs multiple users connection to server and correct reception verification for each
- * command sent by each user to server.
+ * command sent by each user to server. Each user sends the next command after response on previous one, so
+ * round trip latency of each command and total throughput are measured. Test is repeated for each combination
+ * of client's engine (blocking, multiplexed sessions, non-blocking), transport (plain, TLS, in-JVM loopback, shared
+ * memory or Unix domain socket) and users number. Loopback transport excludes kernel networking from engines and
+ * listener costs, shared memory transport connects clients to server through memory mapped rings, Unix domain
+ * socket skips TCP stack of local connections. They aren't available for non-blocking engine based on TCP socket
+ * channels.
+ * Results are logged and written to JSON and CSV reports. Parameters are taken from system properties:
+ * - cfgFileName - client/server configuration file;
+ * - tlsCfgFileName - configuration file with TLS sections of client and server (cfgFileName by default);
+ * - userNumber - comma separated users numbers;
+ * - commandsNumber - commands number of each user including user name and "quit";
+ * - engines - comma separated engines: blocking, multiplex, async (blocking by default);
+ * - transports - comma separated transports: plain, tls, loopback, shm, unix (plain by default);
+ * - runTimeout - maximal duration of single run in seconds;
+ * - reportDir - folder of reports (reports aren't written if it's absent).
  *
  * @author Sergey Sokhnyshev
  * Created on 26.11.16.
@@ -32,24 +58,49 @@ public class ServerTest {
     private static final Logger log = Logger.getLogger(ServerTest.class.getName());
     private static int clientCounter = 0;
 
-    private static int userNumber = 100;
+    private static final double NANOS_IN_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final String PROBE_USER_NAME = "Probe";
+
+    private static final String REPORT_NAME = "payload-report";
+
+    private int[] userNumbers = {100};
     private static int commandsNumber = 1000;
+    private String[] engines = {"blocking"};
+    private String[] transports = {"plain"};
+    private long runTimeout = 600;     // in seconds
+    private String reportDir;
 
     private Server server;
+    private LoopbackTransport loopback;   // transport of current run or null for TCP connections
+    private SharedMemoryTransport shm;    // additional transport of current run or null
+    private UnixDomainTransport unix;     // additional transport of current run or null
+
+    private ConfigReader srvCfgReader = new ConfigReader();
     private ConfigReader cfgReader = new ConfigReader();
 
-    private List<PayloadClient> client;
+    // TLS sections of server and client
+    private ConfigReader srvTlsCfgReader = new ConfigReader();
+    private ConfigReader tlsCfgReader = new ConfigReader();
+
+    private final List<String> results = new ArrayList<>();
 
     private CountDownLatch latch;
 
-    class PayloadClient implements Runnable {
-        private final Logger log = Logger.getLogger(PayloadClient.class.getName());
+    /**
+     * Single user load: generated commands, received responses and round trip latency of each command
+     */
+    abstract class PayloadClient {
+        protected final Logger log = Logger.getLogger(PayloadClient.class.getName());
 
-        private ByteArrayOutputStream inCommand;    // client's commands set
-        private ByteArrayOutputStream outCommand;   // commands set processed by server
+        protected final List<String> commands = new ArrayList<>(commandsNumber);
 
-        private Client client;
-        private final int clientID;
+        private final ByteArrayOutputStream inCommand = new ByteArrayOutputStream();   // client's commands set
+        protected final ByteArrayOutputStream outCommand = new ByteArrayOutputStream(); // processed by server
+
+        private final long[] latency = new long[commandsNumber];   // in ns
+        private int responsesNumber = 0;
+
+        protected final int clientID;
 
         private void generateCommands() throws IOException {
             Random rnd = new Random();
@@ -60,42 +111,199 @@ public class ServerTest {
                 String currentCommand = (((i > 0) && (i < commandsNumber - 1)) ?
                                             KNOWN_CMD.get(rnd.nextInt(KNOWN_CMD.size() - 1)).getToken() :
                                             ((i == 0) ? TESTING_USER_NAME.get(rnd.nextInt(TESTING_USER_NAME.size())) :
-                                                        QUIT_CMD)) + '\n';
+                                                        QUIT_CMD));
+
+                commands.add(currentCommand);
+                out.write((currentCommand + '\n').getBytes());
+            }
+        }
+
+        PayloadClient() throws IOException {
+            clientID = clientCounter++;
+
+            generateCommands();
+        }
 
-                out.write(currentCommand.getBytes());
+        /**
+         * Starts commands sending without waiting for responses. Latch is counted down after "quit" response
+         * @param tls - client's TLS context or null for plain transport
+         */
+        abstract void start(TlsContext tls) throws IOException;
+
+        /**
+         * Waits till the last response is written to output after latch counting down
+         */
+        void awaitOutput() throws InterruptedException {
+        }
+
+        /**
+         * Stores round trip latency of the next command
+         * @param nanos - time from command sending till response reception
+         */
+        synchronized void onResponse(long nanos) {
+            if (responsesNumber < latency.length) {
+                latency[responsesNumber++] = nanos;
             }
         }
 
-        PayloadClient(String hostName, int portNumber) {
-            inCommand = new ByteArrayOutputStream();
-            outCommand = new ByteArrayOutputStream();
+        /**
+         * @return latencies of received responses
+         */
+        synchronized long[] getLatency() {
+            return Arrays.copyOf(latency, responsesNumber);
+        }
+
+        /**
+         * @return commands set for input stream of client
+         */
+        final ByteArrayInputStream getCommandsStream() {
+            return new ByteArrayInputStream(inCommand.toByteArray());
+        }
+
+        final boolean isError() {
+            return !Arrays.equals(inCommand.toByteArray(), outCommand.toByteArray());
+        }
+    }
+
+    /**
+     * User of blocking client reading commands from stream. Client sends the next command right after response,
+     * so latency is the interval between responses
+     */
+    class BlockingPayloadClient extends PayloadClient implements Runnable {
+        private Client client;
+        private long lastResponse;
+
+        BlockingPayloadClient() throws IOException {
+        }
 
-            client = new Client(hostName, portNumber);
+        @Override
+        void start(TlsContext tls) {
+            client = new Client(cfgReader.getHostName(), cfgReader.getPortNumber());
             client.setOutputStream(outCommand);
+            client.setInputStream(getCommandsStream());
+            client.setTls(tls);
+            client.setLoopback(loopback);
 
-            clientID = clientCounter++;
+            if (shm != null) {
+                client.setSharedMemory(srvCfgReader.getShmPortNumber(), srvCfgReader.getShmWaitStrategy());
+            }
 
-            new Thread(this, TESTING_CLIENT_THREAD_NAME + clientID).start();
+            if (unix != null) {
+                client.setUnixSocket(srvCfgReader.getUnixSocketPath());
+            }
+
+            Thread thread = new Thread(this, TESTING_CLIENT_THREAD_NAME + clientID);
+            thread.setDaemon(true);
+            thread.start();
         }
 
         @Override
         public void run() {
-            try {
-                generateCommands();
+            lastResponse = System.nanoTime();
+
+            client.start((String msg) -> {
+                long now = System.nanoTime();
+                onResponse(now - lastResponse);
+                lastResponse = now;
+
+                return msg;
+            });
 
-                ByteArrayInputStream inCommandPool = new ByteArrayInputStream(inCommand.toByteArray());
-                client.setInputStream(inCommandPool);
+            latch.countDown();
+        }
+    }
+
+    /**
+     * User of logical session inside shared multiplexed connection. The next command is sent from response handler
+     */
+    class MultiplexPayloadClient extends PayloadClient {
+        private final MultiplexClient mux;
+        private MultiplexClient.Session session;
+
+        private int sentNumber = 0;
+        private long sendTime;
+
+        MultiplexPayloadClient(MultiplexClient mux) throws IOException {
+            this.mux = mux;
+        }
+
+        @Override
+        synchronized void start(TlsContext tls) {
+            // response handler waits for session assignment by monitor
+            sendTime = System.nanoTime();
+            sentNumber = 1;
+
+            session = mux.openSession(commands.get(0), this::onProcess, outCommand);
+        }
 
-                client.start((String msg) -> msg);
+        /**
+         * Session writes response to output after its handler, so finished session has written all responses
+         */
+        @Override
+        void awaitOutput() throws InterruptedException {
+            session.awaitFinish(runTimeout, TimeUnit.SECONDS);
+        }
 
+        private synchronized String onProcess(String msg) {
+            onResponse(System.nanoTime() - sendTime);
+
+            if (sentNumber < commands.size()) {
+                sendTime = System.nanoTime();
+                session.send(commands.get(sentNumber++));
+            } else {
                 latch.countDown();
-            } catch (IOException exc) {
-                log.log(Level.SEVERE, "PayloadClient #" + clientID +": error while generating commands list", exc);
             }
+
+            return msg;
         }
+    }
 
-        final boolean isError() {
-            return !Arrays.equals(inCommand.toByteArray(), outCommand.toByteArray());
+    /**
+     * User of non-blocking client. The next command is sent on completion of previous command's response
+     */
+    class AsyncPayloadClient extends PayloadClient {
+        private final AsyncClient client;
+
+        AsyncPayloadClient(AsynchronousChannelGroup group) throws IOException {
+            client = new AsyncClient(cfgReader.getHostName(), cfgReader.getPortNumber(), group,
+                                     new AsyncClientListener() {});
+        }
+
+        @Override
+        void start(TlsContext tls) {
+            client.setTls(tls);
+
+            long sendTime = System.nanoTime();
+            client.connect(commands.get(0)).whenComplete((msg, exc) -> onReply(1, sendTime, msg, exc));
+        }
+
+        /**
+         * Stores response and sends the next command
+         * @param index - number of the next command
+         * @param sendTime - sending moment of answered command
+         * @param msg - server's response or null if connection failed
+         * @param exc - connection failure or null
+         */
+        private void onReply(int index, long sendTime, String msg, Throwable exc) {
+            if (exc != null) {
+                log.log(Level.SEVERE, "AsyncPayloadClient #" + clientID + ": exchange is broken", exc);
+                latch.countDown();
+                return;
+            }
+
+            onResponse(System.nanoTime() - sendTime);
+
+            byte[] response = (msg + '\n').getBytes();
+            outCommand.write(response, 0, response.length);
+
+            if (index == commands.size()) {
+                latch.countDown();
+                return;
+            }
+
+            long nextSendTime = System.nanoTime();
+            client.send(commands.get(index)).whenComplete((reply, failure) -> onReply(index + 1, nextSendTime,
+                                                                                     reply, failure));
         }
     }
 
@@ -103,44 +311,325 @@ public class ServerTest {
     public void before() throws ParserConfigurationException, SAXException, IOException {
         String cfgFileName = System.getProperty("cfgFileName");
 
-        userNumber = Integer.parseInt(System.getProperty("userNumber"));
+        userNumbers = Arrays.stream(System.getProperty("userNumber").split(","))
+                            .mapToInt(n -> Integer.parseInt(n.trim()))
+                            .toArray();
         commandsNumber = Integer.parseInt(System.getProperty("commandsNumber"));
 
-        client = new ArrayList<>(userNumber);
-        latch = new CountDownLatch(userNumber);
-
-        cfgReader.parse(cfgFileName, true);
-        server = new Server(cfgReader.getPortNumber(), (String msg, Server.Connection connection) -> msg);
+        engines = System.getProperty("engines", String.join(",", engines)).split(",");
+        transports = System.getProperty("transports", String.join(",", transports)).split(",");
+        runTimeout = Long.getLong("runTimeout", runTimeout);
+        reportDir = System.getProperty("reportDir");
 
+        srvCfgReader.parse(cfgFileName, true);
         cfgReader.parse(cfgFileName, false);
+
+        String tlsCfgFileName = System.getProperty("tlsCfgFileName", cfgFileName);
+
+        srvTlsCfgReader.parse(tlsCfgFileName, true);
+        tlsCfgReader.parse(tlsCfgFileName, false);
     }
 
-    @Test
-    public void testUserCommandsReception() {
-        new Thread(server, SERVER_THREAD_NAME).start();
+    @After
+    public void after() throws InterruptedException {
+        stopServer();
+    }
+
+    /**
+     * Starts echo server waiting for its listening. TLS handshake of probe connection fills client's sessions cache
+     * @param srvTls - server's TLS context or null for plain transport
+     * @param tls - client's TLS context or null for plain transport
+     */
+    private void startServer(TlsContext srvTls, TlsContext tls) throws IOException, InterruptedException {
+        Server.Builder builder = new Server.Builder((String msg, Server.Connection connection) -> msg)
+                                           .port(srvCfgReader.getPortNumber())
+                                           .transport(loopback)
+                                           .tls(srvTls)
+                                           .workerPool(srvCfgReader.getWorkersNumber(),
+                                                       srvCfgReader.getWorkerQuantum());
+
+        if (shm != null) {
+            builder.addTransport(shm);
+        }
+
+        if (unix != null) {
+            builder.addTransport(unix);
+        }
+
+        server = builder.start();
+
+        if (tls != null) {
+            try (Socket socket = new Socket(cfgReader.getHostName(), cfgReader.getPortNumber());
+                 TlsStreams secured = new TlsStreams(socket, tls, true)) {
+                secured.handshake();
+
+                // round trips let server finish sending its session tickets before probe closing
+                DataInputStream in = new DataInputStream(secured.getInputStream());
+                DataOutputStream out = new DataOutputStream(secured.getOutputStream());
+
+                exchangeProbe(PROBE_USER_NAME, in, out);
+                exchangeProbe(QUIT_CMD, in, out);
+            }
+        }
+    }
+
+    /**
+     * Sends probe's message and waits for server's response skipping resume token
+     * @param message - probe's message
+     * @param in - input stream of probe connection
+     * @param out - output stream of probe connection
+     * @throws IOException - if connection is closed before response
+     */
+    private static void exchangeProbe(String message, DataInputStream in, DataOutputStream out) throws IOException {
+        MessageTraits msg = new MessageTraits();
+        msg.sendMessage(message, out);
+
+        do {
+            if (msg.receive(in) == DEFAULT_SZ) {
+                throw new EOFException("ServerTest: probe connection is closed by server");
+            }
+        } while (msg.getType() != FRAME_DATA);
+    }
+
+    /**
+     * Stops server waiting for its port release
+     */
+    private void stopServer() throws InterruptedException {
+        if (server != null) {
+            server.close();
+
+            server = null;
+            loopback = null;
+            shm = null;
+            unix = null;
+        }
+    }
+
+    /**
+     * Performs single run of all users
+     * @param engine - client's engine name
+     * @param transport - transport name
+     * @param userNumber - number of simultaneous users
+     * @return number of users with errors or unfinished users
+     */
+    private long run(String engine, String transport, int userNumber) throws IOException, GeneralSecurityException,
+            InterruptedException {
+        TlsContext srvTls = null;
+        TlsContext tls = null;
+
+        if ("tls".equals(transport)) {
+            assertTrue("TLS sections are absent in configuration file", srvTlsCfgReader.isTlsEnabled() &&
+                                                                         tlsCfgReader.isTlsEnabled());
+
+            srvTls = new TlsContext(srvTlsCfgReader.getTlsKeyStore(), srvTlsCfgReader.getTlsKeyStorePassword(), null,
+                                    null, srvTlsCfgReader.getTlsProtocol());
+            srvTls.setSessionCache(srvTlsCfgReader.getTlsSessionCacheSize(),
+                                   srvTlsCfgReader.getTlsSessionTimeout());
+
+            tls = new TlsContext(null, null, tlsCfgReader.getTlsTrustStore(), tlsCfgReader.getTlsTrustStorePassword(),
+                                 tlsCfgReader.getTlsProtocol());
+        } else if ("loopback".equals(transport)) {
+            if ("async".equals(engine)) {
+                log.info("Payload test of async engine is skipped: loopback transport isn't supported by it");
+                return 0;
+            }
+
+            loopback = new LoopbackTransport();
+        } else if ("shm".equals(transport)) {
+            if ("async".equals(engine)) {
+                log.info("Payload test of async engine is skipped: shared memory transport isn't supported by it");
+                return 0;
+            }
+
+            assertTrue("Shared memory section is absent in configuration file", srvCfgReader.getShmPortNumber() != 0);
+
+            shm = new SharedMemoryTransport(srvCfgReader.getShmPortNumber(), srvCfgReader.getShmRingSize(),
+                                            srvCfgReader.getShmWaitStrategy());
+        } else if ("unix".equals(transport)) {
+            if ("async".equals(engine)) {
+                log.info("Payload test of async engine is skipped: Unix domain socket isn't supported by it");
+                return 0;
+            }
+
+            assertTrue("Unix domain socket is absent in configuration file", srvCfgReader.getUnixSocketPath() != null);
+
+            unix = new UnixDomainTransport(srvCfgReader.getUnixSocketPath());
+        } else if (!"plain".equals(transport)) {
+            throw new IllegalArgumentException("ServerTest: unknown transport " + transport);
+        }
+
+        startServer(srvTls, tls);
+
+        List<PayloadClient> clients = new ArrayList<>(userNumber);
+        latch = new CountDownLatch(userNumber);
+
+        MultiplexClient mux = null;
+        AsynchronousChannelGroup group = null;
 
-        IntStream.range(0, userNumber).forEach(i -> client.add(new PayloadClient(cfgReader.getHostName(),
-                                                                                 cfgReader.getPortNumber())));
         try {
-            latch.await();
+            if ("multiplex".equals(engine)) {
+                mux = new MultiplexClient(cfgReader.getHostName(), cfgReader.getPortNumber());
+                mux.setTls(tls);
+                mux.setLoopback(loopback);
+
+                if (shm != null) {
+                    mux.setSharedMemory(srvCfgReader.getShmPortNumber(), srvCfgReader.getShmWaitStrategy());
+                }
+
+                if (unix != null) {
+                    mux.setUnixSocket(srvCfgReader.getUnixSocketPath());
+                }
+
+                mux.connect();
+            } else if ("async".equals(engine)) {
+                group = AsyncClient.createGroup(Runtime.getRuntime().availableProcessors());
+            } else if (!"blocking".equals(engine)) {
+                throw new IllegalArgumentException("ServerTest: unknown engine " + engine);
+            }
+
+            for (int i = 0; i < userNumber; ++i) {
+                clients.add(mux != null ? new MultiplexPayloadClient(mux) :
+                            group != null ? new AsyncPayloadClient(group) : new BlockingPayloadClient());
+            }
 
-            long errorsNumber = client.stream()
-                                      .filter(PayloadClient::isError)
-                                      .count();
-            server.stop();
+            long start = System.nanoTime();
 
-            log.info(LOG_SEPARATOR);
-            log.info("Payload test results:\n");
-            log.info("Clients number: " + userNumber);
-            log.info("Commands number per client: " + commandsNumber + '\n');
+            for (PayloadClient client : clients) {
+                client.start(tls);
+            }
+
+            boolean isFinished = latch.await(runTimeout, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            if (isFinished) {
+                for (PayloadClient client : clients) {
+                    client.awaitOutput();
+                }
+            }
+
+            long errorsNumber = isFinished ? clients.stream().filter(PayloadClient::isError).count() :
+                                             latch.getCount();
+
+            report(engine, transport, userNumber, elapsed, clients, errorsNumber, isFinished);
+
+            return errorsNumber;
+        } finally {
+            if (mux != null) {
+                mux.close();
+            }
+
+            if (group != null) {
+                group.shutdownNow();
+            }
+
+            stopServer();
+        }
+    }
+
+    /**
+     * Logs results of single run and stores them for reports
+     */
+    private void report(String engine, String transport, int userNumber, long elapsed, List<PayloadClient> clients,
+                        long errorsNumber, boolean isFinished) {
+        long[] latency = clients.stream()
+                                .map(PayloadClient::getLatency)
+                                .flatMapToLong(Arrays::stream)
+                                .sorted()
+                                .toArray();
+
+        double throughput = latency.length * TimeUnit.SECONDS.toNanos(1) / (double) elapsed;
+        double mean = Arrays.stream(latency).average().orElse(0) / NANOS_IN_MICRO;
+
+        double p50 = percentile(latency, 50);
+        double p90 = percentile(latency, 90);
+        double p99 = percentile(latency, 99);
+        double max = percentile(latency, 100);
+
+        log.info(LOG_SEPARATOR);
+        log.info(String.format("Payload test results: engine = %s, transport = %s\n", engine, transport));
+        log.info("Clients number: " + userNumber);
+        log.info("Commands number per client: " + commandsNumber + '\n');
+
+        log.info(String.format("Elapsed time: %.1f ms, throughput: %.1f commands/s", elapsed / 1e6, throughput));
+        log.info(String.format("Round trip latency: mean = %.1f us, p50 = %.1f us, p90 = %.1f us, p99 = %.1f us, " +
+                               "max = %.1f us", mean, p50, p90, p99, max));
+
+        log.info(isFinished ? "Connections number with errors: " + errorsNumber :
+                              "Unfinished connections number after " + runTimeout + " s: " + errorsNumber);
+
+        results.add(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%b", engine,
+                                  transport, userNumber, commandsNumber, latency.length, elapsed / 1e6, throughput,
+                                  mean, p50, p90, p99, max, errorsNumber, isFinished));
+    }
+
+    /**
+     * @param sorted - sorted latencies in ns
+     * @param percent - percentile
+     * @return latency percentile in microseconds
+     */
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        return sorted[Math.min(sorted.length - 1, (int) ((long) sorted.length * percent / 100))] / NANOS_IN_MICRO;
+    }
+
+    /**
+     * Writes results of all runs to CSV and JSON reports
+     */
+    private void writeReports() throws IOException {
+        if (reportDir == null) {
+            return;
+        }
+
+        String[] columns = {"engine", "transport", "users", "commandsPerUser", "responses", "elapsedMs",
+                            "throughput", "meanUs", "p50Us", "p90Us", "p99Us", "maxUs", "errors", "finished"};
+
+        Path dir = Files.createDirectories(Paths.get(reportDir));
+
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(dir.resolve(REPORT_NAME + ".csv")));
+             PrintWriter json = new PrintWriter(Files.newBufferedWriter(dir.resolve(REPORT_NAME + ".json")))) {
+            csv.println(String.join(",", columns));
+            json.println("{\"runs\": [");
+
+            for (int i = 0; i < results.size(); ++i) {
+                String[] values = results.get(i).split(",");
+                csv.println(results.get(i));
+
+                StringBuilder run = new StringBuilder("  {");
+
+                for (int j = 0; j < columns.length; ++j) {
+                    // engine and transport are the only string values
+                    String value = j < 2 ? '"' + values[j] + '"' : values[j];
+                    run.append(j > 0 ? ", " : "").append('"').append(columns[j]).append("\": ").append(value);
+                }
 
-            log.info("Connections number with errors: " + errorsNumber);
+                json.println(run.append(i < results.size() - 1 ? "}," : "}"));
+            }
 
-            assertTrue(errorsNumber == 0);
-        } catch(InterruptedException exc) {
-            log.log(Level.SEVERE, "ServerTest: test is interrupted while waiting the end of messages exchange + " +
-                    "between client and server", exc);
+            json.println("]}");
         }
 
+        log.info("Payload reports are written to folder: " + dir.toAbsolutePath());
+    }
+
+    @Test
+    public void testUserCommandsReception() throws Exception {
+        long errorsNumber = 0;
+
+        for (String transport : transports) {
+            for (String engine : engines) {
+                for (int userNumber : userNumbers) {
+                    errorsNumber += run(engine.trim(), transport.trim(), userNumber);
+                }
+            }
+        }
+
+        writeReports();
+
+        log.info(LOG_SEPARATOR);
+
+        assertTrue(errorsNumber == 0);
     }
 }
@@ -0,0 +1,131 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Session resumption verification: resume tokens hits and misses, expiration of detached sessions, backoff of
+ * reconnection attempts and request repeated after resumption which isn't processed twice when its reply is lost
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SessionRegistryTest {
+    private static final String host = "localhost";
+    private static final int port = 19400;
+
+    private static final String DEPOSIT_CMD = "deposit";
+
+    private Server server;
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testResume() {
+        SessionRegistry registry = new SessionRegistry(SESSION_GRACE_PERIOD);
+
+        String token = registry.issueToken();
+        Assert.assertNotEquals(token, registry.issueToken());
+
+        registry.detach(token, TESTING_USER_NAME.get(0), 7, 3, "reply");
+        Assert.assertEquals(1, registry.getDetachedNumber());
+
+        Assert.assertNull(registry.resume(registry.issueToken()));
+
+        SessionRegistry.Session session = registry.resume(token);
+        Assert.assertNotNull(session);
+        Assert.assertEquals(TESTING_USER_NAME.get(0), session.getUsrName());
+        Assert.assertEquals(7, session.getClientID());
+        Assert.assertEquals(3, session.getRepliesNumber());
+        Assert.assertEquals("reply", session.getLastReply());
+
+        // session is resumed once
+        Assert.assertNull(registry.resume(token));
+        Assert.assertEquals(0, registry.getDetachedNumber());
+
+        Assert.assertEquals(1, registry.getResumeHits());
+        Assert.assertEquals(2, registry.getResumeMisses());
+        Assert.assertEquals(1.0 / 3, registry.getResumeHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        SessionRegistry registry = new SessionRegistry(50);
+
+        String token = registry.issueToken();
+        registry.detach(token, TESTING_USER_NAME.get(0), 1, 1, null);
+        registry.detach(registry.issueToken(), TESTING_USER_NAME.get(1), 2, 1, null);
+
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        // expired session isn't resumed and isn't written to snapshot
+        Assert.assertNull(registry.resume(token));
+        Assert.assertTrue(registry.collectDetached().isEmpty());
+        Assert.assertEquals(1, registry.getDetachedNumber());
+
+        registry.purgeExpired();
+        Assert.assertEquals(0, registry.getDetachedNumber());
+        Assert.assertEquals(1, registry.getResumeMisses());
+    }
+
+    @Test
+    public void testBackoff() {
+        Assert.assertEquals(RECONNECT_BASE_DELAY, Client.getMaxReconnectDelay(0));
+        Assert.assertEquals(RECONNECT_BASE_DELAY * 2, Client.getMaxReconnectDelay(1));
+        Assert.assertEquals(RECONNECT_BASE_DELAY * 4, Client.getMaxReconnectDelay(2));
+
+        for (int attempt = 1; attempt < 100; ++attempt) {
+            Assert.assertTrue(Client.getMaxReconnectDelay(attempt) >= Client.getMaxReconnectDelay(attempt - 1));
+        }
+
+        // delay doesn't overflow by many attempts
+        Assert.assertEquals(RECONNECT_MAX_DELAY, Client.getMaxReconnectDelay(99));
+    }
+
+    @Test
+    public void testRepeatedRequest() throws Exception {
+        AtomicInteger depositsNumber = new AtomicInteger();
+        LoopbackTransport loopback = new LoopbackTransport();
+
+        server = new Server.Builder((String msg, Server.Connection connection) -> {
+            if (!DEPOSIT_CMD.equals(msg)) {
+                return msg;
+            }
+
+            int number = depositsNumber.incrementAndGet();
+
+            // reply on the first deposit is lost with connection after its processing
+            if (number == 1) {
+                server.getLinks().get(0).abort();
+            }
+
+            return "deposits = " + number;
+        }).transport(loopback).start();
+
+        String commands = TESTING_USER_NAME.get(2) + "\n" + DEPOSIT_CMD + "\n" + DEPOSIT_CMD + "\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setLoopback(loopback);
+        client.start(msg -> msg);
+
+        Assert.assertEquals(1, client.getResumedNumber());
+
+        // repeated deposit is answered by kept reply without processing
+        Assert.assertEquals(2, depositsNumber.get());
+        Assert.assertTrue(responses.toString(), responses.toString().contains("deposits = 1\ndeposits = 2\n"));
+    }
+}
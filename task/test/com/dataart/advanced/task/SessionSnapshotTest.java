@@ -0,0 +1,215 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Sessions snapshot verification: writing and reading of sessions state, corrupted snapshot rejection,
+ * time of 100k sessions snapshot writing and reading, resumption of session after server restart
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SessionSnapshotTest {
+    private static final String host = "localhost";
+    private static final int port = 19000;
+
+    private static final int largeSessionsNumber = 100000;
+    private static final long maxSnapshotTime = 1000;   // in ms
+
+    private Path path;
+    private Server server;
+
+    @Before
+    public void before() {
+        path = new File(System.getProperty("java.io.tmpdir"), "client-server-test.snapshot").toPath();
+    }
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        List<SessionRegistry.Session> sessions = Arrays.asList(
+                new SessionRegistry.Session("token-1", TESTING_USER_NAME.get(0), 3, 0),
+                new SessionRegistry.Session("token-2", "\u041F\u0435\u0442\u0440\u043E", 7, 0),
+                new SessionRegistry.Session("token-3", "", 11, 0));
+
+        SessionSnapshot.write(path, 42, sessions);
+        Assert.assertFalse(Files.exists(path.resolveSibling(path.getFileName() + SNAPSHOT_TMP_SUFFIX)));
+
+        SessionSnapshot snapshot = SessionSnapshot.read(path);
+
+        Assert.assertEquals(42, snapshot.getClientsCounter());
+        Assert.assertEquals(sessions.size(), snapshot.getSessions().size());
+
+        for (int i = 0; i < sessions.size(); ++i) {
+            SessionRegistry.Session session = snapshot.getSessions().get(i);
+
+            Assert.assertEquals(sessions.get(i).getToken(), session.getToken());
+            Assert.assertEquals(sessions.get(i).getUsrName(), session.getUsrName());
+            Assert.assertEquals(sessions.get(i).getClientID(), session.getClientID());
+        }
+
+        // restored sessions get grace period from loading moment
+        SessionRegistry registry = new SessionRegistry(SESSION_GRACE_PERIOD);
+        registry.restore(snapshot.getSessions());
+
+        Assert.assertEquals(sessions.size(), registry.collectDetached().size());
+        Assert.assertEquals(7, registry.resume("token-2").getClientID());
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws IOException {
+        SessionSnapshot.write(path, 1, Arrays.asList(new SessionRegistry.Session("token", "user", 0, 0)));
+        byte[] content = Files.readAllBytes(path);
+
+        // changed byte is detected by checksum
+        byte[] changed = content.clone();
+        changed[SNAPSHOT_HEADER_SZ + 2] ^= 1;
+        Files.write(path, changed);
+
+        try {
+            SessionSnapshot.read(path);
+            Assert.fail("Corrupted snapshot is read");
+        } catch (IOException exc) {
+            // expected
+        }
+
+        Files.write(path, Arrays.copyOf(content, content.length - 3));
+
+        try {
+            SessionSnapshot.read(path);
+            Assert.fail("Truncated snapshot is read");
+        } catch (IOException exc) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLargeSnapshotTime() throws IOException {
+        SessionRegistry registry = new SessionRegistry(SESSION_GRACE_PERIOD);
+
+        for (int i = 0; i < largeSessionsNumber; ++i) {
+            registry.detach(registry.issueToken(), "user #" + i, i, 0, null);
+        }
+
+        long startTime = System.nanoTime();
+        SessionSnapshot.write(path, largeSessionsNumber, registry.collectDetached());
+        long writeTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        startTime = System.nanoTime();
+        SessionSnapshot snapshot = SessionSnapshot.read(path);
+        new SessionRegistry(SESSION_GRACE_PERIOD).restore(snapshot.getSessions());
+        long readTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        Assert.assertEquals(largeSessionsNumber, snapshot.getSessions().size());
+        Assert.assertTrue("Snapshot writing takes " + writeTime + " ms", writeTime < maxSnapshotTime);
+        Assert.assertTrue("Snapshot reading takes " + readTime + " ms", readTime < maxSnapshotTime);
+    }
+
+    /**
+     * Sends frame and waits for response of given type
+     * @param msg - request and response holder
+     * @return received response
+     */
+    private static MessageTraits exchange(MessageTraits msg, byte type, String request, byte responseType,
+                                          DataInputStream in, DataOutputStream out) throws IOException {
+        msg.sendMessage(type, request, out);
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+        } while (msg.getType() != responseType);
+
+        return msg;
+    }
+
+    /**
+     * Starts echo server keeping sessions in snapshot
+     */
+    private Server startServer() throws IOException, InterruptedException {
+        return new Server.Builder((String msg, Server.Connection connection) -> msg).port(port)
+                                                                                     .sessionSnapshot(path.toString())
+                                                                                     .start();
+    }
+
+    @Test
+    public void testWarmRestart() throws Exception {
+        server = startServer();
+
+        String token;
+        int clientID;
+
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+
+            token = exchange(msg, FRAME_DATA, TESTING_USER_NAME.get(0), FRAME_SESSION, in, out).getMessage();
+            clientID = exchange(msg, FRAME_DATA, "time", FRAME_DATA, in, out).getClientID();
+
+            // connection is lost by server stop, so session is written to snapshot
+            server.close();
+            server = null;
+        }
+
+        Assert.assertTrue(Files.exists(path));
+
+        server = startServer();
+        Assert.assertFalse(Files.exists(path));
+
+        int newClientID;
+
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+
+            // identity is restored without user's introduction
+            String request = token + RESUME_SEPARATOR + TESTING_USER_NAME.get(0);
+            Assert.assertEquals(token, exchange(msg, FRAME_RESUME, request, FRAME_SESSION, in, out).getMessage());
+
+            msg = exchange(msg, FRAME_DATA, "time", FRAME_DATA, in, out);
+            Assert.assertEquals("time", msg.getMessage());
+            Assert.assertEquals(clientID, msg.getClientID());
+
+            exchange(msg, FRAME_DATA, QUIT_CMD, FRAME_DATA, in, out);
+        }
+
+        // new client doesn't get ID of previous run
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            MessageTraits msg = new MessageTraits();
+
+            newClientID = exchange(msg, FRAME_DATA, TESTING_USER_NAME.get(1), FRAME_DATA, in, out).getClientID();
+            exchange(msg, FRAME_DATA, QUIT_CMD, FRAME_DATA, in, out);
+        }
+
+        Assert.assertTrue(newClientID > clientID);
+        Assert.assertEquals(1, server.getSessions().getResumeHits());
+    }
+}
@@ -0,0 +1,210 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Shared memory transport verification: rings wrapping and backpressure, reading timeout, closing, rings file
+ * removal after handshake, blocking and multiplexing clients exchange with server over plain and TLS connections
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class SharedMemoryTransportTest {
+    private static final String host = "localhost";
+    private static final int port = 18700;
+    private static final int shmPort = 18701;
+
+    private static final long timeout = 5000;   // in ms
+
+    private static final String keyStore = "../files/tls/server.p12";
+    private static final String trustStore = "../files/tls/trust.p12";
+    private static final String password = "changeit";
+
+    private SharedMemoryTransport shm;
+    private Server server;
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        if (server != null) {
+            server.close();
+        } else if (shm != null) {
+            shm.close();
+        }
+    }
+
+    /**
+     * @return server's side of connection, client's side is returned by "connect" method
+     */
+    private FutureTask<Endpoint> acceptAsync() {
+        FutureTask<Endpoint> accepted = new FutureTask<>(() -> shm.accept(0));
+        new Thread(accepted).start();
+
+        return accepted;
+    }
+
+    /**
+     * @return number of rings files in memory backed folder
+     */
+    private static int countRingsFiles() {
+        String[] names = new File(SHM_DIR).list((dir, name) -> name.startsWith(SHM_FILE_PREFIX));
+        return names != null ? names.length : 0;
+    }
+
+    @Test
+    public void testRings() throws Exception {
+        int filesNumber = countRingsFiles();
+        shm = new SharedMemoryTransport(shmPort, 16, SharedMemoryTransport.WaitStrategy.PARK);
+
+        Assert.assertNull(shm.accept(10));
+
+        FutureTask<Endpoint> accepted = acceptAsync();
+        Endpoint client = SharedMemoryTransport.connect(host, shmPort, SharedMemoryTransport.WaitStrategy.PARK);
+        Endpoint server = accepted.get(timeout, TimeUnit.MILLISECONDS);
+
+        Assert.assertNotNull(server);
+
+        // rings file is removed just after handshake
+        Assert.assertEquals(filesNumber, countRingsFiles());
+
+        // writer of data exceeding ring capacity waits for reader, data wraps ring's end
+        byte[] data = new byte[100];
+
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+
+        Thread writer = new Thread(() -> {
+            try {
+                client.getOutputStream().write(data);
+                client.close();
+            } catch (IOException exc) {
+                Assert.fail(exc.getMessage());
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        InputStream in = server.getInputStream();
+        byte[] buffer = new byte[7];
+        int readSz;
+
+        while ((readSz = in.read(buffer)) >= 0) {
+            received.write(buffer, 0, readSz);
+        }
+
+        writer.join();
+        Assert.assertArrayEquals(data, received.toByteArray());
+
+        // peer's closing is reported to writer
+        try {
+            server.getOutputStream().write(1);
+            Assert.fail("Writing to closed connection");
+        } catch (IOException exc) {
+            // expected
+        }
+
+        server.close();
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        shm = new SharedMemoryTransport(shmPort, SHM_RING_SZ, SharedMemoryTransport.WaitStrategy.PARK);
+
+        FutureTask<Endpoint> accepted = acceptAsync();
+        Endpoint client = SharedMemoryTransport.connect(host, shmPort, SharedMemoryTransport.WaitStrategy.PARK);
+        Endpoint server = accepted.get(timeout, TimeUnit.MILLISECONDS);
+
+        server.setReadTimeout(20);
+
+        try {
+            server.getInputStream().read();
+            Assert.fail("Reading isn't interrupted by timeout");
+        } catch (SocketTimeoutException exc) {
+            // expected
+        }
+
+        // reading is continued after timeout
+        client.getOutputStream().write(42);
+        Assert.assertEquals(42, server.getInputStream().read());
+
+        server.shutdownInput();
+        Assert.assertEquals(-1, server.getInputStream().read());
+
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testBlockingClient() throws Exception {
+        shm = new SharedMemoryTransport(shmPort, SHM_RING_SZ, SharedMemoryTransport.WaitStrategy.PARK);
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg).port(port)
+                                                                                     .addTransport(shm)
+                                                                                     .start();
+
+        String commands = TESTING_USER_NAME.get(0) + "\ntime\nhello\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setSharedMemory(shmPort, SharedMemoryTransport.WaitStrategy.PARK);
+        client.start(msg -> msg);
+
+        Assert.assertEquals(commands, responses.toString());
+        Assert.assertEquals(0, client.getReconnectsNumber());
+    }
+
+    @Test
+    public void testTlsMultiplexClient() throws Exception {
+        shm = new SharedMemoryTransport(shmPort, 1024, SharedMemoryTransport.WaitStrategy.SPIN);
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg)
+                           .port(port)
+                           .addTransport(shm)
+                           .tls(new TlsContext(keyStore, password, null, null, null))
+                           .start();
+
+        MultiplexClient mux = new MultiplexClient(host, port);
+        mux.setTls(new TlsContext(null, null, trustStore, password, null));
+        mux.setSharedMemory(shmPort, SharedMemoryTransport.WaitStrategy.SPIN);
+        mux.connect();
+
+        try {
+            // messages exceeding ring capacity are passed by parts
+            char[] longText = new char[1500];
+            Arrays.fill(longText, 'x');
+
+            String[] messages = {"time", new String(longText)};
+            OutputStream[] outputs = {new ByteArrayOutputStream(), new ByteArrayOutputStream()};
+            MultiplexClient.Session[] sessions = new MultiplexClient.Session[outputs.length];
+
+            for (int i = 0; i < sessions.length; ++i) {
+                sessions[i] = mux.openSession(TESTING_USER_NAME.get(i), msg -> msg, outputs[i]);
+                sessions[i].send(messages[i]);
+                sessions[i].quit();
+            }
+
+            for (int i = 0; i < sessions.length; ++i) {
+                Assert.assertTrue(sessions[i].awaitFinish(timeout, TimeUnit.MILLISECONDS));
+                Assert.assertEquals(TESTING_USER_NAME.get(i) + "\n" + messages[i] + "\n" + QUIT_CMD + "\n",
+                                    outputs[i].toString());
+            }
+        } finally {
+            mux.close();
+        }
+
+        Assert.assertTrue(server.collectStats().stream().anyMatch(line -> line.contains("full = 1")));
+    }
+}
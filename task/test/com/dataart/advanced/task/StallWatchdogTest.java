@@ -0,0 +1,302 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Stall watchdog verification: reporting of request stuck inside listener once per incident with its thread's
+ * stack trace, stalled requests counting, cancelling of listener by interruption not outliving its request,
+ * disconnecting of link blocked in socket write and watchdog of server created from configuration file
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class StallWatchdogTest {
+    private static final long threshold = 100;          // in ms
+    private static final long waitTimeout = 5000;       // in ms
+
+    private static final String STALL_CMD = "stall";
+    private static final String FLOOD_CMD = "flood";
+
+    private final Logger watchdogLog = Logger.getLogger(StallWatchdog.class.getName());
+    private final List<LogRecord> reports = new CopyOnWriteArrayList<>();
+
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getLevel() == Level.WARNING) {
+                reports.add(record);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    // released by test for finishing of stalled listener
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Server server;
+
+    @Before
+    public void before() {
+        watchdogLog.addHandler(handler);
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        release.countDown();
+
+        if (server != null) {
+            server.close();
+        }
+
+        watchdogLog.removeHandler(handler);
+    }
+
+    /**
+     * Listener stalling on STALL_CMD till release or interruption, answering FLOOD_CMD by response larger than
+     * pipe and echoing the rest with interruption flag of thread
+     */
+    private String onProcess(String msg, Server.Connection connection) {
+        if (STALL_CMD.equals(msg)) {
+            try {
+                return release.await(waitTimeout, TimeUnit.MILLISECONDS) ? "released" : "timeout";
+            } catch (InterruptedException exc) {
+                return "cancelled";
+            }
+        }
+
+        if (FLOOD_CMD.equals(msg)) {
+            char[] response = new char[64 * 1024];
+            Arrays.fill(response, 'x');
+
+            return new String(response);
+        }
+
+        return msg + ": interrupted = " + Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * @param condition - awaited condition
+     * @return true if condition is met before timeout
+     */
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitTimeout;
+
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        return true;
+    }
+
+    /**
+     * Receives response skipping session control frames
+     * @return response content
+     */
+    private static String receive(DataInputStream in) throws IOException {
+        MessageTraits msg = new MessageTraits();
+
+        do {
+            Assert.assertNotEquals(DEFAULT_SZ, msg.receive(in));
+        } while (msg.getType() != FRAME_DATA);
+
+        return msg.getMessage();
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = new Server.Builder(this::onProcess).transport(loopback)
+                                                    .stallWatchdog(threshold, StallWatchdog.Action.LOG)
+                                                    .start();
+
+        try (Endpoint endpoint = loopback.connect();
+             DataInputStream in = new DataInputStream(endpoint.getInputStream());
+             DataOutputStream out = new DataOutputStream(endpoint.getOutputStream())) {
+            MessageTraits msg = new MessageTraits();
+
+            msg.sendMessage(TESTING_USER_NAME.get(0), out);
+            receive(in);
+
+            msg.sendMessage(STALL_CMD, out);
+
+            StallWatchdog watchdog = server.getStallWatchdog();
+            Assert.assertTrue(await(() -> watchdog.getIncidentsNumber() == 1));
+            Assert.assertTrue(await(() -> watchdog.getStalledNumber() == 1));
+
+            // request is reported once while it stays stalled
+            TimeUnit.MILLISECONDS.sleep(threshold * 3);
+            Assert.assertEquals(1, watchdog.getIncidentsNumber());
+            Assert.assertEquals(1, reports.size());
+
+            LogRecord report = reports.get(0);
+            Assert.assertTrue(report.getMessage(), report.getMessage().contains(STALL_STAGE_LISTENER));
+            Assert.assertTrue(report.getMessage(), report.getMessage().contains(TESTING_USER_NAME.get(0)));
+            Assert.assertTrue(Arrays.stream(report.getThrown().getStackTrace())
+                                    .anyMatch(e -> e.getClassName().equals(CountDownLatch.class.getName())));
+
+            release.countDown();
+            Assert.assertEquals("released", receive(in));
+
+            Assert.assertTrue(await(() -> watchdog.getStalledNumber() == 0));
+            Assert.assertTrue(server.collectStats().stream().anyMatch(s -> s.contains("incidents = 1")));
+
+            msg.sendMessage(QUIT_CMD, out);
+            receive(in);
+        }
+    }
+
+    @Test
+    public void testInterrupt() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = new Server.Builder(this::onProcess).transport(loopback)
+                                                    .stallWatchdog(threshold, StallWatchdog.Action.INTERRUPT)
+                                                    .start();
+
+        try (Endpoint endpoint = loopback.connect();
+             DataInputStream in = new DataInputStream(endpoint.getInputStream());
+             DataOutputStream out = new DataOutputStream(endpoint.getOutputStream())) {
+            MessageTraits msg = new MessageTraits();
+
+            msg.sendMessage(TESTING_USER_NAME.get(1), out);
+            receive(in);
+
+            msg.sendMessage(STALL_CMD, out);
+            Assert.assertEquals("cancelled", receive(in));
+
+            // interruption of cancelled request doesn't reach the next one
+            msg.sendMessage("hello", out);
+            Assert.assertEquals("hello: interrupted = false", receive(in));
+
+            msg.sendMessage(QUIT_CMD, out);
+            receive(in);
+        }
+
+        Assert.assertEquals(1, server.getStallWatchdog().getIncidentsNumber());
+    }
+
+    @Test
+    public void testInterruptRace() throws Exception {
+        final int requestsNumber = 500;
+        final long maxDuration = TimeUnit.MILLISECONDS.toNanos(2);
+
+        StallWatchdog watchdog = new StallWatchdog(1, StallWatchdog.Action.INTERRUPT);
+        StallWatchdog.Probe probe = watchdog.createProbe(() -> "race test", () -> {});
+        Random random = new Random();
+        int leaksNumber = 0;
+
+        // reports are too many for console
+        watchdogLog.setUseParentHandlers(false);
+
+        try {
+            // requests end near checks of watchdog, but interruption doesn't outlive its request
+            for (int i = 0; i < requestsNumber; ++i) {
+                long deadline = System.nanoTime() + (long) (random.nextDouble() * maxDuration);
+
+                probe.begin("race");
+
+                while (System.nanoTime() < deadline) {
+                    Thread.yield();
+                }
+
+                probe.end();
+
+                if (Thread.interrupted()) {
+                    ++leaksNumber;
+                }
+            }
+        } finally {
+            watchdogLog.setUseParentHandlers(true);
+            watchdog.close();
+        }
+
+        Assert.assertEquals(0, leaksNumber);
+        Assert.assertTrue(watchdog.getIncidentsNumber() > 0);
+    }
+
+    @Test
+    public void testDisconnect() throws Exception {
+        // response doesn't fit to small pipe, so server's write is blocked till client reads it
+        LoopbackTransport loopback = new LoopbackTransport(4096);
+        server = new Server.Builder(this::onProcess).transport(loopback)
+                                                    .stallWatchdog(threshold, StallWatchdog.Action.DISCONNECT)
+                                                    .start();
+
+        try (Endpoint endpoint = loopback.connect();
+             DataInputStream in = new DataInputStream(endpoint.getInputStream());
+             DataOutputStream out = new DataOutputStream(endpoint.getOutputStream())) {
+            MessageTraits msg = new MessageTraits();
+
+            msg.sendMessage(TESTING_USER_NAME.get(2), out);
+            receive(in);
+
+            msg.sendMessage(FLOOD_CMD, out);
+
+            Assert.assertTrue(await(() -> server.getStallWatchdog().getIncidentsNumber() == 1));
+            Assert.assertTrue(await(() -> server.getLinks().isEmpty()));
+
+            Assert.assertTrue(reports.get(0).getMessage(), reports.get(0).getMessage().contains(STALL_STAGE_WRITE));
+
+            // disconnected session is kept for resumption
+            Assert.assertEquals(1, server.getSessions().collectDetached().size());
+        }
+    }
+
+    @Test
+    public void testConfiguredServer() throws Exception {
+        ConfigReader cfgReader = new ConfigReader();
+        cfgReader.parse("../files/test-config.xml", true);
+
+        server = Server.create(cfgReader, this::onProcess);
+
+        // test doesn't leave snapshot and doesn't occupy admin port
+        server.setSessionSnapshot(null);
+        server.setAdminPort(0);
+
+        Thread serverThread = new Thread(server, SERVER_THREAD_NAME);
+        serverThread.start();
+
+        try {
+            Assert.assertTrue(server.awaitListening(waitTimeout));
+
+            StallWatchdog watchdog = server.getStallWatchdog();
+
+            Assert.assertNotNull(watchdog);
+            Assert.assertEquals(cfgReader.getStallThreshold(), watchdog.getThreshold());
+            Assert.assertEquals(cfgReader.getStallAction(), watchdog.getAction());
+        } finally {
+            server.stop();
+            serverThread.join();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Local benchmark of TLS handshakes rate for full and resumed sessions. Clients connect to server with key stores
+ * specified in TLS configuration file, introduce themselves and quit. Handshake latency is measured on client side,
+ * handshakes rate is measured for the whole connections set. Client's protocol is assigned for each run, server
+ * accepts any of them.
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TlsHandshakeBenchmark {
+    private static final Logger log = Logger.getLogger(TlsHandshakeBenchmark.class.getName());
+
+    // server's loggers are kept, so their levels aren't lost. Server's connections use client's logger
+    private static final Logger srvLog = Logger.getLogger(Server.class.getName());
+    private static final Logger connectionLog = Logger.getLogger(Client.class.getName());
+
+    private static final double NANOS_IN_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int CONNECT_ATTEMPTS_NUMBER = 50;
+
+    private int handshakesNumber = 1000;
+    private int threadsNumber = 4;
+    private String[] protocols;
+
+    private ConfigReader cfgReader = new ConfigReader();
+    private ConfigReader tlsCfgReader = new ConfigReader();   // TLS sections of server and client
+    private Server server;
+    private TlsContext srvTls;
+
+    @Before
+    public void before() throws ParserConfigurationException, SAXException, IOException, GeneralSecurityException {
+        String cfgFileName = System.getProperty("cfgFileName");
+
+        handshakesNumber = Integer.parseInt(System.getProperty("handshakesNumber"));
+        threadsNumber = Integer.parseInt(System.getProperty("threadsNumber"));
+        protocols = System.getProperty("protocols").split(",");
+
+        String tlsCfgFileName = System.getProperty("tlsCfgFileName", cfgFileName);
+
+        cfgReader.parse(cfgFileName, true);
+        tlsCfgReader.parse(tlsCfgFileName, true);
+
+        // server's protocol isn't restricted, so each client's protocol is negotiated
+        srvTls = new TlsContext(tlsCfgReader.getTlsKeyStore(), tlsCfgReader.getTlsKeyStorePassword(), null, null,
+                                null);
+        srvTls.setSessionCache(tlsCfgReader.getTlsSessionCacheSize(), tlsCfgReader.getTlsSessionTimeout());
+
+        server = new Server(cfgReader.getPortNumber(), (String msg, Server.Connection connection) -> msg);
+        server.setTls(srvTls);
+
+        // connection of each client isn't traced
+        srvLog.setLevel(Level.WARNING);
+        connectionLog.setLevel(Level.WARNING);
+
+        cfgReader.parse(cfgFileName, false);
+        tlsCfgReader.parse(tlsCfgFileName, false);
+
+        new Thread(server, SERVER_THREAD_NAME).start();
+    }
+
+    @After
+    public void after() {
+        server.stop();
+    }
+
+    /**
+     * Performs single session: handshake, introduction and "quit" command
+     * @param tls - client's TLS context
+     * @return handshake latency in nanoseconds
+     */
+    private long connect(TlsContext tls) throws IOException {
+        try (Socket socket = new Socket(cfgReader.getHostName(), cfgReader.getPortNumber());
+             TlsStreams secured = new TlsStreams(socket, tls, true)) {
+            long start = System.nanoTime();
+            secured.handshake();
+            long latency = System.nanoTime() - start;
+
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(secured.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(secured.getInputStream()));
+
+            // session ticket of TLSv1.3 is received with welcome message
+            MessageTraits msg = new MessageTraits();
+            msg.sendMessage(TESTING_USER_NAME.get(0), out);
+
+            while (msg.receive(in) != DEFAULT_SZ && msg.getType() == FRAME_SESSION) {
+                // resume token isn't used
+            }
+
+            msg.sendMessage(QUIT_CMD, out);
+
+            while (msg.receive(in) != DEFAULT_SZ) {
+                // farewell message is skipped till connection closing by server
+            }
+
+            return latency;
+        }
+    }
+
+    /**
+     * Waits for server starting by the first session, which also fills client's sessions cache
+     * @param tls - client's TLS context
+     */
+    private void warmUp(TlsContext tls) throws IOException, InterruptedException {
+        for (int i = 1; ; ++i) {
+            try {
+                connect(tls);
+                return;
+            } catch (ConnectException exc) {
+                if (i == CONNECT_ATTEMPTS_NUMBER) {
+                    throw exc;
+                }
+
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Measures handshakes of single protocol and mode
+     * @param protocol - client's protocol
+     * @param isResumed - true for abbreviated handshakes
+     */
+    private void measure(String protocol, boolean isResumed) throws IOException, GeneralSecurityException,
+            InterruptedException, ExecutionException {
+        TlsContext tls = new TlsContext(null, null, tlsCfgReader.getTlsTrustStore(),
+                                        tlsCfgReader.getTlsTrustStorePassword(), protocol);
+        tls.setResumptionEnabled(isResumed);
+
+        warmUp(tls);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadsNumber);
+        List<Future<Long>> sessions = new ArrayList<>(handshakesNumber);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < handshakesNumber; ++i) {
+            sessions.add(executor.submit(() -> connect(tls)));
+        }
+
+        long[] latency = new long[handshakesNumber];
+
+        for (int i = 0; i < handshakesNumber; ++i) {
+            latency[i] = sessions.get(i).get();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        Arrays.sort(latency);
+
+        log.info(String.format("%s %s handshakes: %d in %.1f ms, rate = %.1f/s, latency: mean = %.3f ms, " +
+                               "p50 = %.3f ms, p99 = %.3f ms, max = %.3f ms (full = %d, resumed = %d)", protocol,
+                               isResumed ? "resumed" : "full", handshakesNumber, elapsed / NANOS_IN_MILLI,
+                               handshakesNumber * TimeUnit.SECONDS.toNanos(1) / (double) elapsed,
+                               Arrays.stream(latency).average().orElse(0) / NANOS_IN_MILLI,
+                               latency[handshakesNumber / 2] / NANOS_IN_MILLI,
+                               latency[handshakesNumber * 99 / 100] / NANOS_IN_MILLI,
+                               latency[handshakesNumber - 1] / NANOS_IN_MILLI, tls.getFullHandshakesNumber(),
+                               tls.getResumedHandshakesNumber()));
+
+        // TLSv1.3 session ticket is used once, so concurrent sessions could miss cached one and perform full handshake
+        Assert.assertEquals(handshakesNumber + 1, tls.getFullHandshakesNumber() + tls.getResumedHandshakesNumber());
+        Assert.assertTrue(isResumed ? tls.getResumedHandshakesNumber() > 0 : tls.getResumedHandshakesNumber() == 0);
+    }
+
+    @Test
+    public void testHandshakesRate() throws Exception {
+        log.info(LOG_SEPARATOR);
+        log.info("TLS handshakes benchmark: " + handshakesNumber + " sessions by " + threadsNumber + " threads\n");
+
+        for (String protocol : protocols) {
+            measure(protocol, false);
+            measure(protocol, true);
+        }
+
+        log.info(LOG_SEPARATOR);
+    }
+}
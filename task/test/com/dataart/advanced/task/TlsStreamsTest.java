@@ -0,0 +1,146 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * TLS streams verification: encrypted exchange exceeding record size, sessions resumption on reconnection and
+ * forced full handshakes. Self-signed key stores are taken from "files/tls" folder
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TlsStreamsTest {
+    private static final String keyStore = "../files/tls/server.p12";
+    private static final String trustStore = "../files/tls/trust.p12";
+    private static final String password = "changeit";
+
+    private static final String[] protocols = {"TLSv1.2", "TLSv1.3"};
+
+    private ServerSocket srvSocket;
+    private Thread echoThread;
+
+    /**
+     * Starts server echoing single message of each connection
+     * @param tls - server's TLS context
+     * @param connectionsNumber - number of served connections
+     */
+    private void startEcho(TlsContext tls, int connectionsNumber) throws IOException {
+        srvSocket = new ServerSocket(0, connectionsNumber, InetAddress.getLoopbackAddress());
+
+        echoThread = new Thread(() -> {
+            for (int i = 0; i < connectionsNumber; ++i) {
+                try (Socket socket = srvSocket.accept();
+                     TlsStreams secured = new TlsStreams(socket, tls, false)) {
+                    DataInputStream in = new DataInputStream(secured.getInputStream());
+                    DataOutputStream out = new DataOutputStream(secured.getOutputStream());
+
+                    byte[] msg = new byte[in.readInt()];
+                    in.readFully(msg);
+
+                    out.writeInt(msg.length);
+                    out.write(msg);
+                } catch (IOException exc) {
+                    return;
+                }
+            }
+        });
+
+        echoThread.start();
+    }
+
+    /**
+     * Sends message to echo server by new connection
+     * @param tls - client's TLS context
+     * @param msg - message for sending
+     * @return true if handshake resumed cached session
+     */
+    private boolean exchange(TlsContext tls, byte[] msg) throws IOException {
+        try (Socket socket = new Socket(srvSocket.getInetAddress(), srvSocket.getLocalPort());
+             TlsStreams secured = new TlsStreams(socket, tls, true)) {
+            DataOutputStream out = new DataOutputStream(secured.getOutputStream());
+            DataInputStream in = new DataInputStream(secured.getInputStream());
+
+            out.writeInt(msg.length);
+            out.write(msg);
+
+            byte[] echo = new byte[in.readInt()];
+            in.readFully(echo);
+
+            Assert.assertTrue(Arrays.equals(msg, echo));
+
+            return secured.isResumed();
+        }
+    }
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        srvSocket.close();
+        echoThread.join();
+    }
+
+    @Test
+    public void testEncryptedExchange() throws Exception {
+        byte[] msg = new byte[100000];
+        new Random(1).nextBytes(msg);
+
+        startEcho(new TlsContext(keyStore, password, null, null, null), protocols.length);
+
+        for (String protocol : protocols) {
+            Assert.assertFalse(exchange(new TlsContext(null, null, trustStore, password, protocol), msg));
+        }
+    }
+
+    @Test
+    public void testSessionResumption() throws Exception {
+        TlsContext srvTls = new TlsContext(keyStore, password, null, null, null);
+        int reconnectsNumber = 3;
+
+        startEcho(srvTls, protocols.length * (reconnectsNumber + 1));
+
+        for (String protocol : protocols) {
+            TlsContext tls = new TlsContext(null, null, trustStore, password, protocol);
+
+            Assert.assertFalse(exchange(tls, "first".getBytes()));
+
+            for (int i = 0; i < reconnectsNumber; ++i) {
+                Assert.assertTrue(exchange(tls, "again".getBytes()));
+            }
+
+            Assert.assertEquals(1, tls.getFullHandshakesNumber());
+            Assert.assertEquals(reconnectsNumber, tls.getResumedHandshakesNumber());
+        }
+
+        echoThread.join();
+
+        Assert.assertEquals(protocols.length, srvTls.getFullHandshakesNumber());
+        Assert.assertEquals(protocols.length * reconnectsNumber, srvTls.getResumedHandshakesNumber());
+    }
+
+    @Test
+    public void testDisabledResumption() throws Exception {
+        int connectionsNumber = 3;
+
+        TlsContext tls = new TlsContext(null, null, trustStore, password, protocols[0]);
+        tls.setResumptionEnabled(false);
+
+        startEcho(new TlsContext(keyStore, password, null, null, null), connectionsNumber);
+
+        for (int i = 0; i < connectionsNumber; ++i) {
+            Assert.assertFalse(exchange(tls, "full".getBytes()));
+        }
+
+        Assert.assertEquals(connectionsNumber, tls.getFullHandshakesNumber());
+        Assert.assertEquals(0, tls.getResumedHandshakesNumber());
+    }
+}
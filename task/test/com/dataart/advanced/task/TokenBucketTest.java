@@ -0,0 +1,116 @@
+package com.dataart.advanced.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.dataart.advanced.task.Info.DEFAULT_SZ;
+
+/**
+ * Token bucket verification: burst passing, throttling, delay reservation, lazy refill, token returning,
+ * concurrent access and rate limiter's buckets combination
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TokenBucketTest {
+    private static final int rate = 10;    // tokens per second
+    private static final int burst = 5;
+
+    private static final long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+
+    @Test
+    public void testBurstAndThrottling() {
+        TokenBucket bucket = new TokenBucket(rate, burst);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < burst; ++i) {
+            Assert.assertEquals(0, bucket.reserve(0, now));
+        }
+
+        Assert.assertEquals(DEFAULT_SZ, bucket.reserve(0, now));
+        Assert.assertEquals(interval, bucket.reserve(2 * interval, now));
+        Assert.assertEquals(2 * interval, bucket.reserve(2 * interval, now));
+        Assert.assertEquals(DEFAULT_SZ, bucket.reserve(2 * interval, now));
+    }
+
+    @Test
+    public void testLazyRefill() {
+        TokenBucket bucket = new TokenBucket(rate, burst);
+        long now = System.nanoTime();
+
+        IntStream.range(0, burst).forEach(i -> bucket.reserve(0, now));
+
+        // single token is refilled after interval
+        Assert.assertEquals(0, bucket.reserve(0, now + interval));
+        Assert.assertEquals(DEFAULT_SZ, bucket.reserve(0, now + interval));
+
+        // long idle bucket doesn't accumulate tokens above its size
+        long later = now + TimeUnit.SECONDS.toNanos(10);
+
+        for (int i = 0; i < burst; ++i) {
+            Assert.assertEquals(0, bucket.reserve(0, later));
+        }
+
+        Assert.assertEquals(DEFAULT_SZ, bucket.reserve(0, later));
+    }
+
+    @Test
+    public void testRelease() {
+        TokenBucket bucket = new TokenBucket(rate, burst);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < burst; ++i) {
+            Assert.assertEquals(0, bucket.reserve(0, now));
+        }
+
+        bucket.release();
+
+        Assert.assertEquals(0, bucket.reserve(0, now));
+        Assert.assertEquals(DEFAULT_SZ, bucket.reserve(0, now));
+    }
+
+    @Test
+    public void testRateLimiter() {
+        RateLimiter limiter = new RateLimiter(rate, burst, rate, 1, 0);
+        TokenBucket bucket = limiter.createConnectionBucket();
+
+        Assert.assertEquals(0, limiter.acquire(bucket, "Bob", true));
+
+        // request throttled by user's bucket doesn't spend connection's token
+        Assert.assertEquals(DEFAULT_SZ, limiter.acquire(bucket, "Bob", true));
+        Assert.assertEquals(burst - 1, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void testConcurrentAcquiring() throws InterruptedException {
+        int tokensNumber = 1000;
+
+        // refill is negligible during test
+        TokenBucket bucket = new TokenBucket(1, tokensNumber);
+        AtomicInteger acquired = new AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < tokensNumber; ++j) {
+                    if (bucket.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertTrue(acquired.get() >= tokensNumber && acquired.get() <= tokensNumber + 1);
+    }
+}
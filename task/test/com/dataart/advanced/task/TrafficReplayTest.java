@@ -0,0 +1,139 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Traffic replay verification: sessions of several clients are recorded to journal by server, then they are
+ * replayed against fresh server as fast as possible and with accelerated timing. Responses depend on requests
+ * only, so replay is expected to be answered without errors and mismatches.
+ * Parameters are taken from system properties "sessionsNumber", "commandsNumber" and "speed" (acceleration factor
+ * of timed replay)
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class TrafficReplayTest {
+    private static final String host = "localhost";
+    private static final int port = 19500;
+    private static final int segmentSize = 64 * 1024;
+
+    private static final int sessionsNumber = Integer.getInteger("sessionsNumber", 10);
+    private static final int commandsNumber = Integer.getInteger("commandsNumber", 20);
+    private static final double speed = Double.parseDouble(System.getProperty("speed", "10"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path journalDir;
+    private Server server;
+
+    /**
+     * Listener answering by request content only
+     */
+    private static String onProcess(String msg, Server.Connection connection) {
+        return "reply on " + msg;
+    }
+
+    @Before
+    public void before() throws Exception {
+        journalDir = folder.newFolder("journal").toPath();
+
+        MessageJournal journal = new MessageJournal(journalDir, segmentSize, MessageJournal.FsyncPolicy.NEVER, 0);
+        Server recorder = new Server.Builder(TrafficReplayTest::onProcess).port(port).journal(journal).start();
+
+        // journal is closed by server stop
+        try {
+            List<Thread> clients = new ArrayList<>(sessionsNumber);
+
+            for (int i = 0; i < sessionsNumber; ++i) {
+                StringBuilder commands = new StringBuilder(TESTING_USER_NAME.get(i % TESTING_USER_NAME.size()));
+
+                for (int j = 0; j < commandsNumber; ++j) {
+                    commands.append("\ncommand #").append(j).append(" of session #").append(i);
+                }
+
+                commands.append("\n").append(QUIT_CMD).append("\n");
+
+                Client client = new Client(host, port, new ByteArrayInputStream(commands.toString().getBytes()),
+                                           new ByteArrayOutputStream());
+                Thread thread = new Thread(() -> client.start(msg -> msg));
+
+                clients.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : clients) {
+                thread.join();
+            }
+        } finally {
+            recorder.close();
+        }
+
+        server = new Server.Builder(TrafficReplayTest::onProcess).port(port).start();
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Verifies that all recorded requests are replayed and answered as recorded
+     * @param summary - replay summary
+     */
+    private static void verify(TrafficReplay.Summary summary) {
+        // user name, commands and "quit" of each session
+        int requestsNumber = sessionsNumber * (commandsNumber + 2);
+
+        Assert.assertEquals(sessionsNumber, summary.getSessionsNumber());
+        Assert.assertEquals(requestsNumber, summary.getRequestsNumber());
+        Assert.assertEquals(requestsNumber, summary.getResponsesNumber());
+        Assert.assertEquals(0, summary.getErrorsNumber());
+        Assert.assertEquals(0, summary.getMismatchesNumber());
+
+        Assert.assertNotEquals(0, summary.getRecordedLatency(50));
+        Assert.assertNotEquals(0, summary.getReplayLatency(50));
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        List<TrafficReplay.Script> scripts = TrafficReplay.load(journalDir);
+
+        Assert.assertEquals(sessionsNumber, scripts.size());
+
+        for (TrafficReplay.Script script : scripts) {
+            Assert.assertEquals(commandsNumber + 2, script.getExchanges().size());
+        }
+    }
+
+    @Test
+    public void testAsapReplay() throws Exception {
+        TrafficReplay replay = new TrafficReplay(host, port);
+        replay.setSpeed(0);
+
+        verify(replay.run(journalDir));
+    }
+
+    @Test
+    public void testTimedReplay() throws Exception {
+        TrafficReplay replay = new TrafficReplay(host, port);
+        replay.setSpeed(speed);
+
+        verify(replay.run(journalDir));
+    }
+}
@@ -0,0 +1,169 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Unix domain socket transport verification: streams semantics, reading timeout, socket file removal, blocking
+ * and multiplexing clients exchange with server listening on port and socket file simultaneously
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class UnixDomainTransportTest {
+    private static final String host = "localhost";
+    private static final int port = 18800;
+    private static final String path = new File(System.getProperty("java.io.tmpdir"),
+                                                "client-server-test.sock").getPath();
+
+    private static final long timeout = 5000;   // in ms
+
+    private UnixDomainTransport unix;
+    private Server server;
+
+    @After
+    public void after() throws IOException, InterruptedException {
+        if (server != null) {
+            server.close();
+        } else if (unix != null) {
+            unix.close();
+        }
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        unix = new UnixDomainTransport(path);
+        Assert.assertTrue(new File(path).exists());
+
+        Assert.assertNull(unix.accept(10));
+
+        Endpoint client = UnixDomainTransport.connect(path);
+        Endpoint server = unix.accept((int) timeout);
+
+        Assert.assertNotNull(server);
+
+        // data exceeding socket buffer is written while peer reads
+        byte[] data = new byte[1024 * 1024];
+
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+
+        Thread writer = new Thread(() -> {
+            try {
+                client.getOutputStream().write(data);
+                client.close();
+            } catch (IOException exc) {
+                Assert.fail(exc.getMessage());
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        InputStream in = server.getInputStream();
+        byte[] buffer = new byte[4096];
+        int readSz;
+
+        while ((readSz = in.read(buffer)) >= 0) {
+            received.write(buffer, 0, readSz);
+        }
+
+        writer.join();
+        Assert.assertArrayEquals(data, received.toByteArray());
+
+        server.close();
+
+        // socket file is removed by closing
+        unix.close();
+        unix = null;
+
+        Assert.assertFalse(new File(path).exists());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        unix = new UnixDomainTransport(path);
+
+        Endpoint client = UnixDomainTransport.connect(path);
+        Endpoint server = unix.accept((int) timeout);
+
+        server.setReadTimeout(20);
+
+        try {
+            server.getInputStream().read();
+            Assert.fail("Reading isn't interrupted by timeout");
+        } catch (SocketTimeoutException exc) {
+            // expected
+        }
+
+        // reading is continued after timeout
+        client.getOutputStream().write(42);
+        Assert.assertEquals(42, server.getInputStream().read());
+
+        server.shutdownInput();
+        Assert.assertEquals(-1, server.getInputStream().read());
+
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testBlockingClient() throws Exception {
+        unix = new UnixDomainTransport(path);
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg).port(port)
+                                                                                     .addTransport(unix)
+                                                                                     .start();
+
+        String commands = TESTING_USER_NAME.get(0) + "\ntime\nhello\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setUnixSocket(path);
+        client.start(msg -> msg);
+
+        Assert.assertEquals(commands, responses.toString());
+        Assert.assertEquals(0, client.getReconnectsNumber());
+    }
+
+    @Test
+    public void testMultiplexClient() throws Exception {
+        unix = new UnixDomainTransport(path);
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg).port(port)
+                                                                                     .addTransport(unix)
+                                                                                     .start();
+
+        MultiplexClient mux = new MultiplexClient(host, port);
+        mux.setUnixSocket(path);
+        mux.connect();
+
+        try {
+            OutputStream[] outputs = {new ByteArrayOutputStream(), new ByteArrayOutputStream()};
+            MultiplexClient.Session[] sessions = new MultiplexClient.Session[outputs.length];
+
+            for (int i = 0; i < sessions.length; ++i) {
+                sessions[i] = mux.openSession(TESTING_USER_NAME.get(i), msg -> msg, outputs[i]);
+                sessions[i].send("time");
+                sessions[i].quit();
+            }
+
+            for (int i = 0; i < sessions.length; ++i) {
+                Assert.assertTrue(sessions[i].awaitFinish(timeout, TimeUnit.MILLISECONDS));
+                Assert.assertEquals(TESTING_USER_NAME.get(i) + "\ntime\n" + QUIT_CMD + "\n", outputs[i].toString());
+            }
+        } finally {
+            mux.close();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.dataart.advanced.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.dataart.advanced.task.Info.*;
+
+/**
+ * Fair worker pool verification: order of flow's tasks, deficit round robin fairness against flooding flow,
+ * queue wait statistics, submission waiting for full flow, draining on closing and server's messages processing
+ * by pool without waiting for rate limit
+ *
+ * @author Sergey Sokhnyshev
+ * Created on 19.10.26.
+ */
+public class WorkerPoolTest {
+    private static final String host = "localhost";
+    private static final int port = 18900;
+
+    private static final long timeout = 5000;   // in ms
+
+    private WorkerPool pool;
+    private Server server;
+
+    @After
+    public void after() throws InterruptedException {
+        if (pool != null) {
+            pool.close();
+        }
+
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    /**
+     * Task performing given action
+     */
+    private static class ActionTask extends WorkerPool.Task {
+        private final Runnable action;
+
+        ActionTask(int cost, Runnable action) {
+            super(cost);
+            this.action = action;
+        }
+
+        @Override
+        protected void run() {
+            action.run();
+        }
+    }
+
+    /**
+     * Occupies single thread of pool till returned latch is counted down
+     */
+    private CountDownLatch blockPool() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+
+        pool.createFlow().submit(new ActionTask(1, () -> {
+            started.countDown();
+
+            try {
+                gate.await();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        Assert.assertTrue(started.await(timeout, TimeUnit.MILLISECONDS));
+        return gate;
+    }
+
+    @Test
+    public void testFlowOrder() throws Exception {
+        pool = new WorkerPool(4, 100, Long.MAX_VALUE, WORKER_THREAD_NAME);
+
+        int flowsNumber = 8;
+        int tasksNumber = 1000;
+
+        CountDownLatch done = new CountDownLatch(flowsNumber * tasksNumber);
+        AtomicInteger violations = new AtomicInteger();
+
+        List<List<Integer>> results = new ArrayList<>();
+        List<WorkerPool.Flow> flows = new ArrayList<>();
+
+        for (int i = 0; i < flowsNumber; ++i) {
+            results.add(new ArrayList<>());
+            flows.add(pool.createFlow());
+        }
+
+        for (int j = 0; j < tasksNumber; ++j) {
+            for (int i = 0; i < flowsNumber; ++i) {
+                List<Integer> result = results.get(i);
+                AtomicBoolean isBusy = new AtomicBoolean();
+                int index = j;
+
+                flows.get(i).submit(new ActionTask(30 + j % 50, () -> {
+                    // tasks of one flow aren't performed simultaneously
+                    if (!isBusy.compareAndSet(false, true)) {
+                        violations.incrementAndGet();
+                    }
+
+                    result.add(index);
+                    isBusy.set(false);
+                    done.countDown();
+                }));
+            }
+        }
+
+        Assert.assertTrue(done.await(timeout, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, violations.get());
+
+        for (List<Integer> result : results) {
+            Assert.assertEquals(tasksNumber, result.size());
+
+            for (int j = 0; j < tasksNumber; ++j) {
+                Assert.assertEquals(j, (int) result.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testFairness() throws Exception {
+        pool = new WorkerPool(1, 100, Long.MAX_VALUE, WORKER_THREAD_NAME);
+        CountDownLatch gate = blockPool();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1);
+
+        // flooding flow is queued before single task of another flow
+        WorkerPool.Flow flooding = pool.createFlow();
+
+        for (int i = 0; i < 1000; ++i) {
+            flooding.submit(new ActionTask(100, () -> order.add("flooding")));
+        }
+
+        pool.createFlow().submit(new ActionTask(100, () -> {
+            order.add("single");
+            done.countDown();
+        }));
+
+        gate.countDown();
+        Assert.assertTrue(done.await(timeout, TimeUnit.MILLISECONDS));
+
+        // flooding flow spends its quantum by one task per round
+        Assert.assertTrue(order.indexOf("single") <= 1);
+
+        // task exceeding quantum waits for several rounds
+        WorkerPool.Flow expensive = pool.createFlow();
+        CountDownLatch expensiveDone = new CountDownLatch(1);
+
+        expensive.submit(new ActionTask(1000, expensiveDone::countDown));
+        Assert.assertTrue(expensiveDone.await(timeout, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWaitStatistics() throws Exception {
+        pool = new WorkerPool(1, WORKER_QUANTUM, Long.MAX_VALUE, WORKER_THREAD_NAME);
+        CountDownLatch gate = blockPool();
+
+        WorkerPool.Flow flow = pool.createFlow();
+        CountDownLatch done = new CountDownLatch(2);
+
+        flow.submit(new ActionTask(10, done::countDown));
+        flow.submit(new ActionTask(10, done::countDown));
+        Assert.assertEquals(2, flow.getQueueSize());
+
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        gate.countDown();
+        Assert.assertTrue(done.await(timeout, TimeUnit.MILLISECONDS));
+
+        Assert.assertEquals(0, flow.getQueueSize());
+        Assert.assertTrue(flow.getMaxWait() >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(flow.getMeanWait() >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertTrue(pool.describe().contains("queued = 0, processed = 3"));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        pool = new WorkerPool(1, WORKER_QUANTUM, Long.MAX_VALUE, WORKER_THREAD_NAME);
+        CountDownLatch gate = blockPool();
+
+        WorkerPool.Flow active = pool.createFlow();
+        WorkerPool.Flow idle = pool.createFlow();
+
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+
+        active.submit(new ActionTask(10, () -> {
+            threads.add(Thread.currentThread().getName());
+            done.countDown();
+        }));
+
+        pool.close();
+
+        // queued flow is drained by pool, task of idle flow is performed by submitting thread
+        active.submit(new ActionTask(10, () -> {
+            threads.add(Thread.currentThread().getName());
+            done.countDown();
+        }));
+
+        idle.submit(new ActionTask(10, () -> threads.add(Thread.currentThread().getName())));
+        Assert.assertEquals(Thread.currentThread().getName(), threads.get(0));
+
+        gate.countDown();
+        Assert.assertTrue(done.await(timeout, TimeUnit.MILLISECONDS));
+
+        Assert.assertEquals(WORKER_THREAD_NAME + 0, threads.get(1));
+        Assert.assertEquals(WORKER_THREAD_NAME + 0, threads.get(2));
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+        pool = new WorkerPool(1, WORKER_QUANTUM, 100, WORKER_THREAD_NAME);
+        CountDownLatch gate = blockPool();
+
+        WorkerPool.Flow flow = pool.createFlow();
+        CountDownLatch done = new CountDownLatch(2);
+
+        flow.submit(new ActionTask(60, done::countDown));
+
+        // the second task exceeds capacity of flow, so submitting thread waits for draining
+        Thread submitter = new Thread(() -> flow.submit(new ActionTask(60, done::countDown)));
+        submitter.start();
+
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        Assert.assertTrue(submitter.isAlive());
+        Assert.assertEquals(1, flow.getQueueSize());
+
+        gate.countDown();
+
+        submitter.join(timeout);
+        Assert.assertFalse(submitter.isAlive());
+        Assert.assertTrue(done.await(timeout, TimeUnit.MILLISECONDS));
+
+        // task more expensive than capacity is queued to empty flow
+        CountDownLatch expensiveDone = new CountDownLatch(1);
+
+        flow.submit(new ActionTask(1000, expensiveDone::countDown));
+        Assert.assertTrue(expensiveDone.await(timeout, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg).transport(loopback)
+                                                                                     .workerPool(2, 64)
+                                                                                     .start();
+
+        MultiplexClient mux = new MultiplexClient(host, port);
+        mux.setLoopback(loopback);
+        mux.connect();
+
+        try {
+            OutputStream[] outputs = {new ByteArrayOutputStream(), new ByteArrayOutputStream()};
+            MultiplexClient.Session[] sessions = new MultiplexClient.Session[outputs.length];
+            StringBuilder expected = new StringBuilder(TESTING_USER_NAME.get(0) + "\n");
+
+            // pipelined messages of session are answered in order
+            sessions[0] = mux.openSession(TESTING_USER_NAME.get(0), msg -> msg, outputs[0]);
+
+            for (int i = 0; i < 100; ++i) {
+                sessions[0].send("message #" + i);
+                expected.append("message #").append(i).append('\n');
+            }
+
+            sessions[0].quit();
+            expected.append(QUIT_CMD).append('\n');
+
+            sessions[1] = mux.openSession(TESTING_USER_NAME.get(1), msg -> msg, outputs[1]);
+            sessions[1].send("time");
+            sessions[1].quit();
+
+            for (MultiplexClient.Session session : sessions) {
+                Assert.assertTrue(session.awaitFinish(timeout, TimeUnit.MILLISECONDS));
+            }
+
+            Assert.assertEquals(expected.toString(), outputs[0].toString());
+            Assert.assertEquals(TESTING_USER_NAME.get(1) + "\ntime\n" + QUIT_CMD + "\n", outputs[1].toString());
+        } finally {
+            mux.close();
+        }
+
+        // legacy client's "quit" finishes link after queued messages
+        String commands = TESTING_USER_NAME.get(2) + "\ntime\nhello\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setLoopback(loopback);
+        client.start(msg -> msg);
+
+        Assert.assertEquals(commands, responses.toString());
+        Assert.assertTrue(server.collectStats().stream().anyMatch(line -> line.startsWith("Worker pool: threads = 2")));
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        // the second request would wait for token during a second, if delay were allowed
+        LoopbackTransport loopback = new LoopbackTransport();
+        server = new Server.Builder((String msg, Server.Connection connection) -> msg).transport(loopback)
+                                                                                     .workerPool(1, 64)
+                                                                                     .rateLimits(1, 1, 0, 0, 10000)
+                                                                                     .start();
+
+        String commands = TESTING_USER_NAME.get(0) + "\nhello\ntime\n" + QUIT_CMD + "\n";
+        ByteArrayOutputStream responses = new ByteArrayOutputStream();
+
+        Client client = new Client(host, port, new ByteArrayInputStream(commands.getBytes()), responses);
+        client.setLoopback(loopback);
+
+        long start = System.nanoTime();
+        client.start(msg -> msg);
+
+        // request processed by worker is throttled instead of waiting
+        Assert.assertEquals(TESTING_USER_NAME.get(0) + "\nhello\n" + THROTTLE_MSG + "\n" + QUIT_CMD + "\n",
+                            responses.toString());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+    }
+}